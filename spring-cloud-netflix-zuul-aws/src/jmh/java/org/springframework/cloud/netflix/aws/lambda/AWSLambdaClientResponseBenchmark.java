@@ -0,0 +1,78 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.amazonaws.services.lambda.model.InvokeResult;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cloud.netflix.aws.lambda.support.StubAWSLambdaAsync;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 라우팅 필터가 {@link AWSLambdaClientResponse}의 헤더와 본문을 서블릿 응답으로 복사할 때의 지연시간과 할당량을 측정한다.
+ * 본문은 서블릿 출력 스트림 대신 바이트 수만 세는 스트림으로 복사한다.
+ *
+ * ./gradlew :spring-cloud-netflix-zuul-aws:jmh
+ *
+ * @author arawn.kr@gmail.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AWSLambdaClientResponseBenchmark {
+
+    @Param({"1024", "65536", "1048576"})
+    int size;
+
+    byte[] payload;
+    InvokeResult invokeResult;
+    CountingOutputStream output;
+
+    @Setup
+    public void setUp() {
+        payload = new byte[size]; {
+            Arrays.fill(payload, (byte) 'a');
+        }
+        invokeResult = StubAWSLambdaAsync.result(200, "{}");
+        output = new CountingOutputStream();
+    }
+
+    @Benchmark
+    public HttpHeaders copyHeaders() {
+        return new AWSLambdaClientResponse(invokeResult).getHeaders();
+    }
+
+    @Benchmark
+    public long copyBody() throws IOException {
+        // 본문 스트림이 페이로드의 위치를 옮기므로 호출마다 새 뷰를 만든다.
+        invokeResult.setPayload(ByteBuffer.wrap(payload));
+        output.count = 0;
+        StreamUtils.copy(new AWSLambdaClientResponse(invokeResult).getBody(), output);
+        return output.count;
+    }
+
+
+    static class CountingOutputStream extends OutputStream {
+
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int off, int len) {
+            count += len;
+        }
+
+    }
+
+}
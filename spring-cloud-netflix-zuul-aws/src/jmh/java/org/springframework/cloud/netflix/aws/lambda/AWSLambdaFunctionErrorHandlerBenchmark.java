@@ -0,0 +1,68 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.google.common.io.CharStreams;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 오류가 몰릴 때 함수 오류 응답 하나를 처리하는 비용을 비교한다.
+ *
+ * fullPayload는 이전처럼 오류 페이로드 전체를 문자열로 읽는다. 로그를 쓰는 비용은 빠져 있다.
+ * errorHandler는 {@link AWSLambdaFunctionErrorHandler}로 errorType과 errorMessage만 읽고, 세고, 초당 제한된 로그를 남긴다.
+ *
+ * ./gradlew :spring-cloud-netflix-zuul-aws:jmh -Pjmh.includes=AWSLambdaFunctionErrorHandlerBenchmark
+ *
+ * @author arawn.kr@gmail.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class AWSLambdaFunctionErrorHandlerBenchmark {
+
+    static final String FUNCTION_ARN = "arn:aws:lambda:ap-northeast-2:123456789012:function:hello";
+
+    /**
+     * 오류 페이로드에 담긴 스택 트레이스의 크기
+     */
+    @Param({"1024", "262144"})
+    int stackTraceSize;
+
+    byte[] payload;
+    AWSLambdaFunctionErrorHandler errorHandler;
+
+    @Setup
+    public void setUp() {
+        char[] stackTrace = new char[stackTraceSize]; {
+            Arrays.fill(stackTrace, 'x');
+        }
+        payload = ("{\"errorMessage\":\"name is required\",\"errorType\":\"ValidationError\",\"stackTrace\":[\"" + new String(stackTrace) + "\"]}").getBytes(StandardCharsets.UTF_8);
+        errorHandler = new AWSLambdaFunctionErrorHandler();
+    }
+
+    @Benchmark
+    public int fullPayload() throws IOException {
+        MockClientHttpResponse response = new MockClientHttpResponse(payload, HttpStatus.INTERNAL_SERVER_ERROR);
+        try (Reader reader = new InputStreamReader(response.getBody())) {
+            return CharStreams.toString(reader).length();
+        }
+    }
+
+    @Benchmark
+    public int errorHandler() throws IOException {
+        MockClientHttpResponse response = new MockClientHttpResponse(payload, HttpStatus.INTERNAL_SERVER_ERROR);
+        return errorHandler.handle("hello", FUNCTION_ARN, response).getStatus();
+    }
+
+}
@@ -0,0 +1,104 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.lambda.AbstractAWSLambdaAsync;
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 작은 요청을 요청마다 호출할 때와 {@link AWSLambdaInvocationBatcher}로 묶어서 호출할 때의 처리량을 비교한다.
+ * 람다 호출은 동시 실행 수가 제한된(concurrency) 가상의 클라이언트로 대신하며, 호출마다 서명, TLS, 람다 배정에 해당하는 고정 비용(invokeOverheadMicros)이 든다.
+ *
+ * ./gradlew :spring-cloud-netflix-zuul-aws:jmh
+ *
+ * @author arawn.kr@gmail.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(32)
+@Fork(1)
+public class AWSLambdaInvocationBatcherBenchmark {
+
+    static final String FUNCTION_ARN = "arn:aws:lambda:ap-northeast-2:123456789012:function:hello";
+    static final byte[] PAYLOAD = "{\"id\":12345,\"name\":\"arawn\"}".getBytes(StandardCharsets.UTF_8);
+
+    @Param({"500"})
+    long invokeOverheadMicros;
+
+    @Param({"4"})
+    int concurrency;
+
+    @Param({"16"})
+    int maxBatchSize;
+
+    SimulatedLambda lambdaClient;
+    AWSLambdaInvocationBatcher invocationBatcher;
+
+    @Setup
+    public void setUp() {
+        lambdaClient = new SimulatedLambda(concurrency, TimeUnit.MICROSECONDS.toNanos(invokeOverheadMicros));
+        invocationBatcher = new AWSLambdaInvocationBatcher(maxBatchSize, 1, TimeUnit.MILLISECONDS);
+    }
+
+    @TearDown
+    public void tearDown() {
+        invocationBatcher.shutdown();
+        lambdaClient.shutdown();
+    }
+
+    @Benchmark
+    public InvokeResult invokePerRequest() {
+        return new AWSLambdaClientRequest(lambdaClient, FUNCTION_ARN, null, ByteBuffer.wrap(PAYLOAD), Collections.emptyList())
+                .invokeAsync(null)
+                .join();
+    }
+
+    @Benchmark
+    public InvokeResult microBatching() {
+        return new AWSLambdaClientRequest(lambdaClient, FUNCTION_ARN, null, ByteBuffer.wrap(PAYLOAD), Collections.singletonList(invocationBatcher))
+                .invokeAsync(null)
+                .join();
+    }
+
+
+    /**
+     * 요청 페이로드를 그대로 돌려주는 람다 클라이언트, 배열 요청이면 같은 길이의 배열이 반환된다.
+     */
+    static class SimulatedLambda extends AbstractAWSLambdaAsync {
+
+        private final ExecutorService executor;
+        private final long invokeOverheadNanos;
+
+        SimulatedLambda(int concurrency, long invokeOverheadNanos) {
+            this.executor = Executors.newFixedThreadPool(concurrency);
+            this.invokeOverheadNanos = invokeOverheadNanos;
+        }
+
+        @Override
+        public Future<InvokeResult> invokeAsync(InvokeRequest request, AsyncHandler<InvokeRequest, InvokeResult> asyncHandler) {
+            return executor.submit(() -> {
+                LockSupport.parkNanos(invokeOverheadNanos);
+                InvokeResult result = new InvokeResult().withStatusCode(200).withPayload(request.getPayload().duplicate());
+                asyncHandler.onSuccess(request, result);
+                return result;
+            });
+        }
+
+        @Override
+        public void shutdown() {
+            executor.shutdownNow();
+        }
+
+    }
+
+}
@@ -0,0 +1,57 @@
+package org.springframework.cloud.netflix.aws.lambda.support;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cloud.netflix.aws.lambda.ClientContext;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 람다 호출마다 만드는 클라이언트 컨텍스트를 Base64로 인코딩할 때의 지연시간과 할당량을 측정한다.
+ * DefaultClientContext.toString()만 따로 측정하고, 생성부터 인코딩까지는 {@link CachingClientContextFactory}와 비교한다.
+ *
+ * ./gradlew :spring-cloud-netflix-zuul-aws:jmh
+ *
+ * @author arawn.kr@gmail.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClientContextBenchmark {
+
+    ServerHttpRequest request;
+    DefaultClientContextFactory defaultFactory;
+    CachingClientContextFactory cachingFactory;
+    ClientContext defaultContext;
+
+    @Setup
+    public void setUp() {
+        MockEnvironment environment = new MockEnvironment(); {
+            environment.setActiveProfiles("production", "aws");
+        }
+        request = MockServerHttpRequest.of("http://localhost/lambda");
+        defaultFactory = new DefaultClientContextFactory(environment);
+        cachingFactory = new CachingClientContextFactory(environment);
+        defaultContext = defaultFactory.create(request);
+    }
+
+    @Benchmark
+    public String defaultToString() {
+        return defaultContext.toString();
+    }
+
+    @Benchmark
+    public String defaultCreateAndEncode() {
+        return defaultFactory.create(request).toString();
+    }
+
+    @Benchmark
+    public String cachingCreateAndEncode() {
+        return cachingFactory.create(request).toString();
+    }
+
+}
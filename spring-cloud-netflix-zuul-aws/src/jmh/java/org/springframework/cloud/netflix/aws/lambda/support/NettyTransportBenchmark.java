@@ -0,0 +1,102 @@
+package org.springframework.cloud.netflix.aws.lambda.support;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.lambda.AWSLambdaAsyncClientBuilder;
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaConnectionPool;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaTransport;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 응답이 느린 람다 함수(루프백 서버)에 동시 호출 concurrency 개를 보내고 모두 응답받을 때까지의 시간을 AWS SDK와 {@link NettyTransport}로 비교한다.
+ *
+ * 두 전송 계층 모두 동시 호출 수만큼 연결을 맺을 수 있고, AWS SDK의 비동기 호출 스레드는 {@link #SDK_EXECUTOR_THREADS}개로 고정한다.
+ * AWS SDK는 스레드 수를 넘는 호출이 앞선 호출이 끝날 때까지 기다리고, {@link NettyTransport}는 이벤트 루프 스레드 몇 개로 모든 호출을 기다린다.
+ *
+ * ./gradlew :spring-cloud-netflix-zuul-aws:jmh -Pjmh.includes=NettyTransportBenchmark
+ *
+ * @author arawn.kr@gmail.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NettyTransportBenchmark {
+
+    static final String FUNCTION_ARN = "arn:aws:lambda:ap-northeast-2:123456789012:function:hello";
+    static final int SDK_EXECUTOR_THREADS = 64;
+    static final long LATENCY_MILLIS = 20;
+
+    @Param({"sdk", "netty"})
+    String transport;
+
+    @Param({"64", "1024"})
+    int concurrency;
+
+    ByteBuffer payload;
+    LoopbackLambdaServer server;
+    AWSLambdaConnectionPool connectionPool;
+    NettyTransport nettyTransport;
+    AWSLambdaTransport lambdaTransport;
+
+    @Setup
+    public void setUp() throws Exception {
+        payload = ByteBuffer.wrap("{\"message\":\"hello\"}".getBytes(StandardCharsets.UTF_8));
+        server = LoopbackLambdaServer.start();
+        server.setLatency(LATENCY_MILLIS, TimeUnit.MILLISECONDS);
+
+        AWSStaticCredentialsProvider credentials = new AWSStaticCredentialsProvider(new BasicAWSCredentials("access", "secret"));
+        if ("sdk".equals(transport)) {
+            AWSLambdaAsyncClientBuilder clientBuilder = AWSLambdaAsyncClientBuilder.standard()
+                                                                                   .withCredentials(credentials)
+                                                                                   .withClientConfiguration(new ClientConfiguration().withMaxConnections(concurrency))
+                                                                                   .withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(server.getEndpoint().toString(), "ap-northeast-2"));
+            connectionPool = AWSLambdaConnectionPool.build(clientBuilder, SDK_EXECUTOR_THREADS);
+            lambdaTransport = new SdkClientTransport(connectionPool.getClient());
+        } else {
+            nettyTransport = new NettyTransport(credentials);
+            nettyTransport.setEndpoint(server.getEndpoint());
+            nettyTransport.setMaxConnections(concurrency);
+            lambdaTransport = nettyTransport;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (connectionPool != null) {
+            connectionPool.shutdown();
+        }
+        if (nettyTransport != null) {
+            nettyTransport.shutdown();
+        }
+        server.shutdown();
+    }
+
+    @Benchmark
+    public int invoke() throws Exception {
+        List<CompletableFuture<InvokeResult>> invocations = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            invocations.add(lambdaTransport.invokeAsync(new InvokeRequest().withFunctionName(FUNCTION_ARN).withPayload(payload.duplicate())));
+        }
+
+        int completed = 0;
+        for (CompletableFuture<InvokeResult> invocation : invocations) {
+            completed += invocation.get(1, TimeUnit.MINUTES).getStatusCode() == 200 ? 1 : 0;
+        }
+        return completed;
+    }
+
+}
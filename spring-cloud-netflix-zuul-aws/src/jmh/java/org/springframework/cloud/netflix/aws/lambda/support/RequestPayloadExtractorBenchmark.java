@@ -0,0 +1,119 @@
+package org.springframework.cloud.netflix.aws.lambda.support;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON 본문을 {@link DefaultRequestPayloadExtractor}(JsonNode 변환)와
+ * {@link PassThroughRequestPayloadExtractor}(그대로 전달)로 추출할 때의 지연시간과 할당량을 비교한다.
+ * {@link DefaultRequestPayloadExtractor#extract(ServerHttpRequest)}로 JSON, form 본문을 문자열로 추출하는 경로도 함께 측정한다.
+ *
+ * ./gradlew :spring-cloud-netflix-zuul-aws:jmh
+ *
+ * @author arawn.kr@gmail.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestPayloadExtractorBenchmark {
+
+    @Param({"1024", "65536", "1048576"})
+    int size;
+
+    byte[] body;
+    byte[] formBody;
+
+    final DefaultRequestPayloadExtractor defaultExtractor = new DefaultRequestPayloadExtractor();
+    final PassThroughRequestPayloadExtractor passThroughExtractor = new PassThroughRequestPayloadExtractor(false);
+    final PassThroughRequestPayloadExtractor validatingExtractor = new PassThroughRequestPayloadExtractor(true);
+
+    @Setup
+    public void setUp() {
+        body = jsonBody(size);
+        formBody = formBody(size);
+    }
+
+    @Benchmark
+    public String extractJson() {
+        return defaultExtractor.extract(jsonRequest());
+    }
+
+    @Benchmark
+    public String extractForm() {
+        return defaultExtractor.extract(request(MediaType.APPLICATION_FORM_URLENCODED_VALUE, formBody));
+    }
+
+    @Benchmark
+    public ByteBuffer jsonNodeRoundTrip() {
+        return defaultExtractor.extractBytes(jsonRequest());
+    }
+
+    @Benchmark
+    public ByteBuffer passThrough() {
+        return passThroughExtractor.extractBytes(jsonRequest());
+    }
+
+    @Benchmark
+    public ByteBuffer passThroughWithValidation() {
+        return validatingExtractor.extractBytes(jsonRequest());
+    }
+
+    /**
+     * MockHttpServletRequest의 입력 스트림은 한 바이트씩 읽히므로, 본문은 ByteArrayInputStream으로 직접 제공한다.
+     */
+    ServerHttpRequest jsonRequest() {
+        return request(MediaType.APPLICATION_JSON_VALUE, body);
+    }
+
+    ServerHttpRequest request(String contentType, byte[] body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/lambda"); {
+            request.setContentType(contentType);
+            request.addHeader("Content-Length", body.length);
+        }
+        return new ServletServerHttpRequest(request) {
+            @Override
+            public InputStream getBody() {
+                return new ByteArrayInputStream(body);
+            }
+        };
+    }
+
+
+    static byte[] jsonBody(int size) {
+        StringBuilder builder = new StringBuilder(size + 64).append('[');
+        for (int idx = 0; builder.length() < size - 64; idx++) {
+            if (idx > 0) {
+                builder.append(',');
+            }
+            builder.append("{\"id\":").append(idx)
+                   .append(",\"name\":\"item-").append(idx)
+                   .append("\",\"tags\":[\"lambda\",\"zuul\"],\"price\":").append(idx * 1.5)
+                   .append('}');
+        }
+        return builder.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] formBody(int size) {
+        StringBuilder builder = new StringBuilder(size + 64);
+        for (int idx = 0; builder.length() < size - 64; idx++) {
+            if (idx > 0) {
+                builder.append('&');
+            }
+            builder.append("item").append(idx).append("=name-").append(idx).append("%20tag%2Clambda");
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+}
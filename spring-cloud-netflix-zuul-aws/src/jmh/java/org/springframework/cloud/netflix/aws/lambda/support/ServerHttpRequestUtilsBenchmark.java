@@ -0,0 +1,47 @@
+package org.springframework.cloud.netflix.aws.lambda.support;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.util.MultiValueMap;
+
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 질의 문자열을 {@link ServerHttpRequestUtils#getQueryParams(ServerHttpRequest)}로 나눌 때의 지연시간과 할당량을 측정한다.
+ *
+ * ./gradlew :spring-cloud-netflix-zuul-aws:jmh
+ *
+ * @author arawn.kr@gmail.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServerHttpRequestUtilsBenchmark {
+
+    @Param({"1", "8", "32"})
+    int parameters;
+
+    ServerHttpRequest request;
+
+    @Setup
+    public void setUp() {
+        StringBuilder uri = new StringBuilder("http://localhost/lambda?");
+        for (int idx = 0; idx < parameters; idx++) {
+            if (idx > 0) {
+                uri.append('&');
+            }
+            uri.append("name").append(idx).append('=').append("hello%20lambda-").append(idx);
+        }
+        request = MockServerHttpRequest.of(uri.toString());
+    }
+
+    @Benchmark
+    public MultiValueMap<String, String> getQueryParams() throws UnsupportedEncodingException {
+        return ServerHttpRequestUtils.getQueryParams(request);
+    }
+
+}
@@ -0,0 +1,181 @@
+package org.springframework.cloud.netflix.zuul.filters.route;
+
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.lambda.AbstractAWSLambdaAsync;
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+import com.netflix.zuul.context.RequestContext;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaClientRequestFactory;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaReactiveRouter;
+import org.springframework.cloud.netflix.aws.lambda.support.CachingClientContextFactory;
+import org.springframework.cloud.netflix.aws.lambda.support.DefaultRequestPayloadExtractor;
+import org.springframework.cloud.netflix.aws.lambda.support.StubAWSLambdaAsync;
+import org.springframework.cloud.netflix.zuul.filters.ZuulProperties;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockHttpServletResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.springframework.cloud.netflix.zuul.filters.support.FilterConstants.PROXY_KEY;
+import static org.springframework.cloud.netflix.zuul.filters.support.FilterConstants.SERVICE_ID_KEY;
+
+/**
+ * 응답이 느린 람다 함수에 동시 요청 concurrency 개를 보내고 모두 응답받을 때까지의 시간을 Zuul 필터와 {@link AWSLambdaReactiveRouter}로 비교한다.
+ *
+ * Zuul 필터는 서블릿 컨테이너처럼 요청마다 스레드 하나를 점유하므로 요청 스레드 수(Tomcat 기본값 200)를 넘는 요청은 앞선 요청이 끝날 때까지 기다리고,
+ * {@link AWSLambdaReactiveRouter}는 호출한 스레드 하나에서 모든 요청을 구독한다. 람다 호출은 스레드를 점유하지 않는 스케줄러로 지연시간 후 완료되므로
+ * 게이트웨이 쪽의 스레드 사용만 비교된다. AWS SDK v1 클라이언트는 비동기 호출도 SDK 스레드를 점유한다는 점에 주의한다.
+ *
+ * ./gradlew :spring-cloud-netflix-zuul-aws:jmh -Pjmh.includes=AWSLambdaReactiveRouterBenchmark
+ *
+ * @author arawn.kr@gmail.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AWSLambdaReactiveRouterBenchmark {
+
+    static final String FUNCTION_ARN = "arn:aws:lambda:ap-northeast-2:123456789012:function:hello";
+    static final int REQUEST_THREADS = 200;
+    static final long LATENCY_MILLIS = 20;
+
+    @Param({"200", "2000"})
+    int concurrency;
+
+    byte[] body;
+    ScheduledExecutorService scheduler;
+    ExecutorService requestThreads;
+    AWSLambdaRoutingFilter filter;
+    AWSLambdaReactiveRouter router;
+
+    @Setup
+    public void setUp() {
+        body = AWSLambdaRoutingFilterBenchmark.jsonBody(1024);
+        scheduler = Executors.newScheduledThreadPool(2);
+        requestThreads = Executors.newFixedThreadPool(REQUEST_THREADS);
+
+        DelayedAWSLambdaAsync lambdaClient = new DelayedAWSLambdaAsync(scheduler, StubAWSLambdaAsync.result(200, "{\"message\":\"hello\"}"));
+        AWSLambdaClientRequestFactory requestFactory = new AWSLambdaClientRequestFactory(lambdaClient, new CachingClientContextFactory(new MockEnvironment()), new DefaultRequestPayloadExtractor());
+
+        ZuulProperties zuulProperties = new ZuulProperties(); {
+            zuulProperties.getSemaphore().setMaxSemaphores(REQUEST_THREADS);
+        }
+        filter = new AWSLambdaRoutingFilter(requestFactory, zuulProperties);
+        router = new AWSLambdaReactiveRouter(requestFactory);
+    }
+
+    @TearDown
+    public void tearDown() {
+        requestThreads.shutdownNow();
+        scheduler.shutdownNow();
+    }
+
+    @Benchmark
+    public int zuulFilter() throws Exception {
+        List<Future<Integer>> responses = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            responses.add(requestThreads.submit(() -> {
+                // 요청 스레드마다 자신의 RequestContext를 사용한다.
+                RequestContext context = RequestContext.getCurrentContext(); {
+                    context.setRequest(new AWSLambdaRoutingFilterBenchmark.BodyServletRequest(body));
+                    context.setResponse(new MockHttpServletResponse());
+                    context.set(SERVICE_ID_KEY, FUNCTION_ARN);
+                    context.set(PROXY_KEY, "hello");
+                }
+                try {
+                    filter.run();
+                    return context.getResponseStatusCode();
+                } finally {
+                    context.unset();
+                }
+            }));
+        }
+
+        int completed = 0;
+        for (Future<Integer> response : responses) {
+            completed += response.get() == 200 ? 1 : 0;
+        }
+        return completed;
+    }
+
+    @Benchmark
+    public int reactiveRouter() {
+        HttpHeaders headers = new HttpHeaders(); {
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            headers.setContentLength(body.length);
+        }
+        URI uri = URI.create("http://localhost/hello");
+
+        List<Mono<ClientHttpResponse>> responses = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            responses.add(router.route("hello", FUNCTION_ARN, HttpMethod.POST, uri, headers, Flux.just(ByteBuffer.wrap(body))));
+        }
+        return Flux.merge(Flux.fromIterable(responses), concurrency)
+                   .filter(AWSLambdaReactiveRouterBenchmark::isOk)
+                   .count()
+                   .block(Duration.ofMinutes(1))
+                   .intValue();
+    }
+
+    static boolean isOk(ClientHttpResponse response) {
+        try {
+            return response.getRawStatusCode() == 200;
+        } catch (IOException error) {
+            return false;
+        }
+    }
+
+
+    /**
+     * 스레드를 점유하지 않고 지연시간 후에 응답하는 람다 클라이언트, 동기 호출은 호출한 스레드가 지연시간 동안 대기한다.
+     */
+    static class DelayedAWSLambdaAsync extends AbstractAWSLambdaAsync {
+
+        final ScheduledExecutorService scheduler;
+        final InvokeResult result;
+
+        DelayedAWSLambdaAsync(ScheduledExecutorService scheduler, InvokeResult result) {
+            this.scheduler = scheduler;
+            this.result = result;
+        }
+
+        @Override
+        public InvokeResult invoke(InvokeRequest request) {
+            try {
+                return invokeAsync(request, null).get();
+            } catch (InterruptedException | ExecutionException error) {
+                throw new IllegalStateException(error);
+            }
+        }
+
+        @Override
+        public Future<InvokeResult> invokeAsync(InvokeRequest request, AsyncHandler<InvokeRequest, InvokeResult> asyncHandler) {
+            CompletableFuture<InvokeResult> future = new CompletableFuture<>();
+            scheduler.schedule(() -> {
+                if (asyncHandler != null) {
+                    asyncHandler.onSuccess(request, result);
+                }
+                future.complete(result);
+            }, LATENCY_MILLIS, TimeUnit.MILLISECONDS);
+            return future;
+        }
+
+    }
+
+}
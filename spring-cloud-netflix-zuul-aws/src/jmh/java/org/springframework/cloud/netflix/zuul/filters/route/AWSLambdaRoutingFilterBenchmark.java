@@ -0,0 +1,146 @@
+package org.springframework.cloud.netflix.zuul.filters.route;
+
+import com.netflix.zuul.context.RequestContext;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaClientRequestFactory;
+import org.springframework.cloud.netflix.aws.lambda.support.DefaultClientContextFactory;
+import org.springframework.cloud.netflix.aws.lambda.support.DefaultRequestPayloadExtractor;
+import org.springframework.cloud.netflix.aws.lambda.support.StubAWSLambdaAsync;
+import org.springframework.cloud.netflix.zuul.filters.ZuulProperties;
+import org.springframework.http.MediaType;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.cloud.netflix.zuul.filters.support.FilterConstants.PROXY_KEY;
+import static org.springframework.cloud.netflix.zuul.filters.support.FilterConstants.SERVICE_ID_KEY;
+
+/**
+ * {@link AWSLambdaRoutingFilter#run()} 한 번(페이로드 추출, 클라이언트 컨텍스트, Hystrix 명령, 응답 설정)의 지연시간과 할당량을 측정한다.
+ * 람다 호출은 미리 정한 응답을 바로 돌려주는 메모리 안의 클라이언트로 대신하므로 게이트웨이 자체의 비용만 측정된다.
+ *
+ * ./gradlew :spring-cloud-netflix-zuul-aws:jmh
+ *
+ * @author arawn.kr@gmail.com
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AWSLambdaRoutingFilterBenchmark {
+
+    static final String FUNCTION_ARN = "arn:aws:lambda:ap-northeast-2:123456789012:function:hello";
+
+    @Param({"1024", "65536"})
+    int size;
+
+    byte[] body;
+    String response;
+    AWSLambdaRoutingFilter filter;
+    byte[] buffer = new byte[8192];
+
+    @Setup
+    public void setUp() {
+        body = jsonBody(size);
+        response = new String(jsonBody(size), StandardCharsets.UTF_8);
+        StubAWSLambdaAsync lambdaClient = new StubAWSLambdaAsync(request -> StubAWSLambdaAsync.result(200, response), Runnable::run);
+        AWSLambdaClientRequestFactory requestFactory = new AWSLambdaClientRequestFactory(lambdaClient, new DefaultClientContextFactory(new MockEnvironment()), new DefaultRequestPayloadExtractor());
+        filter = new AWSLambdaRoutingFilter(requestFactory, new ZuulProperties());
+    }
+
+    @TearDown
+    public void tearDown() {
+        RequestContext.testSetCurrentContext(null);
+    }
+
+    @Benchmark
+    public long run() throws IOException {
+        RequestContext context = new RequestContext(); {
+            context.setRequest(new BodyServletRequest(body));
+            context.setResponse(new MockHttpServletResponse());
+            context.set(SERVICE_ID_KEY, FUNCTION_ARN);
+            context.set(PROXY_KEY, "hello");
+        }
+        RequestContext.testSetCurrentContext(context);
+        filter.run();
+
+        // SendResponseFilter 처럼 응답 본문을 모두 읽는다.
+        long count = 0;
+        int read;
+        InputStream responseBody = context.getResponseDataStream();
+        while ((read = responseBody.read(buffer)) != -1) {
+            count += read;
+        }
+        return count;
+    }
+
+
+    static byte[] jsonBody(int size) {
+        StringBuilder builder = new StringBuilder(size + 64).append('[');
+        for (int idx = 0; builder.length() < size - 64; idx++) {
+            if (idx > 0) {
+                builder.append(',');
+            }
+            builder.append("{\"id\":").append(idx).append(",\"name\":\"item-").append(idx).append("\"}");
+        }
+        return builder.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * MockHttpServletRequest의 입력 스트림은 한 바이트씩 읽히므로, 한 번에 읽을 수 있는 입력 스트림을 제공한다.
+     */
+    static class BodyServletRequest extends MockHttpServletRequest {
+
+        final byte[] body;
+
+        BodyServletRequest(byte[] body) {
+            super("POST", "/hello");
+            this.body = body;
+            setContentType(MediaType.APPLICATION_JSON_VALUE);
+            addHeader("Content-Length", body.length);
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(byte[] bytes, int off, int len) {
+                    return input.read(bytes, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+    }
+
+}
@@ -0,0 +1,185 @@
+package org.springframework.cloud.netflix;
+
+import lombok.val;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.context.PropertyPlaceholderAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.*;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.cloud.client.discovery.simple.SimpleDiscoveryClientAutoConfiguration;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerAutoConfiguration;
+import org.springframework.cloud.commons.util.UtilAutoConfiguration;
+import org.springframework.cloud.netflix.archaius.ArchaiusAutoConfiguration;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaClientRequestFactory;
+import org.springframework.cloud.netflix.aws.lambda.support.DefaultRequestPayloadExtractor;
+import org.springframework.cloud.netflix.aws.lambda.support.CachingClientContextFactory;
+import org.springframework.cloud.netflix.aws.lambda.support.SimulatedAWSLambdaAsync;
+import org.springframework.cloud.netflix.aws.lambda.support.SimulatedAWSLambdaAsync.LatencyDistribution;
+import org.springframework.cloud.netflix.ribbon.RibbonAutoConfiguration;
+import org.springframework.cloud.netflix.zuul.EnableZuulProxy;
+import org.springframework.cloud.netflix.zuul.ZuulProxyAutoConfiguration;
+import org.springframework.cloud.netflix.zuul.filters.ZuulProperties;
+import org.springframework.cloud.netflix.zuul.filters.route.AWSLambdaRoutingFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.env.Environment;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 시뮬레이션 람다({@link SimulatedAWSLambdaAsync})를 사용해 내장 서블릿 컨테이너와 Zuul 필터 체인 전체를 부하 시험한다.
+ * AWS 자격 증명이나 배포된 함수가 필요 없으므로, 배포 전에 격리 전략(THREAD/SEMAPHORE)과 풀 크기를 바꿔가며 비교할 수 있다.
+ *
+ * <pre>
+ * ./gradlew :spring-cloud-netflix-zuul-aws:loadTest \
+ *     -Dloadtest.concurrency=128 -Dloadtest.lambda.median-millis=30 -Dloadtest.lambda.p99-millis=250 \
+ *     -Dzuul.ribbon-isolation-strategy=SEMAPHORE -Dzuul.semaphore.max-semaphores=500
+ * </pre>
+ *
+ * 부하 설정(loadtest.*)
+ * <ul>
+ *     <li>concurrency: 동시에 요청을 보내는 클라이언트 수 (64)</li>
+ *     <li>rate: 초당 요청 수, 0 이면 응답을 받는 즉시 다음 요청을 보낸다 (0)</li>
+ *     <li>warmup-seconds, duration-seconds: 측정 전 예열 시간과 측정 시간 (5, 30)</li>
+ *     <li>payload-bytes: 요청 본문 크기 (256)</li>
+ *     <li>async-invocation: Servlet 3 비동기 호출 사용 여부 (false)</li>
+ * </ul>
+ *
+ * 람다 설정(loadtest.lambda.*)
+ * <ul>
+ *     <li>latency: 실행 시간 분포, lognormal, uniform, constant 중 하나 (lognormal)</li>
+ *     <li>median-millis, p99-millis: lognormal은 중앙값과 99 백분위수, uniform은 최소와 최대, constant는 median-millis (20, 120)</li>
+ *     <li>cold-start-millis, idle-timeout-seconds: 콜드 스타트 지연과 실행 환경 유지 시간 (800, 300)</li>
+ *     <li>concurrency-limit, throttle-rate: 동시 실행 한도와 무작위 스로틀링 확률 (1000, 0)</li>
+ *     <li>error-rate: 함수 오류 확률 (0)</li>
+ * </ul>
+ *
+ * 그 외 zuul.*, hystrix.* 설정도 시스템 프로퍼티로 지정할 수 있다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+public class AWSLambdaLoadTest {
+
+    static final String FUNCTION_ARN = "arn:aws:lambda:ap-northeast-2:123456789012:function:load-test";
+
+    public static void main(String[] args) throws Exception {
+        val defaultProperties = new HashMap<String, Object>(); {
+            defaultProperties.put("server.port", 0);
+            defaultProperties.put("zuul.routes.lambda.path", "/lambda/**");
+            defaultProperties.put("zuul.routes.lambda.url", FUNCTION_ARN);
+            defaultProperties.put("hystrix.command.default.execution.isolation.thread.timeoutInMilliseconds", 10000);
+            defaultProperties.put("logging.level.root", "WARN");
+        }
+        val application = new SpringApplication(LoadTestConfig.class); {
+            application.setDefaultProperties(defaultProperties);
+        }
+
+        val context = (EmbeddedWebApplicationContext) application.run(args);
+        try {
+            val environment = context.getEnvironment();
+            val port = context.getEmbeddedServletContainer().getPort();
+            val payload = payload(environment.getProperty("loadtest.payload-bytes", Integer.class, 256));
+            val loadGenerator = new LoadGenerator(new URI("http://localhost:" + port + "/lambda"), payload,
+                    environment.getProperty("loadtest.concurrency", Integer.class, 64),
+                    environment.getProperty("loadtest.rate", Integer.class, 0));
+
+            System.out.printf("isolation    : %s, async invocation: %s%n",
+                    context.getBean(ZuulProperties.class).getRibbonIsolationStrategy(), environment.getProperty("loadtest.async-invocation", "false"));
+            val report = loadGenerator.run(environment.getProperty("loadtest.warmup-seconds", Long.class, 5L),
+                    environment.getProperty("loadtest.duration-seconds", Long.class, 30L), TimeUnit.SECONDS);
+            report.print(System.out);
+
+            val lambdaClient = context.getBean(SimulatedAWSLambdaAsync.class);
+            System.out.printf("lambda       : invocations %d, cold starts %d, throttled %d, function errors %d%n",
+                    lambdaClient.getInvocationCount(), lambdaClient.getColdStartCount(), lambdaClient.getThrottledCount(), lambdaClient.getFunctionErrorCount());
+        } finally {
+            // 부하 생성기와 시뮬레이션 람다의 스레드가 남아있더라도 종료한다.
+            System.exit(SpringApplication.exit(context));
+        }
+    }
+
+    static byte[] payload(int size) {
+        val builder = new StringBuilder(size).append("{\"data\":\""); {
+            while (builder.length() < size - 2) {
+                builder.append('x');
+            }
+            builder.append("\"}");
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+
+    @SpringBootConfiguration
+    @Import({
+        /* Spring Web */
+        ServerPropertiesAutoConfiguration.class,
+        EmbeddedServletContainerAutoConfiguration.class,
+        DispatcherServletAutoConfiguration.class,
+        WebMvcAutoConfiguration.class,
+        ErrorMvcAutoConfiguration.class,
+        HttpEncodingAutoConfiguration.class,
+        HttpMessageConvertersAutoConfiguration.class,
+        JacksonAutoConfiguration.class,
+        PropertyPlaceholderAutoConfiguration.class,
+
+        /* Spring Cloud Netflix */
+        UtilAutoConfiguration.class,
+        ArchaiusAutoConfiguration.class,
+        SimpleDiscoveryClientAutoConfiguration.class,
+        LoadBalancerAutoConfiguration.class,
+        RibbonAutoConfiguration.class,
+        ZuulProxyAutoConfiguration.class
+    })
+    @EnableZuulProxy
+    static class LoadTestConfig {
+
+        @Autowired
+        private Environment environment;
+
+        @Autowired
+        private ZuulProperties zuulProperties;
+
+        @Bean(destroyMethod = "shutdown")
+        public SimulatedAWSLambdaAsync simulatedAWSLambdaAsync() {
+            val median = environment.getProperty("loadtest.lambda.median-millis", Long.class, 20L);
+            val p99 = environment.getProperty("loadtest.lambda.p99-millis", Long.class, 120L);
+            val latency = environment.getProperty("loadtest.lambda.latency", "lognormal");
+
+            val lambdaClient = new SimulatedAWSLambdaAsync(); {
+                if ("constant".equalsIgnoreCase(latency)) {
+                    lambdaClient.setLatency(LatencyDistribution.constant(median, TimeUnit.MILLISECONDS));
+                } else if ("uniform".equalsIgnoreCase(latency)) {
+                    lambdaClient.setLatency(LatencyDistribution.uniform(median, p99, TimeUnit.MILLISECONDS));
+                } else {
+                    lambdaClient.setLatency(LatencyDistribution.logNormal(median, p99, TimeUnit.MILLISECONDS));
+                }
+                lambdaClient.setColdStart(environment.getProperty("loadtest.lambda.cold-start-millis", Long.class, 800L),
+                        TimeUnit.SECONDS.toMillis(environment.getProperty("loadtest.lambda.idle-timeout-seconds", Long.class, 300L)), TimeUnit.MILLISECONDS);
+                lambdaClient.setConcurrencyLimit(environment.getProperty("loadtest.lambda.concurrency-limit", Integer.class, 1000));
+                lambdaClient.setThrottleRate(environment.getProperty("loadtest.lambda.throttle-rate", Double.class, 0d));
+                lambdaClient.setFunctionErrorRate(environment.getProperty("loadtest.lambda.error-rate", Double.class, 0d));
+            }
+            return lambdaClient;
+        }
+
+        @Bean
+        public AWSLambdaClientRequestFactory awsLambdaClientRequestFactory(SimulatedAWSLambdaAsync lambdaClient) {
+            return new AWSLambdaClientRequestFactory(lambdaClient, new CachingClientContextFactory(environment), new DefaultRequestPayloadExtractor());
+        }
+
+        @Bean
+        public AWSLambdaRoutingFilter awsLambdaRoutingFilter(AWSLambdaClientRequestFactory requestFactory) {
+            val routingFilter = new AWSLambdaRoutingFilter(requestFactory, zuulProperties); {
+                routingFilter.setAsyncInvocation(environment.getProperty("loadtest.async-invocation", Boolean.class, false));
+            }
+            return routingFilter;
+        }
+
+    }
+
+}
@@ -0,0 +1,169 @@
+package org.springframework.cloud.netflix;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 게이트웨이에 HTTP 요청을 보내고 처리량과 응답시간 분포(p50/p99/p99.9)를 측정한다.
+ *
+ * rate가 0 이면 각 스레드가 응답을 받는 즉시 다음 요청을 보내고(closed loop), 0 보다 크면 초당 rate 개의 요청을 정해진 시각에 보낸다(open loop).
+ * open loop에서는 응답시간을 실제로 보낸 시각이 아닌 보내야 했던 시각부터 재므로, 게이트웨이가 밀려서 요청이 늦게 나간 시간도 응답시간에 포함된다(coordinated omission 보정).
+ *
+ * @author arawn.kr@gmail.com
+ */
+public class LoadGenerator {
+
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final URI target;
+    private final byte[] payload;
+    private final int concurrency;
+    private final int rate;
+
+    private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_NANOS, 3);
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder serverErrors = new LongAdder();
+    private final LongAdder otherResponses = new LongAdder();
+    private final LongAdder connectionErrors = new LongAdder();
+
+    public LoadGenerator(URI target, byte[] payload, int concurrency, int rate) {
+        this.target = target;
+        this.payload = payload;
+        this.concurrency = concurrency;
+        this.rate = rate;
+    }
+
+    /**
+     * warmup 동안의 결과는 버리고, 이어서 duration 동안 측정한다.
+     */
+    public Report run(long warmup, long duration, TimeUnit unit) throws InterruptedException {
+        long startNanos = System.nanoTime();
+        long measureFromNanos = startNanos + unit.toNanos(warmup);
+        long endNanos = measureFromNanos + unit.toNanos(duration);
+        long intervalNanos = rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0;
+        AtomicLong sequence = new AtomicLong();
+        CountDownLatch finished = new CountDownLatch(concurrency);
+
+        try (CloseableHttpClient httpClient = HttpClients.custom()
+                                                         .setMaxConnTotal(concurrency)
+                                                         .setMaxConnPerRoute(concurrency)
+                                                         .disableAutomaticRetries()
+                                                         .build()) {
+            for (int i = 0; i < concurrency; i++) {
+                Thread worker = new Thread(() -> {
+                    try {
+                        while (true) {
+                            long intendedNanos = System.nanoTime();
+                            if (intervalNanos > 0) {
+                                intendedNanos = startNanos + sequence.getAndIncrement() * intervalNanos;
+                                long waitNanos = intendedNanos - System.nanoTime();
+                                if (waitNanos > 0) {
+                                    LockSupport.parkNanos(waitNanos);
+                                }
+                            }
+                            if (intendedNanos - endNanos >= 0) {
+                                return;
+                            }
+                            boolean measured = intendedNanos - measureFromNanos >= 0;
+                            send(httpClient, intendedNanos, measured);
+                        }
+                    } finally {
+                        finished.countDown();
+                    }
+                }, "load-generator-" + i);
+                worker.setDaemon(true);
+                worker.start();
+            }
+
+            finished.await();
+        } catch (IOException error) {
+            throw new IllegalStateException(error);
+        }
+
+        Histogram histogram = recorder.getIntervalHistogram();
+        return new Report(histogram, unit.toNanos(duration), successes.sum(), throttled.sum(), serverErrors.sum(), otherResponses.sum(), connectionErrors.sum());
+    }
+
+    private void send(CloseableHttpClient httpClient, long intendedNanos, boolean measured) {
+        HttpPost request = new HttpPost(target); {
+            request.setEntity(new ByteArrayEntity(payload, ContentType.APPLICATION_JSON));
+        }
+        int statusCode;
+        try {
+            HttpResponse response = httpClient.execute(request);
+            EntityUtils.consume(response.getEntity());
+            statusCode = response.getStatusLine().getStatusCode();
+        } catch (IOException error) {
+            statusCode = -1;
+        }
+        if (!measured) {
+            return;
+        }
+
+        recorder.recordValue(Math.min(System.nanoTime() - intendedNanos, HIGHEST_TRACKABLE_NANOS));
+        if (statusCode < 0) {
+            connectionErrors.increment();
+        } else if (statusCode >= 200 && statusCode < 300) {
+            successes.increment();
+        } else if (statusCode == 429) {
+            throttled.increment();
+        } else if (statusCode >= 500) {
+            serverErrors.increment();
+        } else {
+            otherResponses.increment();
+        }
+    }
+
+
+    public static class Report {
+
+        final Histogram histogram;
+        final long durationNanos;
+        final long successes, throttled, serverErrors, otherResponses, connectionErrors;
+
+        Report(Histogram histogram, long durationNanos, long successes, long throttled, long serverErrors, long otherResponses, long connectionErrors) {
+            this.histogram = histogram;
+            this.durationNanos = durationNanos;
+            this.successes = successes;
+            this.throttled = throttled;
+            this.serverErrors = serverErrors;
+            this.otherResponses = otherResponses;
+            this.connectionErrors = connectionErrors;
+        }
+
+        public double getThroughput() {
+            return histogram.getTotalCount() / (durationNanos / 1e9);
+        }
+
+        public double getPercentileMillis(double percentile) {
+            return histogram.getValueAtPercentile(percentile) / 1e6;
+        }
+
+        public void print(PrintStream out) {
+            out.printf("requests     : %d (2xx %d, 429 %d, 5xx %d, other %d, connection errors %d)%n",
+                    histogram.getTotalCount(), successes, throttled, serverErrors, otherResponses, connectionErrors);
+            out.printf("throughput   : %.1f req/s%n", getThroughput());
+            out.printf("latency (ms) : p50 %.2f, p90 %.2f, p99 %.2f, p99.9 %.2f, max %.2f%n",
+                    getPercentileMillis(50), getPercentileMillis(90), getPercentileMillis(99), getPercentileMillis(99.9), histogram.getMaxValue() / 1e6);
+        }
+
+    }
+
+}
@@ -0,0 +1,236 @@
+package org.springframework.cloud.netflix.aws.lambda.support;
+
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.lambda.AbstractAWSLambdaAsync;
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+import com.amazonaws.services.lambda.model.TooManyRequestsException;
+
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * AWS 람다 서비스를 흉내내는 프로세스 안의 클라이언트, 자격 증명이나 배포된 함수 없이 게이트웨이를 부하 시험할 때 사용한다.
+ *
+ * 호출마다 {@link LatencyDistribution}에서 뽑은 시간 만큼 지연된 후 응답하며, 다음과 같은 람다의 특성을 흉내낸다.
+ * <ul>
+ *     <li>콜드 스타트: 쉬고 있는 실행 환경(container)이 없으면 새로 만들며 coldStart 만큼 더 지연된다. idleTimeout 동안 쓰이지 않은 실행 환경은 사라진다.</li>
+ *     <li>스로틀링: 동시 실행 수가 concurrencyLimit을 넘거나 throttleRate 확률로 429(TooManyRequestsException)가 발생한다.</li>
+ *     <li>함수 오류: functionErrorRate 확률로 FunctionError(Unhandled) 응답을 돌려준다.</li>
+ * </ul>
+ *
+ * 비동기 호출은 스레드를 점유하지 않고 스케줄러로 완료되며, 동기 호출은 호출한 스레드가 지연시간 동안 대기한다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+public class SimulatedAWSLambdaAsync extends AbstractAWSLambdaAsync {
+
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "simulated-lambda");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ConcurrentLinkedDeque<Long> idleContainers = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder coldStarts = new LongAdder();
+    private final LongAdder throttles = new LongAdder();
+    private final LongAdder functionErrors = new LongAdder();
+
+    private volatile LatencyDistribution latency = LatencyDistribution.constant(20, TimeUnit.MILLISECONDS);
+    private volatile long coldStartNanos = TimeUnit.MILLISECONDS.toNanos(800);
+    private volatile long idleTimeoutNanos = TimeUnit.MINUTES.toNanos(5);
+    private volatile int concurrencyLimit = 1000;
+    private volatile double throttleRate = 0;
+    private volatile double functionErrorRate = 0;
+    private volatile String response = "{\"message\":\"hello\"}";
+
+    @Override
+    public InvokeResult invoke(InvokeRequest request) {
+        Invocation invocation = begin();
+        try {
+            LockSupport.parkNanos(invocation.latencyNanos);
+            return invocation.result;
+        } finally {
+            end();
+        }
+    }
+
+    @Override
+    public Future<InvokeResult> invokeAsync(InvokeRequest request, AsyncHandler<InvokeRequest, InvokeResult> asyncHandler) {
+        CompletableFuture<InvokeResult> future = new CompletableFuture<>();
+        Invocation invocation;
+        try {
+            invocation = begin();
+        } catch (RuntimeException error) {
+            if (Objects.nonNull(asyncHandler)) {
+                asyncHandler.onError(error);
+            }
+            future.completeExceptionally(error);
+            return future;
+        }
+
+        scheduler.schedule(() -> {
+            end();
+            if (Objects.nonNull(asyncHandler)) {
+                asyncHandler.onSuccess(request, invocation.result);
+            }
+            future.complete(invocation.result);
+        }, invocation.latencyNanos, TimeUnit.NANOSECONDS);
+        return future;
+    }
+
+    @Override
+    public Future<InvokeResult> invokeAsync(InvokeRequest request) {
+        return invokeAsync(request, null);
+    }
+
+    @Override
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private Invocation begin() {
+        invocations.increment();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (inFlight.incrementAndGet() > concurrencyLimit || random.nextDouble() < throttleRate) {
+            inFlight.decrementAndGet();
+            throttles.increment();
+            TooManyRequestsException error = new TooManyRequestsException("Rate Exceeded.");
+            error.setStatusCode(429);
+            error.setErrorCode("TooManyRequestsException");
+            throw error;
+        }
+
+        long latencyNanos = latency.sample(random);
+        if (!acquireContainer()) {
+            coldStarts.increment();
+            latencyNanos += coldStartNanos;
+        }
+
+        InvokeResult result;
+        if (random.nextDouble() < functionErrorRate) {
+            functionErrors.increment();
+            result = StubAWSLambdaAsync.result(200, "{\"errorMessage\":\"simulated function error\",\"errorType\":\"SimulatedError\"}")
+                                       .withFunctionError("Unhandled");
+        } else {
+            result = StubAWSLambdaAsync.result(200, response);
+        }
+        return new Invocation(latencyNanos, result);
+    }
+
+    private void end() {
+        inFlight.decrementAndGet();
+        idleContainers.addFirst(System.nanoTime());
+    }
+
+    /**
+     * 람다처럼 가장 최근에 쓰인 실행 환경부터 재사용하고, 오래 쉬고 있던 실행 환경은 버린다.
+     */
+    private boolean acquireContainer() {
+        long expiredBefore = System.nanoTime() - idleTimeoutNanos;
+        Long lastUsed;
+        while ((lastUsed = idleContainers.pollFirst()) != null) {
+            if (lastUsed - expiredBefore > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void setLatency(LatencyDistribution latency) {
+        this.latency = Objects.requireNonNull(latency);
+    }
+
+    public void setColdStart(long coldStart, long idleTimeout, TimeUnit unit) {
+        this.coldStartNanos = unit.toNanos(coldStart);
+        this.idleTimeoutNanos = unit.toNanos(idleTimeout);
+    }
+
+    public void setConcurrencyLimit(int concurrencyLimit) {
+        this.concurrencyLimit = concurrencyLimit;
+    }
+
+    public void setThrottleRate(double throttleRate) {
+        this.throttleRate = throttleRate;
+    }
+
+    public void setFunctionErrorRate(double functionErrorRate) {
+        this.functionErrorRate = functionErrorRate;
+    }
+
+    public void setResponse(String response) {
+        this.response = Objects.requireNonNull(response);
+    }
+
+    public long getInvocationCount() {
+        return invocations.sum();
+    }
+
+    public long getColdStartCount() {
+        return coldStarts.sum();
+    }
+
+    public long getThrottledCount() {
+        return throttles.sum();
+    }
+
+    public long getFunctionErrorCount() {
+        return functionErrors.sum();
+    }
+
+
+    static class Invocation {
+
+        final long latencyNanos;
+        final InvokeResult result;
+
+        Invocation(long latencyNanos, InvokeResult result) {
+            this.latencyNanos = latencyNanos;
+            this.result = result;
+        }
+
+    }
+
+    /**
+     * 람다 함수의 실행 시간 분포
+     */
+    @FunctionalInterface
+    public interface LatencyDistribution {
+
+        /**
+         * 99 백분위수에 해당하는 정규 분포의 z 값
+         */
+        double Z_99 = 2.3263;
+
+        long sample(ThreadLocalRandom random);
+
+        static LatencyDistribution constant(long latency, TimeUnit unit) {
+            long nanos = unit.toNanos(latency);
+            return random -> nanos;
+        }
+
+        static LatencyDistribution uniform(long min, long max, TimeUnit unit) {
+            long minNanos = unit.toNanos(min), maxNanos = unit.toNanos(max);
+            return random -> minNanos + (long) (random.nextDouble() * (maxNanos - minNanos));
+        }
+
+        /**
+         * 실제 응답시간처럼 꼬리가 긴 로그 정규 분포, 중앙값과 99 백분위수로 지정한다.
+         */
+        static LatencyDistribution logNormal(long median, long p99, TimeUnit unit) {
+            if (p99 < median || median <= 0) {
+                throw new IllegalArgumentException("p99는 median 보다 크거나 같아야 합니다.");
+            }
+            double mu = Math.log(unit.toNanos(median));
+            double sigma = Math.log((double) p99 / median) / Z_99;
+            return random -> (long) Math.exp(mu + sigma * random.nextGaussian());
+        }
+
+    }
+
+}
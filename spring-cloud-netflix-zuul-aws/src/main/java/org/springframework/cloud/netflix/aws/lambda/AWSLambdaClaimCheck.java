@@ -0,0 +1,625 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.util.StringUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 람다 호출 한도(6MB)를 넘는 페이로드를 객체 저장소에 맡기고, 람다 함수에는 위치만 담은 작은 봉투(claim check)를 전달한다.
+ *
+ * <pre>
+ * {"claimCheck": {"location": "s3://bucket/key", "size": 12345678}}
+ * </pre>
+ *
+ * 람다 함수도 같은 형식의 봉투로 응답할 수 있으며, 이때는 저장소의 객체를 응답 본문으로 클라이언트에게 내려준다.
+ * 봉투에 contentType 필드가 있다면 응답의 Content-Type이 된다.
+ *
+ * 페이로드는 partSize 단위로 잘라서 최대 maxConcurrentParts 개까지 동시에 기록하고(multipart upload), 응답 객체는 partSize 단위의 범위로 나눠
+ * 다음 범위를 미리 요청하면서 읽으므로(ranged read) 객체 전체를 메모리에 올리거나 게이트웨이 스레드가 저장소를 기다리며 오래 멈추지 않는다.
+ * 요청 본문은 {@link #openPayload()}로 기록하면 thresholdBytes를 넘는 순간부터 저장소에 바로 기록되므로, 본문 전체를 메모리에 모으지 않는다.
+ *
+ * 람다 함수가 봉투를 해석할 수 있어야 하므로 {@link #setRoutes(Collection)}로 지정한 라우트에만 적용된다.
+ * 요청 객체는 호출이 끝나면, 응답 객체는 클라이언트에게 내려준 후에 삭제한다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+@Slf4j
+public class AWSLambdaClaimCheck implements AWSLambdaInvocationInterceptor {
+
+    public static final String ENVELOPE_FIELD = "claimCheck";
+
+    /**
+     * 동기 호출(RequestResponse) 페이로드의 최대 크기는 6MB 이다.
+     */
+    public static final int DEFAULT_THRESHOLD_BYTES = 6 * 1024 * 1024;
+    public static final int DEFAULT_PART_SIZE = 8 * 1024 * 1024;
+    public static final long DEFAULT_MAX_OBJECT_BYTES = 1024 * 1024 * 1024;
+    public static final int DEFAULT_MAX_CONCURRENT_PARTS = 4;
+
+    private static final int MAX_ENVELOPE_BYTES = 4096;
+
+    private final AWSLambdaPayloadStore payloadStore;
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final LongAdder storedPayloads = new LongAdder();
+    private final LongAdder retrievedPayloads = new LongAdder();
+
+    private int thresholdBytes = DEFAULT_THRESHOLD_BYTES;
+    private int partSize = DEFAULT_PART_SIZE;
+    private long maxObjectBytes = DEFAULT_MAX_OBJECT_BYTES;
+    private int maxConcurrentParts = DEFAULT_MAX_CONCURRENT_PARTS;
+    private volatile Set<String> routes = Collections.emptySet();
+
+    public AWSLambdaClaimCheck(AWSLambdaPayloadStore payloadStore) {
+        this.payloadStore = Objects.requireNonNull(payloadStore, "페이로드 저장소가 필요합니다.");
+    }
+
+    /**
+     * @param routes claim check를 적용할 라우트 ID 또는 람다 ARN
+     */
+    public void setRoutes(Collection<String> routes) {
+        this.routes = Objects.nonNull(routes) ? Collections.unmodifiableSet(new HashSet<>(routes)) : Collections.emptySet();
+    }
+
+    public boolean isClaimCheckRoute(String routeId, String functionArn, ServerHttpRequest request) {
+        return (Objects.nonNull(routeId) && routes.contains(routeId)) || (Objects.nonNull(functionArn) && routes.contains(functionArn));
+    }
+
+    @Override
+    public CompletableFuture<InvokeResult> intercept(InvokeRequest request, AWSLambdaInvocationExecution execution) {
+        ByteBuffer payload = request.getPayload();
+        if (Objects.isNull(payload) || payload.remaining() <= thresholdBytes) {
+            return execution.execute(request);
+        }
+        if (payload.remaining() > maxObjectBytes) {
+            CompletableFuture<InvokeResult> future = new CompletableFuture<>();
+            future.completeExceptionally(new AWSLambdaMultipartPayloadWriter.PayloadTooLargeException(maxObjectBytes));
+            return future;
+        }
+
+        long size = payload.remaining();
+        CompletableFuture<InvokeResult> future = new CompletableFuture<>();
+        store(payload).whenComplete((location, error) -> {
+            if (Objects.nonNull(error)) {
+                future.completeExceptionally(error instanceof CompletionException && Objects.nonNull(error.getCause()) ? error.getCause() : error);
+                return;
+            }
+            // 저장하는 동안 취소되었다면 호출하지 않는다.
+            if (future.isDone()) {
+                delete(location);
+                return;
+            }
+            CompletableFuture<InvokeResult> invocation;
+            try {
+                invocation = execution.execute(request.clone().withPayload(writeEnvelope(location, size)));
+            } catch (RuntimeException executionError) {
+                delete(location);
+                future.completeExceptionally(executionError);
+                return;
+            }
+            invocation.whenComplete((result, invocationError) -> {
+                delete(location);
+                if (Objects.nonNull(invocationError)) {
+                    future.completeExceptionally(invocationError);
+                } else {
+                    future.complete(result);
+                }
+            });
+            // 호출한 쪽이 결과를 취소하면 진행 중인 호출도 취소한다.
+            future.whenComplete((result, cancelled) -> {
+                if (future.isCancelled()) {
+                    invocation.cancel(true);
+                }
+            });
+        });
+        return future;
+    }
+
+    /**
+     * 페이로드를 partSize 단위로 잘라서 기록한다. 조각은 페이로드를 복사하지 않는 뷰이며, 동시에 기록하는 조각은 maxConcurrentParts 개를 넘지 않는다.
+     *
+     * @return 저장된 객체의 위치
+     */
+    public CompletableFuture<String> store(ByteBuffer payload) {
+        ByteBuffer source = payload.duplicate();
+        long size = source.remaining();
+        String location;
+        try {
+            location = payloadStore.create(size);
+        } catch (IOException | RuntimeException error) {
+            CompletableFuture<String> future = new CompletableFuture<>();
+            future.completeExceptionally(error);
+            return future;
+        }
+
+        int partCount = (int) ((size + partSize - 1) / partSize);
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        if (partCount == 0) {
+            written.complete(null);
+        } else {
+            AtomicInteger nextPart = new AtomicInteger();
+            AtomicInteger remainingParts = new AtomicInteger(partCount);
+            for (int i = 0; i < Math.min(maxConcurrentParts, partCount); i++) {
+                writeNextPart(location, source, partCount, nextPart, remainingParts, written);
+            }
+        }
+        return written.thenCompose(completed -> payloadStore.complete(location))
+                      .handle((completed, error) -> {
+                          if (Objects.nonNull(error)) {
+                              delete(location);
+                              throw new ClaimCheckException("페이로드를 저장하지 못했습니다: " + location, error);
+                          }
+                          storedPayloads.increment();
+                          log.debug("stored lambda payload to {} ({} bytes, {} parts)", location, size, partCount);
+                          return location;
+                      });
+    }
+
+    /**
+     * 조각 하나를 기록하고, 기록이 끝나면 다음 조각을 기록한다. 처음에 maxConcurrentParts 개를 시작하므로 그 이상 동시에 기록되지 않는다.
+     */
+    private void writeNextPart(String location, ByteBuffer source, int partCount, AtomicInteger nextPart, AtomicInteger remainingParts, CompletableFuture<Void> written) {
+        int index = nextPart.getAndIncrement();
+        if (index >= partCount || written.isDone()) {
+            return;
+        }
+        long offset = (long) index * partSize;
+        ByteBuffer part = source.duplicate(); {
+            part.position(source.position() + (int) offset);
+            part.limit((int) Math.min(part.position() + (long) partSize, source.limit()));
+        }
+        payloadStore.write(location, offset, part.slice()).whenComplete((completed, error) -> {
+            if (Objects.nonNull(error)) {
+                written.completeExceptionally(error);
+            } else if (remainingParts.decrementAndGet() == 0) {
+                written.complete(null);
+            } else {
+                writeNextPart(location, source, partCount, nextPart, remainingParts, written);
+            }
+        });
+    }
+
+    /**
+     * 람다 페이로드를 기록할 출력 스트림을 연다. 기록한 크기가 thresholdBytes 이하라면 메모리에 두고,
+     * 넘으면 그때부터 partSize 단위로 저장소에 바로 기록하므로 메모리는 (maxConcurrentParts + 1) * partSize 까지만 사용한다.
+     */
+    public PayloadOutputStream openPayload() {
+        return new PayloadOutputStream();
+    }
+
+    /**
+     * @return 람다 함수의 응답이 봉투라면 저장소의 객체를 본문으로 하는 응답, 그렇지 않다면 null
+     */
+    public ClientHttpResponse resolve(InvokeResult result) {
+        if (StringUtils.hasText(result.getFunctionError())) {
+            return null;
+        }
+        Envelope envelope = readEnvelope(result.getPayload());
+        if (Objects.isNull(envelope)) {
+            return null;
+        }
+        retrievedPayloads.increment();
+        return new AWSLambdaClaimCheckResponse(result, open(envelope.getLocation(), envelope.getSize()), envelope.getSize(), envelope.getContentType());
+    }
+
+    /**
+     * 객체를 partSize 단위의 범위로 나눠 읽는 스트림, 닫으면 객체를 삭제한다.
+     */
+    public InputStream open(String location, long size) {
+        return new RangedInputStream(location, size);
+    }
+
+    protected ByteBuffer writeEnvelope(String location, long size) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(64 + location.length());
+        try (JsonGenerator generator = jsonFactory.createGenerator(output)) {
+            generator.writeStartObject();
+            generator.writeObjectFieldStart(ENVELOPE_FIELD);
+            generator.writeStringField("location", location);
+            generator.writeNumberField("size", size);
+            generator.writeEndObject();
+            generator.writeEndObject();
+        } catch (IOException error) {
+            throw new ClaimCheckException("봉투를 만들지 못했습니다.", error);
+        }
+        return ByteBuffer.wrap(output.toByteArray());
+    }
+
+    /**
+     * claimCheck 필드 하나만 가진 작은 객체만 봉투로 인정한다. 다른 필드가 함께 있다면 평범한 응답으로 본다.
+     */
+    protected Envelope readEnvelope(ByteBuffer payload) {
+        if (Objects.isNull(payload) || payload.remaining() > MAX_ENVELOPE_BYTES || payload.remaining() < ENVELOPE_FIELD.length()) {
+            return null;
+        }
+        byte[] bytes = new byte[payload.remaining()];
+        payload.duplicate().get(bytes);
+        try (JsonParser parser = jsonFactory.createParser(bytes)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT || parser.nextToken() != JsonToken.FIELD_NAME
+                    || !ENVELOPE_FIELD.equals(parser.getCurrentName()) || parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            String location = null, contentType = null;
+            long size = -1;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("location".equals(name) && value == JsonToken.VALUE_STRING) {
+                    location = parser.getText();
+                } else if ("size".equals(name) && value == JsonToken.VALUE_NUMBER_INT) {
+                    size = parser.getLongValue();
+                } else if ("contentType".equals(name) && value == JsonToken.VALUE_STRING) {
+                    contentType = parser.getText();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (parser.nextToken() != JsonToken.END_OBJECT || Objects.nonNull(parser.nextToken())
+                    || !StringUtils.hasText(location) || size < 0) {
+                return null;
+            }
+            return new Envelope(location, size, contentType);
+        } catch (IOException error) {
+            return null;
+        }
+    }
+
+    protected void delete(String location) {
+        try {
+            payloadStore.delete(location);
+        } catch (IOException | RuntimeException error) {
+            log.warn("could not delete lambda payload {}: {}", location, error.getMessage());
+        }
+    }
+
+    /**
+     * @param thresholdBytes 이 크기를 넘는 페이로드를 저장소에 맡긴다.
+     */
+    public void setThresholdBytes(int thresholdBytes) {
+        this.thresholdBytes = thresholdBytes;
+    }
+
+    public void setPartSize(int partSize) {
+        if (partSize < 1) {
+            throw new IllegalArgumentException("partSize는 1 이상이어야 합니다.");
+        }
+        this.partSize = partSize;
+    }
+
+    /**
+     * @param maxObjectBytes 저장소에 맡길 수 있는 페이로드의 최대 크기
+     */
+    public void setMaxObjectBytes(long maxObjectBytes) {
+        this.maxObjectBytes = Math.min(maxObjectBytes, Integer.MAX_VALUE);
+    }
+
+    public long getMaxObjectBytes() {
+        return maxObjectBytes;
+    }
+
+    /**
+     * @param maxConcurrentParts 페이로드 하나를 저장할 때 동시에 기록하는 최대 조각 수
+     */
+    public void setMaxConcurrentParts(int maxConcurrentParts) {
+        if (maxConcurrentParts < 1) {
+            throw new IllegalArgumentException("maxConcurrentParts는 1 이상이어야 합니다.");
+        }
+        this.maxConcurrentParts = maxConcurrentParts;
+    }
+
+    public long getStoredPayloadCount() {
+        return storedPayloads.sum();
+    }
+
+    public long getRetrievedPayloadCount() {
+        return retrievedPayloads.sum();
+    }
+
+
+    @Value
+    protected static class Envelope {
+        String location;
+        long size;
+        String contentType;
+    }
+
+    /**
+     * 현재 범위를 읽는 동안 다음 범위를 미리 요청한다. 요청마다 partSize 두 개 만큼의 메모리만 사용한다.
+     */
+    class RangedInputStream extends InputStream {
+
+        private final String location;
+        private final long size;
+        private long offset = 0;
+        private ByteBuffer current;
+        private CompletableFuture<ByteBuffer> next;
+        private boolean closed = false;
+
+        RangedInputStream(String location, long size) {
+            this.location = location;
+            this.size = size;
+            this.next = fetch();
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? current.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            len = Math.min(len, current.remaining());
+            current.get(bytes, off, len);
+            return len;
+        }
+
+        @Override
+        public int available() {
+            return Objects.nonNull(current) ? current.remaining() : 0;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (Objects.nonNull(next)) {
+                next.cancel(false);
+            }
+            current = null;
+            delete(location);
+        }
+
+        private boolean fill() throws IOException {
+            if (closed) {
+                throw new IOException("stream closed");
+            }
+            while (Objects.isNull(current) || !current.hasRemaining()) {
+                if (Objects.isNull(next)) {
+                    return false;
+                }
+                current = await(next);
+                next = fetch();
+                if (!current.hasRemaining()) {
+                    // 봉투에 적힌 크기보다 객체가 작다.
+                    next = null;
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private CompletableFuture<ByteBuffer> fetch() {
+            if (offset >= size) {
+                return null;
+            }
+            int length = (int) Math.min(partSize, size - offset);
+            CompletableFuture<ByteBuffer> range = payloadStore.read(location, offset, length);
+            offset += length;
+            return range;
+        }
+
+        private ByteBuffer await(CompletableFuture<ByteBuffer> range) throws IOException {
+            try {
+                return range.get();
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while reading " + location);
+            } catch (ExecutionException error) {
+                throw new IOException("could not read lambda payload " + location, error.getCause());
+            }
+        }
+
+    }
+
+    /**
+     * {@link #openPayload()}가 여는 출력 스트림, 기록을 마치면 {@link #finish()}로 람다 호출에 사용할 페이로드를 얻는다.
+     * 저장소에 기록했다면 페이로드는 봉투가 되며, 호출이 끝나면 {@link #getLocation()}의 객체를 삭제해야 한다.
+     * {@link #finish()} 전에 닫으면 기록 중인 객체를 삭제한다.
+     */
+    public class PayloadOutputStream extends OutputStream {
+
+        private final Semaphore permits = new Semaphore(maxConcurrentParts);
+        private final List<byte[]> pendingParts = new ArrayList<>();
+        private final List<CompletableFuture<Void>> parts = new ArrayList<>();
+        private byte[] current = new byte[Math.min(partSize, 64 * 1024)];
+        private int count = 0;
+        private long size = 0;
+        private long offset = 0;
+        private String location;
+        private ByteBuffer payload;
+        private volatile Throwable failure;
+        private boolean finished = false;
+        private boolean closed = false;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int off, int len) throws IOException {
+            if (closed || finished) {
+                throw new IOException("stream closed");
+            }
+            if (size + len > maxObjectBytes) {
+                close();
+                throw new AWSLambdaMultipartPayloadWriter.PayloadTooLargeException(maxObjectBytes);
+            }
+            while (len > 0) {
+                if (count == current.length) {
+                    if (current.length < partSize) {
+                        current = Arrays.copyOf(current, (int) Math.min(partSize, (long) current.length * 2));
+                    } else {
+                        flushPart();
+                    }
+                }
+                int length = Math.min(len, current.length - count);
+                System.arraycopy(bytes, off, current, count, length);
+                count += length;
+                off += length;
+                len -= length;
+                size += length;
+                if (Objects.isNull(location) && size > thresholdBytes) {
+                    location = payloadStore.create(-1);
+                    for (byte[] part : pendingParts) {
+                        submit(ByteBuffer.wrap(part));
+                    }
+                    pendingParts.clear();
+                }
+            }
+        }
+
+        private void flushPart() throws IOException {
+            if (Objects.nonNull(location)) {
+                submit(ByteBuffer.wrap(current, 0, count));
+            } else {
+                pendingParts.add(current);
+            }
+            current = new byte[partSize];
+            count = 0;
+        }
+
+        /**
+         * 기록 중인 조각이 maxConcurrentParts 개라면 하나가 끝날 때까지 기다린다.
+         */
+        private void submit(ByteBuffer part) throws IOException {
+            if (Objects.nonNull(failure)) {
+                throw new IOException("could not write lambda payload " + location, failure);
+            }
+            try {
+                permits.acquire();
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while writing " + location);
+            }
+            long position = offset;
+            offset += part.remaining();
+            CompletableFuture<Void> written = payloadStore.write(location, position, part);
+            written.whenComplete((completed, error) -> {
+                if (Objects.nonNull(error)) {
+                    failure = error;
+                }
+                permits.release();
+            });
+            parts.add(written);
+        }
+
+        /**
+         * @return 저장소에 기록했다면 봉투, 그렇지 않다면 기록한 내용 그대로의 페이로드
+         */
+        public ByteBuffer finish() throws IOException {
+            if (closed || finished) {
+                throw new IOException("stream closed");
+            }
+            finished = true;
+            if (Objects.isNull(location)) {
+                if (pendingParts.isEmpty()) {
+                    payload = ByteBuffer.wrap(current, 0, count);
+                } else {
+                    payload = ByteBuffer.allocate((int) size);
+                    pendingParts.forEach(payload::put);
+                    payload.put(current, 0, count);
+                    payload.flip();
+                }
+                return payload;
+            }
+
+            try {
+                if (count > 0) {
+                    submit(ByteBuffer.wrap(current, 0, count));
+                }
+                CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0]))
+                                 .thenCompose(completed -> payloadStore.complete(location))
+                                 .get();
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+                delete(location);
+                throw new InterruptedIOException("interrupted while writing " + location);
+            } catch (ExecutionException | IOException error) {
+                delete(location);
+                throw new ClaimCheckException("페이로드를 저장하지 못했습니다: " + location, error instanceof ExecutionException ? error.getCause() : error);
+            }
+            storedPayloads.increment();
+            log.debug("stored lambda payload to {} ({} bytes, {} parts)", location, size, parts.size());
+            payload = writeEnvelope(location, size);
+            return payload;
+        }
+
+        /**
+         * @return {@link #finish()}가 반환한 페이로드
+         */
+        public ByteBuffer getPayload() {
+            return payload;
+        }
+
+        /**
+         * 기록한 내용을 변환한 페이로드로 바꾼다. 저장소에 기록하지 않은 경우에만 사용할 수 있다.
+         */
+        void setPayload(ByteBuffer payload) {
+            if (isStored()) {
+                throw new IllegalStateException("저장소에 기록한 페이로드는 바꿀 수 없습니다: " + location);
+            }
+            this.payload = payload;
+        }
+
+        /**
+         * @return 저장소에 기록한 객체의 위치, 기록하지 않았다면 null
+         */
+        public String getLocation() {
+            return location;
+        }
+
+        public boolean isStored() {
+            return Objects.nonNull(location);
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (!finished && Objects.nonNull(location)) {
+                parts.forEach(part -> part.cancel(false));
+                delete(location);
+            }
+            pendingParts.clear();
+        }
+
+    }
+
+    public static class ClaimCheckException extends RuntimeException {
+        ClaimCheckException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.amazonaws.services.lambda.model.InvokeResult;
+import lombok.val;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.AbstractClientHttpResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+
+/**
+ * 람다 함수가 claim check 봉투로 응답했을 때, 저장소의 객체를 본문으로 내려주는 응답
+ * 람다 응답의 헤더를 그대로 사용하되 Content-Length는 객체의 크기로, Content-Type은 봉투에 지정된 값으로 바꾼다.
+ *
+ * @author arawn.kr@gmail.com
+ * @see AWSLambdaClaimCheck
+ */
+public class AWSLambdaClaimCheckResponse extends AbstractClientHttpResponse {
+
+    private final InvokeResult invokeResult;
+    private final InputStream body;
+    private final HttpHeaders headers;
+
+    public AWSLambdaClaimCheckResponse(InvokeResult invokeResult, InputStream body, long size, String contentType) {
+        this.invokeResult = Objects.requireNonNull(invokeResult);
+        this.body = Objects.requireNonNull(body);
+
+        val headers = new HttpHeaders(); {
+            if (Objects.nonNull(invokeResult.getSdkHttpMetadata())) {
+                invokeResult.getSdkHttpMetadata().getHttpHeaders().forEach(headers::add);
+            }
+            headers.setContentLength(size);
+            if (Objects.nonNull(contentType)) {
+                try {
+                    headers.setContentType(MediaType.parseMediaType(contentType));
+                } catch (InvalidMediaTypeException ignore) {
+                    // 람다 함수가 잘못 지정한 값은 무시하고 람다 응답의 Content-Type을 사용한다.
+                }
+            }
+        }
+        this.headers = HttpHeaders.readOnlyHttpHeaders(headers);
+    }
+
+    @Override
+    public int getRawStatusCode() throws IOException {
+        return invokeResult.getStatusCode();
+    }
+
+    @Override
+    public String getStatusText() throws IOException {
+        return getStatusCode().getReasonPhrase();
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        return headers;
+    }
+
+    @Override
+    public InputStream getBody() throws IOException {
+        return body;
+    }
+
+    @Override
+    public void close() {
+        try {
+            body.close();
+        } catch (IOException ignore) {
+            // 본문 스트림은 닫을 때 예외를 던지지 않는다.
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("AWSLambdaClaimCheckResponse { StatusCode: %d, Content-Length: %d }", invokeResult.getStatusCode(), headers.getContentLength());
+    }
+
+}
@@ -0,0 +1,63 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.amazonaws.services.lambda.AWSLambdaAsync;
+import org.springframework.cloud.netflix.aws.lambda.support.SdkClientTransport;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * 리전별 람다 클라이언트 모음
+ * 리전에 등록된 클라이언트가 없으면 clientFactory로 만들고, clientFactory도 없다면 기본 클라이언트를 사용한다.
+ * 리전을 알 수 없는 호출(ARN 형식이 아닌 함수 이름 등)도 기본 클라이언트를 사용한다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+public class AWSLambdaClientPool {
+
+    private final AWSLambdaAsync defaultClient;
+    private final Function<String, AWSLambdaAsync> clientFactory;
+    private final ConcurrentMap<String, AWSLambdaAsync> regionalClients = new ConcurrentHashMap<>();
+    private final ConcurrentMap<AWSLambdaAsync, AWSLambdaTransport> transports = new ConcurrentHashMap<>();
+
+    public AWSLambdaClientPool(AWSLambdaAsync defaultClient) {
+        this(defaultClient, null);
+    }
+
+    /**
+     * @param clientFactory 리전 이름(예: ap-northeast-2)으로 람다 클라이언트를 만든다.
+     */
+    public AWSLambdaClientPool(AWSLambdaAsync defaultClient, Function<String, AWSLambdaAsync> clientFactory) {
+        this.defaultClient = Objects.requireNonNull(defaultClient, "람다 클라이언트가 필요합니다.");
+        this.clientFactory = clientFactory;
+    }
+
+    public AWSLambdaClientPool register(String region, AWSLambdaAsync lambdaClient) {
+        regionalClients.put(region, Objects.requireNonNull(lambdaClient));
+        return this;
+    }
+
+    public AWSLambdaAsync getClient(String region) {
+        if (Objects.isNull(region)) {
+            return defaultClient;
+        }
+        AWSLambdaAsync lambdaClient = regionalClients.get(region);
+        if (Objects.nonNull(lambdaClient)) {
+            return lambdaClient;
+        }
+        if (Objects.nonNull(clientFactory)) {
+            return regionalClients.computeIfAbsent(region, clientFactory);
+        }
+        return defaultClient;
+    }
+
+    /**
+     * @return 리전의 람다 클라이언트로 호출하는 전송 계층, 클라이언트마다 하나를 만들어 재사용한다.
+     */
+    public AWSLambdaTransport getTransport(String region) {
+        return transports.computeIfAbsent(getClient(region), SdkClientTransport::new);
+    }
+
+}
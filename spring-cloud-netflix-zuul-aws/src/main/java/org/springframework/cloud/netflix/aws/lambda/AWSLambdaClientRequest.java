@@ -1,11 +1,13 @@
 package org.springframework.cloud.netflix.aws.lambda;
 
 import com.amazonaws.adapters.types.StringToByteBufferAdapter;
+import com.amazonaws.handlers.HandlerContextKey;
 import com.amazonaws.services.lambda.AWSLambdaAsync;
 import com.amazonaws.services.lambda.model.InvocationType;
 import com.amazonaws.services.lambda.model.InvokeRequest;
 import com.amazonaws.services.lambda.model.InvokeResult;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.netflix.aws.lambda.support.SdkClientTransport;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.client.AbstractClientHttpRequest;
@@ -16,7 +18,15 @@ import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author arawn.kr@gmail.com
@@ -24,10 +34,21 @@ import java.util.Objects;
 @Slf4j
 public class AWSLambdaClientRequest extends AbstractClientHttpRequest {
 
-    private final AWSLambdaAsync lambdaClient;
+    /**
+     * 호출을 마쳐야 하는 시각({@link System#nanoTime()} 기준), 인터셉터는 {@link #getRemainingNanos(InvokeRequest)}로 남은 시간을 확인한다.
+     */
+    public static final HandlerContextKey<Long> DEADLINE = new HandlerContextKey<>("AWSLambdaDeadline");
+
+    private final AWSLambdaTransport transport;
     private final String functionArn;
     private final ClientContext clientContext;
     private final ByteBuffer payload;
+    private final List<AWSLambdaInvocationInterceptor> interceptors;
+    private AWSLambdaClaimCheck claimCheck;
+    private String claimedLocation;
+    private Long deadlineNanos;
+    private volatile CompletableFuture<InvokeResult> invocation;
+    private volatile boolean cancelled;
 
     public AWSLambdaClientRequest(AWSLambdaAsync lambdaClient, String functionArn) {
         this(lambdaClient, functionArn, null, (ByteBuffer) null);
@@ -38,10 +59,19 @@ public class AWSLambdaClientRequest extends AbstractClientHttpRequest {
     }
 
     public AWSLambdaClientRequest(AWSLambdaAsync lambdaClient, String functionArn, ClientContext clientContext, ByteBuffer payload) {
-        this.lambdaClient = Objects.requireNonNull(lambdaClient, "람다 클라이언트가 필요합니다.");
+        this(lambdaClient, functionArn, clientContext, payload, Collections.emptyList());
+    }
+
+    public AWSLambdaClientRequest(AWSLambdaAsync lambdaClient, String functionArn, ClientContext clientContext, ByteBuffer payload, List<AWSLambdaInvocationInterceptor> interceptors) {
+        this(new SdkClientTransport(lambdaClient), functionArn, clientContext, payload, interceptors);
+    }
+
+    public AWSLambdaClientRequest(AWSLambdaTransport transport, String functionArn, ClientContext clientContext, ByteBuffer payload, List<AWSLambdaInvocationInterceptor> interceptors) {
+        this.transport = Objects.requireNonNull(transport, "람다 전송 계층이 필요합니다.");
         this.functionArn = validateFunctionArn(functionArn);
         this.clientContext = clientContext;
         this.payload = payload;
+        this.interceptors = Objects.requireNonNull(interceptors);
     }
 
     protected String validateFunctionArn(String functionArn) {
@@ -51,6 +81,50 @@ public class AWSLambdaClientRequest extends AbstractClientHttpRequest {
         throw new IllegalArgumentException("람다 ARN(amazon resource name)이 아닙니다.");
     }
 
+    public String getFunctionArn() {
+        return functionArn;
+    }
+
+    public ClientContext getClientContext() {
+        return clientContext;
+    }
+
+    /**
+     * @param claimCheck 람다 함수가 claim check 봉투로 응답하면 저장소의 객체를 응답 본문으로 내려준다.
+     */
+    public void setClaimCheck(AWSLambdaClaimCheck claimCheck) {
+        this.claimCheck = claimCheck;
+    }
+
+    /**
+     * @param location 요청을 만들면서 claim check 저장소에 기록한 페이로드의 위치, 호출이 끝나면 삭제한다.
+     */
+    public void setClaimedPayload(String location) {
+        this.claimedLocation = location;
+    }
+
+    /**
+     * @param timeout 지금부터 호출을 마쳐야 하는 시간, Hystrix 명령이 자신의 타임아웃으로 지정한다.
+     */
+    public void setTimeout(long timeout, TimeUnit unit) {
+        this.deadlineNanos = System.nanoTime() + unit.toNanos(timeout);
+    }
+
+    /**
+     * @return 마감 시각까지 남은 시간(나노초), 마감 시각이 없다면 {@link Long#MAX_VALUE}
+     */
+    public static long getRemainingNanos(InvokeRequest request) {
+        Long deadline = request.getHandlerContext(DEADLINE);
+        return Objects.nonNull(deadline) ? deadline - System.nanoTime() : Long.MAX_VALUE;
+    }
+
+    /**
+     * @return 요청 페이로드의 읽기 전용 뷰, 페이로드가 없다면 null
+     */
+    public ByteBuffer getPayload() {
+        return Objects.nonNull(payload) ? payload.asReadOnlyBuffer() : null;
+    }
+
     @Override
     public HttpMethod getMethod() {
         return HttpMethod.POST;
@@ -72,10 +146,149 @@ public class AWSLambdaClientRequest extends AbstractClientHttpRequest {
 
     @Override
     protected ClientHttpResponse executeInternal(HttpHeaders headers) throws IOException {
-        return new AWSLambdaClientResponse(invoke(headers));
+        return resolveResponse(invoke(headers));
+    }
+
+    /**
+     * 람다 함수를 비동기로 호출한다. 호출 스레드는 람다 함수가 실행되는 동안 대기하지 않으며,
+     * 반환된 {@link CompletableFuture}는 {@link AWSLambdaTransport}의 콜백에서 완료된다.
+     */
+    public CompletableFuture<ClientHttpResponse> executeAsync() {
+        return invokeAsync(getHeaders()).thenApply(this::resolveResponse);
+    }
+
+    /**
+     * claim check 봉투는 응답 형식(프록시 응답 등)과 관계없이 저장소의 객체로 바꾼다.
+     */
+    protected ClientHttpResponse resolveResponse(InvokeResult result) {
+        if (Objects.nonNull(claimCheck)) {
+            ClientHttpResponse response = claimCheck.resolve(result);
+            if (Objects.nonNull(response)) {
+                return response;
+            }
+        }
+        return createResponse(result);
+    }
+
+    protected ClientHttpResponse createResponse(InvokeResult result) {
+        return new AWSLambdaClientResponse(result);
     }
 
+    /**
+     * 기다리는 스레드가 인터럽트되면(Hystrix 스레드 격리의 타임아웃 등) 진행 중인 호출을 취소한다.
+     */
     protected InvokeResult invoke(HttpHeaders headers) {
+        CompletableFuture<InvokeResult> invocation = new InterceptingExecution(0, false).execute(createInvokeRequest(headers));
+        this.invocation = invocation;
+        if (cancelled) {
+            invocation.cancel(true);
+        }
+        releaseClaimedPayload(invocation);
+        try {
+            return invocation.get();
+        } catch (InterruptedException error) {
+            invocation.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InvocationCancelledException(false);
+        } catch (ExecutionException error) {
+            if (error.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) error.getCause();
+            }
+            throw new CompletionException(error.getCause());
+        }
+    }
+
+    protected CompletableFuture<InvokeResult> invokeAsync(HttpHeaders headers) {
+        CompletableFuture<InvokeResult> invocation = new InterceptingExecution(0, true).execute(createInvokeRequest(headers));
+        this.invocation = invocation;
+        if (cancelled) {
+            invocation.cancel(true);
+        }
+        releaseClaimedPayload(invocation);
+        return invocation;
+    }
+
+    /**
+     * 재시도나 헤징으로 인한 모든 호출이 끝난 후에 요청을 만들면서 저장한 페이로드를 삭제한다.
+     */
+    protected void releaseClaimedPayload(CompletableFuture<InvokeResult> invocation) {
+        String location = claimedLocation;
+        if (Objects.nonNull(claimCheck) && Objects.nonNull(location)) {
+            invocation.whenComplete((result, error) -> claimCheck.delete(location));
+        }
+    }
+
+    /**
+     * 진행 중인 람다 호출을 취소한다. Hystrix 타임아웃이 발생했거나 클라이언트 연결이 끊어졌을 때 사용한다.
+     * 취소는 인터셉터 체인을 따라 전송 계층까지 전달되며, 응답을 기다리던 연결과 스레드를 돌려받는다. 람다 함수의 실행은 멈추지 않는다.
+     * 다른 스레드에서 호출을 시작하는 중이라면 호출이 시작되자마자 취소한다.
+     *
+     * @return 진행 중인 호출을 취소했다면 true
+     */
+    public boolean cancel() {
+        cancelled = true;
+        CompletableFuture<InvokeResult> invocation = this.invocation;
+        return Objects.nonNull(invocation) && !invocation.isDone() && invocation.cancel(true);
+    }
+
+    /**
+     * 동기 호출은 호출한 스레드에서 {@link AWSLambdaTransport#invoke(InvokeRequest)}를 실행하고, 그 결과를 완료된 future로 감싼다.
+     */
+    protected CompletableFuture<InvokeResult> invokeClient(InvokeRequest request) {
+        CompletableFuture<InvokeResult> future = new CompletableFuture<>();
+        if (!applyDeadline(request)) {
+            future.completeExceptionally(new DeadlineExceededException(functionArn));
+            return future;
+        }
+        try {
+            future.complete(transport.invoke(request));
+        } catch (RuntimeException error) {
+            future.completeExceptionally(error);
+        }
+        return future;
+    }
+
+    /**
+     * 반환된 future를 취소하면 전송 계층의 호출도 취소해서 응답을 기다리던 연결(과 스레드)을 돌려받는다.
+     */
+    protected CompletableFuture<InvokeResult> invokeClientAsync(InvokeRequest request) {
+        CancellableInvocation future = new CancellableInvocation();
+        if (!applyDeadline(request)) {
+            future.completeExceptionally(new DeadlineExceededException(functionArn));
+            return future;
+        }
+        CompletableFuture<InvokeResult> invocation = transport.invokeAsync(request);
+        invocation.whenComplete((result, error) -> {
+            if (Objects.isNull(error)) {
+                future.complete(result);
+            } else if (!(error instanceof CancellationException)) {
+                // 취소는 CancellableInvocation이 연결을 돌려받았는지와 함께 완료한다.
+                future.completeExceptionally(error instanceof CompletionException && Objects.nonNull(error.getCause()) ? error.getCause() : error);
+            }
+        });
+        future.setInvocation(invocation);
+        return future;
+    }
+
+    /**
+     * 마감 시각까지 남은 시간을 AWS SDK의 요청 타임아웃으로 지정한다. 타임아웃이 지난 호출이 소켓 타임아웃까지 연결을 점유하지 않게 한다.
+     *
+     * @return 마감 시각이 이미 지났다면 false
+     */
+    protected boolean applyDeadline(InvokeRequest request) {
+        long remainingNanos = getRemainingNanos(request);
+        if (remainingNanos == Long.MAX_VALUE) {
+            return true;
+        }
+        long remainingMillis = TimeUnit.NANOSECONDS.toMillis(remainingNanos);
+        if (remainingMillis <= 0) {
+            return false;
+        }
+        request.setSdkRequestTimeout((int) Math.min(Integer.MAX_VALUE, remainingMillis));
+        return true;
+    }
+
+    protected InvokeRequest createInvokeRequest(HttpHeaders headers) {
         InvokeRequest request = new InvokeRequest().withFunctionName(functionArn)
                                                    .withInvocationType(InvocationType.RequestResponse);
         if (Objects.nonNull(clientContext)) {
@@ -84,8 +297,10 @@ public class AWSLambdaClientRequest extends AbstractClientHttpRequest {
         if (Objects.nonNull(payload)) {
             request.setPayload(payload);
         }
-
-        return lambdaClient.invoke(request);
+        if (Objects.nonNull(deadlineNanos)) {
+            request.addHandlerContext(DEADLINE, deadlineNanos);
+        }
+        return request;
     }
 
     @Override
@@ -98,6 +313,93 @@ public class AWSLambdaClientRequest extends AbstractClientHttpRequest {
     }
 
 
+    /**
+     * 등록된 {@link AWSLambdaInvocationInterceptor}를 차례로 실행한 후 람다 클라이언트를 호출한다.
+     * 인터셉터가 다음 단계를 여러 번 실행할 수 있도록 위치 값을 가진 새 객체로 다음 단계를 표현한다.
+     */
+    class InterceptingExecution implements AWSLambdaInvocationExecution {
+
+        private final int position;
+        private final boolean async;
+
+        InterceptingExecution(int position, boolean async) {
+            this.position = position;
+            this.async = async;
+        }
+
+        @Override
+        public CompletableFuture<InvokeResult> execute(InvokeRequest request) {
+            if (position < interceptors.size()) {
+                return interceptors.get(position).intercept(request, new InterceptingExecution(position + 1, async));
+            }
+            return async ? invokeClientAsync(request) : invokeClient(request);
+        }
+
+        @Override
+        public CompletableFuture<InvokeResult> executeAsync(InvokeRequest request) {
+            return async ? execute(request) : new InterceptingExecution(position, true).execute(request);
+        }
+
+    }
+
+    /**
+     * 취소되면 전송 계층의 호출도 취소하고, 전송 계층이 응답을 기다리던 연결을 끊었는지를 {@link InvocationCancelledException}으로 알린다.
+     * 연결을 끊었는지는 {@link AWSLambdaTransport.AbortableInvocation}을 구현한 호출만 알 수 있다.
+     */
+    static class CancellableInvocation extends CompletableFuture<InvokeResult> {
+
+        private volatile Future<InvokeResult> invocation;
+
+        void setInvocation(Future<InvokeResult> invocation) {
+            this.invocation = invocation;
+            if (isCancelled()) {
+                invocation.cancel(true);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            Future<InvokeResult> invocation = this.invocation;
+            boolean reclaimed = false;
+            if (!isDone() && Objects.nonNull(invocation)) {
+                invocation.cancel(true);
+                reclaimed = invocation instanceof AWSLambdaTransport.AbortableInvocation && ((AWSLambdaTransport.AbortableInvocation) invocation).isAborted();
+            }
+            boolean cancelled = completeExceptionally(new InvocationCancelledException(reclaimed));
+            return cancelled || isCancelled();
+        }
+
+    }
+
+    /**
+     * 취소된 람다 호출, {@link #isReclaimed()}는 전송 계층이 응답을 기다리던 연결을 끊어서 돌려받았는지 여부다.
+     */
+    public static class InvocationCancelledException extends CancellationException {
+
+        private final boolean reclaimed;
+
+        InvocationCancelledException(boolean reclaimed) {
+            super("람다 호출이 취소되었습니다.");
+            this.reclaimed = reclaimed;
+        }
+
+        public boolean isReclaimed() {
+            return reclaimed;
+        }
+
+    }
+
+    /**
+     * 마감 시각이 지나서 람다 함수를 호출하지 않았다.
+     */
+    public static class DeadlineExceededException extends RuntimeException {
+
+        DeadlineExceededException(String functionArn) {
+            super(String.format("마감 시각이 지나 람다 함수(%s)를 호출하지 않았습니다.", functionArn));
+        }
+
+    }
+
     static class ByteBufferBackedOutputStream extends OutputStream {
 
         private final ByteBuffer buffer;
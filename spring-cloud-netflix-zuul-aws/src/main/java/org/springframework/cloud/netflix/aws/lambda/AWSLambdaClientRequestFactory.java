@@ -1,47 +1,396 @@
 package org.springframework.cloud.netflix.aws.lambda;
 
 import com.amazonaws.services.lambda.AWSLambdaAsync;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
 import lombok.val;
 import org.springframework.cloud.netflix.aws.lambda.support.ServerHttpRequestUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.server.ServerHttpAsyncRequestControl;
 import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.security.Principal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * @author arawn.kr@gmail.com
  */
 public class AWSLambdaClientRequestFactory {
 
-    private AWSLambdaAsync lambdaClient;
+    private AWSLambdaClientPool clientPool;
+    private AWSLambdaTransport transport;
     private AWSLambdaClientContextFactory clientContextFactory;
     private RequestPayloadExtractor payloadExtractor;
+    private AWSLambdaRegionSelector regionSelector;
+    private AWSLambdaInvocationCoalescer invocationCoalescer;
+    private AWSLambdaInvocationBatcher invocationBatcher;
+    private AWSLambdaClaimCheck claimCheck;
+    private AWSLambdaRetryPolicy retryPolicy;
+    private AWSLambdaInvocationHedger invocationHedger;
+    private AWSLambdaKeepWarmScheduler keepWarmScheduler;
+    private AWSLambdaConcurrencyLimiter concurrencyLimiter;
+    private AWSLambdaMetrics metrics;
+    private AWSLambdaProxyEventWriter proxyEventWriter = new AWSLambdaProxyEventWriter();
+    private AWSLambdaMultipartPayloadWriter multipartPayloadWriter = new AWSLambdaMultipartPayloadWriter();
+    private volatile Set<String> proxyRoutes = Collections.emptySet();
+    private List<AWSLambdaInvocationInterceptor> interceptors = Collections.emptyList();
+    private volatile List<AWSLambdaInvocationInterceptor> invocationInterceptors = Collections.emptyList();
+
+    private final ConcurrentMap<String, AWSLambdaFunctionArn> functionArns = new ConcurrentHashMap<>();
 
     public AWSLambdaClientRequestFactory(AWSLambdaAsync lambdaClient, AWSLambdaClientContextFactory clientContextFactory, RequestPayloadExtractor payloadExtractor) {
-        this.lambdaClient = lambdaClient;
+        this(new AWSLambdaClientPool(lambdaClient), clientContextFactory, payloadExtractor);
+    }
+
+    public AWSLambdaClientRequestFactory(AWSLambdaClientPool clientPool, AWSLambdaClientContextFactory clientContextFactory, RequestPayloadExtractor payloadExtractor) {
+        this.clientPool = Objects.requireNonNull(clientPool);
+        this.clientContextFactory = clientContextFactory;
+        this.payloadExtractor = payloadExtractor;
+    }
+
+    /**
+     * @param transport 모든 리전의 람다 함수를 호출하는 전송 계층, 리전은 람다 ARN에서 정한다.
+     */
+    public AWSLambdaClientRequestFactory(AWSLambdaTransport transport, AWSLambdaClientContextFactory clientContextFactory, RequestPayloadExtractor payloadExtractor) {
+        this.transport = Objects.requireNonNull(transport);
         this.clientContextFactory = clientContextFactory;
         this.payloadExtractor = payloadExtractor;
     }
 
     public ClientHttpRequest createRequest(String functionArn, ServerHttpRequest request) {
-        return createRequest(functionArn, request, false);
+        return createRequest(null, functionArn, request);
+    }
+
+    /**
+     * @param routeId Zuul 라우트 ID, 라우트별로 적용되는 기능(호출 합치기 등)을 판단하는데 사용한다.
+     */
+    public ClientHttpRequest createRequest(String routeId, String functionArn, ServerHttpRequest request) {
+        return createRequest(routeId, functionArn, request, Collections.emptyMap());
     }
 
-    private ClientHttpRequest createRequest(String functionArn, ServerHttpRequest request, boolean proxyMode) {
-        if (ServerHttpRequestUtils.isMultipart(request)) {
+    /**
+     * @param pathParameters 프록시 모드에서 이벤트의 pathParameters로 전달할 경로 변수
+     */
+    public ClientHttpRequest createRequest(String routeId, String functionArn, ServerHttpRequest request, Map<String, String> pathParameters) {
+        return createRequest(routeId, functionArn, request, pathParameters, isProxyMode(routeId, functionArn, request));
+    }
+
+    /**
+     * @param proxyMode true 라면 AWS API Gateway 람다 프록시 통합과 같은 형식의 이벤트로 호출하고, 프록시 응답 형식으로 응답을 해석한다.
+     */
+    public ClientHttpRequest createRequest(String routeId, String functionArn, ServerHttpRequest request, Map<String, String> pathParameters, boolean proxyMode) {
+        val multipart = ServerHttpRequestUtils.isMultipart(request);
+        if (multipart && Objects.isNull(multipartPayloadWriter)) {
             throw new UnsupportedMultipartRequestException();
         }
-        if (proxyMode) {
-            // AWS API Gateway 람다 통합 기능과 비슷하게 지원할 예정
-            throw new UnsupportedOperationException("프록시 모드는 지원하지 않습니다.");
-        }
 
+        val claimCheckable = isClaimCheckable(routeId, functionArn, request);
         val clientContext = clientContextFactory.create(request);
-        val payload = payloadExtractor.extract(request);
-        val lambdaRequest = new AWSLambdaClientRequest(lambdaClient, functionArn, clientContext, payload); {
+        val claimed = claimCheckable ? writeClaimCheckedPayload(request, pathParameters, proxyMode, multipart) : null;
+        val payload = Objects.nonNull(claimed) ? claimed.getPayload()
+                                               : multipart ? writeMultipartPayload(request, pathParameters, proxyMode)
+                                                           : proxyMode ? writeProxyEvent(request, pathParameters) : payloadExtractor.extractBytes(request);
+        val targetArn = selectFunctionArn(functionArn);
+        val transport = getTransport(Objects.nonNull(targetArn) ? targetArn.getRegion() : null);
+        val targetFunctionArn = Objects.nonNull(targetArn) ? targetArn.toString() : functionArn;
+        val interceptors = getInvocationInterceptors(routeId, functionArn, request);
+        val lambdaRequest = proxyMode ? new AWSLambdaProxyClientRequest(transport, targetFunctionArn, clientContext, payload, interceptors)
+                                      : new AWSLambdaClientRequest(transport, targetFunctionArn, clientContext, payload, interceptors); {
             lambdaRequest.getHeaders().putAll(request.getHeaders());
+            if (claimCheckable) {
+                lambdaRequest.setClaimCheck(claimCheck);
+            }
+            if (Objects.nonNull(claimed) && claimed.isStored()) {
+                lambdaRequest.setClaimedPayload(claimed.getLocation());
+            }
         }
         return lambdaRequest;
     }
 
+    /**
+     * 이벤트 호출, 워밍업 호출처럼 요청 팩토리를 거치지 않는 호출도 같은 전송 계층을 사용하도록 공개한다.
+     *
+     * @return 지정한 전송 계층, 없다면 리전의 람다 클라이언트로 호출하는 전송 계층
+     */
+    public AWSLambdaTransport getTransport(String region) {
+        return Objects.nonNull(transport) ? transport : clientPool.getTransport(region);
+    }
+
+    protected ByteBuffer writeProxyEvent(ServerHttpRequest request, Map<String, String> pathParameters) {
+        try {
+            return proxyEventWriter.write(request, Objects.nonNull(pathParameters) ? pathParameters : Collections.emptyMap());
+        } catch (IOException error) {
+            throw new HttpMessageNotReadableException("could not write proxy event: " + error.getMessage(), error);
+        }
+    }
+
+    /**
+     * multipart 본문은 메모리 사용량이 제한된 {@link AWSLambdaMultipartPayloadWriter}로 기록한다. 프록시 모드라면 본문 전체가 Base64로 인코딩된 프록시 이벤트가 된다.
+     */
+    protected ByteBuffer writeMultipartPayload(ServerHttpRequest request, Map<String, String> pathParameters, boolean proxyMode) {
+        try {
+            if (proxyMode) {
+                val parameters = Objects.nonNull(pathParameters) ? pathParameters : Collections.<String, String>emptyMap();
+                return multipartPayloadWriter.write(request, output -> proxyEventWriter.write(request, parameters, output));
+            }
+            return multipartPayloadWriter.write(request);
+        } catch (IOException error) {
+            throw new HttpMessageNotReadableException("could not read multipart request: " + error.getMessage(), error);
+        }
+    }
+
+    /**
+     * claim check가 적용되는 요청의 프록시 이벤트, multipart 페이로드, JSON 본문은 {@link AWSLambdaClaimCheck#openPayload()}로 기록해서,
+     * 람다 호출 한도를 넘는 본문을 메모리에 모으지 않고 읽는 대로 저장소에 기록한다. 저장소에 맡길 수 있는 크기까지 허용한다.
+     * JSON 본문이 한도를 넘지 않으면 모아둔 본문을 {@link RequestPayloadExtractor}로 변환하고, 넘으면 변환하지 않고 그대로 저장한다.
+     * 그 밖의 본문은 변환해야 크기를 알 수 있으므로 {@link RequestPayloadExtractor}로 변환한 후 claim check 인터셉터가 저장한다.
+     *
+     * @return 본문을 읽어서 기록했다면 기록을 마친 스트림, 그렇지 않다면 null
+     */
+    protected AWSLambdaClaimCheck.PayloadOutputStream writeClaimCheckedPayload(ServerHttpRequest request, Map<String, String> pathParameters, boolean proxyMode, boolean multipart) {
+        if (!proxyMode && !multipart && !isJson(request)) {
+            return null;
+        }
+        if (multipart) {
+            multipartPayloadWriter.checkContentLength(request, claimCheck.getMaxObjectBytes());
+        }
+        try (val output = claimCheck.openPayload()) {
+            if (proxyMode) {
+                proxyEventWriter.write(request, Objects.nonNull(pathParameters) ? pathParameters : Collections.emptyMap(), StreamUtils.nonClosing(output));
+                output.finish();
+            } else if (multipart) {
+                multipartPayloadWriter.writeParts(request, StreamUtils.nonClosing(output));
+                output.finish();
+            } else {
+                StreamUtils.copy(request.getBody(), output);
+                output.finish();
+                if (!output.isStored()) {
+                    output.setPayload(payloadExtractor.extractBytes(new BufferedServerHttpRequest(request, output.getPayload())));
+                }
+            }
+            return output;
+        } catch (IOException error) {
+            throw new HttpMessageNotReadableException("could not write claim checked payload: " + error.getMessage(), error);
+        }
+    }
+
+    protected boolean isJson(ServerHttpRequest request) {
+        val contentType = ServerHttpRequestUtils.getContentType(request);
+        return Objects.nonNull(contentType) && (MediaType.APPLICATION_JSON.isCompatibleWith(contentType) || contentType.getSubtype().endsWith("+json"));
+    }
+
+    protected boolean isProxyMode(String routeId, String functionArn, ServerHttpRequest request) {
+        return (Objects.nonNull(routeId) && proxyRoutes.contains(routeId)) || (Objects.nonNull(functionArn) && proxyRoutes.contains(functionArn));
+    }
+
+    /**
+     * 리전 선택기가 있다면 같은 기능을 하는 다른 리전의 함수가 선택될 수 있다.
+     * ARN 형식이 아니라면 null을 반환하고, 검증은 {@link AWSLambdaClientRequest}에 맡긴다.
+     */
+    protected AWSLambdaFunctionArn selectFunctionArn(String functionArn) {
+        if (Objects.isNull(functionArn)) {
+            return null;
+        }
+        AWSLambdaFunctionArn parsed = functionArns.get(functionArn);
+        if (Objects.isNull(parsed)) {
+            try {
+                parsed = AWSLambdaFunctionArn.parse(functionArn);
+            } catch (IllegalArgumentException error) {
+                return null;
+            }
+            functionArns.putIfAbsent(functionArn, parsed);
+        }
+        return Objects.nonNull(regionSelector) ? regionSelector.select(parsed) : parsed;
+    }
+
+    /**
+     * 호출 합치기는 가장 바깥쪽에 두어 합쳐진 호출이 나머지 인터셉터를 한 번만 거치게 하고,
+     * 호출 묶기는 그 다음에 두어 묶인 호출이 나머지 인터셉터를 한 번만 거치게 한다.
+     * claim check는 그 다음에 두어 재시도 등으로 같은 호출이 반복되어도 페이로드를 한 번만 저장하게 한다.
+     * 재시도와 헤징은 claim check 안쪽에 두어 모든 호출이 저장된 페이로드를 함께 사용하게 하고, 재시도한 호출도 헤징되도록 재시도를 바깥에 둔다.
+     * 워밍업은 리전 선택기 안쪽에서 실제로 호출되는 함수의 동시 호출 수를 학습하고,
+     * 동시 호출 한도는 재시도나 헤징으로 인한 호출도 각각 한도에 포함되도록 사용자 인터셉터 안쪽에 두고,
+     * 지표는 가장 안쪽에 두어 람다 클라이언트 호출 시간과 실제로 전달된 페이로드 크기만 기록한다.
+     */
+    protected List<AWSLambdaInvocationInterceptor> getInvocationInterceptors(String routeId, String functionArn, ServerHttpRequest request) {
+        val coalescible = isCoalescible(routeId, functionArn, request);
+        val batchable = isBatchable(routeId, functionArn, request);
+        val claimCheckable = isClaimCheckable(routeId, functionArn, request);
+        val retryable = isRetryable(routeId, functionArn);
+        val hedgeable = isHedgeable(routeId, functionArn, request);
+        val keepWarm = isKeepWarm(routeId, functionArn);
+        val limited = isConcurrencyLimited(routeId, functionArn);
+        val measured = Objects.nonNull(metrics);
+        if (!coalescible && !batchable && !claimCheckable && !retryable && !hedgeable && !keepWarm && !limited && !measured) {
+            return invocationInterceptors;
+        }
+
+        val interceptors = new ArrayList<AWSLambdaInvocationInterceptor>(invocationInterceptors.size() + 8); {
+            if (coalescible) {
+                interceptors.add(invocationCoalescer);
+            }
+            if (batchable) {
+                interceptors.add(invocationBatcher);
+            }
+            if (claimCheckable) {
+                interceptors.add(claimCheck);
+            }
+            if (retryable) {
+                interceptors.add(retryPolicy.route(routeId, functionArn, request));
+            }
+            if (hedgeable) {
+                interceptors.add(invocationHedger);
+            }
+            interceptors.addAll(invocationInterceptors);
+            if (keepWarm) {
+                interceptors.add(keepWarmScheduler);
+            }
+            if (limited) {
+                interceptors.add(concurrencyLimiter);
+            }
+            if (measured) {
+                interceptors.add(metrics.route(routeId, functionArn));
+            }
+        }
+        return interceptors;
+    }
+
+    protected boolean isCoalescible(String routeId, String functionArn, ServerHttpRequest request) {
+        return Objects.nonNull(invocationCoalescer) && invocationCoalescer.isCoalescible(routeId, functionArn, request);
+    }
+
+    protected boolean isBatchable(String routeId, String functionArn, ServerHttpRequest request) {
+        return Objects.nonNull(invocationBatcher) && invocationBatcher.isBatchable(routeId, functionArn, request);
+    }
+
+    protected boolean isClaimCheckable(String routeId, String functionArn, ServerHttpRequest request) {
+        return Objects.nonNull(claimCheck) && claimCheck.isClaimCheckRoute(routeId, functionArn, request);
+    }
+
+    protected boolean isRetryable(String routeId, String functionArn) {
+        return Objects.nonNull(retryPolicy) && retryPolicy.isRetryableRoute(routeId, functionArn);
+    }
+
+    protected boolean isHedgeable(String routeId, String functionArn, ServerHttpRequest request) {
+        return Objects.nonNull(invocationHedger) && invocationHedger.isHedgeable(routeId, functionArn, request);
+    }
+
+    protected boolean isKeepWarm(String routeId, String functionArn) {
+        return Objects.nonNull(keepWarmScheduler) && keepWarmScheduler.isKeepWarmRoute(routeId, functionArn);
+    }
+
+    protected boolean isConcurrencyLimited(String routeId, String functionArn) {
+        return Objects.nonNull(concurrencyLimiter) && concurrencyLimiter.isLimitedRoute(routeId, functionArn);
+    }
+
+    public void setRegionSelector(AWSLambdaRegionSelector regionSelector) {
+        this.regionSelector = regionSelector;
+        updateInvocationInterceptors();
+    }
+
+    public void setInvocationCoalescer(AWSLambdaInvocationCoalescer invocationCoalescer) {
+        this.invocationCoalescer = invocationCoalescer;
+    }
+
+    public void setInvocationBatcher(AWSLambdaInvocationBatcher invocationBatcher) {
+        this.invocationBatcher = invocationBatcher;
+    }
+
+    public void setClaimCheck(AWSLambdaClaimCheck claimCheck) {
+        this.claimCheck = claimCheck;
+    }
+
+    /**
+     * @see AWSLambdaRetryPolicy
+     */
+    public void setRetryPolicy(AWSLambdaRetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * @see AWSLambdaInvocationHedger
+     */
+    public void setInvocationHedger(AWSLambdaInvocationHedger invocationHedger) {
+        this.invocationHedger = invocationHedger;
+    }
+
+    /**
+     * 워밍업 호출도 이 요청 팩토리의 전송 계층({@link #getTransport(String)})으로 보내도록 지정한다.
+     *
+     * @see AWSLambdaKeepWarmScheduler
+     */
+    public void setKeepWarmScheduler(AWSLambdaKeepWarmScheduler keepWarmScheduler) {
+        if (Objects.nonNull(keepWarmScheduler)) {
+            keepWarmScheduler.setRequestFactory(this);
+        }
+        this.keepWarmScheduler = keepWarmScheduler;
+    }
+
+    /**
+     * @see AWSLambdaConcurrencyLimiter
+     */
+    public void setConcurrencyLimiter(AWSLambdaConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    /**
+     * @see AWSLambdaMetrics
+     */
+    public void setMetrics(AWSLambdaMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param proxyRoutes API Gateway 프록시 통합 형식으로 호출할 라우트 ID 또는 람다 ARN
+     */
+    public void setProxyRoutes(Collection<String> proxyRoutes) {
+        this.proxyRoutes = Objects.nonNull(proxyRoutes) ? Collections.unmodifiableSet(new HashSet<>(proxyRoutes)) : Collections.emptySet();
+    }
+
+    public void setProxyEventWriter(AWSLambdaProxyEventWriter proxyEventWriter) {
+        this.proxyEventWriter = Objects.requireNonNull(proxyEventWriter);
+    }
+
+    /**
+     * @param multipartPayloadWriter null 이라면 multipart 요청을 지원하지 않는다.
+     */
+    public void setMultipartPayloadWriter(AWSLambdaMultipartPayloadWriter multipartPayloadWriter) {
+        this.multipartPayloadWriter = multipartPayloadWriter;
+    }
+
+    public void setInterceptors(List<AWSLambdaInvocationInterceptor> interceptors) {
+        this.interceptors = Objects.nonNull(interceptors) ? new ArrayList<>(interceptors) : Collections.emptyList();
+        updateInvocationInterceptors();
+    }
+
+    public List<AWSLambdaInvocationInterceptor> getInterceptors() {
+        return Collections.unmodifiableList(interceptors);
+    }
+
+    /**
+     * 리전 선택기는 사용자 인터셉터보다 안쪽에 두어 재시도나 헤징으로 인한 호출도 각각 응답시간이 기록되게 한다.
+     */
+    private void updateInvocationInterceptors() {
+        val invocationInterceptors = new ArrayList<AWSLambdaInvocationInterceptor>(interceptors); {
+            if (Objects.nonNull(regionSelector)) {
+                invocationInterceptors.add(regionSelector);
+            }
+        }
+        this.invocationInterceptors = Collections.unmodifiableList(invocationInterceptors);
+    }
+
 
     class UnsupportedMultipartRequestException extends RuntimeException {
         UnsupportedMultipartRequestException() {
@@ -49,4 +398,60 @@ public class AWSLambdaClientRequestFactory {
         }
     }
 
+
+    /**
+     * 이미 읽어서 모아둔 본문을 돌려주는 요청, 나머지는 원래 요청에 위임한다.
+     */
+    static class BufferedServerHttpRequest implements ServerHttpRequest {
+
+        private final ServerHttpRequest request;
+        private final ByteBuffer body;
+
+        BufferedServerHttpRequest(ServerHttpRequest request, ByteBuffer body) {
+            this.request = request;
+            this.body = body;
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return request.getMethod();
+        }
+
+        @Override
+        public URI getURI() {
+            return request.getURI();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return request.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() {
+            return new ByteBufferBackedInputStream(body.duplicate());
+        }
+
+        @Override
+        public Principal getPrincipal() {
+            return request.getPrincipal();
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return request.getLocalAddress();
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return request.getRemoteAddress();
+        }
+
+        @Override
+        public ServerHttpAsyncRequestControl getAsyncRequestControl(ServerHttpResponse response) {
+            return request.getAsyncRequestControl(response);
+        }
+
+    }
+
 }
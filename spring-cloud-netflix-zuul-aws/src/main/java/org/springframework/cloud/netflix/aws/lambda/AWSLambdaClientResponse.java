@@ -10,6 +10,7 @@ import org.springframework.util.StringUtils;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.util.Objects;
 
 /**
  * @author arawn.kr@gmail.com
@@ -55,6 +56,20 @@ public class AWSLambdaClientResponse extends AbstractClientHttpResponse {
         return new ByteBufferBackedInputStream(invokeResult.getPayload());
     }
 
+    /**
+     * @return 람다 함수가 오류를 던졌다면(X-Amz-Function-Error) true
+     */
+    public boolean isFunctionError() {
+        return StringUtils.hasText(invokeResult.getFunctionError());
+    }
+
+    /**
+     * @return 응답 페이로드의 읽기 전용 뷰, 페이로드가 없다면 null
+     */
+    public ByteBuffer getPayload() {
+        return Objects.nonNull(invokeResult.getPayload()) ? invokeResult.getPayload().asReadOnlyBuffer() : null;
+    }
+
     @Override
     public void close() {
 
@@ -66,10 +81,10 @@ public class AWSLambdaClientResponse extends AbstractClientHttpResponse {
     }
 
 
-    class ByteBufferBackedInputStream extends InputStream {
+    static class ByteBufferBackedInputStream extends InputStream {
 
         private final ByteBuffer buffer;
-        private ByteBufferBackedInputStream(ByteBuffer buffer) { this.buffer = buffer; }
+        ByteBufferBackedInputStream(ByteBuffer buffer) { this.buffer = buffer; }
 
         @Override
         public int available() {
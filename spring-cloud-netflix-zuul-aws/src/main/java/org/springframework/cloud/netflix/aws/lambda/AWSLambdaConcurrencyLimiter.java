@@ -0,0 +1,250 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+import com.netflix.hystrix.exception.HystrixBadRequestException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 람다 함수마다 동시 호출 수를 관찰한 응답시간과 호출 제한(429)에 맞춰 조절한다. 고정된 Hystrix 세마포어나 스레드풀 크기 대신 사용한다.
+ *
+ * 응답시간은 gradient 방식으로 반영한다. 오래 관찰한 응답시간(지수 이동 평균)과 이번 응답시간의 비율로 한도를 줄이거나,
+ * 응답시간이 평소 수준이면 한도의 제곱근 만큼 늘린다. 람다가 호출을 제한하면(TooManyRequestsException) 계정 동시 실행 한도에 닿은 것이므로
+ * 한도를 backoffRatio 배로 바로 줄인다. (AIMD의 multiplicative decrease)
+ *
+ * 한도를 넘는 호출은 람다를 호출하지 않고 {@link LimitExceededException}으로 바로 실패한다. 이 예외는 {@link HystrixBadRequestException}이므로
+ * 폴백이나 서킷 브레이커의 오류율에 반영되지 않으며, 게이트웨이는 rejectStatus로 응답한다.
+ *
+ * {@link #setRoutes(Collection)}로 지정한 라우트에만 적용된다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+@Slf4j
+public class AWSLambdaConcurrencyLimiter implements AWSLambdaInvocationInterceptor {
+
+    private final ConcurrentMap<String, FunctionLimit> functionLimits = new ConcurrentHashMap<>();
+    private final List<Consumer<String>> functionListeners = new CopyOnWriteArrayList<>();
+    private final LongAdder rejections = new LongAdder();
+
+    private volatile Set<String> routes = Collections.emptySet();
+    private int initialLimit = 20;
+    private int minLimit = 1;
+    private int maxLimit = 1000;
+    private double tolerance = 1.5;
+    private double smoothing = 0.2;
+    private double backoffRatio = 0.9;
+    private int longWindow = 600;
+    private HttpStatus rejectStatus = HttpStatus.SERVICE_UNAVAILABLE;
+
+    /**
+     * @param routes 동시 호출 수를 조절할 라우트 ID 또는 람다 ARN
+     */
+    public void setRoutes(Collection<String> routes) {
+        this.routes = Objects.nonNull(routes) ? Collections.unmodifiableSet(new HashSet<>(routes)) : Collections.emptySet();
+    }
+
+    public boolean isLimitedRoute(String routeId, String functionArn) {
+        return (Objects.nonNull(routeId) && routes.contains(routeId)) || (Objects.nonNull(functionArn) && routes.contains(functionArn));
+    }
+
+    @Override
+    public CompletableFuture<InvokeResult> intercept(InvokeRequest request, AWSLambdaInvocationExecution execution) {
+        FunctionLimit functionLimit = getFunctionLimit(request.getFunctionName());
+        if (!functionLimit.tryAcquire()) {
+            rejections.increment();
+            log.debug("reject lambda invocation, concurrency limit {} exceeded: {}", functionLimit.getLimit(), request.getFunctionName());
+            CompletableFuture<InvokeResult> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(new LimitExceededException(request.getFunctionName(), functionLimit.getLimit(), rejectStatus));
+            return rejected;
+        }
+
+        long started = System.nanoTime();
+        CompletableFuture<InvokeResult> invocation;
+        try {
+            invocation = execution.execute(request);
+        } catch (RuntimeException error) {
+            functionLimit.release();
+            throw error;
+        }
+        // 헤징 등으로 호출이 취소될 수 있도록 받은 future를 그대로 돌려준다.
+        invocation.whenComplete((result, error) -> {
+            if (Objects.nonNull(result)) {
+                functionLimit.onSuccess(System.nanoTime() - started);
+            } else if (AWSLambdaMetrics.isThrottled(error)) {
+                functionLimit.onThrottled();
+            }
+            functionLimit.release();
+        });
+        return invocation;
+    }
+
+    FunctionLimit getFunctionLimit(String functionArn) {
+        FunctionLimit functionLimit = functionLimits.get(functionArn);
+        if (Objects.isNull(functionLimit)) {
+            FunctionLimit created = new FunctionLimit(initialLimit);
+            functionLimit = functionLimits.putIfAbsent(functionArn, created);
+            if (Objects.isNull(functionLimit)) {
+                functionLimit = created;
+                functionListeners.forEach(listener -> listener.accept(functionArn));
+            }
+        }
+        return functionLimit;
+    }
+
+    /**
+     * @param listener 한도를 조절할 람다 함수가 새로 생기면 ARN과 함께 호출된다. 이미 있는 함수에 대해서도 바로 호출된다.
+     */
+    public void addFunctionListener(Consumer<String> listener) {
+        functionListeners.add(listener);
+        functionLimits.keySet().forEach(listener);
+    }
+
+    /**
+     * @return 람다 함수의 현재 동시 호출 한도, 호출된 적이 없다면 initialLimit
+     */
+    public int getLimit(String functionArn) {
+        FunctionLimit functionLimit = functionLimits.get(functionArn);
+        return Objects.nonNull(functionLimit) ? functionLimit.getLimit() : initialLimit;
+    }
+
+    public int getInFlight(String functionArn) {
+        FunctionLimit functionLimit = functionLimits.get(functionArn);
+        return Objects.nonNull(functionLimit) ? functionLimit.inFlight.get() : 0;
+    }
+
+    public long getRejectedCount() {
+        return rejections.sum();
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public void setLimits(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("1 <= minLimit <= initialLimit <= maxLimit 이어야 합니다.");
+        }
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * @param tolerance 응답시간이 평소의 몇 배까지 늘어나도 한도를 줄이지 않을지
+     */
+    public void setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * @param smoothing 새로 계산한 한도를 얼마나 반영할지(0 ~ 1)
+     */
+    public void setSmoothing(double smoothing) {
+        this.smoothing = smoothing;
+    }
+
+    /**
+     * @param backoffRatio 호출이 제한(429)되었을 때 한도에 곱할 값(0 ~ 1)
+     */
+    public void setBackoffRatio(double backoffRatio) {
+        this.backoffRatio = backoffRatio;
+    }
+
+    /**
+     * @param longWindow 평소 응답시간으로 사용할 지수 이동 평균의 표본 수
+     */
+    public void setLongWindow(int longWindow) {
+        this.longWindow = Math.max(1, longWindow);
+    }
+
+    /**
+     * @param rejectStatus 한도를 넘은 요청에 응답할 상태 코드, 기본값은 503(Service Unavailable)
+     */
+    public void setRejectStatus(HttpStatus rejectStatus) {
+        this.rejectStatus = Objects.requireNonNull(rejectStatus);
+    }
+
+
+    class FunctionLimit {
+
+        final AtomicInteger inFlight = new AtomicInteger();
+        private volatile double limit;
+        private double longRtt = 0;
+
+        FunctionLimit(int initialLimit) {
+            this.limit = initialLimit;
+        }
+
+        int getLimit() {
+            return (int) limit;
+        }
+
+        boolean tryAcquire() {
+            if (inFlight.incrementAndGet() > getLimit()) {
+                inFlight.decrementAndGet();
+                return false;
+            }
+            return true;
+        }
+
+        void release() {
+            inFlight.decrementAndGet();
+        }
+
+        synchronized void onSuccess(long rttNanos) {
+            if (longRtt == 0) {
+                longRtt = rttNanos;
+                return;
+            }
+            longRtt = longRtt + (rttNanos - longRtt) / longWindow;
+            if (longRtt > rttNanos * 2) {
+                // 부하가 줄어 응답시간이 회복되었다면 평소 응답시간도 빨리 따라가게 한다.
+                longRtt = longRtt * 0.95;
+            }
+
+            double current = limit;
+            // 한도의 절반도 쓰지 않는 동안에는 응답시간이 좋아도 한도를 늘리지 않는다.
+            if (inFlight.get() * 2 < current && rttNanos <= longRtt) {
+                return;
+            }
+            double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / rttNanos));
+            double newLimit = current * gradient + Math.sqrt(current);
+            newLimit = current * (1 - smoothing) + newLimit * smoothing;
+            limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        }
+
+        synchronized void onThrottled() {
+            limit = Math.max(minLimit, limit * backoffRatio);
+        }
+
+    }
+
+    /**
+     * 동시 호출 한도를 넘은 호출, 게이트웨이는 {@link #getStatus()}로 응답한다.
+     */
+    public static class LimitExceededException extends HystrixBadRequestException {
+
+        private final HttpStatus status;
+
+        LimitExceededException(String functionArn, int limit, HttpStatus status) {
+            super(String.format("람다 함수(%s)의 동시 호출 한도(%d)를 넘었습니다.", functionArn, limit));
+            this.status = status;
+        }
+
+        public HttpStatus getStatus() {
+            return status;
+        }
+
+    }
+
+}
@@ -0,0 +1,180 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.http.IdleConnectionReaper;
+import com.amazonaws.services.lambda.AWSLambdaAsync;
+import com.amazonaws.services.lambda.AWSLambdaAsyncClientBuilder;
+import com.amazonaws.services.lambda.model.GetAccountSettingsRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.springframework.cloud.netflix.aws.lambda.support.AbortableAWSLambdaAsyncClient;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.pool.PoolStats;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 람다 클라이언트와 클라이언트가 사용하는 HTTP 연결 풀, 비동기 호출 스레드풀을 함께 관리한다.
+ *
+ * AWS SDK는 연결 풀을 외부에 드러내지 않으므로, 클라이언트를 만들 때 {@link IdleConnectionReaper}에 새로 등록된 연결 관리자를 찾아 통계를 읽는다.
+ * SDK가 감싼 연결 관리자는 {@link ConnPoolControl}을 구현하며, reaper를 사용하지 않도록 설정했다면 연결 풀 통계는 -1이 된다.
+ * 클라이언트는 빌더의 설정으로 만든 {@link AbortableAWSLambdaAsyncClient}이므로, 취소된 호출은 HTTP 요청을 중단해서 연결을 풀로 돌려준다.
+ *
+ * {@link #prewarm(int, long, TimeUnit)}은 람다 엔드포인트에 동시에 가벼운 API(GetAccountSettings)를 호출해서 TLS 연결을 미리 맺어둔다.
+ * 권한이 없어 오류(403)로 응답하더라도 연결은 풀에 남는다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+@Slf4j
+public class AWSLambdaConnectionPool {
+
+    private final AWSLambdaAsync lambdaClient;
+    private final ConnPoolControl<?> connectionPool;
+    private final ThreadPoolExecutor executor;
+
+    AWSLambdaConnectionPool(AWSLambdaAsync lambdaClient, ConnPoolControl<?> connectionPool, ThreadPoolExecutor executor) {
+        this.lambdaClient = Objects.requireNonNull(lambdaClient);
+        this.connectionPool = connectionPool;
+        this.executor = executor;
+    }
+
+    /**
+     * @param executorThreads 비동기 호출 스레드 수, AWS SDK의 비동기 호출은 응답을 받을 때까지 스레드 하나를 점유한다.
+     */
+    public static AWSLambdaConnectionPool build(AWSLambdaAsyncClientBuilder clientBuilder, int executorThreads) {
+        return build(clientBuilder, executorThreads, executorThreads);
+    }
+
+    /**
+     * @param executorQueueSize 스레드를 기다릴 수 있는 호출 수, 가득 차면 호출은 {@link RejectedExecutionException}으로 실패한다.
+     */
+    public static AWSLambdaConnectionPool build(AWSLambdaAsyncClientBuilder clientBuilder, int executorThreads, int executorQueueSize) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(executorThreads, executorThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(executorQueueSize), runnable -> {
+            Thread thread = new Thread(runnable, "lambda-client-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+
+        synchronized (AWSLambdaConnectionPool.class) {
+            List<HttpClientConnectionManager> registered = IdleConnectionReaper.getRegisteredConnectionManagers();
+            AWSLambdaAsync lambdaClient = AbortableAWSLambdaAsyncClient.build(clientBuilder, executor);
+            List<HttpClientConnectionManager> created = new ArrayList<>(IdleConnectionReaper.getRegisteredConnectionManagers());
+            created.removeAll(new HashSet<>(registered));
+
+            ConnPoolControl<?> connectionPool = null;
+            if (created.size() == 1 && created.get(0) instanceof ConnPoolControl) {
+                connectionPool = (ConnPoolControl<?>) created.get(0);
+            } else {
+                log.debug("could not find the connection pool of lambda client, {} connection managers registered", created.size());
+            }
+            return new AWSLambdaConnectionPool(lambdaClient, connectionPool, executor);
+        }
+    }
+
+    public AWSLambdaAsync getClient() {
+        return lambdaClient;
+    }
+
+    /**
+     * 연결 수 만큼 람다 엔드포인트를 동시에 호출해서 TLS 연결을 맺어둔다.
+     *
+     * @return 응답을 받은 호출 수
+     */
+    public int prewarm(int connections, long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        List<Future<?>> invocations = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            invocations.add(lambdaClient.getAccountSettingsAsync(new GetAccountSettingsRequest()));
+        }
+
+        int warmed = 0;
+        for (Future<?> invocation : invocations) {
+            try {
+                invocation.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                warmed++;
+            } catch (ExecutionException error) {
+                if (error.getCause() instanceof AmazonServiceException) {
+                    warmed++;
+                } else {
+                    log.debug("failed to prewarm lambda connection", error.getCause());
+                }
+            } catch (TimeoutException error) {
+                invocation.cancel(true);
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        log.info("prewarmed {}/{} lambda connections", warmed, connections);
+        return warmed;
+    }
+
+    /**
+     * @return 사용 중인 연결 수
+     */
+    public int getLeasedConnections() {
+        PoolStats stats = getPoolStats();
+        return Objects.nonNull(stats) ? stats.getLeased() : -1;
+    }
+
+    /**
+     * @return 풀에서 쉬고 있는 연결 수
+     */
+    public int getAvailableConnections() {
+        PoolStats stats = getPoolStats();
+        return Objects.nonNull(stats) ? stats.getAvailable() : -1;
+    }
+
+    /**
+     * @return 연결을 기다리는 요청 수, 0 보다 크다면 연결 풀이 포화된 것이다.
+     */
+    public int getPendingConnections() {
+        PoolStats stats = getPoolStats();
+        return Objects.nonNull(stats) ? stats.getPending() : -1;
+    }
+
+    public int getMaxConnections() {
+        return Objects.nonNull(connectionPool) ? connectionPool.getMaxTotal() : -1;
+    }
+
+    public int getActiveThreads() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * @return 스레드를 기다리는 호출 수, 0 보다 크다면 스레드풀이 포화된 것이다.
+     */
+    public int getQueuedInvocations() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return 스레드를 기다릴 수 있는 최대 호출 수
+     */
+    public int getMaxQueuedInvocations() {
+        return executor.getQueue().size() + executor.getQueue().remainingCapacity();
+    }
+
+    public int getMaxThreads() {
+        return executor.getMaximumPoolSize();
+    }
+
+    private PoolStats getPoolStats() {
+        return Objects.nonNull(connectionPool) ? connectionPool.getTotalStats() : null;
+    }
+
+    /**
+     * 람다 클라이언트를 닫는다. 비동기 호출 스레드풀도 함께 종료된다.
+     */
+    public void shutdown() {
+        lambdaClient.shutdown();
+    }
+
+}
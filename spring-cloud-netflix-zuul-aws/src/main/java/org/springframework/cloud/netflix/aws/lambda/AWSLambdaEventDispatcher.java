@@ -0,0 +1,342 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.lambda.AWSLambdaAsync;
+import com.amazonaws.services.lambda.model.InvocationType;
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+import com.amazonaws.services.lambda.model.TooManyRequestsException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * 이벤트 라우트로 들어온 요청을 {@link AWSLambdaEventSpool}에 기록하고, 별도 스레드에서 {@link InvocationType#Event}로 람다 함수를 호출한다.
+ * 요청은 기록되는 즉시 응답(202)할 수 있으므로, 람다 함수가 실행되는 동안 클라이언트를 기다리게 하지 않는다.
+ * 이벤트 호출 페이로드는 256KB로 제한되므로, 한도를 넘는 요청은 기록하지 않고 {@link PayloadTooLargeException}으로 거절한다.
+ * 호출은 {@link AWSLambdaClientRequestFactory}와 같은 {@link AWSLambdaTransport}로 보낸다.
+ *
+ * 저장소의 이벤트는 순서대로 최대 maxInFlight 개까지 동시에 호출하고, 앞선 이벤트가 끝나야 체크포인트를 옮긴다.
+ * 람다가 호출을 제한(429, TooManyRequestsException)하면 지수적으로 늘어나는 간격으로 성공할 때까지 다시 호출하고,
+ * 서버 오류나 네트워크 오류는 maxAttempts 번까지 다시 호출한 후 버린다. 그 외의 오류(4xx)는 다시 호출하지 않고 버린다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+@Slf4j
+public class AWSLambdaEventDispatcher implements Closeable {
+
+    /**
+     * 이벤트 호출(Event) 페이로드의 최대 크기
+     */
+    public static final int DEFAULT_MAX_PAYLOAD_BYTES = 256 * 1024;
+
+    private final Function<String, AWSLambdaTransport> transports;
+    private final AWSLambdaEventSpool spool;
+
+    private volatile Set<String> routes = Collections.emptySet();
+    private int maxPayloadBytes = DEFAULT_MAX_PAYLOAD_BYTES;
+    private int maxInFlight = 8;
+    private int maxEventsPerSecond = 0;
+    private int maxAttempts = 3;
+    private long initialBackoffNanos = TimeUnit.MILLISECONDS.toNanos(100);
+    private long maxBackoffNanos = TimeUnit.SECONDS.toNanos(10);
+    private long fsyncIntervalNanos = TimeUnit.SECONDS.toNanos(1);
+    private long idleWaitNanos = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    private volatile Thread dispatcherThread;
+    private volatile boolean running = false;
+
+    public AWSLambdaEventDispatcher(AWSLambdaAsync lambdaClient, AWSLambdaEventSpool spool) {
+        this(new AWSLambdaClientPool(lambdaClient), spool);
+    }
+
+    public AWSLambdaEventDispatcher(AWSLambdaClientPool clientPool, AWSLambdaEventSpool spool) {
+        this(Objects.requireNonNull(clientPool)::getTransport, spool);
+    }
+
+    /**
+     * 요청 팩토리에 지정한 전송 계층(예: {@link org.springframework.cloud.netflix.aws.lambda.support.NettyTransport})으로 이벤트를 호출한다.
+     */
+    public AWSLambdaEventDispatcher(AWSLambdaClientRequestFactory requestFactory, AWSLambdaEventSpool spool) {
+        this(Objects.requireNonNull(requestFactory)::getTransport, spool);
+    }
+
+    protected AWSLambdaEventDispatcher(Function<String, AWSLambdaTransport> transports, AWSLambdaEventSpool spool) {
+        this.transports = transports;
+        this.spool = Objects.requireNonNull(spool);
+    }
+
+    /**
+     * @param routes 이벤트로 호출할 라우트 ID 또는 람다 ARN
+     */
+    public void setRoutes(Collection<String> routes) {
+        this.routes = Objects.nonNull(routes) ? Collections.unmodifiableSet(new HashSet<>(routes)) : Collections.emptySet();
+    }
+
+    public boolean isEventRoute(String routeId, String functionArn, ServerHttpRequest request) {
+        return (Objects.nonNull(routeId) && routes.contains(routeId)) || (Objects.nonNull(functionArn) && routes.contains(functionArn));
+    }
+
+    /**
+     * 이벤트를 저장소에 기록한다. 반환된 후에는 재시작되더라도 전달된다.
+     *
+     * @throws PayloadTooLargeException 페이로드가 이벤트 호출 한도를 넘는 경우, 람다가 거절할 이벤트이므로 기록하지 않는다.
+     */
+    public void accept(AWSLambdaClientRequest lambdaRequest) throws IOException {
+        ByteBuffer payload = lambdaRequest.getPayload();
+        if (Objects.nonNull(payload) && payload.remaining() > maxPayloadBytes) {
+            throw new PayloadTooLargeException(payload.remaining(), maxPayloadBytes);
+        }
+        String clientContext = Objects.nonNull(lambdaRequest.getClientContext()) ? lambdaRequest.getClientContext().toString() : null;
+        spool.append(lambdaRequest.getFunctionArn(), clientContext, lambdaRequest.getPayload());
+        Thread thread = dispatcherThread;
+        if (Objects.nonNull(thread)) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        dispatcherThread = new Thread(this::dispatchLoop, "lambda-event-dispatcher"); {
+            dispatcherThread.setDaemon(true);
+            dispatcherThread.start();
+        }
+    }
+
+    /**
+     * 호출 중인 이벤트가 끝나기를 기다린 후 저장소를 닫는다. 호출하지 못한 이벤트는 다음 시작시 전달된다.
+     */
+    @Override
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            running = false;
+            thread = dispatcherThread;
+            dispatcherThread = null;
+        }
+        if (Objects.nonNull(thread)) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(TimeUnit.NANOSECONDS.toMillis(maxBackoffNanos) + 1000);
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        spool.close();
+    }
+
+    /**
+     * @return 저장소에 남아 있는 이벤트 수
+     */
+    public long getDepth() {
+        return spool.getDepth();
+    }
+
+    public long getDispatchedCount() {
+        return dispatched.sum();
+    }
+
+    public long getThrottledCount() {
+        return throttled.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @param maxPayloadBytes 이벤트 페이로드의 최대 크기, 람다 이벤트 호출 한도보다 크게 지정하면 람다가 호출을 거절한다.
+     */
+    public void setMaxPayloadBytes(int maxPayloadBytes) {
+        this.maxPayloadBytes = maxPayloadBytes;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    /**
+     * @param maxEventsPerSecond 초당 최대 호출 수, 0 이하면 제한하지 않는다.
+     */
+    public void setMaxEventsPerSecond(int maxEventsPerSecond) {
+        this.maxEventsPerSecond = maxEventsPerSecond;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    public void setBackoff(long initialBackoff, long maxBackoff, TimeUnit unit) {
+        this.initialBackoffNanos = unit.toNanos(initialBackoff);
+        this.maxBackoffNanos = unit.toNanos(maxBackoff);
+    }
+
+    /**
+     * {@link AWSLambdaEventSpool.FsyncPolicy#INTERVAL} 일 때 저장소를 디스크에 쓰는 간격
+     */
+    public void setFsyncInterval(long fsyncInterval, TimeUnit unit) {
+        this.fsyncIntervalNanos = unit.toNanos(fsyncInterval);
+    }
+
+    void dispatchLoop() {
+        Deque<InFlightEvent> window = new ArrayDeque<>(maxInFlight);
+        AWSLambdaEventSpool.Position cursor = spool.getReadPosition();
+        long nextSendAt = System.nanoTime();
+        long nextFsyncAt = System.nanoTime() + fsyncIntervalNanos;
+        long backoff = initialBackoffNanos;
+
+        while (running || !window.isEmpty()) {
+            boolean progressed = false;
+
+            // 처리량 제한 안에서 다음 이벤트를 호출한다.
+            while (running && window.size() < maxInFlight && System.nanoTime() - nextSendAt >= 0) {
+                AWSLambdaEventSpool.Event event = spool.read(cursor);
+                if (Objects.isNull(event)) {
+                    break;
+                }
+                cursor = event.getNext();
+                window.addLast(new InFlightEvent(event, send(event)));
+                if (maxEventsPerSecond > 0) {
+                    nextSendAt += TimeUnit.SECONDS.toNanos(1) / maxEventsPerSecond;
+                    nextSendAt = Math.max(nextSendAt, System.nanoTime() - TimeUnit.SECONDS.toNanos(1));
+                }
+                progressed = true;
+            }
+
+            // 앞선 이벤트부터 순서대로 결과를 확인하고 확정한다.
+            while (!window.isEmpty() && window.peekFirst().future.isDone()) {
+                InFlightEvent head = window.peekFirst();
+                Throwable error = getError(head.future);
+                if (Objects.isNull(error)) {
+                    dispatched.increment();
+                    backoff = initialBackoffNanos;
+                } else if (isThrottled(error)) {
+                    throttled.increment();
+                    log.debug("lambda event invocation is throttled, retry after {}ms", TimeUnit.NANOSECONDS.toMillis(backoff));
+                    LockSupport.parkNanos(backoff);
+                    backoff = Math.min(backoff * 2, maxBackoffNanos);
+                    head.retry(send(head.event));
+                    break;
+                } else if (isRetryable(error) && head.attempts < maxAttempts) {
+                    log.debug("retry lambda event invocation: {}", error.getMessage());
+                    LockSupport.parkNanos(backoff);
+                    backoff = Math.min(backoff * 2, maxBackoffNanos);
+                    head.retry(send(head.event));
+                    break;
+                } else {
+                    dropped.increment();
+                    log.error("drop lambda event: functionArn={}, attempts={}", head.event.getFunctionArn(), head.attempts, error);
+                }
+                spool.commit(head.event);
+                window.removeFirst();
+                progressed = true;
+            }
+
+            if (spool.getFsyncPolicy() == AWSLambdaEventSpool.FsyncPolicy.INTERVAL && System.nanoTime() - nextFsyncAt >= 0) {
+                spool.flush();
+                nextFsyncAt = System.nanoTime() + fsyncIntervalNanos;
+            }
+            if (!progressed) {
+                LockSupport.parkNanos(idleWaitNanos);
+            }
+        }
+    }
+
+    protected CompletableFuture<InvokeResult> send(AWSLambdaEventSpool.Event event) {
+        InvokeRequest request = new InvokeRequest().withFunctionName(event.getFunctionArn())
+                                                   .withInvocationType(InvocationType.Event)
+                                                   .withClientContext(event.getClientContext())
+                                                   .withPayload(event.getPayload().duplicate());
+        try {
+            return getTransport(event.getFunctionArn()).invokeAsync(request);
+        } catch (RuntimeException error) {
+            CompletableFuture<InvokeResult> future = new CompletableFuture<>();
+            future.completeExceptionally(error);
+            return future;
+        }
+    }
+
+    private AWSLambdaTransport getTransport(String functionArn) {
+        try {
+            return transports.apply(AWSLambdaFunctionArn.parse(functionArn).getRegion());
+        } catch (IllegalArgumentException error) {
+            return transports.apply(null);
+        }
+    }
+
+    static Throwable getError(CompletableFuture<InvokeResult> future) {
+        try {
+            future.join();
+            return null;
+        } catch (CompletionException error) {
+            return Objects.nonNull(error.getCause()) ? error.getCause() : error;
+        } catch (RuntimeException error) {
+            return error;
+        }
+    }
+
+    static boolean isThrottled(Throwable error) {
+        return error instanceof TooManyRequestsException
+                || (error instanceof AmazonServiceException && ((AmazonServiceException) error).getStatusCode() == 429);
+    }
+
+    static boolean isRetryable(Throwable error) {
+        if (error instanceof AmazonServiceException) {
+            return ((AmazonServiceException) error).getStatusCode() >= 500;
+        }
+        return true;
+    }
+
+
+    /**
+     * 요청 본문이 람다 이벤트 호출 페이로드의 최대 크기를 넘었다.
+     */
+    public static class PayloadTooLargeException extends RuntimeException {
+
+        PayloadTooLargeException(long size, int maxSize) {
+            super(String.format("이벤트 페이로드(%d bytes)가 람다 이벤트 호출의 최대 크기(%d bytes)를 넘었습니다.", size, maxSize));
+        }
+
+        public HttpStatus getStatus() {
+            return HttpStatus.PAYLOAD_TOO_LARGE;
+        }
+
+    }
+
+    static class InFlightEvent {
+
+        final AWSLambdaEventSpool.Event event;
+        CompletableFuture<InvokeResult> future;
+        int attempts = 1;
+
+        InFlightEvent(AWSLambdaEventSpool.Event event, CompletableFuture<InvokeResult> future) {
+            this.event = event;
+            this.future = future;
+        }
+
+        void retry(CompletableFuture<InvokeResult> future) {
+            this.future = future;
+            this.attempts++;
+        }
+
+    }
+
+}
@@ -0,0 +1,415 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 람다 이벤트 호출(InvocationType.Event)을 위한 로컬 선행 기록(write-ahead) 저장소
+ * 고정 크기의 세그먼트 파일을 메모리 매핑해 이벤트를 순서대로 덧붙이고, 어디까지 전달했는지는 체크포인트 파일에 기록한다.
+ * 애플리케이션이 재시작되면 체크포인트 이후의 이벤트부터 다시 읽으며, 기록 중 중단된(CRC가 맞지 않는) 레코드부터는 버린다.
+ *
+ * <pre>
+ * 레코드: [length:int][crc32:int][arnLength:short][arn][contextLength:int][context][payloadLength:int][payload]
+ * 세그먼트 끝: [-1:int] 또는 남은 공간이 4바이트 미만
+ * 체크포인트: [segmentId:long][offset:int]
+ * </pre>
+ *
+ * 기록은 여러 스레드에서 할 수 있지만, 읽기({@link #read(Position)})와 확정({@link #commit(Event)})은 한 스레드에서만 해야 한다.
+ * 다 읽은 세그먼트는 GC를 기다리지 않고 매핑을 바로 해제한 후 삭제하므로, 주소 공간과 파일이 쌓이지 않는다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+@Slf4j
+public class AWSLambdaEventSpool implements Closeable {
+
+    public enum FsyncPolicy {
+        /** 운영체제에 맡긴다. 프로세스가 죽어도 유실되지 않지만, 장비가 멈추면 유실될 수 있다. */
+        NONE,
+        /** {@link #flush()}를 호출할 때 디스크에 쓴다. */
+        INTERVAL,
+        /** 이벤트를 기록할 때마다 디스크에 쓴다. */
+        ALWAYS
+    }
+
+    static final int HEADER_BYTES = 8;
+    static final int END_OF_SEGMENT = -1;
+    static final String SEGMENT_PREFIX = "spool-";
+    static final String SEGMENT_SUFFIX = ".dat";
+    static final String CHECKPOINT_FILE = "spool.checkpoint";
+
+    private static final Consumer<ByteBuffer> UNMAPPER = createUnmapper();
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final FsyncPolicy fsyncPolicy;
+
+    private final TreeMap<Long, MappedByteBuffer> segments = new TreeMap<>();
+    private final MappedByteBuffer checkpoint;
+    private final AtomicLong depth = new AtomicLong();
+
+    private long writeSegmentId;
+    private MappedByteBuffer writeSegment;
+    private volatile Position writePosition;
+    private volatile Position readPosition;
+    private volatile boolean closed = false;
+
+    public AWSLambdaEventSpool(Path directory) throws IOException {
+        this(directory, 16 * 1024 * 1024, 64, FsyncPolicy.INTERVAL);
+    }
+
+    /**
+     * @param segmentBytes 세그먼트 파일 하나의 크기, 이벤트 하나는 이 크기를 넘을 수 없다.
+     * @param maxSegments 보관할 수 있는 최대 세그먼트 수, 넘으면 {@link SpoolFullException}이 발생한다.
+     */
+    public AWSLambdaEventSpool(Path directory, int segmentBytes, int maxSegments, FsyncPolicy fsyncPolicy) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = maxSegments;
+        this.fsyncPolicy = Objects.requireNonNull(fsyncPolicy);
+        this.checkpoint = map(directory.resolve(CHECKPOINT_FILE), 12);
+        recover();
+    }
+
+    /**
+     * 이벤트를 기록한다. 반환된 후에는 프로세스가 종료되어도 이벤트가 유지된다.
+     */
+    public void append(String functionArn, String clientContext, ByteBuffer payload) throws IOException {
+        byte[] arn = functionArn.getBytes(StandardCharsets.UTF_8);
+        byte[] context = Objects.nonNull(clientContext) ? clientContext.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        ByteBuffer body = Objects.nonNull(payload) ? payload.duplicate() : ByteBuffer.allocate(0);
+        int length = 2 + arn.length + 4 + context.length + 4 + body.remaining();
+        if (HEADER_BYTES + length + 4 > segmentBytes) {
+            throw new IllegalArgumentException("이벤트 크기(" + length + " bytes)가 세그먼트 크기보다 큽니다.");
+        }
+
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("spool is closed");
+            }
+            int offset = writePosition.getOffset();
+            if (offset + HEADER_BYTES + length > segmentBytes) {
+                if (segmentBytes - offset >= 4) {
+                    writeSegment.putInt(offset, END_OF_SEGMENT);
+                }
+                rollSegment();
+                offset = 0;
+            }
+
+            ByteBuffer record = writeSegment.duplicate(); {
+                record.position(offset + HEADER_BYTES);
+                record.putShort((short) arn.length).put(arn);
+                record.putInt(context.length).put(context);
+                record.putInt(body.remaining()).put(body);
+            }
+            // 길이를 마지막에 기록해 본문이 모두 쓰이기 전에는 레코드로 인식되지 않게 한다.
+            writeSegment.putInt(offset + 4, crc(writeSegment, offset + HEADER_BYTES, length));
+            writeSegment.putInt(offset, length);
+            if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+                writeSegment.force();
+            }
+            writePosition = new Position(writeSegmentId, offset + HEADER_BYTES + length);
+            depth.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return position 다음의 이벤트, 기록된 이벤트가 없다면 null
+     */
+    public Event read(Position position) {
+        Position current = position;
+        while (!current.equals(writePosition)) {
+            MappedByteBuffer segment = getSegment(current.getSegmentId());
+            if (Objects.isNull(segment)) {
+                return null;
+            }
+            int offset = current.getOffset();
+            int length = segmentBytes - offset >= 4 ? segment.getInt(offset) : END_OF_SEGMENT;
+            if (length == END_OF_SEGMENT || length == 0) {
+                current = new Position(current.getSegmentId() + 1, 0);
+                continue;
+            }
+
+            ByteBuffer record = segment.duplicate(); {
+                record.position(offset + HEADER_BYTES);
+                record.limit(offset + HEADER_BYTES + length);
+            }
+            byte[] arn = new byte[record.getShort()];
+            record.get(arn);
+            byte[] context = new byte[record.getInt()];
+            record.get(context);
+            int payloadLength = record.getInt();
+            ByteBuffer payload = ByteBuffer.allocate(payloadLength); {
+                record.limit(record.position() + payloadLength);
+                payload.put(record).flip();
+            }
+            return new Event(new String(arn, StandardCharsets.UTF_8),
+                             context.length > 0 ? new String(context, StandardCharsets.UTF_8) : null,
+                             payload,
+                             new Position(current.getSegmentId(), offset + HEADER_BYTES + length));
+        }
+        return null;
+    }
+
+    /**
+     * 이벤트를 전달했다고 기록하고, 다 읽은 세그먼트 파일을 삭제한다. 이벤트는 읽은 순서대로 확정해야 한다.
+     */
+    public void commit(Event event) {
+        Position position = event.getNext();
+        readPosition = position;
+        checkpoint.putLong(0, position.getSegmentId());
+        checkpoint.putInt(8, position.getOffset());
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            checkpoint.force();
+        }
+        depth.decrementAndGet();
+        deleteSegmentsBefore(position.getSegmentId());
+    }
+
+    public Position getReadPosition() {
+        return readPosition;
+    }
+
+    /**
+     * @return 기록되었지만 아직 확정되지 않은 이벤트 수
+     */
+    public long getDepth() {
+        return depth.get();
+    }
+
+    public FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+
+    /**
+     * 기록된 이벤트와 체크포인트를 디스크에 쓴다.
+     */
+    public synchronized void flush() {
+        if (Objects.nonNull(writeSegment)) {
+            writeSegment.force();
+        }
+        checkpoint.force();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            flush();
+            closed = true;
+        }
+    }
+
+    private void recover() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                 .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                 .forEach(name -> segments.put(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())), null));
+        }
+
+        Position checkpointPosition = new Position(checkpoint.getLong(0), checkpoint.getInt(8));
+        if (segments.isEmpty()) {
+            writeSegmentId = checkpointPosition.getSegmentId();
+            writeSegment = openSegment(writeSegmentId);
+            readPosition = writePosition = new Position(writeSegmentId, 0);
+            return;
+        }
+        if (!segments.containsKey(checkpointPosition.getSegmentId())) {
+            checkpointPosition = new Position(segments.firstKey(), 0);
+        }
+        readPosition = checkpointPosition;
+        deleteSegmentsBefore(checkpointPosition.getSegmentId());
+        for (Long segmentId : segments.keySet()) {
+            segments.put(segmentId, openSegment(segmentId));
+        }
+
+        // 체크포인트부터 유효한 레코드를 따라가며 기록 위치와 남은 이벤트 수를 찾는다.
+        long segmentId = checkpointPosition.getSegmentId();
+        int offset = checkpointPosition.getOffset();
+        long count = 0;
+        while (true) {
+            MappedByteBuffer segment = segments.get(segmentId);
+            int length = segmentBytes - offset >= 4 ? segment.getInt(offset) : END_OF_SEGMENT;
+            if (length == END_OF_SEGMENT && segments.containsKey(segmentId + 1)) {
+                segmentId++;
+                offset = 0;
+                continue;
+            }
+            if (length <= 0 || offset + HEADER_BYTES + length > segmentBytes || segment.getInt(offset + 4) != crc(segment, offset + HEADER_BYTES, length)) {
+                break;
+            }
+            offset += HEADER_BYTES + length;
+            count++;
+        }
+
+        // 기록 위치 이후의 세그먼트는 중단된 기록의 흔적이므로 지운다.
+        for (Long orphan : segments.tailMap(segmentId, false).keySet().toArray(new Long[0])) {
+            log.warn("discard spool segment after torn write: {}", orphan);
+            unmap(segments.remove(orphan));
+            Files.deleteIfExists(segmentPath(orphan));
+        }
+        if (segmentBytes - offset >= 4) {
+            segments.get(segmentId).putInt(offset, 0);
+        }
+        writeSegmentId = segmentId;
+        writeSegment = segments.get(segmentId);
+        writePosition = new Position(segmentId, offset);
+        depth.set(count);
+        log.info("recovered event spool: directory={}, depth={}", directory, count);
+    }
+
+    private void rollSegment() throws IOException {
+        if (segments.size() >= maxSegments) {
+            throw new SpoolFullException(directory);
+        }
+        if (fsyncPolicy != FsyncPolicy.NONE) {
+            writeSegment.force();
+        }
+        writeSegmentId++;
+        writeSegment = openSegment(writeSegmentId);
+        segments.put(writeSegmentId, writeSegment);
+    }
+
+    private MappedByteBuffer openSegment(long segmentId) throws IOException {
+        MappedByteBuffer segment = map(segmentPath(segmentId), segmentBytes);
+        segments.put(segmentId, segment);
+        return segment;
+    }
+
+    private synchronized MappedByteBuffer getSegment(long segmentId) {
+        return segments.get(segmentId);
+    }
+
+    private synchronized void deleteSegmentsBefore(long segmentId) {
+        for (Long consumed : segments.headMap(segmentId, false).keySet().toArray(new Long[0])) {
+            // 읽기와 확정은 한 스레드에서 하므로, 다 읽은 세그먼트를 참조하는 곳은 없다.
+            unmap(segments.remove(consumed));
+            try {
+                Files.deleteIfExists(segmentPath(consumed));
+            } catch (IOException error) {
+                log.warn("could not delete spool segment: {}", consumed, error);
+            }
+        }
+    }
+
+    private Path segmentPath(long segmentId) {
+        return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, segmentId, SEGMENT_SUFFIX));
+    }
+
+    private static MappedByteBuffer map(Path path, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    /**
+     * 매핑을 해제한 버퍼에 접근하면 JVM이 종료되므로, 더 이상 참조하지 않는 세그먼트에만 사용한다.
+     */
+    static void unmap(MappedByteBuffer buffer) {
+        if (Objects.nonNull(buffer)) {
+            UNMAPPER.accept(buffer);
+        }
+    }
+
+    /**
+     * Java 9 이상은 {@code Unsafe.invokeCleaner}, Java 8은 {@code DirectBuffer.cleaner()}로 매핑을 해제한다.
+     * 둘 다 사용할 수 없다면 GC가 버퍼를 수거할 때 해제된다.
+     */
+    static Consumer<ByteBuffer> createUnmapper() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Object unsafe = theUnsafe.get(null);
+            return buffer -> invokeQuietly(() -> invokeCleaner.invoke(unsafe, buffer));
+        } catch (ReflectiveOperationException | RuntimeException ignore) {
+        }
+        try {
+            Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            return buffer -> invokeQuietly(() -> clean.invoke(cleaner.invoke(buffer)));
+        } catch (ReflectiveOperationException | RuntimeException error) {
+            log.warn("memory mapped spool segments are released by GC: {}", error.toString());
+            return buffer -> { };
+        }
+    }
+
+    private static void invokeQuietly(Callable<?> unmapper) {
+        try {
+            unmapper.call();
+        } catch (Exception error) {
+            log.warn("could not unmap spool segment: {}", error.toString());
+        }
+    }
+
+    private static int crc(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer region = buffer.duplicate(); {
+            region.limit(offset + length);
+            region.position(offset);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(region);
+        return (int) crc.getValue();
+    }
+
+
+    @Getter
+    @ToString
+    @EqualsAndHashCode
+    public static class Position {
+
+        private final long segmentId;
+        private final int offset;
+
+        Position(long segmentId, int offset) {
+            this.segmentId = segmentId;
+            this.offset = offset;
+        }
+
+    }
+
+    @Getter
+    public static class Event {
+
+        private final String functionArn;
+        private final String clientContext;
+        private final ByteBuffer payload;
+        private final Position next;
+
+        Event(String functionArn, String clientContext, ByteBuffer payload, Position next) {
+            this.functionArn = functionArn;
+            this.clientContext = clientContext;
+            this.payload = payload;
+            this.next = next;
+        }
+
+    }
+
+    public static class SpoolFullException extends RuntimeException {
+        SpoolFullException(Path directory) {
+            super("이벤트 저장소가 가득 찼습니다: " + directory);
+        }
+    }
+
+}
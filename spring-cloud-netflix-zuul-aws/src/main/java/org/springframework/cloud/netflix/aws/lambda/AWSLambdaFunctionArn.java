@@ -0,0 +1,57 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.springframework.util.StringUtils;
+
+import java.util.Objects;
+
+/**
+ * 람다 함수 ARN을 구성 요소로 나눈 값
+ *
+ * arn:{partition}:lambda:{region}:{account-id}:function:{function-name}[:{qualifier}]
+ *
+ * @author arawn.kr@gmail.com
+ */
+@Getter
+@EqualsAndHashCode(of = "value")
+public class AWSLambdaFunctionArn {
+
+    private final String partition;
+    private final String region;
+    private final String accountId;
+    private final String functionName;
+    private final String qualifier;
+    @Getter(lombok.AccessLevel.NONE)
+    private final String value;
+
+    public AWSLambdaFunctionArn(String partition, String region, String accountId, String functionName, String qualifier) {
+        this.partition = partition;
+        this.region = region;
+        this.accountId = accountId;
+        this.functionName = functionName;
+        this.qualifier = qualifier;
+
+        String arn = "arn:" + partition + ":lambda:" + region + ":" + accountId + ":function:" + functionName;
+        this.value = hasQualifier() ? arn + ":" + qualifier : arn;
+    }
+
+    public boolean hasQualifier() {
+        return StringUtils.hasText(qualifier);
+    }
+
+    @Override
+    public String toString() {
+        return value;
+    }
+
+
+    public static AWSLambdaFunctionArn parse(String functionArn) {
+        String[] tokens = Objects.requireNonNull(functionArn, "람다 ARN이 필요합니다.").split(":");
+        if (tokens.length < 7 || tokens.length > 8 || !"arn".equals(tokens[0]) || !"lambda".equals(tokens[2]) || !"function".equals(tokens[5])) {
+            throw new IllegalArgumentException("람다 ARN(amazon resource name)이 아닙니다: " + functionArn);
+        }
+        return new AWSLambdaFunctionArn(tokens[1], tokens[3], tokens[4], tokens[6], tokens.length == 8 ? tokens[7] : null);
+    }
+
+}
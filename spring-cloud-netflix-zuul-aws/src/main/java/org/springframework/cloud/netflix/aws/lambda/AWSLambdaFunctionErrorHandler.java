@@ -0,0 +1,366 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.google.common.io.ByteStreams;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 람다 함수가 던진 오류(X-Amz-Function-Error)를 게이트웨이의 오류 응답으로 바꾼다. 프록시 통합 응답의 4xx, 5xx는 람다 함수가 만든 응답이므로 다루지 않는다.
+ *
+ * 오류 페이로드({"errorMessage": "...", "errorType": "..."})는 앞에서부터 최대 {@link #setMaxErrorBytes(int)} 바이트까지만 스트리밍으로 읽어 errorType과 errorMessage를 꺼내고,
+ * 페이로드 전체를 문자열로 만들거나 로그에 남기지 않는다. errorType마다 오류 수를 세고, 로그는 표본을 추출한 후 초당 {@link #setMaxLogsPerSecond(int)} 개까지만 남긴다.
+ * 제한을 넘어 남기지 않은 로그 수는 다음 로그에 함께 남긴다.
+ *
+ * {@link #addRule(String, String, HttpStatus, String)}로 라우트와 errorType에 따라 응답 상태 코드와 본문을 정할 수 있다.
+ * 규칙은 라우트 ID, 람다 ARN, 모든 라우트 순서로 찾으며, 같은 라우트라면 errorType이 같은 규칙이 "*" 규칙보다 먼저 적용된다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+@Slf4j
+public class AWSLambdaFunctionErrorHandler {
+
+    public static final String ANY_ROUTE = "*";
+    public static final String ANY_ERROR_TYPE = "*";
+
+    /**
+     * errorType이 없는 함수 오류(함수 실행 시간 초과 등)
+     */
+    static final String UNKNOWN_ERROR_TYPE = "Unknown";
+    /**
+     * 함수가 정하는 errorType의 종류가 너무 많다면 나머지를 하나로 센다.
+     */
+    static final String OTHER_ERROR_TYPE = "Other";
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final ConcurrentMap<String, Map<String, Rule>> rules = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> errorCounts = new ConcurrentHashMap<>();
+    private final List<Consumer<String>> errorTypeListeners = new CopyOnWriteArrayList<>();
+    private final LongAdder loggedErrors = new LongAdder();
+    private final LongAdder suppressedLogs = new LongAdder();
+    private final LongAdder pendingSuppressedLogs = new LongAdder();
+    private final AtomicInteger logsInWindow = new AtomicInteger();
+    private volatile long logWindow;
+
+    private int maxErrorBytes = 16 * 1024;
+    private int maxMessageLength = 256;
+    private int maxErrorTypes = 100;
+    private int maxLogsPerSecond = 10;
+    private double logSampleRate = 1.0;
+
+    /**
+     * 오류를 읽고 세고 로그를 남긴 후, 적용할 규칙에 따라 응답을 정한다. 응답 본문은 읽은 후 닫는다.
+     *
+     * @return 규칙이 없다면 람다 응답의 상태 코드와 본문이 없는 {@link ErrorResponse}
+     */
+    public ErrorResponse handle(String routeId, String functionArn, ClientHttpResponse response) throws IOException {
+        int status = response.getRawStatusCode();
+        FunctionError error;
+        try (InputStream body = response.getBody()) {
+            error = readError(body);
+        }
+
+        countError(error.getErrorType());
+        logError(routeId, functionArn, status, error);
+
+        Rule rule = findRule(routeId, functionArn, error.getErrorType());
+        if (Objects.isNull(rule)) {
+            return new ErrorResponse(status, error, null);
+        }
+        return new ErrorResponse(rule.getStatus().value(), error, rule.render(error));
+    }
+
+    /**
+     * 오류 페이로드의 최상위 필드에서 errorType과 errorMessage를 읽는다. 두 필드를 찾았거나 최대 크기에 닿으면 더 읽지 않는다.
+     */
+    public FunctionError readError(InputStream body) {
+        String errorType = null;
+        String errorMessage = null;
+        try (JsonParser parser = jsonFactory.createParser(ByteStreams.limit(body, maxErrorBytes))) {
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                while ((errorType == null || errorMessage == null) && parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    JsonToken value = parser.nextToken();
+                    if ("errorType".equals(name) && value == JsonToken.VALUE_STRING) {
+                        errorType = parser.getText();
+                    } else if ("errorMessage".equals(name) && value == JsonToken.VALUE_STRING) {
+                        errorMessage = truncate(parser.getText());
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        } catch (IOException ignore) {
+            // JSON이 아니거나 최대 크기에서 잘린 페이로드는 그때까지 읽은 필드만 사용한다.
+        }
+        return new FunctionError(errorType, errorMessage);
+    }
+
+    private String truncate(String message) {
+        return message.length() > maxMessageLength ? message.substring(0, maxMessageLength) + "..." : message;
+    }
+
+    /**
+     * errorType의 종류가 최대 개수를 넘었다면 {@link #OTHER_ERROR_TYPE}으로 센다.
+     */
+    void countError(String errorType) {
+        String key = StringUtils.hasText(errorType) ? errorType : UNKNOWN_ERROR_TYPE;
+        LongAdder count = errorCounts.get(key);
+        if (Objects.isNull(count)) {
+            if (errorCounts.size() >= maxErrorTypes) {
+                key = OTHER_ERROR_TYPE;
+            }
+            LongAdder created = new LongAdder();
+            count = errorCounts.putIfAbsent(key, created);
+            if (Objects.isNull(count)) {
+                count = created;
+                notifyErrorType(key);
+            }
+        }
+        count.increment();
+    }
+
+    /**
+     * 리스너는 맵 갱신 밖에서 부르고, 리스너가 실패해도 오류 처리는 계속한다.
+     */
+    private void notifyErrorType(String errorType) {
+        for (Consumer<String> listener : errorTypeListeners) {
+            try {
+                listener.accept(errorType);
+            } catch (RuntimeException error) {
+                log.warn("error type listener failed: {}", errorType, error);
+            }
+        }
+    }
+
+    private void logError(String routeId, String functionArn, int status, FunctionError error) {
+        if (!log.isErrorEnabled()) {
+            return;
+        }
+        if (logSampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= logSampleRate) {
+            suppressLog();
+            return;
+        }
+
+        long window = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+        if (window != logWindow) {
+            synchronized (this) {
+                if (window != logWindow) {
+                    logWindow = window;
+                    logsInWindow.set(0);
+                }
+            }
+        }
+        if (logsInWindow.incrementAndGet() > maxLogsPerSecond) {
+            suppressLog();
+            return;
+        }
+
+        loggedErrors.increment();
+        log.error("lambda function error on route {} ({}): status {}, errorType {}, errorMessage {}, {} similar errors suppressed",
+                  routeId, functionArn, status, error.getErrorType(), error.getErrorMessage(), pendingSuppressedLogs.sumThenReset());
+    }
+
+    private void suppressLog() {
+        suppressedLogs.increment();
+        pendingSuppressedLogs.increment();
+    }
+
+    Rule findRule(String routeId, String functionArn, String errorType) {
+        for (String route : Arrays.asList(routeId, functionArn, ANY_ROUTE)) {
+            Map<String, Rule> routeRules = Objects.nonNull(route) ? rules.get(route) : null;
+            if (Objects.nonNull(routeRules)) {
+                Rule rule = Objects.nonNull(errorType) ? routeRules.get(errorType) : null;
+                if (Objects.isNull(rule)) {
+                    rule = routeRules.get(ANY_ERROR_TYPE);
+                }
+                if (Objects.nonNull(rule)) {
+                    return rule;
+                }
+            }
+        }
+        return null;
+    }
+
+    public void addRule(String route, String errorType, HttpStatus status) {
+        addRule(route, errorType, status, null);
+    }
+
+    /**
+     * @param route 라우트 ID 또는 람다 ARN, null 또는 "*" 라면 모든 라우트
+     * @param errorType 함수 오류의 errorType, null 또는 "*" 라면 모든 오류
+     * @param body 응답 본문(JSON) 템플릿, {errorType}과 {errorMessage}는 JSON 문자열로 이스케이프한 값으로 바뀐다. null 이라면 기본 오류 응답을 사용한다.
+     */
+    public void addRule(String route, String errorType, HttpStatus status, String body) {
+        Objects.requireNonNull(status, "응답 상태 코드가 필요합니다.");
+        String routeKey = StringUtils.hasText(route) ? route : ANY_ROUTE;
+        String errorTypeKey = StringUtils.hasText(errorType) ? errorType : ANY_ERROR_TYPE;
+        rules.computeIfAbsent(routeKey, key -> new ConcurrentHashMap<>()).put(errorTypeKey, new Rule(status, body));
+    }
+
+    /**
+     * errorType이 처음 나타날 때 알려준다. {@link AWSLambdaMetrics}가 errorType마다 카운터를 등록한다.
+     */
+    void addErrorTypeListener(Consumer<String> listener) {
+        errorTypeListeners.add(listener);
+        errorCounts.keySet().forEach(listener);
+    }
+
+    /**
+     * @return errorType의 오류 수, errorType이 없는 오류는 {@link #UNKNOWN_ERROR_TYPE}으로 센다.
+     */
+    public long getErrorCount(String errorType) {
+        LongAdder count = errorCounts.get(errorType);
+        return Objects.nonNull(count) ? count.sum() : 0;
+    }
+
+    public Set<String> getErrorTypes() {
+        return Collections.unmodifiableSet(errorCounts.keySet());
+    }
+
+    public long getLoggedCount() {
+        return loggedErrors.sum();
+    }
+
+    /**
+     * @return 표본 추출이나 초당 제한으로 남기지 않은 로그 수
+     */
+    public long getSuppressedCount() {
+        return suppressedLogs.sum();
+    }
+
+    /**
+     * @param maxErrorBytes 오류 페이로드에서 읽을 최대 크기, errorType과 errorMessage가 이보다 뒤에 있다면 읽지 못한다.
+     */
+    public void setMaxErrorBytes(int maxErrorBytes) {
+        this.maxErrorBytes = maxErrorBytes;
+    }
+
+    public void setMaxMessageLength(int maxMessageLength) {
+        this.maxMessageLength = maxMessageLength;
+    }
+
+    public void setMaxErrorTypes(int maxErrorTypes) {
+        this.maxErrorTypes = maxErrorTypes;
+    }
+
+    public void setMaxLogsPerSecond(int maxLogsPerSecond) {
+        this.maxLogsPerSecond = maxLogsPerSecond;
+    }
+
+    /**
+     * @param logSampleRate 로그를 남길 오류의 비율(0 ~ 1), 초당 제한은 표본을 추출한 후에 적용한다.
+     */
+    public void setLogSampleRate(double logSampleRate) {
+        if (logSampleRate < 0 || logSampleRate > 1) {
+            throw new IllegalArgumentException("로그 표본 비율은 0 에서 1 사이여야 합니다.");
+        }
+        this.logSampleRate = logSampleRate;
+    }
+
+
+    /**
+     * 오류 페이로드에서 읽은 함수 오류, 페이로드에 없는 필드는 null 이다.
+     */
+    public static class FunctionError {
+
+        private final String errorType;
+        private final String errorMessage;
+
+        FunctionError(String errorType, String errorMessage) {
+            this.errorType = errorType;
+            this.errorMessage = errorMessage;
+        }
+
+        public String getErrorType() {
+            return errorType;
+        }
+
+        public String getErrorMessage() {
+            return errorMessage;
+        }
+
+    }
+
+    /**
+     * 게이트웨이가 보낼 오류 응답, 본문이 없다면 기본 오류 응답을 사용한다.
+     */
+    public static class ErrorResponse {
+
+        private final int status;
+        private final FunctionError error;
+        private final byte[] body;
+
+        ErrorResponse(int status, FunctionError error, byte[] body) {
+            this.status = status;
+            this.error = error;
+            this.body = body;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public FunctionError getError() {
+            return error;
+        }
+
+        public boolean hasBody() {
+            return Objects.nonNull(body);
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+    }
+
+    static class Rule {
+
+        private final HttpStatus status;
+        private final String body;
+
+        Rule(HttpStatus status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        HttpStatus getStatus() {
+            return status;
+        }
+
+        byte[] render(FunctionError error) {
+            if (Objects.isNull(body)) {
+                return null;
+            }
+            String errorType = StringUtils.hasText(error.getErrorType()) ? error.getErrorType() : UNKNOWN_ERROR_TYPE;
+            String rendered = body.replace("{errorType}", escape(errorType))
+                                  .replace("{errorMessage}", escape(error.getErrorMessage()));
+            return rendered.getBytes(StandardCharsets.UTF_8);
+        }
+
+        private static String escape(String value) {
+            return Objects.nonNull(value) ? new String(JsonStringEncoder.getInstance().quoteAsString(value)) : "";
+        }
+
+    }
+
+}
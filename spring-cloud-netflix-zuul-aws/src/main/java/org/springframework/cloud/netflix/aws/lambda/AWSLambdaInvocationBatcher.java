@@ -0,0 +1,360 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.server.ServerHttpRequest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 같은 람다 함수로 가는 작은 호출들을 모아 한 번에 호출한다. (micro-batching)
+ * 최대 maxDelay 동안 또는 maxBatchSize 개까지 모은 요청의 페이로드를 JSON 배열로 묶어 호출하고,
+ * 람다 함수가 반환한 JSON 배열의 각 항목을 순서대로 각 요청의 응답으로 돌려준다.
+ *
+ * <pre>
+ * 요청: [payload1, payload2, ...]
+ * 응답: [result1, {"errorMessage":"...", "errorType":"..."}, ...]
+ * </pre>
+ *
+ * 응답 항목이 errorMessage 필드를 가진 객체라면 해당 요청만 함수 오류(Handled)로 처리한다.
+ * 호출 자체가 실패하거나 함수 오류가 발생하면 묶인 모든 요청이 같은 결과를 받으며,
+ * 응답이 요청 수와 같은 길이의 배열이 아니라면 모든 요청이 {@link BatchResponseMismatchException}으로 실패한다.
+ *
+ * 람다 함수가 배열 요청을 처리할 수 있어야 하므로 {@link #setRoutes(Collection)}로 지정한 라우트에만 적용된다.
+ * 묶은 요청은 flushThreads 개의 스레드에서 호출하며, 대기열이 가득 차면 묶인 요청들은 {@link RejectedExecutionException}으로 실패한다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+@Slf4j
+public class AWSLambdaInvocationBatcher implements AWSLambdaInvocationInterceptor {
+
+    /**
+     * 동기 호출(RequestResponse) 페이로드의 최대 크기는 6MB 이다.
+     */
+    public static final int DEFAULT_MAX_PAYLOAD_BYTES = 6 * 1024 * 1024;
+
+    public static final int DEFAULT_FLUSH_THREADS = 16;
+
+    /**
+     * 스레드마다 대기할 수 있는 묶음 수
+     */
+    static final int FLUSH_QUEUE_PER_THREAD = 16;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final int maxPayloadBytes;
+    private final ScheduledExecutorService scheduler;
+    private final ThreadPoolExecutor flushExecutor;
+
+    private final Map<BatchKey, Batch> pendingBatches = new HashMap<>();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedInvocations = new LongAdder();
+    private final LongAdder unbatchedInvocations = new LongAdder();
+
+    private volatile Set<String> routes = Collections.emptySet();
+
+    public AWSLambdaInvocationBatcher(int maxBatchSize, long maxDelay, TimeUnit unit) {
+        this(maxBatchSize, maxDelay, unit, DEFAULT_MAX_PAYLOAD_BYTES);
+    }
+
+    public AWSLambdaInvocationBatcher(int maxBatchSize, long maxDelay, TimeUnit unit, int maxPayloadBytes) {
+        this(maxBatchSize, maxDelay, unit, maxPayloadBytes, DEFAULT_FLUSH_THREADS);
+    }
+
+    /**
+     * @param flushThreads 묶은 요청을 호출할 스레드 수, 동기 호출이라면 응답을 받을 때까지 스레드 하나를 점유한다.
+     */
+    public AWSLambdaInvocationBatcher(int maxBatchSize, long maxDelay, TimeUnit unit, int maxPayloadBytes, int flushThreads) {
+        if (maxBatchSize < 1 || maxPayloadBytes < 2 || flushThreads < 1) {
+            throw new IllegalArgumentException("maxBatchSize와 flushThreads는 1 이상, maxPayloadBytes는 2 이상이어야 합니다.");
+        }
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+        this.maxPayloadBytes = maxPayloadBytes;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("lambda-batch-timer"));
+        this.flushExecutor = new ThreadPoolExecutor(flushThreads, flushThreads, 60, TimeUnit.SECONDS,
+                                                    new ArrayBlockingQueue<>(flushThreads * FLUSH_QUEUE_PER_THREAD), daemonThreadFactory("lambda-batch-flush"));
+        this.flushExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @param routes 호출을 묶을 라우트 ID 또는 람다 ARN
+     */
+    public void setRoutes(Collection<String> routes) {
+        this.routes = Objects.nonNull(routes) ? Collections.unmodifiableSet(new HashSet<>(routes)) : Collections.emptySet();
+    }
+
+    public boolean isBatchable(String routeId, String functionArn, ServerHttpRequest request) {
+        return (Objects.nonNull(routeId) && routes.contains(routeId)) || (Objects.nonNull(functionArn) && routes.contains(functionArn));
+    }
+
+    @Override
+    public CompletableFuture<InvokeResult> intercept(InvokeRequest request, AWSLambdaInvocationExecution execution) {
+        int payloadBytes = Objects.nonNull(request.getPayload()) ? request.getPayload().remaining() : 4;
+        if (payloadBytes + 2 > maxPayloadBytes) {
+            // 혼자서도 크기 제한을 넘는 요청은 묶지 않고 그대로 호출한다.
+            unbatchedInvocations.increment();
+            return execution.execute(request);
+        }
+
+        BatchKey key = new BatchKey(request.getFunctionName(), request.getQualifier(), request.getInvocationType(), request.getClientContext());
+        BatchItem item = new BatchItem(request);
+        List<Batch> readyBatches = new ArrayList<>(2);
+        synchronized (pendingBatches) {
+            Batch batch = pendingBatches.get(key);
+            if (Objects.nonNull(batch) && !batch.canAdd(payloadBytes, maxPayloadBytes)) {
+                pendingBatches.remove(key);
+                readyBatches.add(batch);
+                batch = null;
+            }
+            if (Objects.isNull(batch)) {
+                batch = new Batch(key, execution);
+                pendingBatches.put(key, batch);
+                Batch scheduled = batch;
+                batch.timeout = scheduler.schedule(() -> flushIfPending(scheduled), maxDelayNanos, TimeUnit.NANOSECONDS);
+            }
+            batch.add(item, payloadBytes);
+            if (batch.items.size() >= maxBatchSize) {
+                pendingBatches.remove(key);
+                readyBatches.add(batch);
+            }
+        }
+        readyBatches.forEach(this::flushAsync);
+        return item.future;
+    }
+
+    /**
+     * 대기 중인 요청을 모두 호출하고 타이머를 종료한다.
+     */
+    public void shutdown() {
+        List<Batch> remains;
+        synchronized (pendingBatches) {
+            remains = new ArrayList<>(pendingBatches.values());
+            pendingBatches.clear();
+        }
+        remains.forEach(this::flush);
+        scheduler.shutdown();
+        flushExecutor.shutdown();
+    }
+
+    /**
+     * @return 람다 함수를 배열 페이로드로 호출한 횟수
+     */
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    /**
+     * @return 배열 페이로드에 묶여 호출된 요청 수
+     */
+    public long getBatchedCount() {
+        return batchedInvocations.sum();
+    }
+
+    /**
+     * @return 크기 제한으로 묶지 않고 호출한 요청 수
+     */
+    public long getUnbatchedCount() {
+        return unbatchedInvocations.sum();
+    }
+
+    private void flushIfPending(Batch batch) {
+        synchronized (pendingBatches) {
+            if (!pendingBatches.remove(batch.key, batch)) {
+                return;
+            }
+        }
+        flushAsync(batch);
+    }
+
+    /**
+     * 동기 호출 경로의 실행은 호출 스레드를 점유하므로, 타이머 스레드나 요청 스레드가 아닌 별도 스레드에서 호출한다.
+     */
+    private void flushAsync(Batch batch) {
+        try {
+            flushExecutor.execute(() -> flush(batch));
+        } catch (RejectedExecutionException error) {
+            log.warn("reject lambda batch, flush queue is full: {} invocations of {}", batch.items.size(), batch.key.getFunctionName());
+            batch.completeExceptionally(error);
+        }
+    }
+
+    void flush(Batch batch) {
+        if (Objects.nonNull(batch.timeout)) {
+            batch.timeout.cancel(false);
+        }
+        batches.increment();
+        batchedInvocations.add(batch.items.size());
+
+        InvokeRequest first = batch.items.get(0).request;
+        InvokeRequest batchRequest = new InvokeRequest().withFunctionName(first.getFunctionName())
+                                                        .withQualifier(first.getQualifier())
+                                                        .withInvocationType(first.getInvocationType())
+                                                        .withClientContext(first.getClientContext())
+                                                        .withPayload(batch.createPayload());
+        try {
+            batch.execution.execute(batchRequest).whenComplete((result, error) -> {
+                if (Objects.nonNull(error)) {
+                    batch.completeExceptionally(error);
+                } else {
+                    dispatch(batch, result);
+                }
+            });
+        } catch (RuntimeException error) {
+            batch.completeExceptionally(error);
+        }
+    }
+
+    void dispatch(Batch batch, InvokeResult result) {
+        if (Objects.nonNull(result.getFunctionError()) || Objects.isNull(result.getPayload())) {
+            batch.items.forEach(item -> item.future.complete(AWSLambdaInvocationCoalescer.copyOf(result)));
+            return;
+        }
+
+        List<InvokeResult> results;
+        try {
+            results = split(result, batch.items.size());
+        } catch (IOException | RuntimeException error) {
+            log.warn("could not split batch response: {}", error.getMessage());
+            batch.completeExceptionally(new BatchResponseMismatchException(batch.items.size(), error));
+            return;
+        }
+        for (int index = 0; index < results.size(); index++) {
+            batch.items.get(index).future.complete(results.get(index));
+        }
+    }
+
+    /**
+     * 응답 배열의 각 항목은 원래 바이트를 그대로 잘라서 각 요청의 페이로드로 사용한다.
+     */
+    static List<InvokeResult> split(InvokeResult result, int expectedSize) throws IOException {
+        ByteBuffer payload = result.getPayload().duplicate();
+        byte[] bytes;
+        if (payload.hasArray() && payload.arrayOffset() + payload.position() == 0 && payload.remaining() == payload.array().length) {
+            bytes = payload.array();
+        } else {
+            bytes = new byte[payload.remaining()];
+            payload.get(bytes);
+        }
+
+        List<InvokeResult> results = new ArrayList<>(expectedSize);
+        try (JsonParser parser = OBJECT_MAPPER.getFactory().createParser(bytes)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalStateException("응답이 JSON 배열이 아닙니다.");
+            }
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                int start = (int) parser.getTokenLocation().getByteOffset();
+                JsonNode element = OBJECT_MAPPER.readTree(parser);
+                int end = (int) parser.getCurrentLocation().getByteOffset();
+
+                InvokeResult copy = result.clone(); {
+                    copy.setPayload(ByteBuffer.wrap(bytes, start, end - start).slice());
+                    if (element.isObject() && element.has("errorMessage")) {
+                        copy.setFunctionError("Handled");
+                    }
+                }
+                results.add(copy);
+            }
+        }
+        if (results.size() != expectedSize) {
+            throw new IllegalStateException("응답 배열의 길이(" + results.size() + ")가 요청 수(" + expectedSize + ")와 다릅니다.");
+        }
+        return results;
+    }
+
+    private static ThreadFactory daemonThreadFactory(String prefix) {
+        AtomicInteger sequence = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+
+    @Value
+    static class BatchKey {
+        String functionName;
+        String qualifier;
+        String invocationType;
+        String clientContext;
+    }
+
+    static class BatchItem {
+
+        final InvokeRequest request;
+        final CompletableFuture<InvokeResult> future = new CompletableFuture<>();
+
+        BatchItem(InvokeRequest request) {
+            this.request = request;
+        }
+
+    }
+
+    static class Batch {
+
+        final BatchKey key;
+        final AWSLambdaInvocationExecution execution;
+        final List<BatchItem> items = new ArrayList<>();
+        int payloadBytes = 2;
+        ScheduledFuture<?> timeout;
+
+        Batch(BatchKey key, AWSLambdaInvocationExecution execution) {
+            this.key = key;
+            this.execution = execution;
+        }
+
+        boolean canAdd(int bytes, int maxPayloadBytes) {
+            return payloadBytes + bytes + 1 <= maxPayloadBytes;
+        }
+
+        void add(BatchItem item, int bytes) {
+            payloadBytes += items.isEmpty() ? bytes : bytes + 1;
+            items.add(item);
+        }
+
+        ByteBuffer createPayload() {
+            ByteBuffer payload = ByteBuffer.allocate(payloadBytes);
+            payload.put((byte) '[');
+            for (int index = 0; index < items.size(); index++) {
+                if (index > 0) {
+                    payload.put((byte) ',');
+                }
+                ByteBuffer itemPayload = items.get(index).request.getPayload();
+                if (Objects.nonNull(itemPayload)) {
+                    payload.put(itemPayload.duplicate());
+                } else {
+                    payload.put(new byte[] { 'n', 'u', 'l', 'l' });
+                }
+            }
+            payload.put((byte) ']');
+            payload.flip();
+            return payload;
+        }
+
+        void completeExceptionally(Throwable error) {
+            items.forEach(item -> item.future.completeExceptionally(error));
+        }
+
+    }
+
+    public static class BatchResponseMismatchException extends RuntimeException {
+        BatchResponseMismatchException(int expectedSize, Throwable cause) {
+            super("람다 함수가 " + expectedSize + "개 항목을 가진 JSON 배열을 반환하지 않았습니다.", cause);
+        }
+    }
+
+}
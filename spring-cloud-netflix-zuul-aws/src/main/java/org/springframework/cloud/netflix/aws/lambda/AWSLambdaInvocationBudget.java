@@ -0,0 +1,53 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 헤징이나 재시도처럼 요청 하나가 람다를 여러 번 호출하는 경우, 추가 호출을 요청 수의 일정 비율로 제한한다.
+ * 요청마다 ratio 만큼 토큰이 쌓이고 추가 호출마다 하나씩 사용하며, 한가할 때 쌓인 토큰은 maxTokens 개를 넘지 않는다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+class AWSLambdaInvocationBudget {
+
+    static final long SCALE = 1000;
+
+    private final long tokensPerRequest;
+    private final long maxTokens;
+    private final AtomicLong tokens;
+
+    /**
+     * @param ratio 요청 수 대비 추가 호출의 최대 비율(0 ~ 1)
+     * @param maxTokens 한 번에 사용할 수 있는 최대 추가 호출 수, 처음에는 모두 사용할 수 있다.
+     */
+    AWSLambdaInvocationBudget(double ratio, int maxTokens) {
+        if (ratio < 0 || ratio > 1 || maxTokens < 1) {
+            throw new IllegalArgumentException("ratio는 0 ~ 1, maxTokens는 1 이상이어야 합니다.");
+        }
+        this.tokensPerRequest = Math.round(ratio * SCALE);
+        this.maxTokens = maxTokens * SCALE;
+        this.tokens = new AtomicLong(this.maxTokens);
+    }
+
+    void deposit() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current >= maxTokens) {
+                return;
+            }
+        } while (!tokens.compareAndSet(current, Math.min(maxTokens, current + tokensPerRequest)));
+    }
+
+    boolean tryWithdraw() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current < SCALE) {
+                return false;
+            }
+        } while (!tokens.compareAndSet(current, current - SCALE));
+        return true;
+    }
+
+}
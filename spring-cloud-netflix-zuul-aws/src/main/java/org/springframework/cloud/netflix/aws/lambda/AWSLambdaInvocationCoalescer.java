@@ -0,0 +1,214 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.ServerHttpRequest;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 동시에 들어온 같은 람다 호출을 하나로 합친다. (single-flight)
+ * 함수 ARN, 한정자, 클라이언트 컨텍스트, 페이로드가 모두 같은 호출이 진행 중이면 새로 호출하지 않고 진행 중인 호출의 결과를 함께 사용한다.
+ * 람다 함수에는 {@link RequestPayloadExtractor}가 만든 페이로드와 클라이언트 컨텍스트만 전달되므로, 이 둘이 같다면 같은 호출이다.
+ *
+ * 함께 기다리던 호출이 모두 취소되어야 진행 중인 호출을 취소하므로, 한 호출이 취소되어도 나머지 호출은 결과를 받는다.
+ *
+ * 결과를 공유해도 안전한 멱등 요청에만 사용해야 하므로, {@link #setRoutes(Collection)}로 지정한 라우트의 GET 요청에만 적용된다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+@Slf4j
+public class AWSLambdaInvocationCoalescer implements AWSLambdaInvocationInterceptor {
+
+    private final ConcurrentMap<InvocationKey, InFlightInvocation> inFlightInvocations = new ConcurrentHashMap<>();
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder coalescedInvocations = new LongAdder();
+
+    private volatile Set<String> routes = Collections.emptySet();
+
+    /**
+     * @param routes 호출을 합칠 라우트 ID 또는 람다 ARN
+     */
+    public void setRoutes(Collection<String> routes) {
+        this.routes = Objects.nonNull(routes) ? Collections.unmodifiableSet(new HashSet<>(routes)) : Collections.emptySet();
+    }
+
+    public boolean isCoalescible(String routeId, String functionArn, ServerHttpRequest request) {
+        if (request.getMethod() != HttpMethod.GET) {
+            return false;
+        }
+        return (Objects.nonNull(routeId) && routes.contains(routeId)) || (Objects.nonNull(functionArn) && routes.contains(functionArn));
+    }
+
+    @Override
+    public CompletableFuture<InvokeResult> intercept(InvokeRequest request, AWSLambdaInvocationExecution execution) {
+        InvocationKey key = new InvocationKey(request);
+        InFlightInvocation invocation = new InFlightInvocation(key);
+        InFlightInvocation inFlight;
+        while (Objects.nonNull(inFlight = inFlightInvocations.putIfAbsent(key, invocation))) {
+            if (inFlight.join()) {
+                coalescedInvocations.increment();
+                log.debug("coalesce lambda invocation: {}", request.getFunctionName());
+                return inFlight.waiter();
+            }
+            // 기다리던 호출이 모두 취소되어 버려진 호출이라면 새로 호출한다.
+            inFlightInvocations.remove(key, inFlight);
+        }
+
+        invocations.increment();
+        try {
+            invocation.setExecution(execution.execute(request));
+        } catch (RuntimeException error) {
+            inFlightInvocations.remove(key, invocation);
+            invocation.result.completeExceptionally(error);
+        }
+        return invocation.waiter();
+    }
+
+    /**
+     * @return 실제로 람다 함수를 호출한 횟수
+     */
+    public long getInvocationCount() {
+        return invocations.sum();
+    }
+
+    /**
+     * @return 진행 중인 호출의 결과를 함께 사용한 횟수
+     */
+    public long getCoalescedCount() {
+        return coalescedInvocations.sum();
+    }
+
+    public int getInFlightCount() {
+        return inFlightInvocations.size();
+    }
+
+    /**
+     * 응답 본문은 {@link ByteBuffer}의 위치를 옮기며 읽으므로, 결과를 받는 쪽마다 별도의 버퍼 뷰를 준다.
+     */
+    static InvokeResult copyOf(InvokeResult result) {
+        InvokeResult copy = result.clone();
+        if (Objects.nonNull(result.getPayload())) {
+            copy.setPayload(result.getPayload().duplicate());
+        }
+        return copy;
+    }
+
+
+    /**
+     * 여러 호출이 함께 기다리는 진행 중인 호출, 기다리던 호출이 모두 취소되면 진행 중인 호출도 취소한다.
+     */
+    class InFlightInvocation {
+
+        private final InvocationKey key;
+        private final CompletableFuture<InvokeResult> result = new CompletableFuture<>();
+        private final AtomicInteger waiters = new AtomicInteger(1);
+        private volatile CompletableFuture<InvokeResult> execution;
+
+        InFlightInvocation(InvocationKey key) {
+            this.key = key;
+        }
+
+        /**
+         * @return 기다리던 호출이 모두 취소되어 더 이상 함께 기다릴 수 없다면 false
+         */
+        boolean join() {
+            int count;
+            do {
+                count = waiters.get();
+                if (count == 0) {
+                    return false;
+                }
+            } while (!waiters.compareAndSet(count, count + 1));
+            return true;
+        }
+
+        void setExecution(CompletableFuture<InvokeResult> execution) {
+            this.execution = execution;
+            execution.whenComplete((result, error) -> {
+                // 완료된 후 들어온 호출은 새로 호출하도록 결과를 전달하기 전에 먼저 제거한다.
+                inFlightInvocations.remove(key, this);
+                if (Objects.nonNull(error)) {
+                    this.result.completeExceptionally(error);
+                } else {
+                    this.result.complete(result);
+                }
+            });
+            if (waiters.get() == 0) {
+                execution.cancel(true);
+            }
+        }
+
+        CompletableFuture<InvokeResult> waiter() {
+            CompletableFuture<InvokeResult> waiter = result.thenApply(AWSLambdaInvocationCoalescer::copyOf);
+            waiter.whenComplete((result, error) -> {
+                if (waiter.isCancelled()) {
+                    leave();
+                }
+            });
+            return waiter;
+        }
+
+        private void leave() {
+            if (waiters.decrementAndGet() == 0) {
+                inFlightInvocations.remove(key, this);
+                CompletableFuture<InvokeResult> execution = this.execution;
+                if (Objects.nonNull(execution)) {
+                    execution.cancel(true);
+                }
+            }
+        }
+
+    }
+
+    static class InvocationKey {
+
+        private final String functionName;
+        private final String qualifier;
+        private final String invocationType;
+        private final String clientContext;
+        private final ByteBuffer payload;
+        private final int hashCode;
+
+        InvocationKey(InvokeRequest request) {
+            this.functionName = request.getFunctionName();
+            this.qualifier = request.getQualifier();
+            this.invocationType = request.getInvocationType();
+            this.clientContext = request.getClientContext();
+            this.payload = Objects.nonNull(request.getPayload()) ? request.getPayload().duplicate() : null;
+            this.hashCode = Objects.hash(functionName, qualifier, invocationType, clientContext, payload);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof InvocationKey)) {
+                return false;
+            }
+            InvocationKey that = (InvocationKey) other;
+            return hashCode == that.hashCode
+                    && Objects.equals(functionName, that.functionName)
+                    && Objects.equals(qualifier, that.qualifier)
+                    && Objects.equals(invocationType, that.invocationType)
+                    && Objects.equals(clientContext, that.clientContext)
+                    && Objects.equals(payload, that.payload);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+    }
+
+}
@@ -0,0 +1,24 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link AWSLambdaInvocationInterceptor}가 다음 인터셉터 또는 람다 클라이언트를 호출할 때 사용한다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+public interface AWSLambdaInvocationExecution {
+
+    CompletableFuture<InvokeResult> execute(InvokeRequest request);
+
+    /**
+     * 동기 호출 중이라도 람다 클라이언트를 비동기로 호출한다. 헤징처럼 결과를 기다리지 않고 다른 호출을 함께 진행해야 할 때 사용한다.
+     */
+    default CompletableFuture<InvokeResult> executeAsync(InvokeRequest request) {
+        return execute(request);
+    }
+
+}
@@ -0,0 +1,329 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.ServerHttpRequest;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 멱등인 람다 라우트의 꼬리 응답시간(tail latency)을 줄이기 위해 호출을 헤징한다. (hedged request)
+ * 호출이 관찰된 응답시간의 백분위수(기본값 p95) 안에 끝나지 않으면 같은 호출을 한 번 더 보내고, 먼저 성공한 응답을 사용한다.
+ * 한 쪽이 실패해도 다른 쪽이 진행 중이라면 기다리며, 모두 실패하면 마지막 오류로 실패한다.
+ *
+ * 진 호출은 취소한다. 람다는 이미 시작된 실행을 멈출 수 없으므로 함수는 끝까지 실행되지만, 클라이언트는 응답을 기다리지 않고 연결과 스레드를 돌려받는다.
+ * 취소는 안쪽 인터셉터가 받은 future를 그대로 돌려줄 때만 AWS SDK까지 전달된다.
+ *
+ * 헤징 호출은 요청 수의 budgetRatio 비율(기본값 5%)까지만 보낸다. 요청마다 budgetRatio 만큼 토큰이 쌓이고 헤징 호출마다 하나씩 사용하므로,
+ * 람다가 전체적으로 느려져도 호출 수는 그 비율 이상 늘지 않는다.
+ * 응답시간 분포는 함수마다 refreshInterval 동안 모은 호출(최소 minSamples 개)로 갱신하며, 그 전에는 헤징하지 않는다.
+ *
+ * 같은 호출이 두 번 실행될 수 있으므로 {@link #setRoutes(Collection)}로 지정한 라우트의 멱등 메소드(GET, HEAD, OPTIONS, PUT, DELETE) 요청에만 적용된다.
+ * 동기 호출이라도 두 호출을 함께 기다려야 하므로 람다 클라이언트는 비동기로 호출한다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+@Slf4j
+public class AWSLambdaInvocationHedger implements AWSLambdaInvocationInterceptor {
+
+    static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(15);
+
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final ConcurrentMap<String, FunctionHedging> functionHedgings = new ConcurrentHashMap<>();
+    private final LongAdder hedgedInvocations = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder budgetExhausted = new LongAdder();
+
+    private volatile Set<String> routes = Collections.emptySet();
+    private volatile Set<HttpMethod> methods = EnumSet.of(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS, HttpMethod.PUT, HttpMethod.DELETE);
+    private double percentile = 95.0;
+    private long minDelayNanos = TimeUnit.MILLISECONDS.toNanos(5);
+    private long refreshIntervalNanos = TimeUnit.SECONDS.toNanos(5);
+    private int minSamples = 20;
+    private double budgetRatio = 0.05;
+    private int maxBudget = 10;
+
+    public AWSLambdaInvocationHedger() {
+        this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "lambda-hedge-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 대부분의 호출은 헤징 전에 끝나므로, 취소된 예약이 큐에 쌓이지 않게 한다.
+        this.scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * @param routes 헤징할 멱등 라우트 ID 또는 람다 ARN
+     */
+    public void setRoutes(Collection<String> routes) {
+        this.routes = Objects.nonNull(routes) ? Collections.unmodifiableSet(new HashSet<>(routes)) : Collections.emptySet();
+    }
+
+    /**
+     * @param methods 헤징할 HTTP 메소드, 기본값은 GET, HEAD, OPTIONS, PUT, DELETE
+     */
+    public void setMethods(Collection<HttpMethod> methods) {
+        this.methods = Objects.nonNull(methods) && !methods.isEmpty() ? Collections.unmodifiableSet(EnumSet.copyOf(methods)) : Collections.emptySet();
+    }
+
+    public boolean isHedgeable(String routeId, String functionArn, ServerHttpRequest request) {
+        if (!methods.contains(request.getMethod())) {
+            return false;
+        }
+        return (Objects.nonNull(routeId) && routes.contains(routeId)) || (Objects.nonNull(functionArn) && routes.contains(functionArn));
+    }
+
+    @Override
+    public CompletableFuture<InvokeResult> intercept(InvokeRequest request, AWSLambdaInvocationExecution execution) {
+        FunctionHedging functionHedging = getFunctionHedging(request.getFunctionName());
+        functionHedging.budget.deposit();
+
+        long delayNanos = functionHedging.getHedgeDelayNanos();
+        if (delayNanos < 0) {
+            return functionHedging.record(execution.executeAsync(request));
+        }
+
+        HedgedInvocation invocation = new HedgedInvocation(request, execution, functionHedging);
+        invocation.start(delayNanos);
+        return invocation.winner;
+    }
+
+    FunctionHedging getFunctionHedging(String functionArn) {
+        FunctionHedging functionHedging = functionHedgings.get(functionArn);
+        if (Objects.isNull(functionHedging)) {
+            functionHedging = functionHedgings.computeIfAbsent(functionArn, key -> new FunctionHedging());
+        }
+        return functionHedging;
+    }
+
+    /**
+     * @return 헤징 호출을 기다릴 시간(나노초), 응답시간 분포를 알기 전이라면 -1
+     */
+    public long getHedgeDelay(String functionArn, TimeUnit unit) {
+        FunctionHedging functionHedging = functionHedgings.get(functionArn);
+        long delayNanos = Objects.nonNull(functionHedging) ? functionHedging.getHedgeDelayNanos() : -1;
+        return delayNanos < 0 ? -1 : unit.convert(delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return 헤징 호출을 보낸 횟수
+     */
+    public long getHedgedCount() {
+        return hedgedInvocations.sum();
+    }
+
+    /**
+     * @return 헤징 호출이 먼저 성공해서 응답으로 사용된 횟수
+     */
+    public long getHedgeWonCount() {
+        return hedgeWins.sum();
+    }
+
+    /**
+     * @return 헤징해야 했지만 예산이 부족해서 보내지 않은 횟수
+     */
+    public long getBudgetExhaustedCount() {
+        return budgetExhausted.sum();
+    }
+
+    /**
+     * @param percentile 헤징 호출을 보낼 기준 응답시간의 백분위수(0 ~ 100), 기본값은 95
+     */
+    public void setPercentile(double percentile) {
+        if (percentile <= 0 || percentile >= 100) {
+            throw new IllegalArgumentException("percentile은 0 보다 크고 100 보다 작아야 합니다.");
+        }
+        this.percentile = percentile;
+    }
+
+    /**
+     * @param minDelay 응답시간이 아주 짧은 함수라도 헤징 호출을 보내기 전에 기다릴 최소 시간
+     */
+    public void setMinDelay(long minDelay, TimeUnit unit) {
+        this.minDelayNanos = unit.toNanos(minDelay);
+    }
+
+    /**
+     * @param refreshInterval 응답시간 분포를 갱신하는 주기
+     * @param minSamples 분포를 갱신하는데 필요한 최소 호출 수, 모자라면 다음 주기까지 모은다.
+     */
+    public void setRefreshInterval(long refreshInterval, TimeUnit unit, int minSamples) {
+        this.refreshIntervalNanos = unit.toNanos(refreshInterval);
+        this.minSamples = Math.max(1, minSamples);
+    }
+
+    /**
+     * @param budgetRatio 요청 수 대비 헤징 호출의 최대 비율(0 ~ 1), 기본값은 0.05
+     * @param maxBudget 한 번에 보낼 수 있는 최대 헤징 호출 수, 한가할 때 쌓인 예산이 이 값을 넘지 않는다. 이미 호출된 함수에는 적용되지 않는다.
+     */
+    public void setBudget(double budgetRatio, int maxBudget) {
+        if (budgetRatio < 0 || budgetRatio > 1 || maxBudget < 1) {
+            throw new IllegalArgumentException("budgetRatio는 0 ~ 1, maxBudget은 1 이상이어야 합니다.");
+        }
+        this.budgetRatio = budgetRatio;
+        this.maxBudget = maxBudget;
+    }
+
+    /**
+     * 예약된 헤징 호출을 보내지 않고 타이머를 종료한다.
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+
+    class FunctionHedging {
+
+        private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_NANOS, 2);
+        private final Histogram window = new Histogram(HIGHEST_TRACKABLE_NANOS, 2);
+        private final AWSLambdaInvocationBudget budget = new AWSLambdaInvocationBudget(budgetRatio, maxBudget);
+        private Histogram interval;
+        private volatile long hedgeDelayNanos = -1;
+        private volatile long nextRefreshNanos = System.nanoTime() + refreshIntervalNanos;
+
+        CompletableFuture<InvokeResult> record(CompletableFuture<InvokeResult> invocation) {
+            long started = System.nanoTime();
+            invocation.whenComplete((result, error) -> {
+                if (Objects.nonNull(result)) {
+                    recordLatency(System.nanoTime() - started);
+                }
+            });
+            return invocation;
+        }
+
+        void recordLatency(long latencyNanos) {
+            recorder.recordValue(Math.min(Math.max(1, latencyNanos), HIGHEST_TRACKABLE_NANOS));
+        }
+
+        long getHedgeDelayNanos() {
+            if (System.nanoTime() - nextRefreshNanos >= 0) {
+                refresh();
+            }
+            return hedgeDelayNanos;
+        }
+
+        synchronized void refresh() {
+            long now = System.nanoTime();
+            if (now - nextRefreshNanos < 0) {
+                return;
+            }
+            nextRefreshNanos = now + refreshIntervalNanos;
+
+            interval = recorder.getIntervalHistogram(interval);
+            window.add(interval);
+            if (window.getTotalCount() >= minSamples) {
+                hedgeDelayNanos = Math.max(minDelayNanos, window.getValueAtPercentile(percentile));
+                window.reset();
+            }
+        }
+
+    }
+
+    /**
+     * 먼저 보낸 호출과 헤징 호출 중 먼저 성공한 결과로 winner를 완료한다.
+     */
+    class HedgedInvocation {
+
+        final CompletableFuture<InvokeResult> winner = new CompletableFuture<>();
+
+        private final InvokeRequest request;
+        private final AWSLambdaInvocationExecution execution;
+        private final FunctionHedging functionHedging;
+        private final AtomicInteger pendings = new AtomicInteger(1);
+        private final AtomicBoolean decided = new AtomicBoolean();
+        private volatile CompletableFuture<InvokeResult> primary;
+        private volatile CompletableFuture<InvokeResult> hedge;
+
+        HedgedInvocation(InvokeRequest request, AWSLambdaInvocationExecution execution, FunctionHedging functionHedging) {
+            this.request = request;
+            this.execution = execution;
+            this.functionHedging = functionHedging;
+        }
+
+        void start(long delayNanos) {
+            primary = execute(request, false);
+            if (winner.isDone()) {
+                return;
+            }
+            ScheduledFuture<?> timer = scheduler.schedule(this::hedge, delayNanos, TimeUnit.NANOSECONDS);
+            winner.whenComplete((result, error) -> {
+                timer.cancel(false);
+                // 호출한 쪽이 결과를 취소하면 진행 중인 두 호출도 취소한다.
+                if (winner.isCancelled()) {
+                    cancel(primary);
+                    cancel(hedge);
+                }
+            });
+        }
+
+        void hedge() {
+            if (winner.isDone()) {
+                return;
+            }
+            if (!functionHedging.budget.tryWithdraw()) {
+                budgetExhausted.increment();
+                return;
+            }
+            // 먼저 보낸 호출이 모두 실패해서 끝났다면 헤징하지 않는다.
+            if (pendings.getAndUpdate(pending -> pending > 0 ? pending + 1 : pending) == 0) {
+                return;
+            }
+            hedgedInvocations.increment();
+            log.debug("hedge lambda invocation: {}", request.getFunctionName());
+
+            // 페이로드 버퍼의 위치를 두 호출이 나눠 쓰지 않도록 별도의 뷰를 준다.
+            InvokeRequest hedgeRequest = request.clone();
+            if (Objects.nonNull(request.getPayload())) {
+                hedgeRequest.setPayload(request.getPayload().duplicate());
+            }
+            hedge = execute(hedgeRequest, true);
+            if (winner.isDone()) {
+                cancel(hedge);
+            }
+        }
+
+        private CompletableFuture<InvokeResult> execute(InvokeRequest request, boolean hedged) {
+            CompletableFuture<InvokeResult> invocation;
+            try {
+                invocation = functionHedging.record(execution.executeAsync(request));
+            } catch (RuntimeException error) {
+                invocation = new CompletableFuture<>();
+                invocation.completeExceptionally(error);
+            }
+            invocation.whenComplete((result, error) -> complete(result, error, hedged));
+            return invocation;
+        }
+
+        private void complete(InvokeResult result, Throwable error, boolean hedged) {
+            if (Objects.nonNull(result)) {
+                // 결과를 기다리는 쪽이 지표를 바로 읽을 수 있도록 승자를 정한 후 결과를 전달한다.
+                if (decided.compareAndSet(false, true)) {
+                    if (hedged) {
+                        hedgeWins.increment();
+                    }
+                    winner.complete(result);
+                    cancel(hedged ? primary : hedge);
+                }
+            } else if (pendings.decrementAndGet() == 0) {
+                winner.completeExceptionally(error instanceof CompletionException && Objects.nonNull(error.getCause()) ? error.getCause() : error);
+            }
+        }
+
+        private void cancel(CompletableFuture<InvokeResult> loser) {
+            if (Objects.nonNull(loser) && !loser.isDone()) {
+                loser.cancel(true);
+            }
+        }
+
+    }
+
+}
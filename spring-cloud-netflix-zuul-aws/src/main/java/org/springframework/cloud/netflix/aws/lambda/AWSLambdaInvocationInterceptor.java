@@ -0,0 +1,19 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 람다 함수 호출을 가로채서 요청을 바꾸거나, 결과를 관찰하거나, 호출 자체를 대신할 수 있다.
+ * {@link org.springframework.http.client.ClientHttpRequestInterceptor}와 같은 방식으로 동작하며,
+ * 다음 단계로 넘기려면 {@link AWSLambdaInvocationExecution#execute(InvokeRequest)}를 호출한다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+public interface AWSLambdaInvocationInterceptor {
+
+    CompletableFuture<InvokeResult> intercept(InvokeRequest request, AWSLambdaInvocationExecution execution);
+
+}
@@ -0,0 +1,435 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.amazonaws.services.lambda.AWSLambdaAsync;
+import com.amazonaws.services.lambda.model.InvocationType;
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+import com.amazonaws.services.lambda.model.LogType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.netflix.aws.lambda.support.DefaultClientContextFactory;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 라우트로 들어온 호출에서 람다 함수마다 시간대별 동시 호출 수를 학습하고, 콜드 스타트를 줄이기 위해 가벼운 워밍업 호출을 보낸다.
+ *
+ * 하루를 slot 간격으로 나누고, 각 구간에서 관찰한 최대 동시 호출 수를 날마다 지수 이동 평균으로 기억한다.
+ * interval 마다 다음 leadTime 동안 예상되는 최대 동시 호출 수가 지금보다 많다면 미리 그만큼 동시에 호출해서 실행 환경을 늘려두고,
+ * 호출이 idleTime 동안 없었다면 실행 환경이 회수되지 않도록 예상되는 동시 호출 수(최소 1)만큼 호출한다.
+ * 학습한 트래픽이 없는 시간대라도 마지막 호출 후 keepAlive 동안은 계속 워밍업한다.
+ *
+ * 워밍업 호출은 ClientContext의 custom 영역에 warmup=true와 동시 호출 수(warmup.concurrency)를 담아 보내므로,
+ * 람다 함수는 이를 보고 바로 응답할 수 있다. 동시에 보낸 호출이 같은 실행 환경으로 몰리지 않게 하려면 짧게 기다린 후 응답하면 된다.
+ * 워밍업 호출 수는 period 동안 maxInvocations 개로 제한되며, 한도를 넘는 호출은 보내지 않는다.
+ *
+ * {@link #setRoutes(Collection)}로 지정한 라우트에만 적용되며, {@link #start()}로 시작한다.
+ * 워밍업 호출은 {@link AWSLambdaTransport}로 보내며, {@link AWSLambdaClientRequestFactory#setKeepWarmScheduler(AWSLambdaKeepWarmScheduler)}로 지정하면 라우트 호출과 같은 전송 계층을 사용한다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+@Slf4j
+public class AWSLambdaKeepWarmScheduler implements AWSLambdaInvocationInterceptor {
+
+    public static final String WARMUP = "warmup";
+    public static final String WARMUP_CONCURRENCY = "warmup.concurrency";
+
+    static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private volatile Function<String, AWSLambdaTransport> transports;
+    private final ConcurrentMap<String, FunctionTraffic> functionTraffics = new ConcurrentHashMap<>();
+    private final LongAdder warmups = new LongAdder();
+    private final LongAdder absorbedColdStarts = new LongAdder();
+    private final LongAdder cappedWarmups = new LongAdder();
+    private final LongAdder failedWarmups = new LongAdder();
+
+    private volatile Set<String> routes = Collections.emptySet();
+    private long slotMillis = TimeUnit.MINUTES.toMillis(5);
+    private long intervalMillis = TimeUnit.MINUTES.toMillis(1);
+    private long leadTimeMillis = TimeUnit.MINUTES.toMillis(10);
+    private long idleTimeMillis = TimeUnit.MINUTES.toMillis(5);
+    private long keepAliveMillis = TimeUnit.HOURS.toMillis(1);
+    private double learningRate = 0.3;
+    private int maxConcurrency = 10;
+    private int maxInvocations = 1000;
+    private long periodMillis = TimeUnit.HOURS.toMillis(1);
+    private String payload = "{}";
+    private DefaultClientContextFactory clientContextFactory = new DefaultClientContextFactory(new StandardEnvironment());
+    private Clock clock = Clock.systemDefaultZone();
+
+    private long periodStartedMillis = 0;
+    private int periodInvocations = 0;
+    private ScheduledExecutorService scheduler;
+
+    public AWSLambdaKeepWarmScheduler(AWSLambdaAsync lambdaClient) {
+        this(new AWSLambdaClientPool(lambdaClient));
+    }
+
+    public AWSLambdaKeepWarmScheduler(AWSLambdaClientPool clientPool) {
+        this(Objects.requireNonNull(clientPool)::getTransport);
+    }
+
+    /**
+     * 요청 팩토리에 지정한 전송 계층(예: {@link org.springframework.cloud.netflix.aws.lambda.support.NettyTransport})으로 워밍업 호출을 보낸다.
+     */
+    public AWSLambdaKeepWarmScheduler(AWSLambdaClientRequestFactory requestFactory) {
+        this(Objects.requireNonNull(requestFactory)::getTransport);
+    }
+
+    protected AWSLambdaKeepWarmScheduler(Function<String, AWSLambdaTransport> transports) {
+        this.transports = transports;
+    }
+
+    /**
+     * 요청 팩토리에 지정되면 라우트 호출과 같은 전송 계층으로 워밍업 호출을 보낸다.
+     */
+    void setRequestFactory(AWSLambdaClientRequestFactory requestFactory) {
+        this.transports = Objects.requireNonNull(requestFactory)::getTransport;
+    }
+
+    /**
+     * @param routes 워밍업할 라우트 ID 또는 람다 ARN
+     */
+    public void setRoutes(Collection<String> routes) {
+        this.routes = Objects.nonNull(routes) ? Collections.unmodifiableSet(new HashSet<>(routes)) : Collections.emptySet();
+    }
+
+    public boolean isKeepWarmRoute(String routeId, String functionArn) {
+        return (Objects.nonNull(routeId) && routes.contains(routeId)) || (Objects.nonNull(functionArn) && routes.contains(functionArn));
+    }
+
+    @Override
+    public CompletableFuture<InvokeResult> intercept(InvokeRequest request, AWSLambdaInvocationExecution execution) {
+        FunctionTraffic traffic = getFunctionTraffic(request.getFunctionName());
+        traffic.begin(clock.millis());
+        CompletableFuture<InvokeResult> invocation;
+        try {
+            invocation = execution.execute(request);
+        } catch (RuntimeException error) {
+            traffic.end();
+            throw error;
+        }
+        invocation.whenComplete((result, error) -> traffic.end());
+        return invocation;
+    }
+
+    FunctionTraffic getFunctionTraffic(String functionArn) {
+        FunctionTraffic traffic = functionTraffics.get(functionArn);
+        if (Objects.isNull(traffic)) {
+            traffic = functionTraffics.computeIfAbsent(functionArn, key -> new FunctionTraffic(key, (int) (DAY_MILLIS / slotMillis), currentSlot()));
+        }
+        return traffic;
+    }
+
+    public synchronized void start() {
+        if (Objects.nonNull(scheduler)) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lambda-keep-warm");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::tick, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void shutdown() {
+        if (Objects.nonNull(scheduler)) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * 지나간 구간의 최대 동시 호출 수를 학습하고, 필요한 함수에 워밍업 호출을 보낸다.
+     */
+    void tick() {
+        long now = clock.millis();
+        int slot = currentSlot();
+        int leadSlots = getLeadSlots();
+        for (FunctionTraffic traffic : functionTraffics.values()) {
+            try {
+                traffic.roll(slot);
+                int concurrency = traffic.getWarmupConcurrency(now, slot, leadSlots);
+                if (concurrency > 0) {
+                    warmup(traffic, acquire(now, concurrency), now);
+                }
+            } catch (RuntimeException error) {
+                log.warn("lambda keep-warm failed: {}", traffic.functionArn, error);
+            }
+        }
+    }
+
+    /**
+     * @return 비용 한도 안에서 보낼 수 있는 워밍업 호출 수
+     */
+    synchronized int acquire(long now, int concurrency) {
+        if (now - periodStartedMillis >= periodMillis) {
+            periodStartedMillis = now;
+            periodInvocations = 0;
+        }
+        int acquired = Math.max(0, Math.min(concurrency, maxInvocations - periodInvocations));
+        periodInvocations += acquired;
+        if (acquired < concurrency) {
+            cappedWarmups.add(concurrency - acquired);
+        }
+        return acquired;
+    }
+
+    void warmup(FunctionTraffic traffic, int concurrency, long now) {
+        if (concurrency < 1) {
+            return;
+        }
+        AWSLambdaFunctionArn functionArn;
+        try {
+            functionArn = AWSLambdaFunctionArn.parse(traffic.functionArn);
+        } catch (IllegalArgumentException error) {
+            log.debug("skip lambda keep-warm, not a function arn: {}", traffic.functionArn);
+            return;
+        }
+        AWSLambdaTransport transport = transports.apply(functionArn.getRegion());
+        String clientContext = createClientContext(concurrency);
+
+        traffic.warmed(now, concurrency);
+        log.debug("warm up lambda function {} with {} concurrent invocations", traffic.functionArn, concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            InvokeRequest request = new InvokeRequest().withFunctionName(traffic.functionArn)
+                                                       .withInvocationType(InvocationType.RequestResponse)
+                                                       .withLogType(LogType.Tail)
+                                                       .withClientContext(clientContext)
+                                                       .withPayload(ByteBuffer.wrap(payload.getBytes(StandardCharsets.UTF_8)));
+            warmups.increment();
+            transport.invokeAsync(request).whenComplete((result, error) -> {
+                if (Objects.nonNull(error)) {
+                    failedWarmups.increment();
+                    log.debug("lambda warm-up invocation failed: {}", traffic.functionArn, error);
+                } else if (Objects.nonNull(result.getLogResult()) && AWSLambdaMetrics.isColdStartLog(result.getLogResult())) {
+                    absorbedColdStarts.increment();
+                }
+            });
+        }
+    }
+
+    String createClientContext(int concurrency) {
+        ClientContext.Custom custom = new ClientContext.Custom(); {
+            custom.put(WARMUP, "true");
+            custom.put(WARMUP_CONCURRENCY, String.valueOf(concurrency));
+        }
+        return clientContextFactory.create(custom).toString();
+    }
+
+    /**
+     * @return idleTime 안에 워밍업 호출을 보낸 함수라면 true
+     */
+    public boolean isWarmed(String functionArn) {
+        FunctionTraffic traffic = functionTraffics.get(functionArn);
+        return Objects.nonNull(traffic) && clock.millis() - traffic.lastWarmedMillis < idleTimeMillis;
+    }
+
+    /**
+     * @return 학습한 시간대별 최대 동시 호출 수로 예상한 다음 leadTime 동안의 최대 동시 호출 수
+     */
+    public int getPredictedConcurrency(String functionArn) {
+        FunctionTraffic traffic = functionTraffics.get(functionArn);
+        if (Objects.isNull(traffic)) {
+            return 0;
+        }
+        return traffic.predict(currentSlot(), getLeadSlots());
+    }
+
+    int currentSlot() {
+        return (int) (LocalTime.now(clock).toNanoOfDay() / TimeUnit.MILLISECONDS.toNanos(slotMillis));
+    }
+
+    int getLeadSlots() {
+        return (int) Math.max(1, (leadTimeMillis + slotMillis - 1) / slotMillis);
+    }
+
+    /**
+     * @return 보낸 워밍업 호출 수
+     */
+    public long getWarmupCount() {
+        return warmups.sum();
+    }
+
+    /**
+     * @return 워밍업 호출이 대신 겪은 콜드 스타트 수
+     */
+    public long getAbsorbedColdStartCount() {
+        return absorbedColdStarts.sum();
+    }
+
+    /**
+     * @return 비용 한도 때문에 보내지 않은 워밍업 호출 수
+     */
+    public long getCappedCount() {
+        return cappedWarmups.sum();
+    }
+
+    public long getFailedCount() {
+        return failedWarmups.sum();
+    }
+
+    /**
+     * @param slot 트래픽을 학습할 시간 구간, 하루를 나누어 떨어지게 한다. 이미 학습 중인 함수에는 적용되지 않는다.
+     */
+    public void setSlot(long slot, TimeUnit unit) {
+        long slotMillis = unit.toMillis(slot);
+        if (slotMillis < 1 || DAY_MILLIS % slotMillis != 0) {
+            throw new IllegalArgumentException("slot은 하루를 나누어 떨어지게 해야 합니다.");
+        }
+        this.slotMillis = slotMillis;
+    }
+
+    /**
+     * @param interval 워밍업이 필요한지 확인할 간격, 시작한 후에는 적용되지 않는다.
+     */
+    public void setInterval(long interval, TimeUnit unit) {
+        this.intervalMillis = Math.max(1, unit.toMillis(interval));
+    }
+
+    /**
+     * @param leadTime 예상되는 최대 동시 호출 수를 얼마나 앞서 준비할지
+     */
+    public void setLeadTime(long leadTime, TimeUnit unit) {
+        this.leadTimeMillis = unit.toMillis(leadTime);
+    }
+
+    /**
+     * @param idleTime 호출이 없는 동안 실행 환경이 회수되기 전에 워밍업할 간격
+     */
+    public void setIdleTime(long idleTime, TimeUnit unit) {
+        this.idleTimeMillis = unit.toMillis(idleTime);
+    }
+
+    /**
+     * @param keepAlive 학습한 트래픽이 없는 시간대라도 마지막 호출 후 워밍업을 계속할 시간
+     */
+    public void setKeepAlive(long keepAlive, TimeUnit unit) {
+        this.keepAliveMillis = unit.toMillis(keepAlive);
+    }
+
+    /**
+     * @param learningRate 그날 관찰한 최대 동시 호출 수를 얼마나 반영할지(0 ~ 1)
+     */
+    public void setLearningRate(double learningRate) {
+        this.learningRate = learningRate;
+    }
+
+    /**
+     * @param maxConcurrency 함수 하나에 동시에 보낼 최대 워밍업 호출 수
+     */
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+    }
+
+    /**
+     * 워밍업 비용의 상한, 기본값은 한 시간에 1000 번
+     */
+    public void setMaxInvocations(int maxInvocations, long period, TimeUnit unit) {
+        this.maxInvocations = maxInvocations;
+        this.periodMillis = unit.toMillis(period);
+    }
+
+    /**
+     * @param payload 워밍업 호출의 페이로드, 기본값은 빈 JSON 객체
+     */
+    public void setPayload(String payload) {
+        this.payload = Objects.requireNonNull(payload);
+    }
+
+    /**
+     * @param clientContextFactory 워밍업 호출의 ClientContext를 작성할 팩토리, 라우트 호출과 같은 environment 영역을 보내려면 같은 Environment로 만든다.
+     */
+    public void setClientContextFactory(DefaultClientContextFactory clientContextFactory) {
+        this.clientContextFactory = Objects.requireNonNull(clientContextFactory);
+    }
+
+    void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+
+    class FunctionTraffic {
+
+        final String functionArn;
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger slotPeak = new AtomicInteger();
+        private final double[] profile;
+        private int slot;
+
+        volatile long lastInvokedMillis = 0;
+        volatile long lastWarmedMillis = 0;
+        volatile int warmedConcurrency = 0;
+
+        FunctionTraffic(String functionArn, int slots, int slot) {
+            this.functionArn = functionArn;
+            this.slot = slot;
+            this.profile = new double[slots];
+            Arrays.fill(profile, Double.NaN);
+        }
+
+        void begin(long now) {
+            lastInvokedMillis = now;
+            int current = inFlight.incrementAndGet();
+            slotPeak.accumulateAndGet(current, Math::max);
+        }
+
+        void end() {
+            inFlight.decrementAndGet();
+        }
+
+        /**
+         * 구간이 바뀌었다면 지난 구간의 최대 동시 호출 수를 학습한다.
+         */
+        synchronized void roll(int slot) {
+            if (this.slot == slot) {
+                return;
+            }
+            double peak = slotPeak.getAndSet(inFlight.get());
+            double learned = profile[this.slot];
+            profile[this.slot] = Double.isNaN(learned) ? peak : learned + learningRate * (peak - learned);
+            this.slot = slot;
+        }
+
+        synchronized int predict(int slot, int leadSlots) {
+            double predicted = 0;
+            for (int i = 1; i <= leadSlots; i++) {
+                double learned = profile[(slot + i) % profile.length];
+                if (!Double.isNaN(learned)) {
+                    predicted = Math.max(predicted, learned);
+                }
+            }
+            return (int) Math.min(maxConcurrency, Math.round(predicted));
+        }
+
+        int getWarmupConcurrency(long now, int slot, int leadSlots) {
+            int predicted = predict(slot, leadSlots);
+            int warmed = now - lastWarmedMillis < idleTimeMillis ? warmedConcurrency : 0;
+            if (predicted > Math.max(slotPeak.get(), warmed)) {
+                return predicted;
+            }
+            boolean idle = now - Math.max(lastInvokedMillis, lastWarmedMillis) >= idleTimeMillis;
+            boolean active = now - lastInvokedMillis < keepAliveMillis;
+            if (idle && (active || predicted > 0)) {
+                return Math.max(1, predicted);
+            }
+            return 0;
+        }
+
+        void warmed(long now, int concurrency) {
+            lastWarmedMillis = now;
+            warmedConcurrency = concurrency;
+        }
+
+    }
+
+}
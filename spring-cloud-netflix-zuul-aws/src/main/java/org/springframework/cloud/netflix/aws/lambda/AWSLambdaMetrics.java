@@ -0,0 +1,454 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+import com.amazonaws.services.lambda.model.TooManyRequestsException;
+import com.netflix.hystrix.HystrixInvokableInfo;
+import io.micrometer.core.instrument.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 람다 라우트의 지표를 Micrometer {@link MeterRegistry}에 기록한다. 모든 지표에는 라우트 ID(route)와 람다 ARN(function) 태그가 붙는다.
+ * <ul>
+ *     <li>aws.lambda.requests: 게이트웨이가 요청을 받아 응답할 때까지의 시간, 결과(outcome) 태그로 구분한다.</li>
+ *     <li>aws.lambda.invocations: 람다 클라이언트 호출 시간(인터셉터 체인의 가장 안쪽에서 측정)</li>
+ *     <li>aws.lambda.request.payload, aws.lambda.response.payload: 실제로 주고받은 페이로드 크기(바이트)</li>
+ *     <li>aws.lambda.function.errors, aws.lambda.throttles, aws.lambda.timeouts: 함수 오류, 호출 제한(429), Hystrix 타임아웃 횟수</li>
+ *     <li>aws.lambda.fallbacks: 폴백 응답 횟수, 원인(cause) 태그로 구분한다.</li>
+ *     <li>aws.lambda.cold.starts: 콜드 스타트로 추정되는 호출 수, 판단 근거(source) 태그로 구분한다.</li>
+ *     <li>aws.lambda.cancellations: Hystrix 타임아웃이나 클라이언트 연결 종료로 취소된 호출 수</li>
+ *     <li>aws.lambda.connections.reclaimed: 취소된 호출 중 전송 계층이 응답을 기다리던 연결을 끊어서 돌려받은 수(AWS SDK는 HTTP 요청 중단, Netty는 연결 닫기)</li>
+ *     <li>aws.lambda.warming.invocations, aws.lambda.warming.cold.starts: {@link #monitor(AWSLambdaKeepWarmScheduler)}로 워밍업을 감시할 때,
+ *     호출 수와 콜드 스타트 수를 워밍업 중(warmed) 태그로 구분해서 워밍업 여부에 따른 콜드 스타트 비율을 비교할 수 있게 한다.
+ *     워밍업 여부는 리전 선택기가 고른, 실제로 호출된 람다 ARN으로 판단한다.
+ *     워밍업 호출 자체는 aws.lambda.warming.warmups, absorbed.cold.starts, capped, failures로 기록한다.</li>
+ * </ul>
+ *
+ * 라우트별 지표는 처음 사용할 때 한 번만 등록해서 보관하므로, 요청마다 태그를 만들거나 레지스트리를 조회하지 않는다.
+ *
+ * 람다는 응답에 콜드 스타트 여부를 알려주지 않는다. LogType을 Tail로 지정한 호출은 로그 끝부분의 Init Duration으로 판단하고,
+ * 그 외에는 호출 시간이 평소(지수 이동 평균)보다 coldStartFactor 배 이상, 그리고 coldStartMinimum 이상 길면 콜드 스타트로 추정한다.
+ * 추정된 호출은 평균에 반영하지 않는다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+public class AWSLambdaMetrics {
+
+    public static final String REQUESTS = "aws.lambda.requests";
+    public static final String INVOCATIONS = "aws.lambda.invocations";
+    public static final String REQUEST_PAYLOAD = "aws.lambda.request.payload";
+    public static final String RESPONSE_PAYLOAD = "aws.lambda.response.payload";
+    public static final String FUNCTION_ERRORS = "aws.lambda.function.errors";
+    public static final String FUNCTION_ERRORS_BY_TYPE = "aws.lambda.function.errors.by.type";
+    public static final String THROTTLES = "aws.lambda.throttles";
+    public static final String TIMEOUTS = "aws.lambda.timeouts";
+    public static final String FALLBACKS = "aws.lambda.fallbacks";
+    public static final String COLD_STARTS = "aws.lambda.cold.starts";
+    public static final String CANCELLATIONS = "aws.lambda.cancellations";
+    public static final String RECLAIMED_CONNECTIONS = "aws.lambda.connections.reclaimed";
+    public static final String WARMING_INVOCATIONS = "aws.lambda.warming.invocations";
+    public static final String WARMING_COLD_STARTS = "aws.lambda.warming.cold.starts";
+    public static final String WARMING_WARMUPS = "aws.lambda.warming.warmups";
+    public static final String WARMING_ABSORBED_COLD_STARTS = "aws.lambda.warming.absorbed.cold.starts";
+    public static final String WARMING_CAPPED = "aws.lambda.warming.capped";
+    public static final String WARMING_FAILURES = "aws.lambda.warming.failures";
+
+    static final String NONE = "none";
+    static final String INIT_DURATION = "Init Duration";
+
+    private final MeterRegistry registry;
+    private final ConcurrentMap<String, ConcurrentMap<String, RouteMetrics>> routeMetrics = new ConcurrentHashMap<>();
+
+    private boolean percentileHistogram = true;
+    private double coldStartFactor = 3.0;
+    private long coldStartMinimumNanos = TimeUnit.MILLISECONDS.toNanos(100);
+    private int coldStartWarmupSamples = 20;
+    private double latencyWeight = 0.05;
+    private volatile AWSLambdaKeepWarmScheduler keepWarmScheduler;
+
+    public AWSLambdaMetrics(MeterRegistry registry) {
+        this.registry = Objects.requireNonNull(registry);
+    }
+
+    /**
+     * @return 라우트와 람다 ARN에 해당하는 지표, 라우트 ID를 알 수 없다면 route 태그는 none
+     */
+    public RouteMetrics route(String routeId, String functionArn) {
+        String route = Objects.nonNull(routeId) ? routeId : NONE;
+        String function = Objects.nonNull(functionArn) ? functionArn : NONE;
+
+        ConcurrentMap<String, RouteMetrics> functions = routeMetrics.get(route);
+        if (Objects.isNull(functions)) {
+            functions = routeMetrics.computeIfAbsent(route, key -> new ConcurrentHashMap<>());
+        }
+        RouteMetrics metrics = functions.get(function);
+        if (Objects.isNull(metrics)) {
+            metrics = functions.computeIfAbsent(function, key -> new RouteMetrics(route, function));
+        }
+        return metrics;
+    }
+
+    public AWSLambdaInvocationCoalescer monitor(AWSLambdaInvocationCoalescer coalescer) {
+        FunctionCounter.builder("aws.lambda.coalescer.invocations", coalescer, AWSLambdaInvocationCoalescer::getInvocationCount).register(registry);
+        FunctionCounter.builder("aws.lambda.coalescer.coalesced", coalescer, AWSLambdaInvocationCoalescer::getCoalescedCount).register(registry);
+        Gauge.builder("aws.lambda.coalescer.in.flight", coalescer, AWSLambdaInvocationCoalescer::getInFlightCount).register(registry);
+        return coalescer;
+    }
+
+    public AWSLambdaInvocationBatcher monitor(AWSLambdaInvocationBatcher batcher) {
+        FunctionCounter.builder("aws.lambda.batcher.batches", batcher, AWSLambdaInvocationBatcher::getBatchCount).register(registry);
+        FunctionCounter.builder("aws.lambda.batcher.batched", batcher, AWSLambdaInvocationBatcher::getBatchedCount).register(registry);
+        FunctionCounter.builder("aws.lambda.batcher.unbatched", batcher, AWSLambdaInvocationBatcher::getUnbatchedCount).register(registry);
+        return batcher;
+    }
+
+    public AWSLambdaResponseCache monitor(AWSLambdaResponseCache responseCache) {
+        FunctionCounter.builder("aws.lambda.cache.hits", responseCache, cache -> cache.stats().hitCount()).register(registry);
+        FunctionCounter.builder("aws.lambda.cache.misses", responseCache, cache -> cache.stats().missCount()).register(registry);
+        FunctionCounter.builder("aws.lambda.cache.evictions", responseCache, cache -> cache.stats().evictionCount()).register(registry);
+        Gauge.builder("aws.lambda.cache.size", responseCache, AWSLambdaResponseCache::size).register(registry);
+        return responseCache;
+    }
+
+    public AWSLambdaEventDispatcher monitor(AWSLambdaEventDispatcher eventDispatcher) {
+        Gauge.builder("aws.lambda.events.depth", eventDispatcher, AWSLambdaEventDispatcher::getDepth).register(registry);
+        FunctionCounter.builder("aws.lambda.events.dispatched", eventDispatcher, AWSLambdaEventDispatcher::getDispatchedCount).register(registry);
+        FunctionCounter.builder("aws.lambda.events.throttled", eventDispatcher, AWSLambdaEventDispatcher::getThrottledCount).register(registry);
+        FunctionCounter.builder("aws.lambda.events.dropped", eventDispatcher, AWSLambdaEventDispatcher::getDroppedCount).register(registry);
+        return eventDispatcher;
+    }
+
+    /**
+     * 람다 함수마다 현재 동시 호출 한도(aws.lambda.concurrency.limit)와 진행 중인 호출 수(aws.lambda.concurrency.in.flight)를 등록한다.
+     */
+    public AWSLambdaConcurrencyLimiter monitor(AWSLambdaConcurrencyLimiter concurrencyLimiter) {
+        FunctionCounter.builder("aws.lambda.concurrency.rejected", concurrencyLimiter, AWSLambdaConcurrencyLimiter::getRejectedCount).register(registry);
+        concurrencyLimiter.addFunctionListener(functionArn -> {
+            Gauge.builder("aws.lambda.concurrency.limit", concurrencyLimiter, limiter -> limiter.getLimit(functionArn)).tag("function", functionArn).register(registry);
+            Gauge.builder("aws.lambda.concurrency.in.flight", concurrencyLimiter, limiter -> limiter.getInFlight(functionArn)).tag("function", functionArn).register(registry);
+        });
+        return concurrencyLimiter;
+    }
+
+    public AWSLambdaInvocationHedger monitor(AWSLambdaInvocationHedger hedger) {
+        FunctionCounter.builder("aws.lambda.hedger.hedged", hedger, AWSLambdaInvocationHedger::getHedgedCount).register(registry);
+        FunctionCounter.builder("aws.lambda.hedger.won", hedger, AWSLambdaInvocationHedger::getHedgeWonCount).register(registry);
+        FunctionCounter.builder("aws.lambda.hedger.budget.exhausted", hedger, AWSLambdaInvocationHedger::getBudgetExhaustedCount).register(registry);
+        return hedger;
+    }
+
+    public AWSLambdaRetryPolicy monitor(AWSLambdaRetryPolicy retryPolicy) {
+        FunctionCounter.builder("aws.lambda.retry.retries", retryPolicy, AWSLambdaRetryPolicy::getRetryCount).register(registry);
+        FunctionCounter.builder("aws.lambda.retry.budget.exhausted", retryPolicy, AWSLambdaRetryPolicy::getBudgetExhaustedCount).register(registry);
+        FunctionCounter.builder("aws.lambda.retry.deadline.exceeded", retryPolicy, AWSLambdaRetryPolicy::getDeadlineExceededCount).register(registry);
+        return retryPolicy;
+    }
+
+    /**
+     * 워밍업 호출 지표를 등록하고, 이후 라우트 호출을 워밍업 여부로 나누어 기록한다.
+     */
+    public AWSLambdaKeepWarmScheduler monitor(AWSLambdaKeepWarmScheduler keepWarmScheduler) {
+        FunctionCounter.builder(WARMING_WARMUPS, keepWarmScheduler, AWSLambdaKeepWarmScheduler::getWarmupCount).register(registry);
+        FunctionCounter.builder(WARMING_ABSORBED_COLD_STARTS, keepWarmScheduler, AWSLambdaKeepWarmScheduler::getAbsorbedColdStartCount).register(registry);
+        FunctionCounter.builder(WARMING_CAPPED, keepWarmScheduler, AWSLambdaKeepWarmScheduler::getCappedCount).register(registry);
+        FunctionCounter.builder(WARMING_FAILURES, keepWarmScheduler, AWSLambdaKeepWarmScheduler::getFailedCount).register(registry);
+        this.keepWarmScheduler = keepWarmScheduler;
+        return keepWarmScheduler;
+    }
+
+    /**
+     * 람다 클라이언트의 연결 풀과 비동기 호출 스레드풀의 포화 상태를 등록한다.
+     */
+    public AWSLambdaConnectionPool monitor(AWSLambdaConnectionPool connectionPool) {
+        Gauge.builder("aws.lambda.connections.leased", connectionPool, AWSLambdaConnectionPool::getLeasedConnections).register(registry);
+        Gauge.builder("aws.lambda.connections.available", connectionPool, AWSLambdaConnectionPool::getAvailableConnections).register(registry);
+        Gauge.builder("aws.lambda.connections.pending", connectionPool, AWSLambdaConnectionPool::getPendingConnections).register(registry);
+        Gauge.builder("aws.lambda.connections.max", connectionPool, AWSLambdaConnectionPool::getMaxConnections).register(registry);
+        Gauge.builder("aws.lambda.client.threads.active", connectionPool, AWSLambdaConnectionPool::getActiveThreads).register(registry);
+        Gauge.builder("aws.lambda.client.threads.max", connectionPool, AWSLambdaConnectionPool::getMaxThreads).register(registry);
+        Gauge.builder("aws.lambda.client.queued", connectionPool, AWSLambdaConnectionPool::getQueuedInvocations).register(registry);
+        return connectionPool;
+    }
+
+    /**
+     * errorType마다 함수 오류 수를 등록한다. 처음 나타난 errorType의 카운터는 그때 등록한다.
+     * 라우트별 {@link #FUNCTION_ERRORS}와 태그 구성이 다르므로 다른 이름({@link #FUNCTION_ERRORS_BY_TYPE})을 사용한다.
+     */
+    public AWSLambdaFunctionErrorHandler monitor(AWSLambdaFunctionErrorHandler errorHandler) {
+        errorHandler.addErrorTypeListener(errorType -> FunctionCounter.builder(FUNCTION_ERRORS_BY_TYPE, errorHandler, handler -> handler.getErrorCount(errorType))
+                                                                      .tag("error.type", errorType)
+                                                                      .register(registry));
+        FunctionCounter.builder("aws.lambda.function.errors.logs.suppressed", errorHandler, AWSLambdaFunctionErrorHandler::getSuppressedCount).register(registry);
+        return errorHandler;
+    }
+
+    public AWSLambdaClaimCheck monitor(AWSLambdaClaimCheck claimCheck) {
+        FunctionCounter.builder("aws.lambda.claim.check.stored", claimCheck, AWSLambdaClaimCheck::getStoredPayloadCount).register(registry);
+        FunctionCounter.builder("aws.lambda.claim.check.retrieved", claimCheck, AWSLambdaClaimCheck::getRetrievedPayloadCount).register(registry);
+        return claimCheck;
+    }
+
+    /**
+     * @param percentileHistogram true 라면 응답시간과 페이로드 크기를 백분위수 히스토그램으로 내보낸다. 이미 등록된 지표에는 적용되지 않는다.
+     */
+    public void setPercentileHistogram(boolean percentileHistogram) {
+        this.percentileHistogram = percentileHistogram;
+    }
+
+    /**
+     * @param factor 평소 호출 시간의 몇 배 이상이면 콜드 스타트로 추정할지
+     * @param minimum 평소 호출 시간이 짧더라도, 이 시간 이상 길어져야 콜드 스타트로 추정한다.
+     */
+    public void setColdStartThreshold(double factor, long minimum, TimeUnit unit) {
+        this.coldStartFactor = factor;
+        this.coldStartMinimumNanos = unit.toNanos(minimum);
+    }
+
+    /**
+     * @param warmupSamples 평소 호출 시간을 추정하기 전까지는 호출 시간으로 콜드 스타트를 추정하지 않는다.
+     */
+    public void setColdStartWarmupSamples(int warmupSamples) {
+        this.coldStartWarmupSamples = warmupSamples;
+    }
+
+    public void setLatencyWeight(double latencyWeight) {
+        this.latencyWeight = latencyWeight;
+    }
+
+
+    /**
+     * 게이트웨이 요청의 처리 결과
+     */
+    public enum Outcome {
+
+        SUCCESS, CACHE_HIT, ACCEPTED, FALLBACK, FUNCTION_ERROR, TIMEOUT, REJECTED, ERROR;
+
+        final String tag = name().toLowerCase();
+
+    }
+
+    /**
+     * 라우트 하나의 지표, 람다 클라이언트 호출을 측정하는 인터셉터로도 사용한다.
+     */
+    public class RouteMetrics implements AWSLambdaInvocationInterceptor {
+
+        private final Tags tags;
+        private final String function;
+        private final Timer[] requests = new Timer[Outcome.values().length];
+        private final Timer invocations;
+        private final DistributionSummary requestPayloads;
+        private final DistributionSummary responsePayloads;
+        private final Counter functionErrors;
+        private final Counter throttles;
+        private final Counter timeouts;
+        private final Counter[] fallbacks = new Counter[FallbackCause.values().length];
+        private final Counter logColdStarts;
+        private final Counter latencyColdStarts;
+        private final Counter cancellations;
+        private final Counter reclaimedConnections;
+        private final Counter[] warmingInvocations = new Counter[2];
+        private final Counter[] warmingColdStarts = new Counter[2];
+
+        // 경합으로 일부 갱신이 사라져도 추정에는 지장이 없으므로 잠그지 않는다.
+        private volatile double latency = 0;
+        private volatile int samples = 0;
+
+        RouteMetrics(String route, String function) {
+            this.tags = Tags.of("route", route, "function", function);
+            this.function = function;
+            this.invocations = Timer.builder(INVOCATIONS).tags(tags).publishPercentileHistogram(percentileHistogram).register(registry);
+            this.requestPayloads = payloadSummary(REQUEST_PAYLOAD);
+            this.responsePayloads = payloadSummary(RESPONSE_PAYLOAD);
+            this.functionErrors = Counter.builder(FUNCTION_ERRORS).tags(tags).register(registry);
+            this.throttles = Counter.builder(THROTTLES).tags(tags).register(registry);
+            this.timeouts = Counter.builder(TIMEOUTS).tags(tags).register(registry);
+            this.logColdStarts = Counter.builder(COLD_STARTS).tags(tags).tag("source", "log").register(registry);
+            this.latencyColdStarts = Counter.builder(COLD_STARTS).tags(tags).tag("source", "latency").register(registry);
+            this.cancellations = Counter.builder(CANCELLATIONS).tags(tags).register(registry);
+            this.reclaimedConnections = Counter.builder(RECLAIMED_CONNECTIONS).tags(tags).register(registry);
+        }
+
+        private DistributionSummary payloadSummary(String name) {
+            return DistributionSummary.builder(name).tags(tags).baseUnit("bytes").publishPercentileHistogram(percentileHistogram).register(registry);
+        }
+
+        @Override
+        public CompletableFuture<InvokeResult> intercept(InvokeRequest request, AWSLambdaInvocationExecution execution) {
+            ByteBuffer payload = request.getPayload();
+            requestPayloads.record(Objects.nonNull(payload) ? payload.remaining() : 0);
+
+            long started = System.nanoTime();
+            CompletableFuture<InvokeResult> invocation = execution.execute(request);
+            invocation.whenComplete((result, error) -> {
+                if (Objects.nonNull(result)) {
+                    recordInvocation(request.getFunctionName(), result, System.nanoTime() - started);
+                } else if (error instanceof AWSLambdaClientRequest.InvocationCancelledException) {
+                    cancellations.increment();
+                    if (((AWSLambdaClientRequest.InvocationCancelledException) error).isReclaimed()) {
+                        reclaimedConnections.increment();
+                    }
+                } else if (isThrottled(error)) {
+                    throttles.increment();
+                }
+            });
+            return invocation;
+        }
+
+        void recordInvocation(InvokeResult result, long latencyNanos) {
+            recordInvocation(function, result, latencyNanos);
+        }
+
+        /**
+         * @param functionArn 실제로 호출된 람다 ARN, 리전 선택기가 고른 함수라면 라우트의 람다 ARN과 다를 수 있다.
+         */
+        void recordInvocation(String functionArn, InvokeResult result, long latencyNanos) {
+            invocations.record(latencyNanos, TimeUnit.NANOSECONDS);
+            ByteBuffer payload = result.getPayload();
+            responsePayloads.record(Objects.nonNull(payload) ? payload.remaining() : 0);
+            if (Objects.nonNull(result.getFunctionError())) {
+                functionErrors.increment();
+            }
+
+            boolean coldStart;
+            if (Objects.nonNull(result.getLogResult())) {
+                coldStart = isColdStartLog(result.getLogResult());
+                if (coldStart) {
+                    logColdStarts.increment();
+                }
+            } else {
+                coldStart = isLatencyOutlier(latencyNanos);
+                if (coldStart) {
+                    latencyColdStarts.increment();
+                }
+            }
+            if (Objects.nonNull(keepWarmScheduler)) {
+                recordWarming(keepWarmScheduler.isWarmed(Objects.nonNull(functionArn) ? functionArn : function), coldStart);
+            }
+            if (coldStart) {
+                return;
+            }
+            int samples = this.samples;
+            double latency = this.latency;
+            this.latency = samples == 0 ? latencyNanos : latency + latencyWeight * (latencyNanos - latency);
+            if (samples < coldStartWarmupSamples) {
+                this.samples = samples + 1;
+            }
+        }
+
+        void recordWarming(boolean warmed, boolean coldStart) {
+            int index = warmed ? 1 : 0;
+            Counter counter = warmingInvocations[index];
+            if (Objects.isNull(counter)) {
+                counter = Counter.builder(WARMING_INVOCATIONS).tags(tags).tag("warmed", String.valueOf(warmed)).register(registry);
+                warmingInvocations[index] = counter;
+            }
+            counter.increment();
+            if (coldStart) {
+                counter = warmingColdStarts[index];
+                if (Objects.isNull(counter)) {
+                    counter = Counter.builder(WARMING_COLD_STARTS).tags(tags).tag("warmed", String.valueOf(warmed)).register(registry);
+                    warmingColdStarts[index] = counter;
+                }
+                counter.increment();
+            }
+        }
+
+        boolean isLatencyOutlier(long latencyNanos) {
+            if (samples < coldStartWarmupSamples) {
+                return false;
+            }
+            double latency = this.latency;
+            return latencyNanos > latency * coldStartFactor && latencyNanos - latency > coldStartMinimumNanos;
+        }
+
+        /**
+         * @param requestNanos 게이트웨이가 요청을 받은 후 응답할 때까지의 시간
+         */
+        public void recordRequest(Outcome outcome, long requestNanos) {
+            Timer timer = requests[outcome.ordinal()];
+            if (Objects.isNull(timer)) {
+                // 같은 이름과 태그라면 레지스트리가 같은 지표를 돌려주므로, 동시에 등록되어도 괜찮다.
+                timer = Timer.builder(REQUESTS).tags(tags).tag("outcome", outcome.tag).publishPercentileHistogram(percentileHistogram).register(registry);
+                requests[outcome.ordinal()] = timer;
+            }
+            timer.record(requestNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Hystrix 명령이 끝난 후 타임아웃과 폴백 응답 여부를 기록한다.
+         *
+         * @return 폴백 응답이라면 {@link Outcome#FALLBACK}, 타임아웃이라면 {@link Outcome#TIMEOUT}, 그 외에는 null
+         */
+        public Outcome recordCommand(HystrixInvokableInfo<?> command) {
+            if (command.isResponseTimedOut()) {
+                timeouts.increment();
+            }
+            if (!command.isResponseFromFallback()) {
+                return command.isResponseTimedOut() ? Outcome.TIMEOUT : null;
+            }
+
+            FallbackCause cause = FallbackCause.of(command);
+            Counter counter = fallbacks[cause.ordinal()];
+            if (Objects.isNull(counter)) {
+                counter = Counter.builder(FALLBACKS).tags(tags).tag("cause", cause.tag).register(registry);
+                fallbacks[cause.ordinal()] = counter;
+            }
+            counter.increment();
+            return Outcome.FALLBACK;
+        }
+
+        public double getLatency() {
+            return latency;
+        }
+
+    }
+
+    enum FallbackCause {
+
+        TIMEOUT, SHORT_CIRCUITED, REJECTED, FAILURE;
+
+        final String tag = name().toLowerCase();
+
+        static FallbackCause of(HystrixInvokableInfo<?> command) {
+            if (command.isResponseTimedOut()) {
+                return TIMEOUT;
+            }
+            if (command.isResponseShortCircuited()) {
+                return SHORT_CIRCUITED;
+            }
+            if (command.isResponseRejected()) {
+                return REJECTED;
+            }
+            return FAILURE;
+        }
+
+    }
+
+    static boolean isThrottled(Throwable error) {
+        Throwable cause = error instanceof CompletionException && Objects.nonNull(error.getCause()) ? error.getCause() : error;
+        return cause instanceof TooManyRequestsException
+                || (cause instanceof AmazonServiceException && ((AmazonServiceException) cause).getStatusCode() == 429);
+    }
+
+    /**
+     * LogType이 Tail인 호출은 로그의 마지막 4KB가 Base64로 인코딩되어 오며, 콜드 스타트였다면 REPORT 줄에 Init Duration이 기록된다.
+     */
+    static boolean isColdStartLog(String logResult) {
+        try {
+            return new String(Base64.getDecoder().decode(logResult), StandardCharsets.UTF_8).contains(INIT_DURATION);
+        } catch (IllegalArgumentException error) {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,481 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.util.StringUtils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * multipart/form-data 요청을 파트 단위로 읽으면서 람다 페이로드로 변환한다.
+ *
+ * <pre>
+ * {"parts": [{"name": "file", "filename": "a.png", "contentType": "image/png", "content": "(Base64)"}, ...]}
+ * </pre>
+ *
+ * 요청 본문을 메모리에 올리지 않고 파트의 내용을 읽는 즉시 Base64로 인코딩해서 기록한다.
+ * 페이로드가 memoryThreshold 보다 커지면 임시 파일로 옮겨 기록하고, 완료되면 파일을 읽기 전용으로 매핑한 {@link java.nio.MappedByteBuffer}를 페이로드로 돌려준다.
+ * 요청마다 사용하는 힙 메모리는 memoryThreshold와 읽기 버퍼 크기로 제한되며, 페이로드는 람다를 호출할 때 파일에서 바로 읽힌다.
+ * {@link org.springframework.cloud.netflix.aws.lambda.support.NettyTransport}는 매핑된 페이로드를 복사하지 않고 소켓으로 보내지만,
+ * AWS SDK v1 클라이언트({@link org.springframework.cloud.netflix.aws.lambda.support.SdkClientTransport})는 요청을 만들면서 페이로드를 힙으로 복사한다.
+ * 임시 파일은 매핑한 후 바로 삭제하므로 파일 이름은 남지 않으며, 디스크 공간은 호출이 끝나고 페이로드가 수거되어 매핑이 해제될 때 반환된다.
+ * 람다 호출 한도를 넘는 업로드는 {@link AWSLambdaClaimCheck}를 사용하면 {@link #writeParts(ServerHttpRequest, OutputStream)}로 저장소에 바로 기록된다.
+ *
+ * 페이로드는 maxPayloadBytes(기본 6MB, 람다 동기 호출 한도)를 넘을 수 없다. Content-Length로 Base64 인코딩 후의 크기를 예상할 수 있다면
+ * 본문을 읽기 전에, 그렇지 않다면 기록하는 도중에 한도를 넘는 즉시 {@link PayloadTooLargeException}이 발생한다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+@Slf4j
+public class AWSLambdaMultipartPayloadWriter {
+
+    public static final long DEFAULT_MAX_PAYLOAD_BYTES = 6 * 1024 * 1024;
+    public static final int DEFAULT_MEMORY_THRESHOLD = 64 * 1024;
+
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+    private static final int MAX_HEADER_BYTES = 16 * 1024;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private long maxPayloadBytes = DEFAULT_MAX_PAYLOAD_BYTES;
+    private int memoryThreshold = DEFAULT_MEMORY_THRESHOLD;
+    private Path tempDirectory = Paths.get(System.getProperty("java.io.tmpdir"));
+
+    /**
+     * 파트마다 이름, 파일 이름, 컨텐츠 타입과 Base64로 인코딩한 내용을 기록한다.
+     */
+    public ByteBuffer write(ServerHttpRequest request) throws IOException {
+        return write(request, maxPayloadBytes);
+    }
+
+    /**
+     * @param maxPayloadBytes 요청에 적용할 페이로드 최대 크기, claim check 처럼 람다 호출 한도를 넘는 페이로드를 다룰 수 있을 때 사용한다.
+     */
+    public ByteBuffer write(ServerHttpRequest request, long maxPayloadBytes) throws IOException {
+        String boundary = getBoundary(request);
+        return write(request, output -> writeParts(request, boundary, output), maxPayloadBytes);
+    }
+
+    /**
+     * 페이로드를 output에 바로 기록한다. 크기 제한은 output에 맡긴다.
+     */
+    public void writeParts(ServerHttpRequest request, OutputStream output) throws IOException {
+        writeParts(request, getBoundary(request), output);
+    }
+
+    protected void writeParts(ServerHttpRequest request, String boundary, OutputStream output) throws IOException {
+        try (JsonGenerator generator = jsonFactory.createGenerator(output)) {
+            MultipartReader reader = new MultipartReader(request.getBody(), boundary);
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("parts");
+            Part part;
+            while ((part = reader.next()) != null) {
+                generator.writeStartObject();
+                generator.writeStringField("name", part.name);
+                generator.writeStringField("filename", part.filename);
+                generator.writeStringField("contentType", part.contentType);
+                generator.writeFieldName("content");
+                generator.writeBinary(Base64Variants.MIME_NO_LINEFEEDS, part.content, -1);
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * 크기 제한과 임시 파일 전환만 적용하고, 페이로드 형식은 bodyWriter에 맡긴다(예: 프록시 이벤트).
+     */
+    public ByteBuffer write(ServerHttpRequest request, BodyWriter bodyWriter) throws IOException {
+        return write(request, bodyWriter, maxPayloadBytes);
+    }
+
+    public ByteBuffer write(ServerHttpRequest request, BodyWriter bodyWriter, long maxPayloadBytes) throws IOException {
+        checkContentLength(request, maxPayloadBytes);
+
+        PayloadOutputStream output = new PayloadOutputStream(maxPayloadBytes, memoryThreshold, tempDirectory);
+        try {
+            bodyWriter.write(output);
+            return output.toByteBuffer();
+        } finally {
+            output.release();
+        }
+    }
+
+    /**
+     * @throws PayloadTooLargeException Content-Length로 예상한 Base64 인코딩 후의 크기가 maxPayloadBytes를 넘는 경우
+     */
+    public void checkContentLength(ServerHttpRequest request, long maxPayloadBytes) {
+        long contentLength = request.getHeaders().getContentLength();
+        if (contentLength > 0 && (contentLength + 2) / 3 * 4 > maxPayloadBytes) {
+            throw new PayloadTooLargeException(maxPayloadBytes);
+        }
+    }
+
+    protected String getBoundary(ServerHttpRequest request) {
+        MediaType contentType = request.getHeaders().getContentType();
+        String boundary = Objects.nonNull(contentType) ? contentType.getParameter("boundary") : null;
+        if (!StringUtils.hasText(boundary)) {
+            throw new MalformedMultipartException("multipart 경계(boundary)가 없습니다.");
+        }
+        return StringUtils.trimTrailingCharacter(StringUtils.trimLeadingCharacter(boundary, '"'), '"');
+    }
+
+    public void setMaxPayloadBytes(long maxPayloadBytes) {
+        this.maxPayloadBytes = maxPayloadBytes;
+    }
+
+    public long getMaxPayloadBytes() {
+        return maxPayloadBytes;
+    }
+
+    /**
+     * @param memoryThreshold 요청마다 메모리에 기록할 수 있는 최대 크기, 넘으면 임시 파일에 기록한다.
+     */
+    public void setMemoryThreshold(int memoryThreshold) {
+        this.memoryThreshold = memoryThreshold;
+    }
+
+    public void setTempDirectory(Path tempDirectory) {
+        this.tempDirectory = Objects.requireNonNull(tempDirectory);
+    }
+
+
+    @FunctionalInterface
+    public interface BodyWriter {
+        void write(OutputStream output) throws IOException;
+    }
+
+    static class Part {
+
+        final String name;
+        final String filename;
+        final String contentType;
+        final InputStream content;
+
+        Part(String name, String filename, String contentType, InputStream content) {
+            this.name = name;
+            this.filename = filename;
+            this.contentType = contentType;
+            this.content = content;
+        }
+
+    }
+
+    /**
+     * 고정 크기 버퍼 하나로 multipart 본문을 읽는다. 파트의 내용은 다음 경계를 만날 때까지 {@link InputStream}으로 제공된다.
+     */
+    static class MultipartReader {
+
+        private final InputStream input;
+        private final byte[] delimiter;
+        private final byte[] buffer;
+        private int head = 0;
+        private int tail = 0;
+        private boolean endOfStream = false;
+        private boolean finished = false;
+        private PartInputStream current;
+
+        MultipartReader(InputStream input, String boundary) {
+            this.input = Objects.requireNonNull(input, "요청 본문이 없습니다.");
+            this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+            this.buffer = new byte[Math.max(READ_BUFFER_SIZE, delimiter.length * 4)];
+            // 첫 경계 앞에는 CRLF가 없으므로, 프리앰블을 하나의 파트처럼 건너뛸 수 있게 미리 넣어둔다.
+            this.buffer[tail++] = '\r';
+            this.buffer[tail++] = '\n';
+            this.current = new PartInputStream();
+        }
+
+        /**
+         * @return 다음 파트, 마지막 경계를 만났다면 null
+         */
+        Part next() throws IOException {
+            if (finished) {
+                return null;
+            }
+            byte[] scratch = new byte[256];
+            while (current.read(scratch, 0, scratch.length) != -1) {
+                // 읽지 않은 파트의 나머지를 건너뛴다.
+            }
+            if (!fill(2)) {
+                throw new MalformedMultipartException("multipart 본문이 끝나지 않았습니다.");
+            }
+            if (buffer[head] == '-' && buffer[head + 1] == '-') {
+                finished = true;
+                return null;
+            }
+            readLine();
+
+            String name = null, filename = null, contentType = null;
+            int headerBytes = 0;
+            String line;
+            while (!(line = readLine()).isEmpty()) {
+                headerBytes += line.length();
+                if (headerBytes > MAX_HEADER_BYTES) {
+                    throw new MalformedMultipartException("파트 헤더가 너무 큽니다.");
+                }
+                int colon = line.indexOf(':');
+                if (colon < 0) {
+                    continue;
+                }
+                String headerName = line.substring(0, colon).trim();
+                String headerValue = line.substring(colon + 1).trim();
+                if ("Content-Disposition".equalsIgnoreCase(headerName)) {
+                    name = getParameter(headerValue, "name");
+                    filename = getParameter(headerValue, "filename");
+                } else if ("Content-Type".equalsIgnoreCase(headerName)) {
+                    contentType = headerValue;
+                }
+            }
+            current = new PartInputStream();
+            return new Part(name, filename, contentType, current);
+        }
+
+        private String readLine() throws IOException {
+            int start = head;
+            while (true) {
+                for (int index = start; index + 1 < tail; index++) {
+                    if (buffer[index] == '\r' && buffer[index + 1] == '\n') {
+                        String line = new String(buffer, head, index - head, StandardCharsets.UTF_8);
+                        head = index + 2;
+                        return line;
+                    }
+                }
+                int scanned = tail - head;
+                if (scanned >= buffer.length - 1 || !fill(scanned + 1)) {
+                    throw new MalformedMultipartException("파트 헤더를 읽을 수 없습니다.");
+                }
+                start = head + Math.max(0, scanned - 1);
+            }
+        }
+
+        /**
+         * 버퍼에 읽지 않은 바이트가 최소 minimum 개 이상 있도록 입력을 더 읽는다.
+         */
+        private boolean fill(int minimum) throws IOException {
+            if (tail - head >= minimum) {
+                return true;
+            }
+            if (head > 0) {
+                System.arraycopy(buffer, head, buffer, 0, tail - head);
+                tail -= head;
+                head = 0;
+            }
+            while (tail - head < minimum && !endOfStream) {
+                int read = input.read(buffer, tail, buffer.length - tail);
+                if (read < 0) {
+                    endOfStream = true;
+                } else {
+                    tail += read;
+                }
+            }
+            return tail - head >= minimum;
+        }
+
+        private int indexOfDelimiter() {
+            int last = tail - delimiter.length;
+            for (int index = head; index <= last; index++) {
+                int matched = 0;
+                while (matched < delimiter.length && buffer[index + matched] == delimiter[matched]) {
+                    matched++;
+                }
+                if (matched == delimiter.length) {
+                    return index;
+                }
+            }
+            return -1;
+        }
+
+        private static String getParameter(String headerValue, String parameterName) {
+            for (String token : headerValue.split(";")) {
+                String parameter = token.trim();
+                int equals = parameter.indexOf('=');
+                if (equals > 0 && parameter.substring(0, equals).trim().equalsIgnoreCase(parameterName)) {
+                    String value = parameter.substring(equals + 1).trim();
+                    if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                        value = value.substring(1, value.length() - 1);
+                    }
+                    return value;
+                }
+            }
+            return null;
+        }
+
+        class PartInputStream extends InputStream {
+
+            private boolean ended = false;
+
+            @Override
+            public int read() throws IOException {
+                byte[] single = new byte[1];
+                return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] bytes, int off, int len) throws IOException {
+                if (ended) {
+                    return -1;
+                }
+                if (len == 0) {
+                    return 0;
+                }
+                fill(delimiter.length);
+                int index = indexOfDelimiter();
+                int available;
+                if (index >= 0) {
+                    available = index - head;
+                } else if (endOfStream) {
+                    throw new MalformedMultipartException("multipart 본문이 끝나지 않았습니다.");
+                } else {
+                    // 경계의 일부일 수 있는 마지막 바이트는 남겨둔다.
+                    available = tail - head - (delimiter.length - 1);
+                }
+                if (available == 0) {
+                    head += delimiter.length;
+                    ended = true;
+                    return -1;
+                }
+                int count = Math.min(len, available);
+                System.arraycopy(buffer, head, bytes, off, count);
+                head += count;
+                return count;
+            }
+
+        }
+
+    }
+
+    /**
+     * memoryThreshold 까지는 메모리에, 그 이상은 임시 파일에 기록하는 출력 스트림
+     */
+    static class PayloadOutputStream extends OutputStream {
+
+        private final long limit;
+        private final Path directory;
+        private final byte[] memory;
+        private long size = 0;
+        private Path file;
+        private FileChannel channel;
+        private boolean completed = false;
+
+        PayloadOutputStream(long limit, int memoryThreshold, Path directory) {
+            this.limit = limit;
+            this.directory = directory;
+            this.memory = new byte[memoryThreshold];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int off, int len) throws IOException {
+            if (size + len > limit) {
+                throw new PayloadTooLargeException(limit);
+            }
+            if (Objects.isNull(channel) && size + len <= memory.length) {
+                System.arraycopy(bytes, off, memory, (int) size, len);
+                size += len;
+                return;
+            }
+            if (Objects.isNull(channel)) {
+                spill();
+            }
+            ByteBuffer source = ByteBuffer.wrap(bytes, off, len);
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+            size += len;
+        }
+
+        private void spill() throws IOException {
+            file = Files.createTempFile(directory, "lambda-payload-", ".json");
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            ByteBuffer source = ByteBuffer.wrap(memory, 0, (int) size);
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+            log.debug("spill lambda payload to {}", file);
+        }
+
+        /**
+         * 임시 파일에 기록했다면 파일을 읽기 전용으로 매핑한다. 매핑은 채널을 닫고 파일을 삭제해도 유지된다.
+         */
+        ByteBuffer toByteBuffer() throws IOException {
+            completed = true;
+            if (Objects.isNull(channel)) {
+                return ByteBuffer.wrap(Arrays.copyOf(memory, (int) size));
+            }
+            if (channel.size() < size) {
+                throw new EOFException("임시 파일이 페이로드보다 작습니다: " + file);
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size).asReadOnlyBuffer();
+        }
+
+        /**
+         * JSON 생성기가 닫더라도 페이로드를 완성할 수 있도록 아무것도 하지 않는다.
+         */
+        @Override
+        public void close() {
+
+        }
+
+        /**
+         * 임시 파일을 닫고 삭제한다. 매핑된 파일을 삭제할 수 없는 운영체제라면 JVM이 종료될 때 삭제한다.
+         */
+        void release() throws IOException {
+            if (Objects.isNull(channel)) {
+                return;
+            }
+            try {
+                channel.close();
+            } finally {
+                channel = null;
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException error) {
+                    log.debug("could not delete mapped lambda payload {}: {}", file, error.getMessage());
+                    file.toFile().deleteOnExit();
+                }
+                if (!completed) {
+                    log.debug("discard lambda payload: {}", file);
+                }
+            }
+        }
+
+    }
+
+    public static class PayloadTooLargeException extends RuntimeException {
+        public PayloadTooLargeException(long limit) {
+            super("람다 페이로드가 " + limit + " bytes를 넘습니다.");
+        }
+    }
+
+    public static class MalformedMultipartException extends RuntimeException {
+        MalformedMultipartException(String message) {
+            super(message);
+        }
+
+        public HttpStatus getStatus() {
+            return HttpStatus.BAD_REQUEST;
+        }
+    }
+
+}
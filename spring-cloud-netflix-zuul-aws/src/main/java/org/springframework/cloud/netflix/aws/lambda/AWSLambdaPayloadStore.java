@@ -0,0 +1,45 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 람다 호출 한도를 넘는 페이로드를 보관하는 객체 저장소, {@link AWSLambdaClaimCheck}가 사용한다.
+ * S3의 multipart upload와 ranged GET처럼 객체를 여러 조각으로 나눠 동시에 기록하고, 필요한 범위만 읽을 수 있어야 한다.
+ *
+ * 위치(location)는 람다 함수에 그대로 전달되므로 함수가 해석할 수 있는 형식(예: s3://bucket/key, file:///path)이어야 하며,
+ * 람다 함수가 응답으로 돌려준 위치도 읽게 되므로 저장소가 관리하지 않는 위치는 거부해야 한다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+public interface AWSLambdaPayloadStore {
+
+    /**
+     * 새 객체를 만든다.
+     *
+     * @param size 객체의 전체 크기, 본문을 읽으면서 기록하는 경우처럼 미리 알 수 없다면 -1
+     * @return 객체의 위치
+     */
+    String create(long size) throws IOException;
+
+    /**
+     * 객체의 offset 위치부터 part를 기록한다. 서로 다른 조각은 동시에 기록될 수 있다.
+     */
+    CompletableFuture<Void> write(String location, long offset, ByteBuffer part);
+
+    /**
+     * 모든 조각이 기록된 후 호출되며, 완료된 후에야 람다 함수가 객체를 읽을 수 있다.
+     */
+    default CompletableFuture<Void> complete(String location) {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * 객체의 offset 위치부터 최대 length 만큼 읽는다. 객체의 끝에 도달했다면 더 적게 읽을 수 있다.
+     */
+    CompletableFuture<ByteBuffer> read(String location, long offset, int length);
+
+    void delete(String location) throws IOException;
+
+}
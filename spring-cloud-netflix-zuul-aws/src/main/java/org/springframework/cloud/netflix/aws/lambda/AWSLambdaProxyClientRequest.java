@@ -0,0 +1,37 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.amazonaws.services.lambda.AWSLambdaAsync;
+import com.amazonaws.services.lambda.model.InvokeResult;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * API Gateway 프록시 통합 이벤트로 람다 함수를 호출하고, 프록시 응답을 HTTP 응답으로 변환하는 요청
+ *
+ * @see AWSLambdaProxyEventWriter
+ * @see AWSLambdaProxyClientResponse
+ * @author arawn.kr@gmail.com
+ */
+public class AWSLambdaProxyClientRequest extends AWSLambdaClientRequest {
+
+    public AWSLambdaProxyClientRequest(AWSLambdaAsync lambdaClient, String functionArn, ClientContext clientContext, ByteBuffer proxyEvent, List<AWSLambdaInvocationInterceptor> interceptors) {
+        super(lambdaClient, functionArn, clientContext, proxyEvent, interceptors);
+    }
+
+    public AWSLambdaProxyClientRequest(AWSLambdaTransport transport, String functionArn, ClientContext clientContext, ByteBuffer proxyEvent, List<AWSLambdaInvocationInterceptor> interceptors) {
+        super(transport, functionArn, clientContext, proxyEvent, interceptors);
+    }
+
+    @Override
+    protected ClientHttpResponse createResponse(InvokeResult result) {
+        return AWSLambdaProxyClientResponse.of(result);
+    }
+
+    @Override
+    public String toString() {
+        return "AWSLambdaProxyClientRequest { functionArn='" + getFunctionArn() + "', clientContext=" + getClientContext() + '}';
+    }
+
+}
@@ -0,0 +1,216 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.amazonaws.services.lambda.model.InvokeResult;
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.AbstractClientHttpResponse;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * API Gateway 람다 프록시 통합 응답({"statusCode", "headers", "multiValueHeaders", "isBase64Encoded", "body"})을 HTTP 응답으로 변환한다.
+ * 스트리밍 파서로 필드를 읽으며, 본문은 필요할 때 한 번만 해석한다. 이스케이프 문자가 없는 텍스트 본문은 페이로드를 복사하지 않고 그대로 잘라서 사용한다.
+ * 프록시 응답 형식이 아니라면 API Gateway와 같이 502(Bad Gateway)로 응답한다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+@Slf4j
+public class AWSLambdaProxyClientResponse extends AbstractClientHttpResponse {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final byte[] MALFORMED_RESPONSE = "{\"message\": \"Internal server error\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final InvokeResult invokeResult;
+    private final HttpHeaders headers = new HttpHeaders();
+    private int statusCode = 200;
+    private boolean base64Encoded = false;
+    private byte[] payload;
+    private int bodyOffset = -1;
+    private ByteBuffer body;
+    private boolean malformed = false;
+
+    /**
+     * 람다 함수가 오류를 던졌다면 {@link AWSLambdaClientResponse}로 응답한다.
+     */
+    public static ClientHttpResponse of(InvokeResult invokeResult) {
+        if (StringUtils.hasText(invokeResult.getFunctionError())) {
+            return new AWSLambdaClientResponse(invokeResult);
+        }
+        return new AWSLambdaProxyClientResponse(invokeResult);
+    }
+
+    public AWSLambdaProxyClientResponse(InvokeResult invokeResult) {
+        this.invokeResult = invokeResult;
+        try {
+            parse();
+        } catch (IOException | RuntimeException error) {
+            log.warn("malformed lambda proxy response: {}", error.getMessage());
+            this.malformed = true;
+            this.statusCode = HttpStatus.BAD_GATEWAY.value();
+            this.headers.clear();
+            this.headers.setContentType(MediaType.APPLICATION_JSON);
+            this.bodyOffset = -1;
+            this.body = ByteBuffer.wrap(MALFORMED_RESPONSE);
+        }
+    }
+
+    private void parse() throws IOException {
+        payload = toBytes(invokeResult.getPayload());
+        HttpHeaders singleValueHeaders = new HttpHeaders();
+        try (JsonParser parser = JSON_FACTORY.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalStateException("응답이 JSON 객체가 아닙니다.");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                switch (fieldName) {
+                    case "statusCode":
+                        statusCode = parser.getValueAsInt();
+                        break;
+                    case "headers":
+                        readHeaders(parser, token, singleValueHeaders);
+                        break;
+                    case "multiValueHeaders":
+                        readHeaders(parser, token, headers);
+                        break;
+                    case "isBase64Encoded":
+                        base64Encoded = parser.getValueAsBoolean();
+                        break;
+                    case "body":
+                        // isBase64Encoded가 본문 뒤에 올 수도 있으므로 위치만 기억한다.
+                        bodyOffset = token == JsonToken.VALUE_STRING ? (int) parser.getTokenLocation().getByteOffset() : -1;
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+        }
+        singleValueHeaders.forEach((name, values) -> {
+            if (!headers.containsKey(name)) {
+                headers.put(name, values);
+            }
+        });
+        if (statusCode < 100 || statusCode > 599) {
+            throw new IllegalStateException("올바른 상태 코드가 아닙니다: " + statusCode);
+        }
+    }
+
+    private static void readHeaders(JsonParser parser, JsonToken token, HttpHeaders target) throws IOException {
+        if (token != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            if (parser.nextToken() == JsonToken.START_ARRAY) {
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    target.add(name, parser.getValueAsString());
+                }
+            } else if (parser.getCurrentToken() != JsonToken.VALUE_NULL) {
+                target.set(name, parser.getValueAsString());
+            }
+        }
+    }
+
+    /**
+     * @return 프록시 응답 형식이 아니어서 502(Bad Gateway)로 바꾼 응답이라면 true
+     */
+    public boolean isMalformed() {
+        return malformed;
+    }
+
+    /**
+     * @return 응답 본문, 본문이 없다면 빈 버퍼
+     */
+    public ByteBuffer getPayload() throws IOException {
+        if (Objects.isNull(body)) {
+            body = bodyOffset < 0 ? ByteBuffer.allocate(0) : readBody();
+        }
+        return body.asReadOnlyBuffer();
+    }
+
+    private ByteBuffer readBody() throws IOException {
+        if (!base64Encoded) {
+            // 따옴표 사이에 이스케이프가 없다면 원래 바이트가 곧 UTF-8 본문이다.
+            for (int index = bodyOffset + 1; index < payload.length; index++) {
+                if (payload[index] == '"') {
+                    return ByteBuffer.wrap(payload, bodyOffset + 1, index - bodyOffset - 1).slice();
+                }
+                if (payload[index] == '\\') {
+                    break;
+                }
+            }
+        }
+
+        try (JsonParser parser = JSON_FACTORY.createParser(payload, bodyOffset, payload.length - bodyOffset)) {
+            parser.nextToken();
+            if (base64Encoded) {
+                return ByteBuffer.wrap(parser.getBinaryValue(Base64Variants.MIME_NO_LINEFEEDS));
+            }
+            return StandardCharsets.UTF_8.encode(CharBuffer.wrap(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength()));
+        }
+    }
+
+    private static byte[] toBytes(ByteBuffer buffer) {
+        if (Objects.isNull(buffer)) {
+            throw new IllegalStateException("응답 페이로드가 없습니다.");
+        }
+        ByteBuffer source = buffer.duplicate();
+        if (source.hasArray() && source.arrayOffset() + source.position() == 0 && source.remaining() == source.array().length) {
+            return source.array();
+        }
+        byte[] bytes = new byte[source.remaining()];
+        source.get(bytes);
+        return bytes;
+    }
+
+    @Override
+    public int getRawStatusCode() {
+        return statusCode;
+    }
+
+    @Override
+    public String getStatusText() {
+        try {
+            return HttpStatus.valueOf(statusCode).getReasonPhrase();
+        } catch (IllegalArgumentException error) {
+            return "";
+        }
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        return HttpHeaders.readOnlyHttpHeaders(headers);
+    }
+
+    @Override
+    public InputStream getBody() throws IOException {
+        return new AWSLambdaClientResponse.ByteBufferBackedInputStream(getPayload());
+    }
+
+    @Override
+    public void close() {
+
+    }
+
+    @Override
+    public String toString() {
+        return String.format("AWSLambdaProxyClientResponse { StatusCode: %d, AWS Request ID: %s }", statusCode,
+                             Objects.nonNull(invokeResult.getSdkResponseMetadata()) ? invokeResult.getSdkResponseMetadata().getRequestId() : null);
+    }
+
+}
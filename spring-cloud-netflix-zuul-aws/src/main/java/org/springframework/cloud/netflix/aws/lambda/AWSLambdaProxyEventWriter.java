@@ -0,0 +1,301 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerationException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.ServerHttpRequest;
+
+import java.io.*;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 요청을 AWS API Gateway 람다 프록시 통합 이벤트(REST API, payload format 1.0)로 변환한다.
+ * 중간 Map이나 JsonNode를 만들지 않고 Jackson 스트리밍 생성기로 스레드마다 재사용하는 버퍼에 바로 기록하며,
+ * 텍스트 본문은 조각마다 이스케이프해서, 그 외의 본문은 입력 스트림에서 바로 Base64로 인코딩해서 기록한다(isBase64Encoded).
+ *
+ * @author arawn.kr@gmail.com
+ */
+public class AWSLambdaProxyEventWriter {
+
+    public static final String PROXY_PATH_PARAMETER = "proxy";
+
+    private static final int DEFAULT_BUFFER_SIZE = 4096;
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+    private static final List<MediaType> TEXT_MEDIA_TYPES = Arrays.asList(
+            MediaType.valueOf("text/*"),
+            MediaType.APPLICATION_JSON,
+            MediaType.valueOf("application/*+json"),
+            MediaType.APPLICATION_XML,
+            MediaType.valueOf("application/*+xml"),
+            MediaType.APPLICATION_FORM_URLENCODED,
+            MediaType.valueOf("application/javascript"));
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final ThreadLocal<PooledBuffer> buffers = ThreadLocal.withInitial(PooledBuffer::new);
+
+    public ByteBuffer write(ServerHttpRequest request) throws IOException {
+        return write(request, Collections.emptyMap());
+    }
+
+    /**
+     * @param pathParameters 경로 변수, 라우트에서 벗어난 나머지 경로는 {@link #PROXY_PATH_PARAMETER}로 전달한다.
+     * @return 람다 호출에 사용할 페이로드, 스레드 버퍼와 공유하지 않는다.
+     */
+    public ByteBuffer write(ServerHttpRequest request, Map<String, String> pathParameters) throws IOException {
+        PooledBuffer buffer = buffers.get();
+        buffer.reset();
+        write(request, pathParameters, buffer);
+        return buffer.copy();
+    }
+
+    /**
+     * 이벤트를 output에 기록한다. 본문이 큰 요청(multipart 등)은 메모리가 아닌 곳에 기록할 때 사용한다.
+     */
+    public void write(ServerHttpRequest request, Map<String, String> pathParameters, OutputStream output) throws IOException {
+        try (JsonGenerator generator = jsonFactory.createGenerator(output)) {
+            String path = request.getURI().getPath();
+            String method = request.getMethod().name();
+
+            generator.writeStartObject();
+            generator.writeStringField("resource", pathParameters.containsKey(PROXY_PATH_PARAMETER) ? "/{proxy+}" : path);
+            generator.writeStringField("path", path);
+            generator.writeStringField("httpMethod", method);
+            writeHeaders(generator, request.getHeaders());
+            writeQueryParameters(generator, request.getURI().getRawQuery());
+            writeStringMap(generator, "pathParameters", pathParameters);
+            generator.writeNullField("stageVariables");
+
+            generator.writeObjectFieldStart("requestContext");
+            generator.writeStringField("resourcePath", pathParameters.containsKey(PROXY_PATH_PARAMETER) ? "/{proxy+}" : path);
+            generator.writeStringField("httpMethod", method);
+            generator.writeStringField("path", path);
+            generator.writeObjectFieldStart("identity");
+            if (Objects.nonNull(request.getRemoteAddress())) {
+                generator.writeStringField("sourceIp", request.getRemoteAddress().getAddress().getHostAddress());
+            } else {
+                generator.writeNullField("sourceIp");
+            }
+            generator.writeStringField("userAgent", request.getHeaders().getFirst(HttpHeaders.USER_AGENT));
+            generator.writeEndObject();
+            generator.writeEndObject();
+
+            writeBody(generator, request);
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * API Gateway와 같이 headers에는 마지막 값을, multiValueHeaders에는 모든 값을 기록한다.
+     */
+    protected void writeHeaders(JsonGenerator generator, HttpHeaders headers) throws IOException {
+        if (headers.isEmpty()) {
+            generator.writeNullField("headers");
+            generator.writeNullField("multiValueHeaders");
+            return;
+        }
+        generator.writeObjectFieldStart("headers");
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (!header.getValue().isEmpty()) {
+                generator.writeStringField(header.getKey(), header.getValue().get(header.getValue().size() - 1));
+            }
+        }
+        generator.writeEndObject();
+        generator.writeObjectFieldStart("multiValueHeaders");
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            generator.writeArrayFieldStart(header.getKey());
+            for (String value : header.getValue()) {
+                generator.writeString(value);
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * 질의 문자열을 이름과 값의 쌍으로만 나누고, 같은 이름의 값은 기록하면서 찾는다. 질의 변수는 많지 않으므로 Map을 만드는 것보다 싸다.
+     */
+    protected void writeQueryParameters(JsonGenerator generator, String rawQuery) throws IOException {
+        if (Objects.isNull(rawQuery) || rawQuery.isEmpty()) {
+            generator.writeNullField("queryStringParameters");
+            generator.writeNullField("multiValueQueryStringParameters");
+            return;
+        }
+
+        String[] pairs = rawQuery.split("&");
+        String[] names = new String[pairs.length];
+        String[] values = new String[pairs.length];
+        for (int i = 0; i < pairs.length; i++) {
+            int idx = pairs[i].indexOf('=');
+            names[i] = decode(idx >= 0 ? pairs[i].substring(0, idx) : pairs[i]);
+            values[i] = idx >= 0 ? decode(pairs[i].substring(idx + 1)) : "";
+        }
+
+        generator.writeObjectFieldStart("queryStringParameters");
+        for (int i = 0; i < names.length; i++) {
+            if (indexOf(names, names[i], i + 1) < 0) {
+                generator.writeStringField(names[i], values[i]);
+            }
+        }
+        generator.writeEndObject();
+        generator.writeObjectFieldStart("multiValueQueryStringParameters");
+        for (int i = 0; i < names.length; i++) {
+            if (lastIndexOf(names, names[i], i - 1) < 0) {
+                generator.writeArrayFieldStart(names[i]);
+                for (int j = i; j >= 0; j = indexOf(names, names[i], j + 1)) {
+                    generator.writeString(values[j]);
+                }
+                generator.writeEndArray();
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    protected void writeBody(JsonGenerator generator, ServerHttpRequest request) throws IOException {
+        InputStream body = request.getBody();
+        if (Objects.isNull(body)) {
+            generator.writeNullField("body");
+            generator.writeBooleanField("isBase64Encoded", false);
+            return;
+        }
+
+        MediaType contentType = request.getHeaders().getContentType();
+        if (!isBinary(contentType)) {
+            Charset charset = Objects.nonNull(contentType) && Objects.nonNull(contentType.getCharset()) ? contentType.getCharset() : StandardCharsets.UTF_8;
+            generator.writeFieldName("body");
+            writeText(generator, new InputStreamReader(body, charset));
+            generator.writeBooleanField("isBase64Encoded", false);
+            return;
+        }
+
+        PushbackInputStream input = new PushbackInputStream(body, 1);
+        int first = input.read();
+        generator.writeFieldName("body");
+        if (first < 0) {
+            generator.writeNull();
+            generator.writeBooleanField("isBase64Encoded", false);
+            return;
+        }
+        input.unread(first);
+        generator.writeBinary(Base64Variants.MIME_NO_LINEFEEDS, input, -1);
+        generator.writeBooleanField("isBase64Encoded", true);
+    }
+
+    /**
+     * 텍스트 본문을 고정 크기 조각으로 읽어 JSON 문자열로 이스케이프하면서 바로 기록한다. 본문 전체를 메모리에 모으지 않는다.
+     * 서로게이트 쌍이 조각 경계에서 나뉘지 않도록 마지막 상위 서로게이트는 다음 조각과 함께 기록한다.
+     */
+    protected void writeText(JsonGenerator generator, Reader reader) throws IOException {
+        char[] chars = buffers.get().chars;
+        boolean started = false;
+        int length = 0, read;
+        while ((read = reader.read(chars, length, chars.length - length)) != -1) {
+            length += read;
+            int end = length > 0 && Character.isHighSurrogate(chars[length - 1]) ? length - 1 : length;
+            if (end == 0) {
+                continue;
+            }
+            if (!started) {
+                generator.writeRawValue("\"");
+                started = true;
+            }
+            char[] escaped = JsonStringEncoder.getInstance().quoteAsString(new String(chars, 0, end));
+            generator.writeRaw(escaped, 0, escaped.length);
+            length -= end;
+            if (length > 0) {
+                chars[0] = chars[end];
+            }
+        }
+        if (length > 0) {
+            throw new JsonGenerationException("본문이 짝이 없는 상위 서로게이트로 끝납니다.", generator);
+        }
+        if (started) {
+            generator.writeRaw('"');
+        } else {
+            generator.writeNull();
+        }
+    }
+
+    /**
+     * @return true 라면 본문을 Base64로 인코딩한다. 텍스트(text/*, JSON, XML, form) 이외의 본문은 모두 인코딩한다.
+     */
+    protected boolean isBinary(MediaType contentType) {
+        if (Objects.isNull(contentType)) {
+            return false;
+        }
+        for (MediaType textMediaType : TEXT_MEDIA_TYPES) {
+            if (textMediaType.includes(contentType)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeStringMap(JsonGenerator generator, String fieldName, Map<String, String> values) throws IOException {
+        if (Objects.isNull(values) || values.isEmpty()) {
+            generator.writeNullField(fieldName);
+            return;
+        }
+        generator.writeObjectFieldStart(fieldName);
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            generator.writeStringField(entry.getKey(), entry.getValue());
+        }
+        generator.writeEndObject();
+    }
+
+    private static int indexOf(String[] names, String name, int from) {
+        for (int i = from; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int lastIndexOf(String[] names, String name, int from) {
+        for (int i = from; i >= 0; i--) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String decode(String value) throws UnsupportedEncodingException {
+        return value.indexOf('%') < 0 && value.indexOf('+') < 0 ? value : URLDecoder.decode(value, "UTF-8");
+    }
+
+
+    /**
+     * 스레드마다 재사용하는 쓰기 버퍼, 지나치게 커진 버퍼는 다음 사용시 기본 크기로 되돌린다.
+     */
+    static class PooledBuffer extends ByteArrayOutputStream {
+
+        final char[] chars = new char[DEFAULT_BUFFER_SIZE];
+
+        PooledBuffer() {
+            super(DEFAULT_BUFFER_SIZE);
+        }
+
+        @Override
+        public synchronized void reset() {
+            super.reset();
+            if (buf.length > MAX_RETAINED_BUFFER_SIZE) {
+                buf = new byte[DEFAULT_BUFFER_SIZE];
+            }
+        }
+
+        ByteBuffer copy() {
+            return ByteBuffer.wrap(Arrays.copyOf(buf, count));
+        }
+
+    }
+
+}
@@ -0,0 +1,581 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.AbstractClientHttpResponse;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.server.ServerHttpAsyncRequestControl;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 서블릿과 Zuul 없이 Reactive Streams 요청 본문을 람다 함수로 라우팅하고, 호출 결과를 {@link Mono}로 돌려준다.
+ * WebFlux 핸들러나 Spring Cloud Gateway 필터가 요청 본문(DataBuffer)을 {@link ByteBuffer}로 바꿔 전달하면,
+ * {@link AWSLambdaClientRequestFactory}의 {@link RequestPayloadExtractor}, {@link AWSLambdaClientContextFactory}, 인터셉터와
+ * {@link AWSLambdaClientRequest}의 응답 변환(claim check, 프록시 응답)을 Zuul 필터와 똑같이 사용한다.
+ *
+ * 페이로드 변환, multipart 임시 파일 기록, claim check 저장은 블로킹 작업이므로 람다 요청은 이벤트 루프가 아닌 크기가 제한된 전용 스케줄러에서 만든다.
+ * 요청 본문은 모으지 않고 도착하는 대로 스트림으로 넘기므로, 람다 요청을 만드는 스레드는 본문이 도착하는 동안 페이로드를 읽는다.
+ * 전용 스케줄러의 작업 큐가 가득 차면 본문을 읽지 않고 실패한다. 호출은 AWS SDK의 {@link com.amazonaws.handlers.AsyncHandler} 콜백에서 완료된다.
+ * 구독이 취소되면(클라이언트 연결 끊김, timeout 연산자 등) 본문 구독과 진행 중인 람다 호출도 취소한다.
+ *
+ * 함수 오류(X-Amz-Function-Error)는 Zuul 필터처럼 {@link AWSLambdaFunctionErrorHandler}의 규칙으로 바꾼다. 규칙에 본문이 있다면 그 응답을,
+ * 없다면 {@link FunctionErrorException}으로 실패한다. Hystrix 명령과 {@code FallbackProvider}는 거치지 않으므로,
+ * 서킷 브레이커와 대체 응답이 필요하다면 반환된 {@link Mono}에 직접 연산자를 붙여야 한다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+public class AWSLambdaReactiveRouter {
+
+    /**
+     * 동기 호출(RequestResponse) 페이로드의 최대 크기
+     */
+    public static final int DEFAULT_MAX_PAYLOAD_SIZE = 6 * 1024 * 1024;
+
+    /**
+     * 람다 요청을 만드는 스레드당 대기할 수 있는 작업 수
+     */
+    static final int QUEUE_PER_THREAD = 64;
+
+    private final AWSLambdaClientRequestFactory requestFactory;
+    private AWSLambdaFunctionErrorHandler functionErrorHandler = new AWSLambdaFunctionErrorHandler();
+    private int maxPayloadSize = DEFAULT_MAX_PAYLOAD_SIZE;
+    private Duration timeout;
+    private Scheduler scheduler;
+    private Scheduler defaultScheduler;
+
+    public AWSLambdaReactiveRouter(AWSLambdaClientRequestFactory requestFactory) {
+        this.requestFactory = Objects.requireNonNull(requestFactory, "람다 요청 팩토리가 필요합니다.");
+    }
+
+    public Mono<ClientHttpResponse> route(String routeId, String functionArn, HttpMethod method, URI uri, HttpHeaders headers, Publisher<ByteBuffer> body) {
+        return route(routeId, functionArn, method, uri, headers, null, body, Collections.emptyMap());
+    }
+
+    /**
+     * @param body 요청 본문, 구독은 한 번만 한다. 본문이 없다면 null
+     * @return 람다 함수의 응답, 구독할 때 본문을 읽고 람다 함수를 호출한다.
+     */
+    public Mono<ClientHttpResponse> route(String routeId, String functionArn, HttpMethod method, URI uri, HttpHeaders headers,
+                                          InetSocketAddress remoteAddress, Publisher<ByteBuffer> body, Map<String, String> pathParameters) {
+        long contentLength = headers.getContentLength();
+        if (contentLength > maxPayloadSize) {
+            return Mono.error(new PayloadTooLargeException(contentLength, maxPayloadSize));
+        }
+
+        Mono<ClientHttpResponse> response = Mono.defer(() -> {
+            long deadline = Objects.nonNull(timeout) ? System.nanoTime() + timeout.toNanos() : 0;
+            BodyInputStream bodyStream = new BodyInputStream(maxPayloadSize);
+            StreamingServerHttpRequest request = new StreamingServerHttpRequest(method, uri, headers, remoteAddress, bodyStream);
+            return Mono.fromCallable(() -> createRequest(routeId, functionArn, request, body, pathParameters))
+                       .subscribeOn(getScheduler())
+                       .doFinally(signal -> bodyStream.close())
+                       .flatMap(lambdaRequest -> execute(lambdaRequest, deadline));
+        }).flatMap(lambdaResponse -> handleFunctionError(routeId, functionArn, lambdaResponse));
+        return Objects.nonNull(timeout) ? response.timeout(timeout) : response;
+    }
+
+    /**
+     * 본문을 구독한 후 본문이 도착하는 동안 람다 요청을 만든다. 본문을 읽다가 실패했다면(최대 크기 초과 등) 변환 오류 대신 그 원인으로 실패한다.
+     */
+    protected ClientHttpRequest createRequest(String routeId, String functionArn, StreamingServerHttpRequest request,
+                                              Publisher<ByteBuffer> body, Map<String, String> pathParameters) {
+        BodyInputStream bodyStream = request.getBody();
+        if (Objects.isNull(body)) {
+            bodyStream.onComplete();
+        } else {
+            body.subscribe(bodyStream);
+        }
+        try {
+            return requestFactory.createRequest(routeId, functionArn, request, pathParameters);
+        } catch (RuntimeException error) {
+            Throwable bodyError = bodyStream.getError();
+            if (bodyError instanceof RuntimeException) {
+                throw (RuntimeException) bodyError;
+            }
+            throw error;
+        }
+    }
+
+    /**
+     * @param deadline 라우팅 timeout이 끝나는 시각({@link System#nanoTime()}), timeout이 없다면 무시한다.
+     */
+    protected Mono<ClientHttpResponse> execute(ClientHttpRequest lambdaRequest, long deadline) {
+        if (!(lambdaRequest instanceof AWSLambdaClientRequest)) {
+            return Mono.fromCallable(lambdaRequest::execute).subscribeOn(getScheduler());
+        }
+
+        AWSLambdaClientRequest request = (AWSLambdaClientRequest) lambdaRequest;
+        if (Objects.nonNull(timeout)) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return Mono.error(new TimeoutException("람다 함수를 호출하기 전에 timeout(" + timeout.toMillis() + "ms)이 지났습니다."));
+            }
+            request.setTimeout(remaining, TimeUnit.NANOSECONDS);
+        }
+        return Mono.create(sink -> {
+            sink.onCancel(request::cancel);
+            request.executeAsync().whenComplete((response, error) -> {
+                if (Objects.isNull(error)) {
+                    sink.success(response);
+                } else if (error instanceof CompletionException && Objects.nonNull(error.getCause())) {
+                    sink.error(error.getCause());
+                } else {
+                    sink.error(error);
+                }
+            });
+        });
+    }
+
+    /**
+     * 함수 오류가 아니라면 응답을 그대로, 규칙에 본문이 있다면 그 본문으로 만든 응답을 돌려준다.
+     */
+    protected Mono<ClientHttpResponse> handleFunctionError(String routeId, String functionArn, ClientHttpResponse response) {
+        if (!(response instanceof AWSLambdaClientResponse) || !((AWSLambdaClientResponse) response).isFunctionError()) {
+            return Mono.just(response);
+        }
+        return Mono.fromCallable(() -> {
+            AWSLambdaFunctionErrorHandler.ErrorResponse errorResponse = functionErrorHandler.handle(routeId, functionArn, response);
+            if (!errorResponse.hasBody()) {
+                throw new FunctionErrorException(errorResponse);
+            }
+            return new FunctionErrorResponse(errorResponse);
+        });
+    }
+
+    /**
+     * 지정한 스케줄러가 없다면 CPU 수의 두 배(최소 4개)의 스레드와 크기가 제한된 작업 큐를 가진 스케줄러를 만든다.
+     */
+    protected synchronized Scheduler getScheduler() {
+        if (Objects.nonNull(scheduler)) {
+            return scheduler;
+        }
+        if (Objects.isNull(defaultScheduler)) {
+            int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+            AtomicInteger sequence = new AtomicInteger();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(threads * QUEUE_PER_THREAD), runnable -> {
+                Thread thread = new Thread(runnable, "lambda-router-" + sequence.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.allowCoreThreadTimeOut(true);
+            defaultScheduler = Schedulers.fromExecutorService(executor);
+        }
+        return defaultScheduler;
+    }
+
+    /**
+     * @param scheduler 람다 요청을 만들 스케줄러, 페이로드 변환과 임시 파일 기록처럼 블로킹 작업을 하므로 이벤트 루프 스케줄러를 지정해서는 안 된다.
+     */
+    public void setScheduler(Scheduler scheduler) {
+        this.scheduler = Objects.requireNonNull(scheduler, "스케줄러가 필요합니다.");
+    }
+
+    /**
+     * 라우터가 만든 기본 스케줄러를 종료한다. {@link #setScheduler(Scheduler)}로 지정한 스케줄러는 종료하지 않는다.
+     */
+    public synchronized void shutdown() {
+        if (Objects.nonNull(defaultScheduler)) {
+            defaultScheduler.dispose();
+            defaultScheduler = null;
+        }
+    }
+
+    /**
+     * @see AWSLambdaFunctionErrorHandler
+     */
+    public void setFunctionErrorHandler(AWSLambdaFunctionErrorHandler functionErrorHandler) {
+        this.functionErrorHandler = Objects.requireNonNull(functionErrorHandler, "함수 오류 처리기가 필요합니다.");
+    }
+
+    public void setMaxPayloadSize(int maxPayloadSize) {
+        if (maxPayloadSize < 0) {
+            throw new IllegalArgumentException("페이로드의 최대 크기는 0 보다 작을 수 없습니다.");
+        }
+        this.maxPayloadSize = maxPayloadSize;
+    }
+
+    /**
+     * @param timeout 본문을 읽고 람다 함수가 응답할 때까지 기다리는 시간, 람다 호출에는 본문을 읽고 남은 시간이 마감 시각으로 전달된다.
+     */
+    public void setTimeout(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+
+    /**
+     * 요청 본문을 구독해서 도착한 청크를 읽는 스트림, 청크는 한 번만 복사하며 청크를 다 읽으면 다음 청크를 요청한다.
+     * 본문이 최대 크기를 넘으면 구독을 취소하고 {@link PayloadTooLargeException}으로 실패한다. 스트림을 닫으면 구독도 취소한다.
+     */
+    static class BodyInputStream extends InputStream implements Subscriber<ByteBuffer> {
+
+        private static final Object COMPLETE = new Object();
+
+        private final BlockingQueue<Object> signals = new LinkedBlockingQueue<>();
+        private final AtomicReference<Subscription> subscription = new AtomicReference<>();
+        private final int maxSize;
+        private long received;
+        private ByteBuffer current;
+        private volatile Throwable error;
+        private volatile boolean closed;
+        private boolean completed;
+
+        BodyInputStream(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            if (closed || !this.subscription.compareAndSet(null, subscription)) {
+                subscription.cancel();
+                return;
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(ByteBuffer chunk) {
+            received += chunk.remaining();
+            if (received > maxSize) {
+                cancel();
+                onError(new PayloadTooLargeException(received, maxSize));
+                return;
+            }
+            ByteBuffer copy = ByteBuffer.allocate(chunk.remaining());
+            copy.put(chunk.duplicate()).flip();
+            signals.offer(copy);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            if (Objects.isNull(this.error)) {
+                this.error = error;
+            }
+            signals.offer(error);
+        }
+
+        @Override
+        public void onComplete() {
+            signals.offer(COMPLETE);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!nextChunk()) {
+                return -1;
+            }
+            int count = Math.min(length, current.remaining());
+            current.get(buffer, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return Objects.nonNull(current) ? current.remaining() : 0;
+        }
+
+        /**
+         * @return 읽을 청크가 있다면 true, 본문이 끝났다면 false
+         */
+        private boolean nextChunk() throws IOException {
+            while (Objects.isNull(current) || !current.hasRemaining()) {
+                if (completed) {
+                    return false;
+                }
+                if (closed) {
+                    throw new IOException("요청 본문 스트림이 닫혔습니다.");
+                }
+                if (Objects.nonNull(current)) {
+                    current = null;
+                    request();
+                }
+                Object signal;
+                try {
+                    signal = signals.take();
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("요청 본문을 기다리는 중에 중단되었습니다.");
+                }
+                if (signal == COMPLETE) {
+                    completed = true;
+                } else if (signal instanceof Throwable) {
+                    throw new IOException("요청 본문을 읽지 못했습니다: " + ((Throwable) signal).getMessage(), (Throwable) signal);
+                } else {
+                    current = (ByteBuffer) signal;
+                }
+            }
+            return true;
+        }
+
+        private void request() {
+            Subscription subscription = this.subscription.get();
+            if (Objects.nonNull(subscription)) {
+                subscription.request(1);
+            }
+        }
+
+        private void cancel() {
+            Subscription subscription = this.subscription.getAndSet(CancelledSubscription.INSTANCE);
+            if (Objects.nonNull(subscription)) {
+                subscription.cancel();
+            }
+        }
+
+        Throwable getError() {
+            return error;
+        }
+
+        /**
+         * 람다 요청을 만든 후 또는 구독이 취소되면 호출되며, 남은 본문은 읽지 않는다. 본문을 기다리던 스레드는 {@link IOException}으로 깨어난다.
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            cancel();
+            signals.offer(new IOException("요청 본문 스트림이 닫혔습니다."));
+        }
+
+    }
+
+    enum CancelledSubscription implements Subscription {
+
+        INSTANCE;
+
+        @Override
+        public void request(long n) {
+
+        }
+
+        @Override
+        public void cancel() {
+
+        }
+
+    }
+
+    /**
+     * 요청 본문 스트림으로 {@link ServerHttpRequest}를 흉내내서 서블릿 요청과 같은 방식으로 페이로드와 클라이언트 컨텍스트를 만든다.
+     */
+    static class StreamingServerHttpRequest implements ServerHttpRequest {
+
+        private final HttpMethod method;
+        private final URI uri;
+        private final HttpHeaders headers;
+        private final InetSocketAddress remoteAddress;
+        private final BodyInputStream body;
+        private final ReactiveAsyncRequestControl asyncRequestControl = new ReactiveAsyncRequestControl();
+
+        StreamingServerHttpRequest(HttpMethod method, URI uri, HttpHeaders headers, InetSocketAddress remoteAddress, BodyInputStream body) {
+            this.method = method;
+            this.uri = uri;
+            this.headers = HttpHeaders.readOnlyHttpHeaders(headers);
+            this.remoteAddress = remoteAddress;
+            this.body = body;
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return method;
+        }
+
+        @Override
+        public URI getURI() {
+            return uri;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public BodyInputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public Principal getPrincipal() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return remoteAddress;
+        }
+
+        /**
+         * 반환된 {@link Mono}가 응답을 돌려줄 때까지 요청이 끝나지 않으므로 라우터의 요청은 항상 비동기로 처리된다.
+         * 응답을 쓰는 것은 WebFlux가 하므로 이 제어는 시작과 완료 상태만 기록한다.
+         */
+        @Override
+        public ServerHttpAsyncRequestControl getAsyncRequestControl(ServerHttpResponse response) {
+            return asyncRequestControl;
+        }
+
+    }
+
+    static class ReactiveAsyncRequestControl implements ServerHttpAsyncRequestControl {
+
+        private final AtomicBoolean started = new AtomicBoolean();
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        @Override
+        public void start() {
+            started.set(true);
+        }
+
+        /**
+         * timeout은 {@link AWSLambdaReactiveRouter#setTimeout(Duration)}이나 반환된 {@link Mono}의 연산자로 지정한다.
+         */
+        @Override
+        public void start(long timeout) {
+            start();
+        }
+
+        @Override
+        public boolean isStarted() {
+            return started.get() && !completed.get();
+        }
+
+        @Override
+        public void complete() {
+            completed.set(true);
+        }
+
+        @Override
+        public boolean isCompleted() {
+            return completed.get();
+        }
+
+    }
+
+    /**
+     * {@link AWSLambdaFunctionErrorHandler}의 규칙에 본문이 있는 함수 오류 응답
+     */
+    static class FunctionErrorResponse extends AbstractClientHttpResponse {
+
+        private final AWSLambdaFunctionErrorHandler.ErrorResponse errorResponse;
+        private final HttpHeaders headers = new HttpHeaders();
+
+        FunctionErrorResponse(AWSLambdaFunctionErrorHandler.ErrorResponse errorResponse) {
+            this.errorResponse = errorResponse;
+            this.headers.setContentType(MediaType.APPLICATION_JSON);
+            this.headers.setContentLength(errorResponse.getBody().length);
+        }
+
+        @Override
+        public int getRawStatusCode() {
+            return errorResponse.getStatus();
+        }
+
+        @Override
+        public String getStatusText() {
+            return HttpStatus.valueOf(errorResponse.getStatus()).getReasonPhrase();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() {
+            return new ByteArrayInputStream(errorResponse.getBody());
+        }
+
+        @Override
+        public void close() {
+
+        }
+
+    }
+
+    /**
+     * 람다 함수가 오류를 던졌고, {@link AWSLambdaFunctionErrorHandler}의 규칙에 응답 본문이 없다.
+     */
+    public static class FunctionErrorException extends RuntimeException {
+
+        private final int status;
+        private final AWSLambdaFunctionErrorHandler.FunctionError error;
+
+        FunctionErrorException(AWSLambdaFunctionErrorHandler.ErrorResponse errorResponse) {
+            super("람다 함수 호출 중 오류가 발생했습니다.");
+            this.status = errorResponse.getStatus();
+            this.error = errorResponse.getError();
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public AWSLambdaFunctionErrorHandler.FunctionError getError() {
+            return error;
+        }
+
+    }
+
+    /**
+     * 요청 본문이 람다 페이로드의 최대 크기를 넘었다.
+     */
+    public static class PayloadTooLargeException extends RuntimeException {
+
+        PayloadTooLargeException(long size, int maxSize) {
+            super(String.format("요청 본문(%d bytes)이 람다 페이로드의 최대 크기(%d bytes)를 넘었습니다.", size, maxSize));
+        }
+
+        public HttpStatus getStatus() {
+            return HttpStatus.PAYLOAD_TOO_LARGE;
+        }
+
+    }
+
+}
@@ -0,0 +1,227 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.amazonaws.AbortedException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+import com.amazonaws.services.lambda.model.ResourceNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 여러 리전에 배포된 같은 람다 함수 중에서 호출할 함수를 고른다.
+ * 함수마다 최근 응답시간과 오류율을 지수 이동 평균으로 기록하고, 오류율이 기준 이하인 함수 중 응답시간이 가장 짧은 함수를 사용한다.
+ * 모든 함수의 오류율이 기준을 넘으면 오류율이 가장 낮은 함수를 사용한다.
+ * 오류율은 시간이 지나면 줄어들기 때문에, 장애가 났던 리전도 일정 시간 후 다시 후보가 된다.
+ *
+ * 응답시간을 기록하지 못한 함수는 가장 빠르다고 가정하지 않고, 한 번에 한 요청만 보내 응답시간을 잰다.
+ * 실패한 호출은 걸린 시간과 failureLatency 중 긴 시간을 응답시간으로 기록해서, 빠르게 실패하는 리전이 빠른 리전으로 보이지 않게 한다.
+ * 람다 서비스 오류(5xx, 429, 함수 없음)와 연결 오류만 리전의 실패로 기록하고, 취소된 호출(헤징에서 진 호출, Hystrix 타임아웃)이나
+ * 게이트웨이가 스스로 거절한 호출(동시 호출 한도 등)은 리전의 상태와 관계없으므로 기록하지 않는다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+@Slf4j
+public class AWSLambdaRegionSelector implements AWSLambdaInvocationInterceptor {
+
+    private final ConcurrentMap<AWSLambdaFunctionArn, List<AWSLambdaFunctionArn>> equivalentFunctions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, FunctionStats> functionStats = new ConcurrentHashMap<>();
+
+    private double latencyWeight = 0.2;
+    private double errorWeight = 0.1;
+    private double errorRateThreshold = 0.5;
+    private long errorRateHalfLifeNanos = TimeUnit.SECONDS.toNanos(30);
+    private double explorationRatio = 0.01;
+    private long failureLatencyNanos = TimeUnit.SECONDS.toNanos(1);
+    private long probeTimeoutNanos = TimeUnit.SECONDS.toNanos(10);
+
+    /**
+     * 서로 다른 리전에 배포된 같은 기능의 람다 함수들을 등록한다. 라우트에는 이 중 하나의 ARN만 지정하면 된다.
+     */
+    public AWSLambdaRegionSelector registerEquivalentFunctions(String... functionArns) {
+        List<AWSLambdaFunctionArn> candidates = new ArrayList<>(functionArns.length);
+        for (String functionArn : functionArns) {
+            candidates.add(AWSLambdaFunctionArn.parse(functionArn));
+        }
+        candidates = Collections.unmodifiableList(candidates);
+        for (AWSLambdaFunctionArn candidate : candidates) {
+            equivalentFunctions.put(candidate, candidates);
+            functionStats.putIfAbsent(candidate.toString(), new FunctionStats());
+        }
+        return this;
+    }
+
+    public AWSLambdaFunctionArn select(AWSLambdaFunctionArn functionArn) {
+        List<AWSLambdaFunctionArn> candidates = equivalentFunctions.get(functionArn);
+        if (Objects.isNull(candidates) || candidates.size() < 2) {
+            return functionArn;
+        }
+
+        long now = System.nanoTime();
+        AWSLambdaFunctionArn best = null, leastFailing = null, unmeasured = null;
+        double bestLatency = Double.MAX_VALUE, leastErrorRate = Double.MAX_VALUE;
+        for (AWSLambdaFunctionArn candidate : candidates) {
+            FunctionStats stats = functionStats.get(candidate.toString());
+            double errorRate = stats.getErrorRate(now, errorRateHalfLifeNanos);
+            if (errorRate < errorRateThreshold) {
+                if (!stats.measured) {
+                    if (stats.tryProbe(now, probeTimeoutNanos)) {
+                        log.debug("probe latency of unmeasured function: {}", candidate);
+                        return candidate;
+                    }
+                    if (Objects.isNull(unmeasured) || candidate.equals(functionArn)) {
+                        unmeasured = candidate;
+                    }
+                } else if (stats.latency < bestLatency) {
+                    best = candidate;
+                    bestLatency = stats.latency;
+                }
+            }
+            if (errorRate < leastErrorRate) {
+                leastFailing = candidate;
+                leastErrorRate = errorRate;
+            }
+        }
+
+        if (Objects.isNull(best) && Objects.nonNull(unmeasured)) {
+            // 모든 후보의 응답시간을 재는 중이라면 라우트에 지정한 함수를 먼저 사용한다.
+            return unmeasured;
+        }
+        if (Objects.isNull(best)) {
+            log.debug("all equivalent functions are failing, use least failing function: {}", leastFailing);
+            return leastFailing;
+        }
+        if (explorationRatio > 0 && ThreadLocalRandom.current().nextDouble() < explorationRatio) {
+            // 선택되지 않는 리전의 응답시간도 갱신될 수 있도록 가끔 다른 후보를 호출한다.
+            return candidates.get(ThreadLocalRandom.current().nextInt(candidates.size()));
+        }
+        return best;
+    }
+
+    @Override
+    public CompletableFuture<InvokeResult> intercept(InvokeRequest request, AWSLambdaInvocationExecution execution) {
+        FunctionStats stats = functionStats.get(request.getFunctionName());
+        if (Objects.isNull(stats)) {
+            return execution.execute(request);
+        }
+
+        long started = System.nanoTime();
+        CompletableFuture<InvokeResult> invocation = execution.execute(request);
+        invocation.whenComplete((result, error) -> {
+            if (Objects.nonNull(error) && !isRegionFailure(error)) {
+                return;
+            }
+            long now = System.nanoTime();
+            stats.record(now, now - started, Objects.nonNull(error), latencyWeight, errorWeight, errorRateHalfLifeNanos, failureLatencyNanos);
+        });
+        return invocation;
+    }
+
+    /**
+     * @return 람다 서비스나 연결 문제로 실패했다면 true
+     */
+    static boolean isRegionFailure(Throwable error) {
+        Throwable cause = error instanceof CompletionException && Objects.nonNull(error.getCause()) ? error.getCause() : error;
+        if (cause instanceof AmazonServiceException) {
+            int statusCode = ((AmazonServiceException) cause).getStatusCode();
+            return statusCode >= 500 || statusCode == 429 || cause instanceof ResourceNotFoundException;
+        }
+        if (cause instanceof AbortedException) {
+            return false;
+        }
+        return cause instanceof SdkClientException || cause instanceof IOException;
+    }
+
+    /**
+     * @return 기록된 응답시간(나노초) 평균, 기록이 없다면 0
+     */
+    public double getLatency(String functionArn) {
+        FunctionStats stats = functionStats.get(functionArn);
+        return Objects.nonNull(stats) ? stats.latency : 0;
+    }
+
+    public double getErrorRate(String functionArn) {
+        FunctionStats stats = functionStats.get(functionArn);
+        return Objects.nonNull(stats) ? stats.getErrorRate(System.nanoTime(), errorRateHalfLifeNanos) : 0;
+    }
+
+    public void setErrorRateThreshold(double errorRateThreshold) {
+        this.errorRateThreshold = errorRateThreshold;
+    }
+
+    public void setErrorRateHalfLife(long duration, TimeUnit unit) {
+        this.errorRateHalfLifeNanos = unit.toNanos(duration);
+    }
+
+    public void setLatencyWeight(double latencyWeight) {
+        this.latencyWeight = latencyWeight;
+    }
+
+    public void setErrorWeight(double errorWeight) {
+        this.errorWeight = errorWeight;
+    }
+
+    public void setExplorationRatio(double explorationRatio) {
+        this.explorationRatio = explorationRatio;
+    }
+
+    /**
+     * @param duration 실패한 호출을 기록할 최소 응답시간
+     */
+    public void setFailureLatency(long duration, TimeUnit unit) {
+        this.failureLatencyNanos = unit.toNanos(duration);
+    }
+
+    /**
+     * @param duration 응답시간을 재는 호출이 끝나지 않았을 때 다시 재기까지 기다리는 시간
+     */
+    public void setProbeTimeout(long duration, TimeUnit unit) {
+        this.probeTimeoutNanos = unit.toNanos(duration);
+    }
+
+
+    static class FunctionStats {
+
+        private volatile double latency = 0;
+        private volatile boolean measured = false;
+        private volatile double errorRate = 0;
+        private volatile long updated = System.nanoTime();
+        private long probeStarted = 0;
+
+        synchronized boolean tryProbe(long now, long probeTimeoutNanos) {
+            if (measured || (probeStarted != 0 && now - probeStarted < probeTimeoutNanos)) {
+                return false;
+            }
+            probeStarted = now;
+            return true;
+        }
+
+        synchronized void record(long now, long latencyNanos, boolean failed, double latencyWeight, double errorWeight, long halfLifeNanos, long failureLatencyNanos) {
+            long sample = failed ? Math.max(latencyNanos, failureLatencyNanos) : latencyNanos;
+            latency = measured ? latency + latencyWeight * (sample - latency) : sample;
+            measured = true;
+            double decayed = getErrorRate(now, halfLifeNanos);
+            errorRate = decayed + errorWeight * ((failed ? 1 : 0) - decayed);
+            updated = now;
+        }
+
+        double getErrorRate(long now, long halfLifeNanos) {
+            long elapsed = now - updated;
+            if (elapsed <= 0 || errorRate == 0) {
+                return errorRate;
+            }
+            return errorRate * Math.pow(0.5, (double) elapsed / halfLifeNanos);
+        }
+
+    }
+
+}
@@ -0,0 +1,317 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.AbstractClientHttpResponse;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 람다 함수의 응답을 보관하는 캐시
+ * 라우트별로 보관 시간(TTL)을 지정한 라우트의 GET 요청만 캐시하며, 키는 람다 ARN과 정규화한 페이로드(JSON 키 정렬), 클라이언트 컨텍스트로 만든다.
+ * 응답에 Cache-Control 헤더가 있다면 s-maxage, max-age가 라우트 TTL보다 우선하고, no-store, no-cache, private 응답은 보관하지 않는다.
+ * 프록시 라우트라면 람다 함수가 프록시 응답의 headers, multiValueHeaders로 지정한 Cache-Control을 따른다.
+ *
+ * 캐시 크기는 응답 페이로드와 헤더의 바이트 수로 제한되며, 한도를 넘으면 Caffeine(W-TinyLFU)이 적게 쓰이는 항목부터 제거한다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+@Slf4j
+public class AWSLambdaResponseCache {
+
+    private static final ObjectMapper CANONICAL_MAPPER = new ObjectMapper().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final Cache<CacheKey, CachedResponse> cache;
+    private final long maxTimeToLiveNanos;
+    private final ConcurrentMap<String, Long> routeTimeToLives = new ConcurrentHashMap<>();
+
+    /**
+     * @param maximumBytes 보관할 응답의 최대 크기(바이트)
+     * @param maxTimeToLive Cache-Control로 지정할 수 있는 최대 보관 시간
+     */
+    public AWSLambdaResponseCache(long maximumBytes, long maxTimeToLive, TimeUnit unit) {
+        this.maxTimeToLiveNanos = unit.toNanos(maxTimeToLive);
+        this.cache = Caffeine.newBuilder()
+                             .maximumWeight(maximumBytes)
+                             .weigher((CacheKey key, CachedResponse value) -> value.getWeight())
+                             .expireAfterWrite(maxTimeToLive, unit)
+                             .recordStats()
+                             .build();
+    }
+
+    public AWSLambdaResponseCache(long maximumBytes) {
+        this(maximumBytes, 1, TimeUnit.HOURS);
+    }
+
+    /**
+     * @param route 라우트 ID 또는 람다 ARN
+     */
+    public void setTimeToLive(String route, long duration, TimeUnit unit) {
+        routeTimeToLives.put(route, Math.min(unit.toNanos(duration), maxTimeToLiveNanos));
+    }
+
+    public void setTimeToLives(Map<String, Long> timeToLiveSeconds) {
+        timeToLiveSeconds.forEach((route, seconds) -> setTimeToLive(route, seconds, TimeUnit.SECONDS));
+    }
+
+    /**
+     * @return 캐시 대상이 아니라면 null
+     */
+    public CacheKey createKey(String routeId, AWSLambdaClientRequest lambdaRequest, ServerHttpRequest request) {
+        if (request.getMethod() != HttpMethod.GET) {
+            return null;
+        }
+        val route = getRoute(routeId, lambdaRequest.getFunctionArn());
+        if (Objects.isNull(route)) {
+            return null;
+        }
+        val clientContext = Objects.nonNull(lambdaRequest.getClientContext()) ? lambdaRequest.getClientContext().toString() : "";
+        return new CacheKey(route, lambdaRequest.getFunctionArn(), digest(clientContext, lambdaRequest.getPayload()));
+    }
+
+    /**
+     * @return 보관된 응답이 없거나 만료되었다면 null
+     */
+    public ClientHttpResponse get(CacheKey key) {
+        val cached = cache.getIfPresent(key);
+        if (Objects.isNull(cached)) {
+            return null;
+        }
+        if (cached.isExpired(System.nanoTime())) {
+            cache.invalidate(key);
+            return null;
+        }
+        return new CachedClientHttpResponse(cached);
+    }
+
+    /**
+     * 성공한 람다 응답과 프록시 응답만 보관하며, 보관한 경우 응답 본문을 다시 읽을 수 있는 응답을 반환한다.
+     * 프록시 응답의 헤더는 람다 함수가 지정한 헤더이므로 함수가 Cache-Control로 보관 여부와 시간을 정할 수 있다.
+     */
+    public ClientHttpResponse put(CacheKey key, ClientHttpResponse response) throws IOException {
+        if (!isCacheable(response)) {
+            return response;
+        }
+        val headers = response.getHeaders();
+        val timeToLive = getTimeToLive(key.getRoute(), headers.getCacheControl());
+        if (timeToLive <= 0) {
+            return response;
+        }
+
+        val payload = response instanceof AWSLambdaProxyClientResponse ? ((AWSLambdaProxyClientResponse) response).getPayload()
+                                                                       : ((AWSLambdaClientResponse) response).getPayload();
+        val cached = new CachedResponse(response.getRawStatusCode(), response.getStatusText(), headers, payload, System.nanoTime() + timeToLive);
+        cache.put(key, cached);
+        return new CachedClientHttpResponse(cached);
+    }
+
+    /**
+     * 라우트(또는 람다 ARN)에 보관된 응답을 모두 제거한다.
+     */
+    public void evict(String route) {
+        cache.asMap().keySet().removeIf(key -> key.getRoute().equals(route) || key.getFunctionArn().equals(route));
+    }
+
+    public void evictAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return 적중, 실패, 제거 횟수 등의 통계
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * 만료, 크기 제한으로 인한 제거 작업을 즉시 실행한다.
+     */
+    public void cleanUp() {
+        cache.cleanUp();
+    }
+
+    /**
+     * 프록시 응답의 상태 코드는 람다 함수가 정하므로 {@link HttpStatus}에 없는 코드일 수도 있다.
+     */
+    protected boolean isCacheable(ClientHttpResponse response) throws IOException {
+        if (response instanceof AWSLambdaProxyClientResponse && ((AWSLambdaProxyClientResponse) response).isMalformed()) {
+            return false;
+        }
+        boolean lambdaResponse = response instanceof AWSLambdaClientResponse || response instanceof AWSLambdaProxyClientResponse;
+        return lambdaResponse && response.getRawStatusCode() / 100 == 2;
+    }
+
+    protected String getRoute(String routeId, String functionArn) {
+        if (Objects.nonNull(routeId) && routeTimeToLives.containsKey(routeId)) {
+            return routeId;
+        }
+        if (Objects.nonNull(functionArn) && routeTimeToLives.containsKey(functionArn)) {
+            return functionArn;
+        }
+        return null;
+    }
+
+    protected long getTimeToLive(String route, String cacheControl) {
+        long timeToLive = routeTimeToLives.getOrDefault(route, 0L);
+        if (!StringUtils.hasText(cacheControl)) {
+            return timeToLive;
+        }
+
+        long maxAge = -1, sharedMaxAge = -1;
+        for (String directive : StringUtils.commaDelimitedListToStringArray(cacheControl.toLowerCase())) {
+            directive = directive.trim();
+            if (directive.equals("no-store") || directive.equals("no-cache") || directive.equals("private")) {
+                return 0;
+            } else if (directive.startsWith("s-maxage=")) {
+                sharedMaxAge = parseSeconds(directive.substring(9));
+            } else if (directive.startsWith("max-age=")) {
+                maxAge = parseSeconds(directive.substring(8));
+            }
+        }
+        long seconds = sharedMaxAge >= 0 ? sharedMaxAge : maxAge;
+        return seconds >= 0 ? Math.min(TimeUnit.SECONDS.toNanos(seconds), maxTimeToLiveNanos) : timeToLive;
+    }
+
+    private static long parseSeconds(String value) {
+        try {
+            return Long.parseLong(value.replace("\"", "").trim());
+        } catch (NumberFormatException error) {
+            return -1;
+        }
+    }
+
+    /**
+     * JSON 페이로드는 키를 정렬해 다시 작성하므로, 키 순서나 공백만 다른 요청은 같은 키가 된다.
+     */
+    static String digest(String clientContext, ByteBuffer payload) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException error) {
+            throw new IllegalStateException(error);
+        }
+        digest.update(clientContext.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        if (Objects.nonNull(payload)) {
+            digest.update(normalize(payload));
+        }
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+
+    static byte[] normalize(ByteBuffer payload) {
+        val bytes = new byte[payload.remaining()]; {
+            payload.duplicate().get(bytes);
+        }
+        try {
+            return CANONICAL_MAPPER.writeValueAsBytes(CANONICAL_MAPPER.readValue(bytes, Object.class));
+        } catch (IOException error) {
+            return bytes;
+        }
+    }
+
+
+    @Value
+    public static class CacheKey {
+        String route;
+        String functionArn;
+        String digest;
+    }
+
+    static class CachedResponse {
+
+        private final int statusCode;
+        private final String statusText;
+        private final HttpHeaders headers;
+        private final ByteBuffer payload;
+        private final long expiresAt;
+        private final int weight;
+
+        CachedResponse(int statusCode, String statusText, HttpHeaders headers, ByteBuffer payload, long expiresAt) {
+            this.statusCode = statusCode;
+            this.statusText = statusText;
+            this.headers = HttpHeaders.readOnlyHttpHeaders(headers);
+            this.payload = Objects.nonNull(payload) ? payload : ByteBuffer.allocate(0);
+            this.expiresAt = expiresAt;
+
+            long weight = ENTRY_OVERHEAD + this.payload.remaining();
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                weight += header.getKey().length();
+                for (String value : header.getValue()) {
+                    weight += value.length();
+                }
+            }
+            this.weight = (int) Math.min(weight, Integer.MAX_VALUE);
+        }
+
+        boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+
+        int getWeight() {
+            return weight;
+        }
+
+    }
+
+    static class CachedClientHttpResponse extends AbstractClientHttpResponse {
+
+        private final CachedResponse cached;
+
+        CachedClientHttpResponse(CachedResponse cached) {
+            this.cached = cached;
+        }
+
+        @Override
+        public int getRawStatusCode() {
+            return cached.statusCode;
+        }
+
+        @Override
+        public String getStatusText() {
+            return StringUtils.hasText(cached.statusText) ? cached.statusText : HttpStatus.valueOf(cached.statusCode).getReasonPhrase();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return cached.headers;
+        }
+
+        @Override
+        public InputStream getBody() {
+            return new AWSLambdaClientResponse.ByteBufferBackedInputStream(cached.payload.duplicate());
+        }
+
+        @Override
+        public void close() {
+
+        }
+
+    }
+
+}
@@ -0,0 +1,401 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.SdkBaseException;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.retry.RetryUtils;
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.netflix.hystrix.exception.HystrixBadRequestException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.ServerHttpRequest;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 일시적인 오류로 실패한 람다 호출을 다시 시도한다. AWS SDK의 재시도(maxErrorRetry)는 Hystrix 타임아웃을 알지 못하므로 0으로 두고 이 정책을 사용한다.
+ *
+ * 다음 오류만 재시도한다.
+ * <ul>
+ *     <li>호출 제한: TooManyRequestsException 또는 429 응답</li>
+ *     <li>함수를 실행하기 전의 오류: 함수를 갱신 중이거나 VPC 네트워크를 준비하지 못한 경우, 람다 엔드포인트에 연결하지 못한 경우</li>
+ *     <li>람다 서비스 오류: 5xx 응답 등 AWS SDK가 재시도할 수 있다고 판단하는 오류, 연결이 끊어지는 등의 I/O 오류</li>
+ *     <li>함수 오류: 응답의 errorType이 {@link #setRetryableFunctionErrors(Collection)}로 지정한 값인 경우</li>
+ * </ul>
+ * 람다 서비스 오류와 함수 오류는 함수가 이미 실행되었을 수 있으므로 멱등 요청({@link #setIdempotentMethods(Collection)})만 재시도하고,
+ * POST 같은 요청은 함수를 실행하기 전에 거절된 것이 확실한 호출 제한과 함수를 실행하기 전의 오류만 재시도한다.
+ *
+ * 재시도 간격은 full jitter 지수 백오프(0 ~ min(maxBackoff, baseBackoff * 2^n) 사이의 임의 값)이며, 호출 스레드를 멈추지 않고 타이머로 다시 호출한다.
+ * {@link AWSLambdaClientRequest#DEADLINE}까지 남은 시간에서 백오프를 빼고도 minAttemptTime 이상 남았을 때만 재시도하므로 Hystrix 타임아웃을 넘기지 않는다.
+ *
+ * 재시도는 라우트마다 예산(기본값 요청 수의 10%)을 나눠 쓴다. 람다가 과부하로 호출을 제한하는 동안 재시도가 호출 수를 몇 배로 늘리지 않게 한다.
+ * {@link #route(String, String)}로 얻은 라우트별 인터셉터를 사용하며, {@link #setRoutes(Collection)}로 지정한 라우트에만 적용된다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+@Slf4j
+public class AWSLambdaRetryPolicy {
+
+    static final int MAX_ERROR_PAYLOAD_BYTES = 64 * 1024;
+
+    /**
+     * 람다가 함수를 실행하기 전에 거절한 호출의 오류 코드
+     */
+    static final Set<String> PRE_INVOCATION_ERROR_CODES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "ResourceConflictException", "ResourceNotReadyException",
+            "EC2ThrottledException", "ENILimitReachedException", "SubnetIPAddressLimitReachedException")));
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final ConcurrentMap<String, RouteRetry> routeRetries = new ConcurrentHashMap<>();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder budgetExhausted = new LongAdder();
+    private final LongAdder deadlineExceeded = new LongAdder();
+
+    private volatile Set<String> routes = Collections.emptySet();
+    private volatile Set<String> retryableFunctionErrors = Collections.emptySet();
+    private volatile Set<HttpMethod> idempotentMethods = EnumSet.of(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS, HttpMethod.PUT, HttpMethod.DELETE);
+    private int maxAttempts = 3;
+    private long baseBackoffNanos = TimeUnit.MILLISECONDS.toNanos(25);
+    private long maxBackoffNanos = TimeUnit.SECONDS.toNanos(1);
+    private long minAttemptNanos = TimeUnit.MILLISECONDS.toNanos(50);
+    private double budgetRatio = 0.1;
+    private int maxBudget = 10;
+
+    public AWSLambdaRetryPolicy() {
+        this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "lambda-retry-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param routes 재시도할 라우트 ID 또는 람다 ARN
+     */
+    public void setRoutes(Collection<String> routes) {
+        this.routes = Objects.nonNull(routes) ? Collections.unmodifiableSet(new HashSet<>(routes)) : Collections.emptySet();
+    }
+
+    public boolean isRetryableRoute(String routeId, String functionArn) {
+        return (Objects.nonNull(routeId) && routes.contains(routeId)) || (Objects.nonNull(functionArn) && routes.contains(functionArn));
+    }
+
+    /**
+     * @return 라우트의 재시도 예산을 사용하는 인터셉터, 라우트 ID를 알 수 없다면 람다 ARN 마다 예산을 나눈다.
+     */
+    public AWSLambdaInvocationInterceptor route(String routeId, String functionArn, ServerHttpRequest request) {
+        String route = Objects.nonNull(routeId) ? routeId : functionArn;
+        RouteRetry routeRetry = routeRetries.get(route);
+        if (Objects.isNull(routeRetry)) {
+            routeRetry = routeRetries.computeIfAbsent(route, key -> new RouteRetry(new AWSLambdaInvocationBudget(budgetRatio, maxBudget)));
+        }
+        return isIdempotent(request) ? routeRetry : routeRetry.nonIdempotent;
+    }
+
+    public boolean isIdempotent(ServerHttpRequest request) {
+        return idempotentMethods.contains(request.getMethod());
+    }
+
+    /**
+     * @return 결과나 오류가 멱등 요청에서 재시도할 수 있는 일시적인 실패인지 여부
+     */
+    public boolean isRetryable(InvokeResult result, Throwable error) {
+        return isRetryable(result, error, true);
+    }
+
+    /**
+     * @param idempotent false 라면 람다가 함수를 실행하기 전에 거절한 호출만 재시도할 수 있다.
+     * @return 결과나 오류가 재시도할 수 있는 일시적인 실패인지 여부
+     */
+    public boolean isRetryable(InvokeResult result, Throwable error, boolean idempotent) {
+        if (Objects.nonNull(result)) {
+            return idempotent && Objects.nonNull(result.getFunctionError()) && !retryableFunctionErrors.isEmpty()
+                    && retryableFunctionErrors.contains(readErrorType(result.getPayload()));
+        }
+
+        Throwable cause = error instanceof CompletionException && Objects.nonNull(error.getCause()) ? error.getCause() : error;
+        if (cause instanceof HystrixBadRequestException || cause instanceof CancellationException) {
+            return false;
+        }
+        if (isRejectedBeforeInvocation(cause)) {
+            return true;
+        }
+        if (!idempotent) {
+            return false;
+        }
+        if (cause instanceof AmazonServiceException) {
+            // AmazonServiceException을 받는 RetryUtils 메서드는 폐기 예정이므로 SdkBaseException을 받는 메서드를 사용한다.
+            AmazonServiceException serviceError = (AmazonServiceException) cause;
+            return serviceError.getStatusCode() >= 500
+                    || RetryUtils.isRetryableServiceException((SdkBaseException) serviceError)
+                    || RetryUtils.isThrottlingException((SdkBaseException) serviceError);
+        }
+        return cause instanceof SdkClientException && cause.getCause() instanceof IOException;
+    }
+
+    /**
+     * @return 호출 제한이나 연결 실패처럼 람다가 함수를 실행하기 전에 거절했거나 요청이 전달되지 않은 오류인지 여부
+     */
+    protected boolean isRejectedBeforeInvocation(Throwable cause) {
+        if (AWSLambdaMetrics.isThrottled(cause)) {
+            return true;
+        }
+        if (cause instanceof AmazonServiceException) {
+            return PRE_INVOCATION_ERROR_CODES.contains(((AmazonServiceException) cause).getErrorCode());
+        }
+        if (cause instanceof SdkClientException) {
+            Throwable ioError = cause.getCause();
+            return ioError instanceof ConnectException || ioError instanceof NoRouteToHostException
+                    || ioError instanceof UnknownHostException || ioError instanceof ConnectTimeoutException;
+        }
+        return false;
+    }
+
+    /**
+     * 함수 오류 응답({"errorMessage": "...", "errorType": "..."})에서 errorType을 읽는다. 큰 페이로드는 읽지 않는다.
+     */
+    protected String readErrorType(ByteBuffer payload) {
+        if (Objects.isNull(payload) || payload.remaining() > MAX_ERROR_PAYLOAD_BYTES) {
+            return null;
+        }
+        try (JsonParser parser = jsonFactory.createParser(new AWSLambdaClientResponse.ByteBufferBackedInputStream(payload.duplicate()))) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("errorType".equals(name) && value == JsonToken.VALUE_STRING) {
+                    return parser.getText();
+                }
+                parser.skipChildren();
+            }
+            return null;
+        } catch (IOException error) {
+            return null;
+        }
+    }
+
+    /**
+     * @return attempt 번째 재시도 전에 기다릴 시간(나노초)
+     */
+    long backoffNanos(int attempt) {
+        long ceiling = maxBackoffNanos;
+        if (attempt <= 30 && baseBackoffNanos <= (maxBackoffNanos >> (attempt - 1))) {
+            ceiling = baseBackoffNanos << (attempt - 1);
+        }
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * @return 람다 함수를 다시 호출한 횟수
+     */
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    /**
+     * @return 재시도할 수 있었지만 라우트의 예산이 부족해서 실패로 끝낸 횟수
+     */
+    public long getBudgetExhaustedCount() {
+        return budgetExhausted.sum();
+    }
+
+    /**
+     * @return 재시도할 수 있었지만 마감 시각까지 시간이 부족해서 실패로 끝낸 횟수
+     */
+    public long getDeadlineExceededCount() {
+        return deadlineExceeded.sum();
+    }
+
+    /**
+     * @param maxAttempts 첫 호출을 포함한 최대 호출 수, 기본값은 3
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts는 1 이상이어야 합니다.");
+        }
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * @param baseBackoff 첫 재시도의 최대 백오프, 기본값은 25ms
+     * @param maxBackoff 백오프의 상한, 기본값은 1초
+     */
+    public void setBackoff(long baseBackoff, long maxBackoff, TimeUnit unit) {
+        if (baseBackoff < 1 || baseBackoff > maxBackoff) {
+            throw new IllegalArgumentException("0 < baseBackoff <= maxBackoff 이어야 합니다.");
+        }
+        this.baseBackoffNanos = unit.toNanos(baseBackoff);
+        this.maxBackoffNanos = unit.toNanos(maxBackoff);
+    }
+
+    /**
+     * @param minAttemptTime 백오프 후 마감 시각까지 최소한 이만큼 남아야 재시도한다. 기본값은 50ms
+     */
+    public void setMinAttemptTime(long minAttemptTime, TimeUnit unit) {
+        this.minAttemptNanos = unit.toNanos(minAttemptTime);
+    }
+
+    /**
+     * @param budgetRatio 라우트의 요청 수 대비 재시도의 최대 비율(0 ~ 1), 기본값은 0.1
+     * @param maxBudget 한 번에 재시도할 수 있는 최대 호출 수, 이미 사용 중인 라우트는 새 예산으로 바뀐다.
+     */
+    public void setBudget(double budgetRatio, int maxBudget) {
+        if (budgetRatio < 0 || budgetRatio > 1 || maxBudget < 1) {
+            throw new IllegalArgumentException("budgetRatio는 0 ~ 1, maxBudget은 1 이상이어야 합니다.");
+        }
+        this.budgetRatio = budgetRatio;
+        this.maxBudget = maxBudget;
+        routeRetries.values().forEach(routeRetry -> routeRetry.budget = new AWSLambdaInvocationBudget(budgetRatio, maxBudget));
+    }
+
+    /**
+     * @param methods 람다 서비스 오류와 함수 오류도 재시도할 멱등 HTTP 메소드, 기본값은 GET, HEAD, OPTIONS, PUT, DELETE
+     */
+    public void setIdempotentMethods(Collection<HttpMethod> methods) {
+        this.idempotentMethods = Objects.nonNull(methods) && !methods.isEmpty() ? Collections.unmodifiableSet(EnumSet.copyOf(methods)) : Collections.emptySet();
+    }
+
+    /**
+     * @param errorTypes 재시도할 함수 오류의 errorType (예: 함수에서 정의한 TransientError)
+     */
+    public void setRetryableFunctionErrors(Collection<String> errorTypes) {
+        this.retryableFunctionErrors = Objects.nonNull(errorTypes) ? Collections.unmodifiableSet(new HashSet<>(errorTypes)) : Collections.emptySet();
+    }
+
+    /**
+     * 예약된 재시도를 취소하고 타이머를 종료한다.
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+
+    /**
+     * 멱등 요청의 인터셉터, 멱등이 아닌 요청은 같은 예산을 나눠 쓰는 {@link #nonIdempotent}를 사용한다.
+     */
+    class RouteRetry implements AWSLambdaInvocationInterceptor {
+
+        final AWSLambdaInvocationInterceptor nonIdempotent = (request, execution) -> intercept(request, execution, false);
+
+        private volatile AWSLambdaInvocationBudget budget;
+
+        RouteRetry(AWSLambdaInvocationBudget budget) {
+            this.budget = budget;
+        }
+
+        @Override
+        public CompletableFuture<InvokeResult> intercept(InvokeRequest request, AWSLambdaInvocationExecution execution) {
+            return intercept(request, execution, true);
+        }
+
+        CompletableFuture<InvokeResult> intercept(InvokeRequest request, AWSLambdaInvocationExecution execution, boolean idempotent) {
+            AWSLambdaInvocationBudget budget = this.budget;
+            budget.deposit();
+            RetryingInvocation invocation = new RetryingInvocation(request, execution, budget, idempotent);
+            invocation.attempt(request, false);
+            return invocation.result;
+        }
+
+    }
+
+    /**
+     * 첫 호출은 요청한 방식(동기/비동기) 그대로 실행하고, 재시도는 타이머 스레드가 멈추지 않도록 비동기로 실행한다.
+     */
+    class RetryingInvocation {
+
+        final CompletableFuture<InvokeResult> result = new CompletableFuture<>();
+
+        private final InvokeRequest request;
+        private final AWSLambdaInvocationExecution execution;
+        private final AWSLambdaInvocationBudget budget;
+        private final boolean idempotent;
+        private final AtomicInteger attempts = new AtomicInteger();
+        private volatile CompletableFuture<InvokeResult> current;
+
+        RetryingInvocation(InvokeRequest request, AWSLambdaInvocationExecution execution, AWSLambdaInvocationBudget budget, boolean idempotent) {
+            this.request = request;
+            this.execution = execution;
+            this.budget = budget;
+            this.idempotent = idempotent;
+            // 호출한 쪽이 결과를 취소하면 진행 중인 호출도 취소한다.
+            this.result.whenComplete((result, error) -> {
+                CompletableFuture<InvokeResult> invocation = current;
+                if (this.result.isCancelled() && Objects.nonNull(invocation)) {
+                    invocation.cancel(true);
+                }
+            });
+        }
+
+        void attempt(InvokeRequest attemptRequest, boolean async) {
+            if (result.isDone()) {
+                return;
+            }
+            attempts.incrementAndGet();
+            CompletableFuture<InvokeResult> invocation;
+            try {
+                invocation = async ? execution.executeAsync(attemptRequest) : execution.execute(attemptRequest);
+            } catch (RuntimeException error) {
+                invocation = new CompletableFuture<>();
+                invocation.completeExceptionally(error);
+            }
+            current = invocation;
+            invocation.whenComplete(this::onComplete);
+        }
+
+        private void onComplete(InvokeResult invokeResult, Throwable error) {
+            if (!result.isDone() && isRetryable(invokeResult, error, idempotent) && attempts.get() < maxAttempts && retry()) {
+                return;
+            }
+            if (Objects.nonNull(error)) {
+                result.completeExceptionally(error instanceof CompletionException && Objects.nonNull(error.getCause()) ? error.getCause() : error);
+            } else {
+                result.complete(invokeResult);
+            }
+        }
+
+        private boolean retry() {
+            int attempts = this.attempts.get();
+            long backoffNanos = backoffNanos(attempts);
+            if (AWSLambdaClientRequest.getRemainingNanos(request) - backoffNanos < minAttemptNanos) {
+                deadlineExceeded.increment();
+                return false;
+            }
+            if (!budget.tryWithdraw()) {
+                budgetExhausted.increment();
+                return false;
+            }
+            retries.increment();
+            log.debug("retry lambda invocation after {}ms, attempt {}: {}", TimeUnit.NANOSECONDS.toMillis(backoffNanos), attempts + 1, request.getFunctionName());
+
+            // 페이로드 버퍼의 위치를 이전 호출과 나눠 쓰지 않도록 별도의 뷰를 준다.
+            InvokeRequest retryRequest = request.clone();
+            if (Objects.nonNull(request.getPayload())) {
+                retryRequest.setPayload(request.getPayload().duplicate());
+            }
+            try {
+                scheduler.schedule(() -> attempt(retryRequest, true), backoffNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException error) {
+                return false;
+            }
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,45 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 람다 Invoke API를 호출하는 전송 계층, {@link AWSLambdaClientRequest}는 인터셉터 체인을 실행한 후 이 인터페이스로 람다 함수를 호출한다.
+ *
+ * 요청과 응답은 AWS SDK의 모델 객체로 주고받는다. {@link InvokeRequest}의 함수 이름과 페이로드, 호출 유형, 클라이언트 컨텍스트를 보내고,
+ * 상태 코드와 함수 오류, 페이로드, 응답 헤더({@link InvokeResult#getSdkHttpMetadata()})를 {@link InvokeResult}로 돌려준다.
+ * 람다 서비스의 오류 응답은 AWS SDK와 같이 {@link com.amazonaws.AmazonServiceException}으로 실패해야 재시도 정책과 지표가 같은 방식으로 동작한다.
+ *
+ * @author arawn.kr@gmail.com
+ * @see org.springframework.cloud.netflix.aws.lambda.support.SdkClientTransport
+ * @see org.springframework.cloud.netflix.aws.lambda.support.NettyTransport
+ */
+public interface AWSLambdaTransport {
+
+    /**
+     * 호출한 스레드에서 람다 함수를 호출하고 응답을 기다린다.
+     */
+    InvokeResult invoke(InvokeRequest request);
+
+    /**
+     * 반환된 future를 취소하면 진행 중인 요청을 중단하고 연결(과 스레드)을 돌려받는다. 연결을 끊었는지는 {@link AbortableInvocation}으로 알린다.
+     * 요청의 {@link InvokeRequest#getSdkRequestTimeout()}이 지나면 {@link com.amazonaws.http.timers.client.ClientExecutionTimeoutException}으로 실패한다.
+     */
+    CompletableFuture<InvokeResult> invokeAsync(InvokeRequest request);
+
+    /**
+     * {@link #invokeAsync(InvokeRequest)}가 반환한 future가 구현하면, 취소했을 때 응답을 기다리던 연결을 실제로 끊었는지 알려준다.
+     * 구현하지 않은 전송 계층의 호출은 취소하더라도 연결을 돌려받은 것으로 집계하지 않는다.
+     */
+    interface AbortableInvocation {
+
+        /**
+         * @return 취소하면서 진행 중인 HTTP 요청을 중단했거나 연결을 닫았다면 true
+         */
+        boolean isAborted();
+
+    }
+
+}
@@ -1,7 +1,10 @@
 package org.springframework.cloud.netflix.aws.lambda;
 
+import com.amazonaws.adapters.types.StringToByteBufferAdapter;
 import org.springframework.http.server.ServerHttpRequest;
 
+import java.nio.ByteBuffer;
+
 /**
  * @author arawn.kr@gmail.com
  */
@@ -9,4 +12,12 @@ public interface RequestPayloadExtractor {
 
     String extract(ServerHttpRequest request);
 
+    /**
+     * 람다 호출에 그대로 사용할 수 있도록 UTF-8로 인코딩된 payload를 반환한다.
+     * 문자열 변환을 거치지 않고 바이트를 다룰 수 있는 구현체는 이 메소드를 재정의한다.
+     */
+    default ByteBuffer extractBytes(ServerHttpRequest request) {
+        return new StringToByteBufferAdapter().adapt(extract(request));
+    }
+
 }
@@ -0,0 +1,153 @@
+package org.springframework.cloud.netflix.aws.lambda.support;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.ClientConfigurationFactory;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
+import com.amazonaws.auth.Signer;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.handlers.HandlerContextKey;
+import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.http.ExecutionContext;
+import com.amazonaws.http.timers.client.ClientExecutionAbortTrackerTask;
+import com.amazonaws.internal.auth.SignerProviderContext;
+import com.amazonaws.regions.DefaultAwsRegionProviderChain;
+import com.amazonaws.regions.RegionUtils;
+import com.amazonaws.services.lambda.AWSLambdaAsyncClient;
+import com.amazonaws.services.lambda.AWSLambdaAsyncClientBuilder;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+/**
+ * 진행 중인 호출의 HTTP 요청을 중단할 수 있는 {@link AWSLambdaAsyncClient}
+ *
+ * AWS SDK v1의 비동기 호출을 취소하면 호출 스레드를 인터럽트할 뿐, 응답을 기다리는 소켓 읽기는 멈추지 않으므로 연결은 응답이 오거나 소켓 타임아웃이 지나야 돌아온다.
+ * 이 클라이언트는 SDK가 시도마다 만드는 HTTP 요청({@link HttpRequestBase})을 {@link SdkClientTransport}의 호출에 알려주고,
+ * 전송 계층은 호출이 취소되면 {@link HttpRequestBase#abort()}로 연결을 끊는다.
+ * SDK는 클라이언트 실행 타임아웃을 위해 {@link ClientExecutionAbortTrackerTask}에 현재 HTTP 요청을 넘기므로, 실행 컨텍스트에서 이 작업을 감싸서 HTTP 요청을 받는다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+public class AbortableAWSLambdaAsyncClient extends AWSLambdaAsyncClient {
+
+    static final HandlerContextKey<Consumer<HttpRequestBase>> HTTP_REQUEST_LISTENER = new HandlerContextKey<>("AWSLambdaHttpRequestListener");
+
+    public AbortableAWSLambdaAsyncClient(AWSCredentialsProvider credentialsProvider, ClientConfiguration clientConfiguration, ExecutorService executorService) {
+        super(credentialsProvider, clientConfiguration, executorService);
+    }
+
+    /**
+     * {@link AWSLambdaAsyncClientBuilder}에 설정한 자격 증명, 클라이언트 설정, 엔드포인트(또는 리전), 요청 핸들러로 클라이언트를 만든다.
+     * 설정하지 않은 값은 빌더와 같이 기본 자격 증명과 리전 공급자 체인에서 찾는다.
+     */
+    public static AbortableAWSLambdaAsyncClient build(AWSLambdaAsyncClientBuilder clientBuilder, ExecutorService executorService) {
+        if (Objects.nonNull(clientBuilder.getMetricsCollector())) {
+            throw new IllegalArgumentException("요청 지표 수집기(RequestMetricCollector)를 설정한 빌더는 지원하지 않습니다.");
+        }
+
+        AWSCredentialsProvider credentialsProvider = clientBuilder.getCredentials();
+        ClientConfiguration clientConfiguration = clientBuilder.getClientConfiguration();
+        AbortableAWSLambdaAsyncClient lambdaClient = new AbortableAWSLambdaAsyncClient(Objects.nonNull(credentialsProvider) ? credentialsProvider : DefaultAWSCredentialsProviderChain.getInstance(),
+                                                                                       Objects.nonNull(clientConfiguration) ? clientConfiguration : new ClientConfigurationFactory().getConfig(),
+                                                                                       executorService);
+
+        AwsClientBuilder.EndpointConfiguration endpoint = clientBuilder.getEndpoint();
+        if (Objects.nonNull(endpoint)) {
+            lambdaClient.setEndpoint(endpoint.getServiceEndpoint());
+            if (StringUtils.hasText(endpoint.getSigningRegion())) {
+                lambdaClient.setSignerRegionOverride(endpoint.getSigningRegion());
+            }
+        } else {
+            String region = StringUtils.hasText(clientBuilder.getRegion()) ? clientBuilder.getRegion() : new DefaultAwsRegionProviderChain().getRegion();
+            if (!StringUtils.hasText(region)) {
+                lambdaClient.shutdown();
+                throw new SdkClientException("람다 클라이언트의 리전을 찾을 수 없습니다. 리전이나 엔드포인트를 설정하세요.");
+            }
+            lambdaClient.setRegion(RegionUtils.getRegion(region));
+        }
+
+        List<RequestHandler2> requestHandlers = clientBuilder.getRequestHandlers();
+        if (Objects.nonNull(requestHandlers)) {
+            requestHandlers.forEach(lambdaClient::addRequestHandler);
+        }
+        return lambdaClient;
+    }
+
+    /**
+     * 요청에 HTTP 요청을 받을 호출이 있다면, SDK가 시도마다 만드는 HTTP 요청을 호출에 알려주는 실행 컨텍스트를 사용한다.
+     */
+    @Override
+    protected ExecutionContext createExecutionContext(AmazonWebServiceRequest request) {
+        ExecutionContext executionContext = super.createExecutionContext(request);
+        Consumer<HttpRequestBase> listener = request.getHandlerContext(HTTP_REQUEST_LISTENER);
+        return Objects.nonNull(listener) ? new HttpRequestTrackingContext(executionContext, listener) : executionContext;
+    }
+
+
+    /**
+     * 서명은 SDK가 만든 실행 컨텍스트에 맡기고, 클라이언트 실행 타임아웃 작업만 감싼다.
+     */
+    class HttpRequestTrackingContext extends ExecutionContext {
+
+        private final ExecutionContext executionContext;
+        private final Consumer<HttpRequestBase> listener;
+
+        HttpRequestTrackingContext(ExecutionContext executionContext, Consumer<HttpRequestBase> listener) {
+            super(executionContext.getRequestHandler2s(), executionContext.getAwsRequestMetrics().isEnabled(), AbortableAWSLambdaAsyncClient.this);
+            this.executionContext = executionContext;
+            this.listener = listener;
+        }
+
+        @Override
+        public Signer getSigner(SignerProviderContext context) {
+            return executionContext.getSigner(context);
+        }
+
+        @Override
+        public void setClientExecutionTrackerTask(ClientExecutionAbortTrackerTask trackerTask) {
+            super.setClientExecutionTrackerTask(new HttpRequestTrackerTask(trackerTask, listener));
+        }
+
+    }
+
+    static class HttpRequestTrackerTask implements ClientExecutionAbortTrackerTask {
+
+        private final ClientExecutionAbortTrackerTask trackerTask;
+        private final Consumer<HttpRequestBase> listener;
+
+        HttpRequestTrackerTask(ClientExecutionAbortTrackerTask trackerTask, Consumer<HttpRequestBase> listener) {
+            this.trackerTask = trackerTask;
+            this.listener = listener;
+        }
+
+        @Override
+        public void setCurrentHttpRequest(HttpRequestBase newRequest) {
+            trackerTask.setCurrentHttpRequest(newRequest);
+            listener.accept(newRequest);
+        }
+
+        @Override
+        public boolean hasTimeoutExpired() {
+            return trackerTask.hasTimeoutExpired();
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return trackerTask.isEnabled();
+        }
+
+        @Override
+        public void cancelTask() {
+            trackerTask.cancelTask();
+        }
+
+    }
+
+}
@@ -0,0 +1,184 @@
+package org.springframework.cloud.netflix.aws.lambda.support;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Value;
+import lombok.val;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaClientContextFactory;
+import org.springframework.cloud.netflix.aws.lambda.ClientContext;
+import org.springframework.core.env.Environment;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.util.StringUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 요청마다 변하지 않는 client, environment 영역을 한 번만 직렬화해두고 재사용하는 {@link AWSLambdaClientContextFactory}
+ * {@link DefaultClientContextFactory}와 같은 JSON 구조를 만들며, 요청별 custom 영역은 스트리밍 생성기로 끼워 넣는다.
+ * 활성 프로파일이나 기본 로케일이 바뀌면 캐시를 다시 만든다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+public class CachingClientContextFactory implements AWSLambdaClientContextFactory {
+
+    /**
+     * The ClientContext JSON must be base64-encoded and has a maximum size of 3583 bytes.
+     */
+    public static final int MAX_ENCODED_SIZE = 3583;
+
+    private static final ClientContext.Custom EMPTY_CUSTOM = new ClientContext.Custom();
+
+    private final Environment environment;
+    private final ObjectMapper objectMapper;
+    private volatile Snapshot snapshot;
+
+    public CachingClientContextFactory(Environment environment) {
+        this(environment, Jackson2ObjectMapperBuilder.json().build());
+    }
+
+    public CachingClientContextFactory(Environment environment, ObjectMapper objectMapper) {
+        this.environment = environment;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public ClientContext create(ServerHttpRequest request) {
+        val snapshot = getSnapshot();
+        val custom = createCustom(request);
+        if (Objects.isNull(custom) || custom.isEmpty()) {
+            return new CachedClientContext(snapshot.client, EMPTY_CUSTOM, snapshot.environment, snapshot.encoded);
+        }
+        return new CachedClientContext(snapshot.client, custom, snapshot.environment, snapshot.encode(custom));
+    }
+
+    /**
+     * 요청별로 람다에 전달할 custom 영역을 작성한다. 기본 구현은 custom 영역을 사용하지 않는다.
+     */
+    protected ClientContext.Custom createCustom(ServerHttpRequest request) {
+        return null;
+    }
+
+    /**
+     * 캐시된 client context를 버리고, 다음 요청에서 다시 만든다.
+     */
+    public void invalidate() {
+        this.snapshot = null;
+    }
+
+    Snapshot getSnapshot() {
+        val current = this.snapshot;
+        val activeProfiles = environment.getActiveProfiles();
+        val locale = Locale.getDefault();
+        if (Objects.nonNull(current) && current.matches(activeProfiles, locale)) {
+            return current;
+        }
+
+        val client = new ClientContext.Client();
+        val environment = new ClientContext.Environment(); {
+            environment.put("spring.profiles.active", StringUtils.arrayToCommaDelimitedString(activeProfiles));
+            environment.put("locale", locale.toString());
+        }
+        val created = new Snapshot(activeProfiles, locale, client, environment);
+        this.snapshot = created;
+        return created;
+    }
+
+
+    /**
+     * 활성 프로파일과 로케일 기준으로 만들어진 client context 직렬화 결과
+     * JSON 은 {"x-amz-Client-Context":{"client":{..},"custom":{..},"environment":{..}}} 형태로,
+     * custom 영역 앞뒤의 바이트를 나눠서 보관한다.
+     */
+    class Snapshot {
+
+        private final String[] activeProfiles;
+        private final Locale locale;
+        private final ClientContext.Client client;
+        private final ClientContext.Environment environment;
+        private final byte[] prefix;
+        private final byte[] suffix;
+        private final String encoded;
+
+        Snapshot(String[] activeProfiles, Locale locale, ClientContext.Client client, ClientContext.Environment environment) {
+            this.activeProfiles = activeProfiles;
+            this.locale = locale;
+            this.client = client;
+            this.environment = environment;
+            try {
+                this.prefix = ("{\"x-amz-Client-Context\":{\"client\":" + objectMapper.writeValueAsString(client) + ",\"custom\":").getBytes(StandardCharsets.UTF_8);
+                this.suffix = (",\"environment\":" + objectMapper.writeValueAsString(environment) + "}}").getBytes(StandardCharsets.UTF_8);
+            } catch (IOException error) {
+                throw new ClientContextCreationException(error);
+            }
+            this.encoded = encode(EMPTY_CUSTOM);
+        }
+
+        boolean matches(String[] activeProfiles, Locale locale) {
+            return Arrays.equals(this.activeProfiles, activeProfiles) && Objects.equals(this.locale, locale);
+        }
+
+        String encode(Map<String, String> custom) {
+            val output = new ByteArrayOutputStream(prefix.length + suffix.length + 64);
+            try {
+                output.write(prefix);
+                try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+                    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                    generator.writeStartObject();
+                    for (Map.Entry<String, String> entry : custom.entrySet()) {
+                        generator.writeStringField(entry.getKey(), entry.getValue());
+                    }
+                    generator.writeEndObject();
+                }
+                output.write(suffix);
+            } catch (IOException error) {
+                throw new ClientContextCreationException(error);
+            }
+
+            val encoded = Base64.getEncoder().encodeToString(output.toByteArray());
+            if (encoded.length() > MAX_ENCODED_SIZE) {
+                throw new ClientContextSizeExceededException(encoded.length());
+            }
+            return encoded;
+        }
+
+    }
+
+    @Value
+    class CachedClientContext implements ClientContext {
+
+        private ClientContext.Client client;
+        private ClientContext.Custom custom;
+        private ClientContext.Environment environment;
+        private String encoded;
+
+        /**
+         * @return The ClientContext JSON must be base64-encoded and has a maximum size of 3583 bytes.
+         */
+        @Override
+        public String toString() {
+            return encoded;
+        }
+
+    }
+
+    class ClientContextCreationException extends RuntimeException {
+        ClientContextCreationException(Throwable cause) {
+            super(cause);
+        }
+    }
+
+    class ClientContextSizeExceededException extends RuntimeException {
+        ClientContextSizeExceededException(int encodedSize) {
+            super(String.format("client context 크기(%d bytes)가 최대 크기(%d bytes)를 초과했습니다.", encodedSize, MAX_ENCODED_SIZE));
+        }
+    }
+
+}
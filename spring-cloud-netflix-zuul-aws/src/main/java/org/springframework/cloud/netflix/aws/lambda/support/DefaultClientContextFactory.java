@@ -38,10 +38,19 @@ public class DefaultClientContextFactory implements AWSLambdaClientContextFactor
 
     @Override
     public ClientContext create(ServerHttpRequest request) {
-        val client = new ClientContext.Client(); {
+        val custom = new ClientContext.Custom(); {
 
         }
-        val custom = new ClientContext.Custom(); {
+        return create(custom);
+    }
+
+    /**
+     * 요청 없이 보내는 호출(워밍업 등)에 사용할 {@link ClientContext}를 작성한다.
+     *
+     * @param custom 람다에 전달할 custom 영역
+     */
+    public ClientContext create(ClientContext.Custom custom) {
+        val client = new ClientContext.Client(); {
 
         }
         val environment = new ClientContext.Environment(); {
@@ -46,7 +46,7 @@ public class DefaultRequestPayloadExtractor implements RequestPayloadExtractor {
 
             // body 에서 JSON 데이터 추출
             val targetType = JsonNode.class;
-            if (jsonConverter.canRead(targetType, contentType)) {
+            if (canReadJson(contentType)) {
                 log.debug("Read [{}] as \"{}\" with [{}]", targetType, contentType, jsonConverter);
                 if (Objects.nonNull(inputMessage.getBody())) {
                     return (JsonNode) jsonConverter.read(targetType, inputMessage);
@@ -69,6 +69,10 @@ public class DefaultRequestPayloadExtractor implements RequestPayloadExtractor {
         }
     }
 
+    protected boolean canReadJson(MediaType contentType) {
+        return jsonConverter.canRead(JsonNode.class, contentType);
+    }
+
 
     class FormBody extends LinkedMultiValueMap<String, Object> { }
 
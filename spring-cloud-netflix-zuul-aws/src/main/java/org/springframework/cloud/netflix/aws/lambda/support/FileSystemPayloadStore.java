@@ -0,0 +1,124 @@
+package org.springframework.cloud.netflix.aws.lambda.support;
+
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaPayloadStore;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 로컬 파일 시스템의 디렉토리를 사용하는 {@link AWSLambdaPayloadStore}
+ * 람다 함수와 파일 시스템을 공유하는 환경(로컬 실행, EFS 등)이나 테스트에서 사용한다.
+ * 조각은 {@link AsynchronousFileChannel}로 기록하고 읽으므로 호출한 스레드를 막지 않는다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+public class FileSystemPayloadStore implements AWSLambdaPayloadStore {
+
+    private final Path directory;
+
+    public FileSystemPayloadStore(Path directory) throws IOException {
+        this.directory = Files.createDirectories(Objects.requireNonNull(directory)).toAbsolutePath().normalize();
+    }
+
+    @Override
+    public String create(long size) throws IOException {
+        return Files.createTempFile(directory, "lambda-claim-", ".bin").toUri().toString();
+    }
+
+    @Override
+    public CompletableFuture<Void> write(String location, long offset, ByteBuffer part) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            AsynchronousFileChannel channel = AsynchronousFileChannel.open(resolve(location), StandardOpenOption.WRITE);
+            channel.write(part, offset, offset, new CompletionHandler<Integer, Long>() {
+                @Override
+                public void completed(Integer written, Long position) {
+                    if (part.hasRemaining()) {
+                        channel.write(part, position + written, position + written, this);
+                        return;
+                    }
+                    complete(future, null, close(channel, null));
+                }
+
+                @Override
+                public void failed(Throwable error, Long position) {
+                    complete(future, null, close(channel, error));
+                }
+            });
+        } catch (IOException | RuntimeException error) {
+            future.completeExceptionally(error);
+        }
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<ByteBuffer> read(String location, long offset, int length) {
+        CompletableFuture<ByteBuffer> future = new CompletableFuture<>();
+        try {
+            AsynchronousFileChannel channel = AsynchronousFileChannel.open(resolve(location), StandardOpenOption.READ);
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            channel.read(buffer, offset, offset, new CompletionHandler<Integer, Long>() {
+                @Override
+                public void completed(Integer read, Long position) {
+                    if (read >= 0 && buffer.hasRemaining()) {
+                        channel.read(buffer, position + read, position + read, this);
+                        return;
+                    }
+                    buffer.flip();
+                    complete(future, buffer, close(channel, null));
+                }
+
+                @Override
+                public void failed(Throwable error, Long position) {
+                    complete(future, null, close(channel, error));
+                }
+            });
+        } catch (IOException | RuntimeException error) {
+            future.completeExceptionally(error);
+        }
+        return future;
+    }
+
+    @Override
+    public void delete(String location) throws IOException {
+        Files.deleteIfExists(resolve(location));
+    }
+
+    /**
+     * 람다 함수가 돌려준 위치로 디렉토리 밖의 파일을 읽을 수 없도록 디렉토리 안의 파일만 허용한다.
+     */
+    protected Path resolve(String location) {
+        Path path = Paths.get(URI.create(location)).toAbsolutePath().normalize();
+        if (!path.startsWith(directory) || path.equals(directory)) {
+            throw new IllegalArgumentException("저장소 밖의 위치입니다: " + location);
+        }
+        return path;
+    }
+
+    private static Throwable close(AsynchronousFileChannel channel, Throwable error) {
+        try {
+            channel.close();
+        } catch (IOException closeError) {
+            return Objects.nonNull(error) ? error : closeError;
+        }
+        return error;
+    }
+
+    private static <T> void complete(CompletableFuture<T> future, T value, Throwable error) {
+        if (Objects.nonNull(error)) {
+            future.completeExceptionally(error);
+        } else {
+            future.complete(value);
+        }
+    }
+
+}
@@ -0,0 +1,716 @@
+package org.springframework.cloud.netflix.aws.lambda.support;
+
+import com.amazonaws.AbortedException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.ResponseMetadata;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.auth.AWS4Signer;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.http.HttpMethodName;
+import com.amazonaws.http.SdkHttpMetadata;
+import com.amazonaws.http.timers.client.ClientExecutionTimeoutException;
+import com.amazonaws.services.lambda.model.AWSLambdaException;
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+import com.amazonaws.services.lambda.model.TooManyRequestsException;
+import com.amazonaws.util.SdkHttpUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.*;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.*;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaFunctionArn;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaTransport;
+import org.springframework.util.StringUtils;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Netty의 논블로킹 소켓으로 람다 Invoke API를 직접 호출하는 {@link AWSLambdaTransport}
+ *
+ * AWS SDK v1은 비동기 호출도 응답을 받을 때까지 SDK 스레드 하나를 점유하므로, 동시 호출 수만큼 스레드가 필요하다.
+ * 이 전송 계층은 요청을 AWS SDK와 같은 방식(Signature Version 4)으로 서명해서 이벤트 루프로 보내고, 응답이 도착하면 future를 완료한다.
+ * 진행 중인 호출은 스레드가 아닌 연결만 점유하므로, 적은 수의 이벤트 루프 스레드로 많은 동시 호출을 처리할 수 있다.
+ *
+ * 연결은 엔드포인트마다 최대 연결 수까지 맺고 HTTP keep-alive로 재사용하며, 연결이 모두 사용 중이라면 호출은 연결이 반환될 때까지 대기열에서 기다린다.
+ * 호출이 취소되거나 타임아웃이 지나면 응답을 기다리던 연결을 닫는다.
+ *
+ * future는 이벤트 루프에서 완료되므로 오래 걸리는 작업(서블릿 응답 쓰기 등)을 콜백으로 연결한다면 {@link #setCallbackExecutor(Executor)}를 설정한다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+@Slf4j
+public class NettyTransport implements AWSLambdaTransport {
+
+    static final String SERVICE_NAME = "lambda";
+    static final String INVOKE_PATH = "/2015-03-31/functions/%s/invocations";
+
+    /**
+     * 동기 호출 응답 페이로드의 최대 크기(6MB)에 헤더와 오류 응답을 위한 여유를 더한 크기
+     */
+    public static final int DEFAULT_MAX_RESPONSE_SIZE = 6 * 1024 * 1024 + 64 * 1024;
+
+    private static final AttributeKey<Exchange> EXCHANGE = AttributeKey.valueOf("AWSLambdaExchange");
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final AWSCredentialsProvider credentialsProvider;
+    private final EventLoopGroup eventLoopGroup;
+    private final boolean sharedEventLoopGroup;
+    private final ResponseHandler responseHandler = new ResponseHandler();
+    private final ConcurrentMap<String, ConnectionPool> connectionPools = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AWS4Signer> signers = new ConcurrentHashMap<>();
+
+    private volatile SslContext sslContext;
+    private URI endpoint;
+    private String region;
+    private int maxConnections = ClientConfiguration.DEFAULT_MAX_CONNECTIONS;
+    private int connectionTimeout = ClientConfiguration.DEFAULT_CONNECTION_TIMEOUT;
+    private int responseTimeout = ClientConfiguration.DEFAULT_SOCKET_TIMEOUT;
+    private int maxResponseSize = DEFAULT_MAX_RESPONSE_SIZE;
+    private Executor callbackExecutor;
+
+    /**
+     * 가용한 프로세서 수의 두 배만큼 이벤트 루프 스레드를 만든다.
+     */
+    public NettyTransport(AWSCredentialsProvider credentialsProvider) {
+        this(credentialsProvider, new NioEventLoopGroup(0, new DefaultThreadFactory("lambda-netty", true)), false);
+    }
+
+    /**
+     * @param eventLoopGroup 다른 Netty 서버나 클라이언트와 함께 사용하는 {@link NioEventLoopGroup}, {@link #shutdown()}에서 종료하지 않는다.
+     */
+    public NettyTransport(AWSCredentialsProvider credentialsProvider, EventLoopGroup eventLoopGroup) {
+        this(credentialsProvider, eventLoopGroup, true);
+    }
+
+    private NettyTransport(AWSCredentialsProvider credentialsProvider, EventLoopGroup eventLoopGroup, boolean sharedEventLoopGroup) {
+        this.credentialsProvider = Objects.requireNonNull(credentialsProvider, "AWS 자격 증명이 필요합니다.");
+        this.eventLoopGroup = Objects.requireNonNull(eventLoopGroup, "이벤트 루프가 필요합니다.");
+        this.sharedEventLoopGroup = sharedEventLoopGroup;
+    }
+
+    @Override
+    public InvokeResult invoke(InvokeRequest request) {
+        CompletableFuture<InvokeResult> invocation = invokeAsync(request);
+        try {
+            return invocation.get();
+        } catch (InterruptedException error) {
+            invocation.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new AbortedException(error);
+        } catch (ExecutionException error) {
+            if (error.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) error.getCause();
+            }
+            throw new SdkClientException(error.getCause());
+        }
+    }
+
+    @Override
+    public CompletableFuture<InvokeResult> invokeAsync(InvokeRequest request) {
+        Exchange exchange;
+        try {
+            URI target = getEndpoint(request.getFunctionName());
+            exchange = new Exchange(getConnectionPool(target), createHttpRequest(target, request));
+        } catch (RuntimeException error) {
+            CompletableFuture<InvokeResult> failed = new CompletableFuture<>();
+            failed.completeExceptionally(error);
+            return failed;
+        }
+
+        Integer sdkRequestTimeout = request.getSdkRequestTimeout();
+        exchange.start(Objects.nonNull(sdkRequestTimeout) && sdkRequestTimeout > 0 ? sdkRequestTimeout : responseTimeout);
+        if (Objects.isNull(callbackExecutor)) {
+            return exchange;
+        }
+
+        CallbackInvocation invocation = new CallbackInvocation(exchange);
+        exchange.whenCompleteAsync((result, error) -> {
+            if (Objects.isNull(error)) {
+                invocation.complete(result);
+            } else {
+                invocation.completeExceptionally(error instanceof CompletionException && Objects.nonNull(error.getCause()) ? error.getCause() : error);
+            }
+        }, callbackExecutor);
+        return invocation;
+    }
+
+    /**
+     * 람다 함수 이름(ARN)의 리전으로 엔드포인트를 결정한다. 엔드포인트를 설정했다면 항상 설정한 엔드포인트를 사용한다.
+     */
+    protected URI getEndpoint(String functionName) {
+        if (Objects.nonNull(endpoint)) {
+            return endpoint;
+        }
+        return URI.create("https://lambda." + getRegion(functionName) + ".amazonaws.com");
+    }
+
+    protected String getRegion(String functionName) {
+        if (Objects.nonNull(functionName) && functionName.startsWith("arn:")) {
+            return AWSLambdaFunctionArn.parse(functionName).getRegion();
+        }
+        if (Objects.isNull(region)) {
+            throw new IllegalStateException("람다 함수의 리전을 알 수 없습니다. 함수 ARN을 사용하거나 리전을 설정하세요: " + functionName);
+        }
+        return region;
+    }
+
+    /**
+     * AWS SDK가 Invoke API를 호출할 때와 같은 경로, 쿼리, 헤더로 요청을 만들고 Signature Version 4로 서명한다.
+     * 페이로드는 복사하지 않고 감싸서 보내므로, 임시 파일을 매핑한 페이로드는 힙을 거치지 않고 파일에서 소켓으로 바로 기록된다.
+     */
+    FullHttpRequest createHttpRequest(URI target, InvokeRequest request) {
+        ByteBuf payload = toByteBuf(request.getPayload());
+
+        DefaultRequest<InvokeRequest> signable = new DefaultRequest<>(request, "AWSLambda"); {
+            signable.setHttpMethod(HttpMethodName.POST);
+            signable.setEndpoint(target);
+            signable.setResourcePath(String.format(INVOKE_PATH, SdkHttpUtils.urlEncode(request.getFunctionName(), false)));
+            if (StringUtils.hasText(request.getQualifier())) {
+                signable.addParameter("Qualifier", request.getQualifier());
+            }
+            if (StringUtils.hasText(request.getInvocationType())) {
+                signable.addHeader("X-Amz-Invocation-Type", request.getInvocationType());
+            }
+            if (StringUtils.hasText(request.getLogType())) {
+                signable.addHeader("X-Amz-Log-Type", request.getLogType());
+            }
+            if (StringUtils.hasText(request.getClientContext())) {
+                signable.addHeader("X-Amz-Client-Context", request.getClientContext());
+            }
+            signable.addHeader("Content-Type", "application/json");
+            signable.addHeader("Content-Length", String.valueOf(payload.readableBytes()));
+            signable.setContent(new ByteBufInputStream(payload.duplicate()));
+        }
+        getSigner(getRegion(request.getFunctionName())).sign(signable, credentialsProvider.getCredentials());
+
+        String queryString = SdkHttpUtils.encodeParameters(signable);
+        String uri = Objects.isNull(queryString) ? signable.getResourcePath() : signable.getResourcePath() + "?" + queryString;
+
+        FullHttpRequest httpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, uri, payload);
+        signable.getHeaders().forEach(httpRequest.headers()::set);
+        return httpRequest;
+    }
+
+    private AWS4Signer getSigner(String region) {
+        return signers.computeIfAbsent(region, key -> {
+            AWS4Signer signer = new AWS4Signer();
+            signer.setServiceName(SERVICE_NAME);
+            signer.setRegionName(key);
+            return signer;
+        });
+    }
+
+    /**
+     * 람다 서비스의 오류 응답은 AWS SDK와 같이 {@link AWSLambdaException}(스로틀링은 {@link TooManyRequestsException})으로 바꾼다.
+     * 함수 오류(X-Amz-Function-Error)는 성공 응답으로 돌려준다.
+     */
+    InvokeResult toInvokeResult(FullHttpResponse response) {
+        int status = response.getStatus().code();
+        HttpHeaders headers = response.headers();
+        ByteBuf content = response.content();
+        byte[] payload = new byte[content.readableBytes()];
+        content.getBytes(content.readerIndex(), payload);
+
+        if (status >= 300) {
+            throw createServiceException(status, headers, payload);
+        }
+
+        com.amazonaws.http.HttpResponse httpResponse = new com.amazonaws.http.HttpResponse(null, null); {
+            httpResponse.setStatusCode(status);
+            httpResponse.setStatusText(response.getStatus().reasonPhrase());
+            headers.entries().forEach(header -> httpResponse.addHeader(header.getKey(), header.getValue()));
+        }
+        InvokeResult result = new InvokeResult().withStatusCode(status)
+                                                .withFunctionError(headers.get("X-Amz-Function-Error"))
+                                                .withLogResult(headers.get("X-Amz-Log-Result"))
+                                                .withPayload(ByteBuffer.wrap(payload));
+        result.setSdkHttpMetadata(SdkHttpMetadata.from(httpResponse));
+        result.setSdkResponseMetadata(new ResponseMetadata(Collections.singletonMap(ResponseMetadata.AWS_REQUEST_ID, headers.get("x-amzn-RequestId"))));
+        return result;
+    }
+
+    AmazonServiceException createServiceException(int status, HttpHeaders headers, byte[] payload) {
+        String errorType = headers.get("x-amzn-ErrorType");
+        String errorCode = StringUtils.hasText(errorType) ? errorType.split(":")[0] : null;
+        String message = null;
+        try {
+            JsonNode error = OBJECT_MAPPER.readTree(payload);
+            message = error.has("message") ? error.get("message").asText() : error.path("Message").asText(null);
+            if (Objects.isNull(errorCode) && error.has("__type")) {
+                errorCode = error.get("__type").asText();
+            }
+        } catch (IOException | RuntimeException ignore) {
+            // 오류 응답이 JSON이 아니라면 상태 코드로만 구분한다.
+        }
+
+        AWSLambdaException error = status == 429 || "TooManyRequestsException".equals(errorCode) ? new TooManyRequestsException(message) : new AWSLambdaException(message);
+        error.setErrorCode(errorCode);
+        error.setStatusCode(status);
+        error.setErrorType(status >= 500 ? AmazonServiceException.ErrorType.Service : AmazonServiceException.ErrorType.Client);
+        error.setRequestId(headers.get("x-amzn-RequestId"));
+        error.setServiceName("AWSLambda");
+        return error;
+    }
+
+    ConnectionPool getConnectionPool(URI target) {
+        boolean secure = "https".equalsIgnoreCase(target.getScheme());
+        int port = target.getPort() > 0 ? target.getPort() : secure ? 443 : 80;
+        String key = target.getScheme() + "://" + target.getHost() + ":" + port;
+        return connectionPools.computeIfAbsent(key, it -> new ConnectionPool(target.getHost(), port, secure));
+    }
+
+    private SslContext getSslContext() {
+        if (Objects.isNull(sslContext)) {
+            synchronized (this) {
+                if (Objects.isNull(sslContext)) {
+                    try {
+                        sslContext = SslContext.newClientContext();
+                    } catch (SSLException error) {
+                        throw new SdkClientException("TLS 연결을 설정하지 못했습니다.", error);
+                    }
+                }
+            }
+        }
+        return sslContext;
+    }
+
+    /**
+     * Netty는 인증서가 접속한 호스트의 것인지 확인하지 않으므로, JDK의 HTTPS 호스트 이름 검증을 켠다.
+     */
+    SslHandler createSslHandler(ByteBufAllocator allocator, String host, int port) {
+        SslHandler sslHandler = getSslContext().newHandler(allocator, host, port);
+        SSLEngine engine = sslHandler.engine();
+        SSLParameters parameters = engine.getSSLParameters();
+        parameters.setEndpointIdentificationAlgorithm("HTTPS");
+        engine.setSSLParameters(parameters);
+        return sslHandler;
+    }
+
+    public int getOpenConnections() {
+        return connectionPools.values().stream().mapToInt(ConnectionPool::getOpenConnections).sum();
+    }
+
+    public int getIdleConnections() {
+        return connectionPools.values().stream().mapToInt(ConnectionPool::getIdleConnections).sum();
+    }
+
+    /**
+     * @return 연결을 기다리고 있는 호출 수
+     */
+    public int getPendingInvocations() {
+        return connectionPools.values().stream().mapToInt(ConnectionPool::getPendingInvocations).sum();
+    }
+
+    /**
+     * 쉬고 있는 연결을 닫고, 공유하지 않는 이벤트 루프를 종료한다.
+     */
+    public void shutdown() {
+        connectionPools.values().forEach(ConnectionPool::close);
+        if (!sharedEventLoopGroup) {
+            eventLoopGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * @param endpoint 람다 엔드포인트(VPC 엔드포인트, 테스트 서버 등), 설정하지 않으면 함수 ARN의 리전 엔드포인트를 사용한다.
+     */
+    public void setEndpoint(URI endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * @param region 함수 이름에 리전이 없을 때(ARN이 아닌 함수 이름) 사용하는 리전
+     */
+    /**
+     * @param sslContext TLS 연결에 사용할 클라이언트 {@link SslContext}(사설 인증 기관을 신뢰해야 할 때 등), 기본값은 JDK의 신뢰 저장소를 사용한다.
+     *                   어떤 SslContext를 사용하든 호스트 이름은 항상 검증한다.
+     */
+    public void setSslContext(SslContext sslContext) {
+        this.sslContext = Objects.requireNonNull(sslContext);
+    }
+
+    public void setRegion(String region) {
+        this.region = region;
+    }
+
+    /**
+     * @param maxConnections 엔드포인트마다 맺는 최대 연결 수, 동시 호출 수가 더 많다면 연결이 반환될 때까지 대기한다.
+     */
+    public void setMaxConnections(int maxConnections) {
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("최대 연결 수는 1 보다 작을 수 없습니다.");
+        }
+        this.maxConnections = maxConnections;
+    }
+
+    public void setConnectionTimeout(int connectionTimeout) {
+        this.connectionTimeout = connectionTimeout;
+    }
+
+    /**
+     * @param responseTimeout 요청에 타임아웃({@link InvokeRequest#getSdkRequestTimeout()})이 없을 때 응답을 기다리는 최대 시간(ms)
+     */
+    public void setResponseTimeout(int responseTimeout) {
+        this.responseTimeout = responseTimeout;
+    }
+
+    public void setMaxResponseSize(int maxResponseSize) {
+        this.maxResponseSize = maxResponseSize;
+    }
+
+    /**
+     * @param callbackExecutor 호출 결과를 전달할 스레드풀, 설정하지 않으면 이벤트 루프에서 완료한다.
+     */
+    public void setCallbackExecutor(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    static ByteBuf toByteBuf(ByteBuffer payload) {
+        return Objects.nonNull(payload) ? Unpooled.wrappedBuffer(payload.duplicate()) : Unpooled.EMPTY_BUFFER;
+    }
+
+    static SdkClientException toClientException(Throwable cause) {
+        if (cause instanceof SdkClientException) {
+            return (SdkClientException) cause;
+        }
+        // I/O 오류는 AWS SDK와 같이 원인을 남겨서 재시도 정책이 구분할 수 있게 한다.
+        IOException error = cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        return new SdkClientException("람다 엔드포인트와 통신하지 못했습니다: " + cause.getMessage(), error);
+    }
+
+
+    /**
+     * 람다 호출 하나, 연결을 받으면 요청을 보내고 응답이나 오류, 취소, 타임아웃 중 먼저 일어난 것으로 완료된다.
+     */
+    class Exchange extends CompletableFuture<InvokeResult> implements AWSLambdaTransport.AbortableInvocation {
+
+        private final ConnectionPool connectionPool;
+        private final FullHttpRequest httpRequest;
+        private volatile Channel channel;
+        private volatile ScheduledFuture<?> timeout;
+        private volatile boolean aborted;
+
+        Exchange(ConnectionPool connectionPool, FullHttpRequest httpRequest) {
+            this.connectionPool = connectionPool;
+            this.httpRequest = httpRequest;
+        }
+
+        void start(long timeoutMillis) {
+            if (timeoutMillis > 0) {
+                timeout = eventLoopGroup.schedule(() -> {
+                    String message = String.format("람다 함수가 %dms 안에 응답하지 않았습니다.", timeoutMillis);
+                    if (completeExceptionally(new ClientExecutionTimeoutException(message))) {
+                        abort();
+                    }
+                }, timeoutMillis, TimeUnit.MILLISECONDS);
+            }
+            connectionPool.acquire(this);
+        }
+
+        /**
+         * 이미 취소되었거나 타임아웃이 지났다면 받은 연결을 그대로 돌려준다.
+         */
+        void send(Channel channel) {
+            if (isDone()) {
+                ReferenceCountUtil.release(httpRequest);
+                connectionPool.release(channel);
+                return;
+            }
+
+            this.channel = channel;
+            channel.attr(EXCHANGE).set(this);
+            channel.writeAndFlush(httpRequest).addListener((ChannelFutureListener) future -> {
+                if (!future.isSuccess()) {
+                    fail(future.cause());
+                    future.channel().close();
+                }
+            });
+            if (isDone()) {
+                abort();
+            }
+        }
+
+        void receive(Channel channel, FullHttpResponse response) {
+            cancelTimeout();
+            try {
+                InvokeResult result = toInvokeResult(response);
+                release(channel, response);
+                complete(result);
+            } catch (RuntimeException error) {
+                release(channel, response);
+                completeExceptionally(error);
+            }
+        }
+
+        void fail(Throwable cause) {
+            cancelTimeout();
+            completeExceptionally(toClientException(cause));
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                abort();
+            }
+            return cancelled;
+        }
+
+        /**
+         * 응답을 기다리던 연결은 닫는다. 연결을 기다리던 호출은 대기열에서 연결을 받을 때 버려진다.
+         */
+        private void abort() {
+            cancelTimeout();
+            Channel channel = this.channel;
+            if (Objects.nonNull(channel)) {
+                channel.close();
+                aborted = true;
+            }
+        }
+
+        /**
+         * @return 응답을 기다리던 연결을 닫았다면 true, 연결을 기다리던 호출은 닫을 연결이 없으므로 false
+         */
+        @Override
+        public boolean isAborted() {
+            return aborted;
+        }
+
+        private void release(Channel channel, FullHttpResponse response) {
+            if (HttpHeaders.isKeepAlive(response)) {
+                connectionPool.release(channel);
+            } else {
+                channel.close();
+            }
+        }
+
+        private void cancelTimeout() {
+            ScheduledFuture<?> timeout = this.timeout;
+            if (Objects.nonNull(timeout)) {
+                timeout.cancel(false);
+            }
+        }
+
+    }
+
+    /**
+     * 콜백 스레드풀에서 완료되는 호출, 취소하면 이벤트 루프의 호출도 취소한다.
+     */
+    static class CallbackInvocation extends CompletableFuture<InvokeResult> implements AWSLambdaTransport.AbortableInvocation {
+
+        private final Exchange exchange;
+
+        CallbackInvocation(Exchange exchange) {
+            this.exchange = exchange;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            exchange.cancel(mayInterruptIfRunning);
+            return super.cancel(mayInterruptIfRunning);
+        }
+
+        @Override
+        public boolean isAborted() {
+            return exchange.isAborted();
+        }
+
+    }
+
+    /**
+     * 엔드포인트 하나의 연결 풀, 최근에 사용한 연결부터 재사용하고 최대 연결 수를 넘는 호출은 도착한 순서대로 대기한다.
+     */
+    class ConnectionPool {
+
+        private final String host;
+        private final int port;
+        private final Bootstrap bootstrap;
+        private final Deque<Channel> idleChannels = new ArrayDeque<>();
+        private final Deque<Exchange> pendingExchanges = new ArrayDeque<>();
+        private int openConnections;
+
+        ConnectionPool(String host, int port, boolean secure) {
+            this.host = host;
+            this.port = port;
+            this.bootstrap = new Bootstrap().group(eventLoopGroup)
+                                            .channel(NioSocketChannel.class)
+                                            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectionTimeout)
+                                            .option(ChannelOption.TCP_NODELAY, true)
+                                            .option(ChannelOption.SO_KEEPALIVE, true)
+                                            .handler(new ChannelInitializer<SocketChannel>() {
+                                                @Override
+                                                protected void initChannel(SocketChannel channel) {
+                                                    ChannelPipeline pipeline = channel.pipeline();
+                                                    if (secure) {
+                                                        pipeline.addLast(createSslHandler(channel.alloc(), host, port));
+                                                    }
+                                                    pipeline.addLast(new HttpClientCodec());
+                                                    pipeline.addLast(new HttpObjectAggregator(maxResponseSize));
+                                                    pipeline.addLast(responseHandler);
+                                                }
+                                            });
+        }
+
+        void acquire(Exchange exchange) {
+            Channel channel;
+            synchronized (this) {
+                channel = idleChannels.pollFirst();
+                if (Objects.isNull(channel)) {
+                    if (openConnections >= maxConnections) {
+                        pendingExchanges.offer(exchange);
+                        return;
+                    }
+                    openConnections++;
+                }
+            }
+
+            if (Objects.nonNull(channel)) {
+                exchange.send(channel);
+            } else {
+                connect(exchange);
+            }
+        }
+
+        void release(Channel channel) {
+            if (!channel.isActive()) {
+                return;
+            }
+
+            Exchange next;
+            synchronized (this) {
+                next = pollPending();
+                if (Objects.isNull(next)) {
+                    idleChannels.offerFirst(channel);
+                    return;
+                }
+            }
+            next.send(channel);
+        }
+
+        private void connect(Exchange exchange) {
+            bootstrap.connect(host, port).addListener((ChannelFutureListener) future -> {
+                if (future.isSuccess()) {
+                    Channel channel = future.channel();
+                    channel.closeFuture().addListener(closed -> closed(channel));
+                    exchange.send(channel);
+                } else {
+                    exchange.fail(future.cause());
+                    closed(null);
+                }
+            });
+        }
+
+        /**
+         * 닫힌 연결의 자리를 기다리던 호출에게 넘긴다.
+         */
+        private void closed(Channel channel) {
+            Exchange next;
+            synchronized (this) {
+                openConnections--;
+                if (Objects.nonNull(channel)) {
+                    idleChannels.remove(channel);
+                }
+                next = pollPending();
+                if (Objects.nonNull(next)) {
+                    openConnections++;
+                }
+            }
+            if (Objects.nonNull(next)) {
+                connect(next);
+            }
+        }
+
+        private Exchange pollPending() {
+            Exchange next;
+            while (Objects.nonNull(next = pendingExchanges.poll()) && next.isDone()) {
+                ReferenceCountUtil.release(next.httpRequest);
+            }
+            return next;
+        }
+
+        synchronized int getOpenConnections() {
+            return openConnections;
+        }
+
+        synchronized int getIdleConnections() {
+            return idleChannels.size();
+        }
+
+        synchronized int getPendingInvocations() {
+            return (int) pendingExchanges.stream().filter(exchange -> !exchange.isDone()).count();
+        }
+
+        void close() {
+            List<Channel> channels;
+            synchronized (this) {
+                channels = new ArrayList<>(idleChannels);
+                idleChannels.clear();
+            }
+            channels.forEach(Channel::close);
+        }
+
+    }
+
+    /**
+     * 모든 연결이 함께 사용하는 응답 처리기, 연결에 붙어있는 호출에 응답이나 오류를 전달한다.
+     */
+    @ChannelHandler.Sharable
+    class ResponseHandler extends SimpleChannelInboundHandler<FullHttpResponse> {
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext context, FullHttpResponse response) {
+            Exchange exchange = context.channel().attr(EXCHANGE).getAndSet(null);
+            if (Objects.nonNull(exchange)) {
+                exchange.receive(context.channel(), response);
+            } else {
+                context.close();
+            }
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext context) throws Exception {
+            Exchange exchange = context.channel().attr(EXCHANGE).getAndSet(null);
+            if (Objects.nonNull(exchange)) {
+                exchange.fail(new ClosedChannelException());
+            }
+            super.channelInactive(context);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext context, Throwable cause) {
+            Exchange exchange = context.channel().attr(EXCHANGE).getAndSet(null);
+            if (Objects.nonNull(exchange)) {
+                exchange.fail(cause);
+            } else {
+                log.debug("lambda connection failed without invocation: {}", cause.toString());
+            }
+            context.close();
+        }
+
+    }
+
+}
@@ -0,0 +1,149 @@
+package org.springframework.cloud.netflix.aws.lambda.support;
+
+import com.amazonaws.adapters.types.StringToByteBufferAdapter;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import lombok.val;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaMultipartPayloadWriter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.server.ServerHttpRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * JSON 본문을 {@link com.fasterxml.jackson.databind.JsonNode}로 해석하지 않고 그대로 람다에 전달하는 추출기
+ * 서블릿 입력 스트림을 {@link ByteBuffer}로 한 번만 읽으며, 필요하면 스트리밍 파서로 JSON 형식만 검사한다.
+ * JSON 이외의 요청(query string, form)은 {@link DefaultRequestPayloadExtractor}와 동일하게 처리한다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+public class PassThroughRequestPayloadExtractor extends DefaultRequestPayloadExtractor {
+
+    /**
+     * 동기 호출(RequestResponse) 페이로드의 최대 크기는 6MB 이다.
+     */
+    public static final int DEFAULT_MAX_PAYLOAD_BYTES = 6 * 1024 * 1024;
+
+    private static final byte[] NULL_PAYLOAD = "null".getBytes(StandardCharsets.UTF_8);
+    private static final int DEFAULT_BUFFER_SIZE = 4096;
+    private static final int MAX_PREALLOCATED_BUFFER_SIZE = 64 * 1024;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private boolean validateJson = false;
+    private int maxPayloadBytes = DEFAULT_MAX_PAYLOAD_BYTES;
+
+    public PassThroughRequestPayloadExtractor() {
+        super();
+    }
+
+    public PassThroughRequestPayloadExtractor(boolean validateJson) {
+        this();
+        this.validateJson = validateJson;
+    }
+
+    @Override
+    public String extract(ServerHttpRequest request) {
+        return StandardCharsets.UTF_8.decode(extractBytes(request)).toString();
+    }
+
+    @Override
+    public ByteBuffer extractBytes(ServerHttpRequest request) {
+        val contentType = ServerHttpRequestUtils.getContentType(request, MediaType.APPLICATION_OCTET_STREAM);
+        if (!canReadJson(contentType)) {
+            return new StringToByteBufferAdapter().adapt(super.extract(request));
+        }
+
+        try {
+            val payload = readBody(request);
+            if (Objects.isNull(payload) || !payload.hasRemaining()) {
+                return ByteBuffer.wrap(NULL_PAYLOAD);
+            }
+            if (validateJson) {
+                validate(payload);
+            }
+            return payload;
+        } catch (IOException error) {
+            throw new HttpMessageNotReadableException("could not read request body: " + error.getMessage(), error);
+        }
+    }
+
+    /**
+     * Content-Length는 클라이언트가 보낸 값이므로 최대 크기를 넘으면 읽기 전에 거절하고, 버퍼는 일부만 미리 할당한 후 실제로 읽은 만큼 늘린다.
+     * Content-Length가 없다면 최대 크기를 넘는 순간 거절한다.
+     *
+     * @throws AWSLambdaMultipartPayloadWriter.PayloadTooLargeException 본문이 최대 크기를 넘는 경우
+     */
+    protected ByteBuffer readBody(ServerHttpRequest request) throws IOException {
+        InputStream body = request.getBody();
+        if (Objects.isNull(body)) {
+            return null;
+        }
+
+        long contentLength = request.getHeaders().getContentLength();
+        if (contentLength > maxPayloadBytes) {
+            throw new AWSLambdaMultipartPayloadWriter.PayloadTooLargeException(maxPayloadBytes);
+        }
+
+        long limit = contentLength >= 0 ? contentLength : maxPayloadBytes;
+        byte[] buffer = new byte[(int) Math.min(limit, contentLength >= 0 ? MAX_PREALLOCATED_BUFFER_SIZE : DEFAULT_BUFFER_SIZE)];
+        int count = 0, read;
+        while (count < limit) {
+            if (count == buffer.length) {
+                buffer = Arrays.copyOf(buffer, (int) Math.min(limit, (long) buffer.length * 2));
+            }
+            if ((read = body.read(buffer, count, buffer.length - count)) == -1) {
+                break;
+            }
+            count += read;
+        }
+        if (contentLength < 0 && count == limit && body.read() != -1) {
+            throw new AWSLambdaMultipartPayloadWriter.PayloadTooLargeException(maxPayloadBytes);
+        }
+        return ByteBuffer.wrap(buffer, 0, count);
+    }
+
+    /**
+     * 트리를 만들지 않고 토큰만 읽어서 하나의 올바른 JSON 값인지 확인한다.
+     */
+    protected void validate(ByteBuffer payload) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining())) {
+            int depth = 0;
+            boolean completed = false;
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (completed) {
+                    throw new JsonParseException(parser, "unexpected content after root value");
+                }
+                if (token.isStructStart()) {
+                    depth++;
+                } else if (token.isStructEnd()) {
+                    depth--;
+                }
+                completed = depth == 0;
+            }
+        }
+    }
+
+    public void setValidateJson(boolean validateJson) {
+        this.validateJson = validateJson;
+    }
+
+    /**
+     * @param maxPayloadBytes 본문의 최대 크기, 기본값은 동기 호출 페이로드의 최대 크기(6MB)
+     */
+    public void setMaxPayloadBytes(int maxPayloadBytes) {
+        if (maxPayloadBytes < 0) {
+            throw new IllegalArgumentException("maxPayloadBytes는 0 이상이어야 합니다.");
+        }
+        this.maxPayloadBytes = maxPayloadBytes;
+    }
+
+}
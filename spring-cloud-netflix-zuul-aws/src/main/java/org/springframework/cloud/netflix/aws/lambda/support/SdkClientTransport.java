@@ -0,0 +1,108 @@
+package org.springframework.cloud.netflix.aws.lambda.support;
+
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.lambda.AWSLambdaAsync;
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaTransport;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/**
+ * AWS SDK v1의 {@link AWSLambdaAsync}로 람다 함수를 호출하는 {@link AWSLambdaTransport}
+ * SDK의 비동기 호출은 블로킹 HTTP 호출을 클라이언트의 스레드풀에서 실행하므로, 진행 중인 호출마다 스레드 하나를 점유한다.
+ * 클라이언트가 {@link AbortableAWSLambdaAsyncClient}라면 호출을 취소할 때 진행 중인 HTTP 요청을 중단해서 연결을 돌려받는다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+public class SdkClientTransport implements AWSLambdaTransport {
+
+    private final AWSLambdaAsync lambdaClient;
+
+    public SdkClientTransport(AWSLambdaAsync lambdaClient) {
+        this.lambdaClient = Objects.requireNonNull(lambdaClient, "람다 클라이언트가 필요합니다.");
+    }
+
+    public AWSLambdaAsync getClient() {
+        return lambdaClient;
+    }
+
+    @Override
+    public InvokeResult invoke(InvokeRequest request) {
+        return lambdaClient.invoke(request);
+    }
+
+    @Override
+    public CompletableFuture<InvokeResult> invokeAsync(InvokeRequest request) {
+        SdkInvocation invocation = new SdkInvocation();
+        request.addHandlerContext(AbortableAWSLambdaAsyncClient.HTTP_REQUEST_LISTENER, invocation::setHttpRequest);
+        invocation.setInvocation(lambdaClient.invokeAsync(request, new AsyncHandler<InvokeRequest, InvokeResult>() {
+            @Override
+            public void onError(Exception error) {
+                invocation.completeExceptionally(error);
+            }
+
+            @Override
+            public void onSuccess(InvokeRequest request, InvokeResult result) {
+                invocation.complete(result);
+            }
+        }));
+        return invocation;
+    }
+
+
+    /**
+     * 취소되면 AWS SDK의 호출을 취소하고, 진행 중인 HTTP 요청이 있다면 중단해서 응답을 기다리던 연결과 스레드를 돌려받는다.
+     * {@link AbortableAWSLambdaAsyncClient}가 아닌 클라이언트는 HTTP 요청을 알려주지 않으므로, 스레드만 인터럽트하고 연결은 끊지 않는다.
+     */
+    static class SdkInvocation extends CompletableFuture<InvokeResult> implements AWSLambdaTransport.AbortableInvocation {
+
+        private volatile Future<InvokeResult> invocation;
+        private volatile HttpRequestBase httpRequest;
+        private volatile boolean aborted;
+
+        void setInvocation(Future<InvokeResult> invocation) {
+            this.invocation = invocation;
+            if (isCancelled()) {
+                invocation.cancel(true);
+            }
+        }
+
+        /**
+         * SDK가 재시도할 때마다 새 HTTP 요청을 알려준다. 이미 취소된 호출이라면 바로 중단한다.
+         */
+        void setHttpRequest(HttpRequestBase httpRequest) {
+            this.httpRequest = httpRequest;
+            if (isCancelled()) {
+                httpRequest.abort();
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                HttpRequestBase httpRequest = this.httpRequest;
+                if (Objects.nonNull(httpRequest)) {
+                    httpRequest.abort();
+                    aborted = true;
+                }
+                Future<InvokeResult> invocation = this.invocation;
+                if (Objects.nonNull(invocation)) {
+                    invocation.cancel(true);
+                }
+            }
+            return cancelled;
+        }
+
+        @Override
+        public boolean isAborted() {
+            return aborted;
+        }
+
+    }
+
+}
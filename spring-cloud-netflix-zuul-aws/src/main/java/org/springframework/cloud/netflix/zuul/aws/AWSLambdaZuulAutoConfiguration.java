@@ -0,0 +1,455 @@
+package org.springframework.cloud.netflix.zuul.aws;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.ClientConfigurationFactory;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.lambda.AWSLambdaAsync;
+import com.amazonaws.services.lambda.AWSLambdaAsyncClientBuilder;
+import com.netflix.zuul.ZuulFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.netflix.aws.lambda.*;
+import org.springframework.cloud.netflix.aws.lambda.support.CachingClientContextFactory;
+import org.springframework.cloud.netflix.aws.lambda.support.DefaultRequestPayloadExtractor;
+import org.springframework.cloud.netflix.aws.lambda.support.NettyTransport;
+import org.springframework.cloud.netflix.aws.lambda.support.PassThroughRequestPayloadExtractor;
+import org.springframework.cloud.netflix.zuul.ZuulProxyAutoConfiguration;
+import org.springframework.cloud.netflix.zuul.filters.ZuulProperties;
+import org.springframework.cloud.netflix.zuul.filters.route.AWSLambdaCommand;
+import org.springframework.cloud.netflix.zuul.filters.route.AWSLambdaRoutingFilter;
+import org.springframework.cloud.netflix.zuul.filters.route.FallbackProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.util.StringUtils;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Zuul 프록시에 람다 라우팅을 구성한다. 직접 정의한 빈이 있다면 그 빈을 사용한다.
+ *
+ * 람다 클라이언트는 하나만 만들어 모든 라우트가 함께 사용하며, 연결 풀과 비동기 호출 스레드 수는 AWS SDK의 기본값(50) 대신
+ * 람다 라우트의 Hystrix 동시 실행 수(세마포어나 스레드풀 크기)의 합에 여유분(headroom)을 곱해서 정한다.
+ * 시작할 때 람다 엔드포인트와 TLS 연결을 미리 맺어두고, {@link MeterRegistry}가 있다면 연결 풀 포화 지표를 등록한다.
+ *
+ * 재시도, 헤징, 동시 호출 한도 등 라우트별 기능은 빈으로 정의하면 적용되고, {@link MeterRegistry}가 있다면 각 기능의 지표도 등록한다.
+ * 워밍업 스케줄러 빈은 애플리케이션과 함께 시작하고 종료한다.
+ *
+ * zuul.aws.lambda.transport=netty 라면 람다 라우트는 AWS SDK 대신 {@link NettyTransport}로 호출해서, 진행 중인 호출이 스레드를 점유하지 않는다.
+ * 워밍업 호출과 이벤트 전송, 연결 미리 맺기는 계속 AWS SDK 클라이언트를 사용한다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+@Slf4j
+@Configuration
+@ConditionalOnClass({ AWSLambdaAsync.class, ZuulFilter.class })
+@ConditionalOnBean(ZuulProperties.class)
+@ConditionalOnProperty(name = "zuul.aws.lambda.enabled", matchIfMissing = true)
+@EnableConfigurationProperties(AWSLambdaZuulProperties.class)
+@AutoConfigureAfter(value = ZuulProxyAutoConfiguration.class, name = "io.micrometer.spring.autoconfigure.MetricsAutoConfiguration")
+public class AWSLambdaZuulAutoConfiguration {
+
+    static final String LAMBDA_URL_PREFIX = "arn:aws:lambda:";
+
+    @Bean
+    @ConditionalOnMissingBean
+    public AWSLambdaClientContextFactory awsLambdaClientContextFactory(Environment environment) {
+        return new CachingClientContextFactory(environment);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public RequestPayloadExtractor awsLambdaRequestPayloadExtractor(AWSLambdaZuulProperties properties) {
+        return properties.isPassThroughPayload() ? new PassThroughRequestPayloadExtractor() : new DefaultRequestPayloadExtractor();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public AWSLambdaClientRequestFactory awsLambdaClientRequestFactory(AWSLambdaAsync awsLambdaAsync,
+                                                                       ObjectProvider<AWSLambdaTransport> transport,
+                                                                       AWSLambdaClientContextFactory clientContextFactory,
+                                                                       RequestPayloadExtractor payloadExtractor,
+                                                                       AWSLambdaZuulProperties properties,
+                                                                       ObjectProvider<AWSLambdaMetrics> metrics,
+                                                                       ObjectProvider<AWSLambdaRegionSelector> regionSelector,
+                                                                       ObjectProvider<AWSLambdaInvocationCoalescer> invocationCoalescer,
+                                                                       ObjectProvider<AWSLambdaInvocationBatcher> invocationBatcher,
+                                                                       ObjectProvider<AWSLambdaClaimCheck> claimCheck,
+                                                                       ObjectProvider<AWSLambdaRetryPolicy> retryPolicy,
+                                                                       ObjectProvider<AWSLambdaInvocationHedger> invocationHedger,
+                                                                       ObjectProvider<AWSLambdaKeepWarmScheduler> keepWarmScheduler,
+                                                                       ObjectProvider<AWSLambdaConcurrencyLimiter> concurrencyLimiter,
+                                                                       ObjectProvider<List<AWSLambdaInvocationInterceptor>> interceptors) {
+        val lambdaTransport = transport.getIfAvailable();
+        val requestFactory = Objects.nonNull(lambdaTransport) ? new AWSLambdaClientRequestFactory(lambdaTransport, clientContextFactory, payloadExtractor)
+                             : new AWSLambdaClientRequestFactory(awsLambdaAsync, clientContextFactory, payloadExtractor); {
+            requestFactory.setProxyRoutes(properties.getProxyRoutes());
+            requestFactory.setMetrics(metrics.getIfAvailable());
+            requestFactory.setRegionSelector(regionSelector.getIfAvailable());
+            requestFactory.setInvocationCoalescer(invocationCoalescer.getIfAvailable());
+            requestFactory.setInvocationBatcher(invocationBatcher.getIfAvailable());
+            requestFactory.setClaimCheck(claimCheck.getIfAvailable());
+            requestFactory.setRetryPolicy(retryPolicy.getIfAvailable());
+            requestFactory.setInvocationHedger(invocationHedger.getIfAvailable());
+            requestFactory.setKeepWarmScheduler(keepWarmScheduler.getIfAvailable());
+            requestFactory.setConcurrencyLimiter(concurrencyLimiter.getIfAvailable());
+            requestFactory.setInterceptors(getCustomInterceptors(interceptors.getIfAvailable()));
+        }
+        return requestFactory;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public AWSLambdaRoutingFilter awsLambdaRoutingFilter(AWSLambdaClientRequestFactory requestFactory,
+                                                         ZuulProperties zuulProperties,
+                                                         AWSLambdaZuulProperties properties,
+                                                         ObjectProvider<Set<FallbackProvider>> fallbackProviders,
+                                                         ObjectProvider<AWSLambdaMetrics> metrics,
+                                                         ObjectProvider<AWSLambdaConcurrencyLimiter> concurrencyLimiter,
+                                                         ObjectProvider<AWSLambdaResponseCache> responseCache,
+                                                         ObjectProvider<AWSLambdaEventDispatcher> eventDispatcher,
+                                                         ObjectProvider<AWSLambdaFunctionErrorHandler> functionErrorHandler) {
+        validateLambdaRoutes(zuulProperties);
+        val routingFilter = new AWSLambdaRoutingFilter(requestFactory, zuulProperties); {
+            routingFilter.setAsyncInvocation(properties.isAsyncInvocation());
+            routingFilter.setFallbackProviders(fallbackProviders.getIfAvailable());
+            routingFilter.setMetrics(metrics.getIfAvailable());
+            routingFilter.setConcurrencyLimiter(concurrencyLimiter.getIfAvailable());
+            routingFilter.setResponseCache(responseCache.getIfAvailable());
+            routingFilter.setEventDispatcher(eventDispatcher.getIfAvailable());
+            val errorHandler = Optional.ofNullable(functionErrorHandler.getIfAvailable()).orElseGet(AWSLambdaFunctionErrorHandler::new);
+            if (Objects.nonNull(metrics.getIfAvailable())) {
+                metrics.getIfAvailable().monitor(errorHandler);
+            }
+            routingFilter.setFunctionErrorHandler(errorHandler);
+        }
+        return routingFilter;
+    }
+
+    /**
+     * 워밍업 스케줄러 빈이 있다면 애플리케이션과 함께 시작하고 종료한다.
+     */
+    @Bean
+    @ConditionalOnBean(AWSLambdaKeepWarmScheduler.class)
+    public SmartLifecycle awsLambdaKeepWarmSchedulerLifecycle(AWSLambdaKeepWarmScheduler keepWarmScheduler) {
+        return new KeepWarmSchedulerLifecycle(keepWarmScheduler);
+    }
+
+    /**
+     * 람다 라우트의 ARN에서 호출할 리전을 정하므로, ARN이 올바르지 않은 라우트는 호출할 때가 아니라 시작할 때 알린다.
+     */
+    static void validateLambdaRoutes(ZuulProperties zuulProperties) {
+        for (ZuulProperties.ZuulRoute route : zuulProperties.getRoutes().values()) {
+            val location = route.getLocation();
+            if (Objects.isNull(location) || !location.startsWith(LAMBDA_URL_PREFIX)) {
+                continue;
+            }
+            try {
+                AWSLambdaFunctionArn.parse(location);
+            } catch (IllegalArgumentException error) {
+                throw new IllegalStateException(String.format("람다 라우트(%s)의 ARN이 올바르지 않습니다: %s", route.getId(), location), error);
+            }
+        }
+    }
+
+    /**
+     * 리전 선택기, 재시도 등 요청 팩토리가 순서를 정하는 인터셉터는 사용자 인터셉터에서 제외한다.
+     */
+    static List<AWSLambdaInvocationInterceptor> getCustomInterceptors(List<AWSLambdaInvocationInterceptor> interceptors) {
+        if (Objects.isNull(interceptors)) {
+            return null;
+        }
+        return interceptors.stream()
+                           .filter(interceptor -> !(interceptor instanceof AWSLambdaRegionSelector
+                                                    || interceptor instanceof AWSLambdaInvocationHedger
+                                                    || interceptor instanceof AWSLambdaKeepWarmScheduler
+                                                    || interceptor instanceof AWSLambdaConcurrencyLimiter
+                                                    || interceptor instanceof AWSLambdaInvocationCoalescer
+                                                    || interceptor instanceof AWSLambdaInvocationBatcher
+                                                    || interceptor instanceof AWSLambdaClaimCheck))
+                           .collect(Collectors.toList());
+    }
+
+    /**
+     * url 또는 serviceId에 람다 ARN을 지정한 라우트를 람다 라우트로 센다.
+     *
+     * @return 람다 라우트들이 동시에 실행할 수 있는 최대 요청 수, 람다 라우트가 없다면 0
+     */
+    static int getMaxConcurrency(ZuulProperties zuulProperties, boolean asyncInvocation) {
+        val commandKeys = zuulProperties.getRoutes().values().stream()
+                                        .filter(route -> Objects.nonNull(route.getLocation()) && route.getLocation().startsWith(LAMBDA_URL_PREFIX))
+                                        .map(ZuulProperties.ZuulRoute::getId)
+                                        .collect(Collectors.toList());
+        return AWSLambdaCommand.getMaxConcurrency(commandKeys, zuulProperties, asyncInvocation);
+    }
+
+    /**
+     * @return 설정한 최대 연결 수, 없다면 람다 라우트의 동시 실행 수에 여유분을 곱한 값
+     */
+    static int getMaxConnections(AWSLambdaZuulProperties properties, ZuulProperties zuulProperties) {
+        val client = properties.getClient();
+        if (Objects.nonNull(client.getMaxConnections())) {
+            return client.getMaxConnections();
+        }
+        val maxConcurrency = getMaxConcurrency(zuulProperties, properties.isAsyncInvocation());
+        return maxConcurrency > 0 ? (int) Math.ceil(maxConcurrency * client.getHeadroom()) : ClientConfiguration.DEFAULT_MAX_CONNECTIONS;
+    }
+
+    static AWSCredentialsProvider createCredentialsProvider(AWSLambdaZuulProperties properties) {
+        if (properties.getCredentials().hasKey()) {
+            val credentials = new BasicAWSCredentials(properties.getCredentials().getAccessKey(), properties.getCredentials().getSecretKey());
+            return new AWSStaticCredentialsProvider(credentials);
+        }
+        return DefaultAWSCredentialsProviderChain.getInstance();
+    }
+
+
+    @Configuration
+    @ConditionalOnMissingBean(AWSLambdaAsync.class)
+    static class AWSLambdaClientConfiguration {
+
+        @Bean(destroyMethod = "shutdown")
+        public AWSLambdaConnectionPool awsLambdaConnectionPool(AWSLambdaZuulProperties properties, ZuulProperties zuulProperties, ObjectProvider<AWSLambdaMetrics> metrics) {
+            val client = properties.getClient();
+            val maxConcurrency = getMaxConcurrency(zuulProperties, properties.isAsyncInvocation());
+            val maxConnections = getMaxConnections(properties, zuulProperties);
+            val executorThreads = Objects.nonNull(client.getExecutorThreads()) ? client.getExecutorThreads() : maxConnections;
+            val executorQueueSize = Objects.nonNull(client.getExecutorQueueSize()) ? client.getExecutorQueueSize() : executorThreads;
+            log.info("lambda client sized for {} concurrent lambda commands: {} connections, {} threads, {} queued", maxConcurrency, maxConnections, executorThreads, executorQueueSize);
+
+            val configuration = new ClientConfigurationFactory().getConfig(); {
+                configuration.setConnectionTimeout(client.getConnectionTimeout());
+                configuration.setSocketTimeout(client.getSocketTimeout());
+                configuration.setRequestTimeout(client.getRequestTimeout());
+                configuration.setMaxErrorRetry(client.getMaxErrorRetry());
+                configuration.setMaxConnections(maxConnections);
+                configuration.setConnectionTTL(client.getConnectionTtl());
+                configuration.setConnectionMaxIdleMillis(client.getConnectionMaxIdleMillis());
+                configuration.setUseTcpKeepAlive(client.isTcpKeepAlive());
+            }
+            val clientBuilder = AWSLambdaAsyncClientBuilder.standard()
+                                                           .withCredentials(createCredentialsProvider(properties))
+                                                           .withClientConfiguration(configuration); {
+                if (StringUtils.hasText(properties.getEndpoint())) {
+                    clientBuilder.withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(properties.getEndpoint(), properties.getRegion()));
+                } else if (StringUtils.hasText(properties.getRegion())) {
+                    clientBuilder.withRegion(properties.getRegion());
+                }
+            }
+
+            val connectionPool = AWSLambdaConnectionPool.build(clientBuilder, executorThreads, executorQueueSize);
+            val lambdaMetrics = metrics.getIfAvailable();
+            if (Objects.nonNull(lambdaMetrics)) {
+                lambdaMetrics.monitor(connectionPool);
+            }
+            return connectionPool;
+        }
+
+        @Bean(destroyMethod = "")
+        public AWSLambdaAsync awsLambdaAsync(AWSLambdaConnectionPool connectionPool) {
+            return connectionPool.getClient();
+        }
+
+        /**
+         * 모든 빈이 만들어진 후, 서블릿 컨테이너가 요청을 받기 전에 연결을 맺어둔다.
+         */
+        @Bean
+        @ConditionalOnProperty(name = "zuul.aws.lambda.prewarm.enabled", matchIfMissing = true)
+        public SmartInitializingSingleton awsLambdaConnectionPrewarmer(AWSLambdaConnectionPool connectionPool, AWSLambdaZuulProperties properties) {
+            return () -> {
+                val prewarm = properties.getPrewarm();
+                val connections = Math.min(prewarm.getConnections(), Math.max(connectionPool.getMaxConnections(), 1));
+                if (connections > 0) {
+                    connectionPool.prewarm(connections, prewarm.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+                }
+            };
+        }
+
+    }
+
+    @Configuration
+    @ConditionalOnClass(name = "io.netty.channel.nio.NioEventLoopGroup")
+    @ConditionalOnProperty(name = "zuul.aws.lambda.transport", havingValue = "netty")
+    @ConditionalOnMissingBean(AWSLambdaTransport.class)
+    static class AWSLambdaNettyTransportConfiguration implements DisposableBean {
+
+        private ThreadPoolExecutor callbackExecutor;
+
+        /**
+         * 엔드포인트마다 AWS SDK 클라이언트와 같은 수의 연결을 맺는다.
+         * 비동기 호출이라면 서블릿 응답 쓰기가 이벤트 루프를 막지 않도록 호출 결과를 전용 스레드풀에서 전달한다.
+         */
+        @Bean(destroyMethod = "shutdown")
+        public NettyTransport awsLambdaNettyTransport(AWSLambdaZuulProperties properties, ZuulProperties zuulProperties) {
+            val client = properties.getClient();
+            val transport = new NettyTransport(createCredentialsProvider(properties)); {
+                if (StringUtils.hasText(properties.getEndpoint())) {
+                    transport.setEndpoint(URI.create(properties.getEndpoint()));
+                }
+                transport.setRegion(properties.getRegion());
+                transport.setMaxConnections(getMaxConnections(properties, zuulProperties));
+                transport.setConnectionTimeout(client.getConnectionTimeout());
+                transport.setResponseTimeout(client.getSocketTimeout());
+                if (properties.isAsyncInvocation()) {
+                    callbackExecutor = createCallbackExecutor(getMaxConcurrency(zuulProperties, true));
+                    transport.setCallbackExecutor(callbackExecutor);
+                }
+            }
+            return transport;
+        }
+
+        /**
+         * 스레드 수와 대기열은 람다 라우트의 동시 실행 수로 제한한다. 대기열이 가득 차거나 종료된 후라면 이벤트 루프에서 바로 전달해
+         * 호출 결과가 유실되지 않게 한다.
+         */
+        static ThreadPoolExecutor createCallbackExecutor(int maxConcurrency) {
+            val threads = maxConcurrency > 0 ? maxConcurrency : Runtime.getRuntime().availableProcessors();
+            val threadNumber = new AtomicInteger();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(threads), runnable -> {
+                Thread thread = new Thread(runnable, "lambda-callback-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, (runnable, rejected) -> runnable.run());
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+
+        @Override
+        public void destroy() {
+            if (Objects.nonNull(callbackExecutor)) {
+                callbackExecutor.shutdown();
+            }
+        }
+
+    }
+
+    @Configuration
+    @ConditionalOnClass(name = "reactor.core.publisher.Mono")
+    static class AWSLambdaReactiveRouterConfiguration {
+
+        /**
+         * reactor-core는 선택 의존성이므로 클래스패스에 있을 때만 등록한다. 함수 오류는 Zuul 필터와 같은 처리기로 바꾼다.
+         * 종료할 때 람다 요청을 만드는 기본 스케줄러를 정리한다.
+         */
+        @Bean(destroyMethod = "shutdown")
+        @ConditionalOnMissingBean
+        public AWSLambdaReactiveRouter awsLambdaReactiveRouter(AWSLambdaClientRequestFactory requestFactory, ObjectProvider<AWSLambdaRoutingFilter> routingFilter) {
+            val reactiveRouter = new AWSLambdaReactiveRouter(requestFactory);
+            val lambdaRoutingFilter = routingFilter.getIfAvailable();
+            if (Objects.nonNull(lambdaRoutingFilter)) {
+                reactiveRouter.setFunctionErrorHandler(lambdaRoutingFilter.getFunctionErrorHandler());
+            }
+            return reactiveRouter;
+        }
+
+    }
+
+    @Configuration
+    @ConditionalOnClass(MeterRegistry.class)
+    @ConditionalOnBean(MeterRegistry.class)
+    static class AWSLambdaMetricsConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public AWSLambdaMetrics awsLambdaMetrics(MeterRegistry registry) {
+            return new AWSLambdaMetrics(registry);
+        }
+
+        /**
+         * 모든 빈이 만들어진 후, 정의된 라우트별 기능의 지표를 등록한다. 연결 풀과 함수 오류 처리기는 만들 때 등록한다.
+         */
+        @Bean
+        public SmartInitializingSingleton awsLambdaMetricsBinder(AWSLambdaMetrics metrics,
+                                                                 ObjectProvider<AWSLambdaConcurrencyLimiter> concurrencyLimiter,
+                                                                 ObjectProvider<AWSLambdaInvocationHedger> invocationHedger,
+                                                                 ObjectProvider<AWSLambdaRetryPolicy> retryPolicy,
+                                                                 ObjectProvider<AWSLambdaKeepWarmScheduler> keepWarmScheduler,
+                                                                 ObjectProvider<AWSLambdaClaimCheck> claimCheck,
+                                                                 ObjectProvider<AWSLambdaInvocationCoalescer> invocationCoalescer,
+                                                                 ObjectProvider<AWSLambdaInvocationBatcher> invocationBatcher,
+                                                                 ObjectProvider<AWSLambdaResponseCache> responseCache,
+                                                                 ObjectProvider<AWSLambdaEventDispatcher> eventDispatcher) {
+            return () -> {
+                Optional.ofNullable(concurrencyLimiter.getIfAvailable()).ifPresent(metrics::monitor);
+                Optional.ofNullable(invocationHedger.getIfAvailable()).ifPresent(metrics::monitor);
+                Optional.ofNullable(retryPolicy.getIfAvailable()).ifPresent(metrics::monitor);
+                Optional.ofNullable(keepWarmScheduler.getIfAvailable()).ifPresent(metrics::monitor);
+                Optional.ofNullable(claimCheck.getIfAvailable()).ifPresent(metrics::monitor);
+                Optional.ofNullable(invocationCoalescer.getIfAvailable()).ifPresent(metrics::monitor);
+                Optional.ofNullable(invocationBatcher.getIfAvailable()).ifPresent(metrics::monitor);
+                Optional.ofNullable(responseCache.getIfAvailable()).ifPresent(metrics::monitor);
+                Optional.ofNullable(eventDispatcher.getIfAvailable()).ifPresent(metrics::monitor);
+            };
+        }
+
+    }
+
+    static class KeepWarmSchedulerLifecycle implements SmartLifecycle {
+
+        private final AWSLambdaKeepWarmScheduler keepWarmScheduler;
+        private volatile boolean running;
+
+        KeepWarmSchedulerLifecycle(AWSLambdaKeepWarmScheduler keepWarmScheduler) {
+            this.keepWarmScheduler = keepWarmScheduler;
+        }
+
+        @Override
+        public void start() {
+            keepWarmScheduler.start();
+            running = true;
+        }
+
+        @Override
+        public void stop() {
+            keepWarmScheduler.shutdown();
+            running = false;
+        }
+
+        @Override
+        public void stop(Runnable callback) {
+            stop();
+            callback.run();
+        }
+
+        @Override
+        public boolean isRunning() {
+            return running;
+        }
+
+        @Override
+        public boolean isAutoStartup() {
+            return true;
+        }
+
+        @Override
+        public int getPhase() {
+            return 0;
+        }
+
+    }
+
+}
@@ -0,0 +1,104 @@
+package org.springframework.cloud.netflix.zuul.aws;
+
+import com.amazonaws.ClientConfiguration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.StringUtils;
+import org.springframework.validation.annotation.Validated;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author arawn.kr@gmail.com
+ */
+@Data
+@Validated
+@ConfigurationProperties("zuul.aws.lambda")
+public class AWSLambdaZuulProperties {
+
+    private boolean enabled = true;
+    private String region;
+    /**
+     * 람다 엔드포인트, 지정하지 않으면 리전의 기본 엔드포인트를 사용한다.
+     */
+    private String endpoint;
+    private Credentials credentials = new Credentials();
+    /**
+     * 람다 라우트를 호출하는 전송 계층, netty 라면 진행 중인 호출이 스레드를 점유하지 않는다.
+     */
+    private Transport transport = Transport.SDK;
+    private Client client = new Client();
+    private Prewarm prewarm = new Prewarm();
+    private boolean asyncInvocation = false;
+    /**
+     * true 라면 JSON 요청 본문을 해석하지 않고 그대로 전달한다.
+     */
+    private boolean passThroughPayload = false;
+    /**
+     * API Gateway 프록시 통합 형식으로 호출할 라우트 ID 또는 람다 ARN
+     */
+    private List<String> proxyRoutes = new ArrayList<>();
+
+
+    public enum Transport {
+        SDK, NETTY
+    }
+
+    @Data
+    public static class Credentials {
+
+        private String accessKey;
+        private String secretKey;
+
+        public boolean hasKey() {
+            return StringUtils.hasText(accessKey) && StringUtils.hasText(secretKey);
+        }
+
+    }
+
+    @Data
+    public static class Client {
+
+        private int connectionTimeout = ClientConfiguration.DEFAULT_CONNECTION_TIMEOUT;
+        private int socketTimeout = ClientConfiguration.DEFAULT_SOCKET_TIMEOUT;
+        private int requestTimeout = ClientConfiguration.DEFAULT_REQUEST_TIMEOUT;
+        /**
+         * AWS SDK의 재시도는 Hystrix 타임아웃을 알지 못하므로 기본값은 0이다.
+         */
+        private int maxErrorRetry = 0;
+        /**
+         * 지정하지 않으면 람다 라우트의 Hystrix 동시 실행 수에 headroom을 곱한 값을 사용한다.
+         */
+        private Integer maxConnections;
+        /**
+         * 지정하지 않으면 maxConnections와 같다.
+         */
+        private Integer executorThreads;
+        /**
+         * 스레드를 기다릴 수 있는 호출 수, 지정하지 않으면 executorThreads와 같다. 가득 차면 호출은 RejectedExecutionException으로 실패한다.
+         */
+        private Integer executorQueueSize;
+        /**
+         * 재시도와 헤징, 워밍업 호출을 위한 여유분
+         */
+        private double headroom = 1.2;
+        private long connectionTtl = ClientConfiguration.DEFAULT_CONNECTION_TTL;
+        private long connectionMaxIdleMillis = ClientConfiguration.DEFAULT_CONNECTION_MAX_IDLE_MILLIS;
+        private boolean tcpKeepAlive = true;
+
+    }
+
+    @Data
+    public static class Prewarm {
+
+        private boolean enabled = true;
+        /**
+         * 시작할 때 미리 맺어둘 연결 수, maxConnections를 넘지 않는다.
+         */
+        private int connections = 16;
+        private long timeoutMillis = 5000;
+
+    }
+
+}
@@ -1,38 +1,53 @@
 package org.springframework.cloud.netflix.zuul.filters.route;
 
-import com.netflix.config.DynamicIntProperty;
 import com.netflix.config.DynamicPropertyFactory;
 import com.netflix.hystrix.*;
 import com.netflix.zuul.constants.ZuulConstants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaClientRequest;
 import org.springframework.cloud.netflix.zuul.filters.ZuulProperties;
 import org.springframework.http.client.ClientHttpRequest;
 import org.springframework.http.client.ClientHttpResponse;
 
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author arawn.kr@gmail.com
  */
+@Slf4j
 public class AWSLambdaCommand extends HystrixCommand<ClientHttpResponse> {
 
-    private static final String COMMAND_KEY = "service-lambda";
+    static final String COMMAND_KEY = "service-lambda";
+    static final String GROUP_KEY = "AWSLambdaCommand";
 
     private final ClientHttpRequest lambdaRequest;
     private final FallbackProvider fallbackProvider;
 
     public AWSLambdaCommand(ClientHttpRequest lambdaRequest, FallbackProvider fallbackProvider, ZuulProperties zuulProperties) {
-        super(getSetter(COMMAND_KEY, zuulProperties));
+        this(lambdaRequest, fallbackProvider, getSetter(COMMAND_KEY, zuulProperties));
+    }
+
+    public AWSLambdaCommand(ClientHttpRequest lambdaRequest, FallbackProvider fallbackProvider, Setter setter) {
+        super(setter);
         this.lambdaRequest = lambdaRequest;
         this.fallbackProvider = fallbackProvider;
     }
 
     @Override
     protected ClientHttpResponse run() throws Exception {
+        applyTimeout(lambdaRequest, getProperties());
         return lambdaRequest.execute();
     }
 
     @Override
     protected ClientHttpResponse getFallback() {
+        if (isResponseTimedOut()) {
+            // 세마포어 격리에서는 실행 스레드가 인터럽트되지 않으므로, 타임아웃이 나면 여기서 람다 호출을 취소한다.
+            cancel(lambdaRequest);
+        }
         if(Objects.nonNull(fallbackProvider)) {
             return fallbackProvider.fallbackResponse();
         }
@@ -40,24 +55,42 @@ public class AWSLambdaCommand extends HystrixCommand<ClientHttpResponse> {
     }
 
 
+    /**
+     * 명령의 타임아웃을 람다 요청의 마감 시각으로 전달해서, 재시도 등이 남은 시간 안에서만 이뤄지게 한다.
+     */
+    static void applyTimeout(ClientHttpRequest lambdaRequest, HystrixCommandProperties properties) {
+        if (lambdaRequest instanceof AWSLambdaClientRequest && properties.executionTimeoutEnabled().get()) {
+            ((AWSLambdaClientRequest) lambdaRequest).setTimeout(properties.executionTimeoutInMilliseconds().get(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    static void cancel(ClientHttpRequest lambdaRequest) {
+        if (lambdaRequest instanceof AWSLambdaClientRequest && ((AWSLambdaClientRequest) lambdaRequest).cancel()) {
+            log.debug("cancel abandoned lambda invocation: {}", lambdaRequest);
+        }
+    }
+
     /**
      * {@link org.springframework.cloud.netflix.zuul.filters.route.support.AbstractRibbonCommand} 에서 복제 후 가공
      */
     protected static Setter getSetter(final String commandKey, ZuulProperties zuulProperties) {
+        return getSetter(commandKey, zuulProperties, getMaxSemaphores(commandKey, zuulProperties));
+    }
+
+    /**
+     * @param maxSemaphores 세마포어 격리 전략일 때 최대 동시 실행 수
+     */
+    protected static Setter getSetter(final String commandKey, ZuulProperties zuulProperties, int maxSemaphores) {
         // @formatter:off
-        final Setter commandSetter = Setter.withGroupKey(HystrixCommandGroupKey.Factory.asKey("AWSLambdaCommand"))
+        final Setter commandSetter = Setter.withGroupKey(HystrixCommandGroupKey.Factory.asKey(GROUP_KEY))
                                            .andCommandKey(HystrixCommandKey.Factory.asKey(commandKey));
         final HystrixCommandProperties.Setter setter = createSetter(commandKey, zuulProperties);
         if (zuulProperties.getRibbonIsolationStrategy() == HystrixCommandProperties.ExecutionIsolationStrategy.SEMAPHORE) {
-            final String name = ZuulConstants.ZUUL_EUREKA + commandKey + ".semaphore.maxSemaphores";
             // we want to default to semaphore-isolation since this wraps
             // 2 others commands that are already thread isolated
-            final DynamicIntProperty value = DynamicPropertyFactory.getInstance()
-                    .getIntProperty(name, zuulProperties.getSemaphore().getMaxSemaphores());
-            setter.withExecutionIsolationSemaphoreMaxConcurrentRequests(value.get());
+            setter.withExecutionIsolationSemaphoreMaxConcurrentRequests(maxSemaphores);
         } else if (zuulProperties.getThreadPool().isUseSeparateThreadPools()) {
-            final String threadPoolKey = zuulProperties.getThreadPool().getThreadPoolKeyPrefix() + commandKey;
-            commandSetter.andThreadPoolKey(HystrixThreadPoolKey.Factory.asKey(threadPoolKey));
+            commandSetter.andThreadPoolKey(HystrixThreadPoolKey.Factory.asKey(getThreadPoolKey(commandKey, zuulProperties)));
         }
 
         return commandSetter.andCommandPropertiesDefaults(setter);
@@ -71,16 +104,67 @@ public class AWSLambdaCommand extends HystrixCommand<ClientHttpResponse> {
      * hystrix:
      *   command.service-lambda.execution.isolation.thread.timeoutInMilliseconds: 5250
      *
+     * 라우트별 명령 키(예: command.lambda)에 설정이 없으면 service-lambda 설정을 사용한다.
      */
     protected static HystrixCommandProperties.Setter createSetter(String commandKey, ZuulProperties zuulProperties) {
         DynamicPropertyFactory dynamicPropertyFactory = DynamicPropertyFactory.getInstance();
         int defaultHystrixTimeout = dynamicPropertyFactory.getIntProperty("hystrix.command.default.execution.isolation.thread.timeoutInMilliseconds",500).get();
+        int sharedHystrixTimeout = dynamicPropertyFactory.getIntProperty("hystrix.command." + COMMAND_KEY + ".execution.isolation.thread.timeoutInMilliseconds",0).get();
         int commandHystrixTimeout = dynamicPropertyFactory.getIntProperty("hystrix.command." + commandKey + ".execution.isolation.thread.timeoutInMilliseconds",0).get();
-        int hystrixTimeout = commandHystrixTimeout > 0 ? commandHystrixTimeout : defaultHystrixTimeout;
+        int hystrixTimeout = commandHystrixTimeout > 0 ? commandHystrixTimeout : sharedHystrixTimeout > 0 ? sharedHystrixTimeout : defaultHystrixTimeout;
 
         return HystrixCommandProperties.Setter()
                                        .withExecutionIsolationStrategy(zuulProperties.getRibbonIsolationStrategy())
                                        .withExecutionTimeoutInMilliseconds(hystrixTimeout);
     }
 
-}
\ No newline at end of file
+    /**
+     * 라우트별 명령 키에 설정이 없으면 service-lambda 설정, 그마저 없으면 {@link ZuulProperties}의 값을 사용한다.
+     */
+    protected static int getMaxSemaphores(String commandKey, ZuulProperties zuulProperties) {
+        DynamicPropertyFactory dynamicPropertyFactory = DynamicPropertyFactory.getInstance();
+        int sharedMaxSemaphores = dynamicPropertyFactory.getIntProperty(ZuulConstants.ZUUL_EUREKA + COMMAND_KEY + ".semaphore.maxSemaphores", zuulProperties.getSemaphore().getMaxSemaphores()).get();
+        return dynamicPropertyFactory.getIntProperty(ZuulConstants.ZUUL_EUREKA + commandKey + ".semaphore.maxSemaphores", sharedMaxSemaphores).get();
+    }
+
+    /**
+     * 람다 클라이언트의 연결 수와 스레드 수를 정할 수 있도록, 명령 키들이 동시에 실행할 수 있는 최대 요청 수를 계산한다.
+     * 세마포어 격리 전략이나 비동기 호출이라면 세마포어 크기를, 스레드 격리 전략이라면 Hystrix 스레드풀 크기를 더하며, 함께 쓰는 스레드풀은 한 번만 더한다.
+     */
+    public static int getMaxConcurrency(Collection<String> commandKeys, ZuulProperties zuulProperties, boolean asyncInvocation) {
+        boolean semaphore = asyncInvocation || zuulProperties.getRibbonIsolationStrategy() == HystrixCommandProperties.ExecutionIsolationStrategy.SEMAPHORE;
+        Collection<String> threadPoolKeys = new HashSet<>();
+        int maxConcurrency = 0;
+        for (String commandKey : commandKeys) {
+            if (semaphore) {
+                maxConcurrency += getMaxSemaphores(commandKey, zuulProperties);
+            } else if (threadPoolKeys.add(getThreadPoolKey(commandKey, zuulProperties))) {
+                maxConcurrency += getThreadPoolSize(getThreadPoolKey(commandKey, zuulProperties));
+            }
+        }
+        return maxConcurrency;
+    }
+
+    /**
+     * 라우트마다 스레드풀을 나누지 않으면 명령 그룹 키(AWSLambdaCommand)의 스레드풀을 함께 사용한다.
+     */
+    static String getThreadPoolKey(String commandKey, ZuulProperties zuulProperties) {
+        if (zuulProperties.getThreadPool().isUseSeparateThreadPools()) {
+            return zuulProperties.getThreadPool().getThreadPoolKeyPrefix() + commandKey;
+        }
+        return GROUP_KEY;
+    }
+
+    static int getThreadPoolSize(String threadPoolKey) {
+        DynamicPropertyFactory dynamicPropertyFactory = DynamicPropertyFactory.getInstance();
+        int defaultCoreSize = dynamicPropertyFactory.getIntProperty("hystrix.threadpool.default.coreSize", 10).get();
+        int coreSize = dynamicPropertyFactory.getIntProperty("hystrix.threadpool." + threadPoolKey + ".coreSize", defaultCoreSize).get();
+        boolean defaultDiverge = dynamicPropertyFactory.getBooleanProperty("hystrix.threadpool.default.allowMaximumSizeToDivergeFromCoreSize", false).get();
+        if (!dynamicPropertyFactory.getBooleanProperty("hystrix.threadpool." + threadPoolKey + ".allowMaximumSizeToDivergeFromCoreSize", defaultDiverge).get()) {
+            return coreSize;
+        }
+        int defaultMaximumSize = dynamicPropertyFactory.getIntProperty("hystrix.threadpool.default.maximumSize", 10).get();
+        return Math.max(coreSize, dynamicPropertyFactory.getIntProperty("hystrix.threadpool." + threadPoolKey + ".maximumSize", defaultMaximumSize).get());
+    }
+
+}
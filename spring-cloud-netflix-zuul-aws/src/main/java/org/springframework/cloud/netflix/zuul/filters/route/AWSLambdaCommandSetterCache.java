@@ -0,0 +1,169 @@
+package org.springframework.cloud.netflix.zuul.filters.route;
+
+import com.netflix.config.ConfigurationManager;
+import com.netflix.hystrix.HystrixCommand;
+import com.netflix.hystrix.HystrixObservableCommand;
+import com.netflix.zuul.constants.ZuulConstants;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.apache.commons.configuration.event.ConfigurationEvent;
+import org.apache.commons.configuration.event.ConfigurationListener;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaConcurrencyLimiter;
+import org.springframework.cloud.netflix.zuul.filters.ZuulProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 람다 라우트(명령 키)별로 Hystrix {@code Setter}를 만들어 보관한다.
+ * {@link com.netflix.config.DynamicPropertyFactory} 조회는 명령 키당 한 번만 일어나며, {@link #clear()}가 호출되면 다시 만든다.
+ *
+ * Hystrix는 명령 키마다 처음 만든 속성을 계속 사용하므로 {@code Setter}를 다시 만들어도 바뀐 기본값이 반영되지 않는다.
+ * 대신 service-lambda 타임아웃, zuul 세마포어 설정처럼 명령 키의 속성을 결정하는 설정이 바뀌면
+ * Archaius의 {@code hystrix.command.<명령 키>.*} 속성을 갱신해서 Hystrix가 바로 읽도록 한다. 직접 설정한 명령 키의 속성은 덮어쓰지 않는다.
+ *
+ * {@link AWSLambdaConcurrencyLimiter}가 적용되는 라우트는 동시 실행 수를 한도 조절기에 맡기므로, 세마포어 크기를 조절기의 최대 한도로 둔다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+@Slf4j
+public class AWSLambdaCommandSetterCache implements AutoCloseable {
+
+    private final ZuulProperties zuulProperties;
+    private final ConcurrentMap<String, HystrixCommand.Setter> commandSetters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, HystrixObservableCommand.Setter> observableCommandSetters = new ConcurrentHashMap<>();
+    private final Set<String> commandKeys = ConcurrentHashMap.newKeySet();
+    private final Map<String, String> appliedProperties = new HashMap<>();
+    private final ConfigurationListener configurationListener = this::configurationChanged;
+    private volatile AWSLambdaConcurrencyLimiter concurrencyLimiter;
+
+    public AWSLambdaCommandSetterCache(ZuulProperties zuulProperties) {
+        this.zuulProperties = zuulProperties;
+        ConfigurationManager.getConfigInstance().addConfigurationListener(configurationListener);
+    }
+
+    public HystrixCommand.Setter getCommandSetter(String commandKey) {
+        HystrixCommand.Setter setter = commandSetters.get(commandKey);
+        if (Objects.isNull(setter)) {
+            setter = commandSetters.computeIfAbsent(commandKey, key -> {
+                applyCommandProperties(key);
+                return AWSLambdaCommand.getSetter(key, zuulProperties, getMaxSemaphores(key));
+            });
+        }
+        return setter;
+    }
+
+    public HystrixObservableCommand.Setter getObservableCommandSetter(String commandKey) {
+        HystrixObservableCommand.Setter setter = observableCommandSetters.get(commandKey);
+        if (Objects.isNull(setter)) {
+            setter = observableCommandSetters.computeIfAbsent(commandKey, key -> {
+                applyCommandProperties(key);
+                return AWSLambdaObservableCommand.getSetter(key, zuulProperties, getMaxSemaphores(key));
+            });
+        }
+        return setter;
+    }
+
+    protected int getMaxSemaphores(String commandKey) {
+        AWSLambdaConcurrencyLimiter limiter = concurrencyLimiter;
+        if (Objects.nonNull(limiter) && limiter.isLimitedRoute(commandKey, null)) {
+            return limiter.getMaxLimit();
+        }
+        return AWSLambdaCommand.getMaxSemaphores(commandKey, zuulProperties);
+    }
+
+    /**
+     * @return 명령 키에 설정이 없을 때 쓸 service-lambda 타임아웃, 없다면 Hystrix 기본 설정을 따르도록 null
+     */
+    protected Integer getSharedTimeout() {
+        int sharedTimeout = ConfigurationManager.getConfigInstance().getInt(getTimeoutProperty(AWSLambdaCommand.COMMAND_KEY), 0);
+        return sharedTimeout > 0 ? sharedTimeout : null;
+    }
+
+    public void setConcurrencyLimiter(AWSLambdaConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+        applyCommandProperties();
+    }
+
+    public void clear() {
+        log.debug("clear cached hystrix setters: {}", commandSetters.keySet());
+        commandSetters.clear();
+        observableCommandSetters.clear();
+    }
+
+    /**
+     * Archaius 리스너를 해제하고, 갱신해둔 명령 키의 속성 중 그 뒤로 바뀌지 않은 것을 지운다.
+     */
+    @Override
+    public void close() {
+        val configuration = ConfigurationManager.getConfigInstance();
+        configuration.removeConfigurationListener(configurationListener);
+        synchronized (appliedProperties) {
+            appliedProperties.forEach((name, value) -> {
+                if (Objects.equals(value, getProperty(name))) {
+                    configuration.clearProperty(name);
+                }
+            });
+            appliedProperties.clear();
+        }
+        commandKeys.clear();
+        clear();
+    }
+
+    void configurationChanged(ConfigurationEvent event) {
+        if (event.isBeforeUpdate()) {
+            return;
+        }
+        String propertyName = event.getPropertyName();
+        if (Objects.isNull(propertyName) || propertyName.startsWith("hystrix.command." + AWSLambdaCommand.COMMAND_KEY + ".") || propertyName.startsWith(ZuulConstants.ZUUL_EUREKA)) {
+            applyCommandProperties();
+        }
+    }
+
+    protected void applyCommandProperties() {
+        commandKeys.forEach(this::applyCommandProperties);
+    }
+
+    protected void applyCommandProperties(String commandKey) {
+        commandKeys.add(commandKey);
+        applyProperty(getTimeoutProperty(commandKey), getSharedTimeout());
+        applyProperty("hystrix.command." + commandKey + ".execution.isolation.semaphore.maxConcurrentRequests", getMaxSemaphores(commandKey));
+    }
+
+    /**
+     * 값이 없으면 갱신해둔 속성을 지운다. 갱신한 적 없는 값이 이미 설정되어 있다면 직접 설정한 것이므로 그대로 둔다.
+     */
+    private void applyProperty(String name, Object value) {
+        val configuration = ConfigurationManager.getConfigInstance();
+        synchronized (appliedProperties) {
+            String current = getProperty(name);
+            if (Objects.nonNull(current) && !Objects.equals(current, appliedProperties.get(name))) {
+                appliedProperties.remove(name);
+                return;
+            }
+            if (Objects.isNull(value)) {
+                if (Objects.nonNull(appliedProperties.remove(name))) {
+                    configuration.clearProperty(name);
+                }
+            } else if (!Objects.equals(current, String.valueOf(value))) {
+                log.debug("apply hystrix property: {}={}", name, value);
+                appliedProperties.put(name, String.valueOf(value));
+                configuration.setProperty(name, value);
+            }
+        }
+    }
+
+    private static String getProperty(String name) {
+        Object value = ConfigurationManager.getConfigInstance().getProperty(name);
+        return Objects.nonNull(value) ? String.valueOf(value) : null;
+    }
+
+    private static String getTimeoutProperty(String commandKey) {
+        return "hystrix.command." + commandKey + ".execution.isolation.thread.timeoutInMilliseconds";
+    }
+
+}
@@ -0,0 +1,96 @@
+package org.springframework.cloud.netflix.zuul.filters.route;
+
+import org.springframework.util.PatternMatchUtils;
+import org.springframework.util.StringUtils;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 라우트 ID 또는 람다 ARN으로 {@link FallbackProvider}를 찾기 위한 색인
+ * {@link FallbackProvider#getRoute()}는 라우트 ID, 람다 ARN 또는 '*'를 포함한 패턴으로 작성할 수 있다.
+ *
+ * <pre>
+ * arn:aws:lambda:ap-northeast-2:123456789012:function:hello   (특정 함수)
+ * arn:aws:lambda:ap-northeast-2:123456789012:function:*       (계정의 모든 함수)
+ * arn:aws:lambda:*:*:function:*:prod                          (모든 함수의 prod 별칭)
+ * *                                                           (기본 fallback)
+ * </pre>
+ *
+ * 일치하는 항목이 여럿이면 ARN, 라우트 ID가 정확히 일치하는 항목을 먼저 사용하고,
+ * 패턴은 와일드카드를 제외한 글자가 많은(더 구체적인) 순서로 사용한다.
+ * 한 번 찾은 결과는 라우트(ID가 없다면 ARN)별로 기억하므로 이후 조회는 해시 조회 한 번으로 끝난다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+public class AWSLambdaFallbackProviderIndex {
+
+    private static final Object NOT_FOUND = new Object();
+
+    private final Map<String, FallbackProvider> exactProviders = new HashMap<>();
+    private final List<FallbackProvider> patternProviders = new ArrayList<>();
+    private final ConcurrentMap<String, Object> resolvedProviders = new ConcurrentHashMap<>();
+
+    public AWSLambdaFallbackProviderIndex(Collection<FallbackProvider> fallbackProviders) {
+        if (Objects.nonNull(fallbackProviders)) {
+            for (FallbackProvider fallbackProvider : fallbackProviders) {
+                String route = fallbackProvider.getRoute();
+                if (!StringUtils.hasText(route)) {
+                    continue;
+                }
+                if (route.indexOf('*') >= 0) {
+                    patternProviders.add(fallbackProvider);
+                } else {
+                    exactProviders.putIfAbsent(route, fallbackProvider);
+                }
+            }
+        }
+        patternProviders.sort(Comparator.comparingInt(AWSLambdaFallbackProviderIndex::specificity).reversed());
+    }
+
+    public FallbackProvider find(String routeId, String functionArn) {
+        String key = Objects.nonNull(routeId) ? routeId : functionArn;
+        if (Objects.isNull(key)) {
+            return null;
+        }
+
+        Object resolved = resolvedProviders.get(key);
+        if (Objects.isNull(resolved)) {
+            FallbackProvider fallbackProvider = resolve(routeId, functionArn);
+            resolved = Objects.nonNull(fallbackProvider) ? fallbackProvider : NOT_FOUND;
+            resolvedProviders.put(key, resolved);
+        }
+        return resolved == NOT_FOUND ? null : (FallbackProvider) resolved;
+    }
+
+    /**
+     * 라우트가 갱신되면 라우트 ID와 ARN의 관계가 바뀔 수 있으므로 기억해둔 결과를 버린다.
+     */
+    public void clear() {
+        resolvedProviders.clear();
+    }
+
+    protected FallbackProvider resolve(String routeId, String functionArn) {
+        if (Objects.nonNull(functionArn) && exactProviders.containsKey(functionArn)) {
+            return exactProviders.get(functionArn);
+        }
+        if (Objects.nonNull(routeId) && exactProviders.containsKey(routeId)) {
+            return exactProviders.get(routeId);
+        }
+        for (FallbackProvider fallbackProvider : patternProviders) {
+            String pattern = fallbackProvider.getRoute();
+            if ((Objects.nonNull(functionArn) && PatternMatchUtils.simpleMatch(pattern, functionArn))
+                    || (Objects.nonNull(routeId) && PatternMatchUtils.simpleMatch(pattern, routeId))) {
+                return fallbackProvider;
+            }
+        }
+        return null;
+    }
+
+    static int specificity(FallbackProvider fallbackProvider) {
+        String route = fallbackProvider.getRoute();
+        return route.length() - StringUtils.countOccurrencesOf(route, "*");
+    }
+
+}
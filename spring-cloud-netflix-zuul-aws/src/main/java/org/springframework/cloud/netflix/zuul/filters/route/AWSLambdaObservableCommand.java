@@ -0,0 +1,84 @@
+package org.springframework.cloud.netflix.zuul.filters.route;
+
+import com.netflix.hystrix.HystrixCommandGroupKey;
+import com.netflix.hystrix.HystrixCommandKey;
+import com.netflix.hystrix.HystrixCommandProperties;
+import com.netflix.hystrix.HystrixObservableCommand;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaClientRequest;
+import org.springframework.cloud.netflix.zuul.filters.ZuulProperties;
+import org.springframework.http.client.ClientHttpResponse;
+import rx.Observable;
+import rx.subscriptions.Subscriptions;
+
+import java.util.Objects;
+import java.util.concurrent.CompletionException;
+
+/**
+ * {@link AWSLambdaCommand}의 비동기 버전으로, 람다 함수가 실행되는 동안 Hystrix 스레드를 점유하지 않는다.
+ * {@link AWSLambdaClientRequest#executeAsync()}의 완료 콜백이 {@link Observable}로 전달된다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+public class AWSLambdaObservableCommand extends HystrixObservableCommand<ClientHttpResponse> {
+
+    private final AWSLambdaClientRequest lambdaRequest;
+    private final FallbackProvider fallbackProvider;
+
+    public AWSLambdaObservableCommand(AWSLambdaClientRequest lambdaRequest, FallbackProvider fallbackProvider, ZuulProperties zuulProperties) {
+        this(lambdaRequest, fallbackProvider, getSetter(AWSLambdaCommand.COMMAND_KEY, zuulProperties));
+    }
+
+    public AWSLambdaObservableCommand(AWSLambdaClientRequest lambdaRequest, FallbackProvider fallbackProvider, Setter setter) {
+        super(setter);
+        this.lambdaRequest = lambdaRequest;
+        this.fallbackProvider = fallbackProvider;
+    }
+
+    @Override
+    protected Observable<ClientHttpResponse> construct() {
+        AWSLambdaCommand.applyTimeout(lambdaRequest, getProperties());
+        return Observable.create(subscriber -> {
+            // Hystrix 타임아웃이나 클라이언트 연결 종료로 구독이 해지되면 진행 중인 람다 호출을 취소한다.
+            subscriber.add(Subscriptions.create(() -> AWSLambdaCommand.cancel(lambdaRequest)));
+            lambdaRequest.executeAsync().whenComplete((response, error) -> {
+                if (Objects.nonNull(error)) {
+                    // HystrixBadRequestException 등을 Hystrix가 구분할 수 있도록 CompletionException을 벗겨낸다.
+                    subscriber.onError(error instanceof CompletionException && Objects.nonNull(error.getCause()) ? error.getCause() : error);
+                } else {
+                    subscriber.onNext(response);
+                    subscriber.onCompleted();
+                }
+            });
+        });
+    }
+
+    @Override
+    protected Observable<ClientHttpResponse> resumeWithFallback() {
+        if (Objects.nonNull(fallbackProvider)) {
+            return Observable.just(fallbackProvider.fallbackResponse());
+        }
+        return super.resumeWithFallback();
+    }
+
+
+    /**
+     * 완료 콜백만 기다리면 되므로 격리 전략은 세마포어로 고정한다.
+     * 타임아웃은 {@link AWSLambdaCommand#createSetter(String, ZuulProperties)}와 같은 설정을 따른다.
+     */
+    protected static Setter getSetter(final String commandKey, ZuulProperties zuulProperties) {
+        return getSetter(commandKey, zuulProperties, AWSLambdaCommand.getMaxSemaphores(commandKey, zuulProperties));
+    }
+
+    protected static Setter getSetter(final String commandKey, ZuulProperties zuulProperties, int maxSemaphores) {
+        // @formatter:off
+        final HystrixCommandProperties.Setter setter = AWSLambdaCommand.createSetter(commandKey, zuulProperties)
+                .withExecutionIsolationStrategy(HystrixCommandProperties.ExecutionIsolationStrategy.SEMAPHORE)
+                .withExecutionIsolationSemaphoreMaxConcurrentRequests(maxSemaphores);
+
+        return Setter.withGroupKey(HystrixCommandGroupKey.Factory.asKey(AWSLambdaCommand.GROUP_KEY))
+                     .andCommandKey(HystrixCommandKey.Factory.asKey(commandKey))
+                     .andCommandPropertiesDefaults(setter);
+        // @formatter:on
+    }
+
+}
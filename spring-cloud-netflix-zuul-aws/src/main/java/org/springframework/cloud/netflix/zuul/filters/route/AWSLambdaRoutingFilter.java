@@ -1,45 +1,80 @@
 package org.springframework.cloud.netflix.zuul.filters.route;
 
-import com.google.common.io.CharStreams;
+import com.netflix.hystrix.HystrixInvokableInfo;
 import com.netflix.hystrix.exception.HystrixRuntimeException;
 import com.netflix.zuul.ZuulFilter;
 import com.netflix.zuul.context.RequestContext;
 import com.netflix.zuul.exception.ZuulException;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaClientRequest;
 import org.springframework.cloud.netflix.aws.lambda.AWSLambdaClientRequestFactory;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaClientResponse;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaConcurrencyLimiter;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaEventDispatcher;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaEventSpool;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaFunctionErrorHandler;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaMetrics;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaMultipartPayloadWriter;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaProxyClientResponse;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaProxyEventWriter;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaResponseCache;
+import org.springframework.cloud.netflix.zuul.RoutesRefreshedEvent;
 import org.springframework.cloud.netflix.zuul.filters.ProxyRequestHelper;
 import org.springframework.cloud.netflix.zuul.filters.ZuulProperties;
 import org.springframework.cloud.netflix.zuul.filters.support.FilterConstants;
 import org.springframework.cloud.netflix.zuul.util.ZuulRuntimeException;
+import org.springframework.context.ApplicationListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.client.ClientHttpRequest;
 import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.server.ServerHttpRequest;
 import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.StringUtils;
+import rx.subscriptions.SerialSubscription;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.util.Objects;
-import java.util.Set;
+import java.util.*;
 
+import static org.springframework.cloud.netflix.zuul.filters.support.FilterConstants.PROXY_KEY;
+import static org.springframework.cloud.netflix.zuul.filters.support.FilterConstants.REQUEST_URI_KEY;
 import static org.springframework.cloud.netflix.zuul.filters.support.FilterConstants.SERVICE_ID_KEY;
 
 /**
  * @author arawn.kr@gmail.com
  */
 @Slf4j
-public class AWSLambdaRoutingFilter extends ZuulFilter {
+public class AWSLambdaRoutingFilter extends ZuulFilter implements ApplicationListener<RoutesRefreshedEvent>, DisposableBean {
+
+    private static final Set<String> EXCLUDED_RESPONSE_HEADERS = new HashSet<>(Arrays.asList(
+            "host", "connection", "content-length", "content-encoding", "server", "transfer-encoding", "x-application-context"));
 
     private AWSLambdaClientRequestFactory requestFactory;
     private ZuulProperties zuulProperties;
-    private Set<FallbackProvider> fallbackProviders;
+    private volatile AWSLambdaFallbackProviderIndex fallbackProviderIndex = new AWSLambdaFallbackProviderIndex(null);
     private ProxyRequestHelper requestHelper;
+    private AWSLambdaCommandSetterCache setterCache;
+    private boolean asyncInvocation = false;
+    private AWSLambdaResponseCache responseCache;
+    private AWSLambdaEventDispatcher eventDispatcher;
+    private AWSLambdaMetrics metrics;
+    private AWSLambdaFunctionErrorHandler functionErrorHandler = new AWSLambdaFunctionErrorHandler();
 
     public AWSLambdaRoutingFilter(AWSLambdaClientRequestFactory requestFactory, ZuulProperties zuulProperties) {
         this.requestFactory = requestFactory;
         this.zuulProperties = zuulProperties;
         this.requestHelper = new ProxyRequestHelper();
+        this.setterCache = new AWSLambdaCommandSetterCache(zuulProperties);
     }
 
     @Override
@@ -65,40 +100,169 @@ public class AWSLambdaRoutingFilter extends ZuulFilter {
         return Objects.nonNull(serviceId) && serviceId.toString().startsWith("arn:aws:lambda:");
     }
 
+    /**
+     * 람다 함수마다 Hystrix 자원(세마포어, 스레드풀)을 격리하기 위해 라우트 ID를 명령 키로 사용한다.
+     * 라우트 ID를 알 수 없다면 공용 명령 키(service-lambda)를 사용한다.
+     */
+    protected String getCommandKey(RequestContext context) {
+        val routeId = context.get(PROXY_KEY);
+        if (Objects.nonNull(routeId) && StringUtils.hasText(routeId.toString())) {
+            return routeId.toString();
+        }
+        return AWSLambdaCommand.COMMAND_KEY;
+    }
+
     @Override
     public Object run() {
         requestHelper.addIgnoredHeaders();
 
         val context = RequestContext.getCurrentContext();
         val functionArn = getCurrentFunctionArn();
+        val routeId = (String) context.get(PROXY_KEY);
+        val commandKey = getCommandKey(context);
         val request = new ServletServerHttpRequest(context.getRequest());
+        val routeMetrics = getRouteMetrics(routeId, functionArn);
+        val started = System.nanoTime();
+        AWSLambdaMetrics.Outcome outcome = AWSLambdaMetrics.Outcome.ERROR;
 
         try {
-            val lambdaRequest = requestFactory.createRequest(functionArn, request);
-            val lambdaResponse = forward(lambdaRequest, getFallbackProvider(functionArn));
-            setResponse(context, lambdaResponse);
-            return lambdaResponse;
+            val lambdaRequest = requestFactory.createRequest(routeId, functionArn, request, getPathParameters(context));
+            if (isEventInvocable(routeId, functionArn, request, lambdaRequest)) {
+                acceptEvent(context, (AWSLambdaClientRequest) lambdaRequest);
+                outcome = AWSLambdaMetrics.Outcome.ACCEPTED;
+                return null;
+            }
+
+            val cacheKey = getCacheKey(routeId, lambdaRequest, request);
+            if (Objects.nonNull(cacheKey)) {
+                val cachedResponse = responseCache.get(cacheKey);
+                if (Objects.nonNull(cachedResponse)) {
+                    log.debug("use cached lambda response: {}", lambdaRequest);
+                    setResponse(context, cachedResponse);
+                    outcome = AWSLambdaMetrics.Outcome.CACHE_HIT;
+                    return cachedResponse;
+                }
+            }
+
+            val fallbackProvider = getFallbackProvider(routeId, functionArn);
+            if (isAsyncInvocable(context, lambdaRequest)) {
+                // 비동기 호출은 완료 콜백에서 기록한다.
+                outcome = null;
+                forwardAsync(context, commandKey, (AWSLambdaClientRequest) lambdaRequest, fallbackProvider, cacheKey, routeMetrics, started);
+                return null;
+            }
+
+            val lambdaCommand = createCommand(commandKey, lambdaRequest, fallbackProvider);
+            try {
+                val lambdaResponse = cacheResponse(cacheKey, forward(lambdaCommand));
+                setResponse(context, lambdaResponse);
+                // 오류 규칙으로 응답한 함수 오류
+                outcome = isErrorResponse(lambdaResponse) ? AWSLambdaMetrics.Outcome.FUNCTION_ERROR : AWSLambdaMetrics.Outcome.SUCCESS;
+                return lambdaResponse;
+            } finally {
+                outcome = recordCommand(routeMetrics, lambdaCommand, outcome);
+            }
         } catch (ZuulException error) {
+            outcome = getOutcome(error, outcome);
             throw new ZuulRuntimeException(error);
+        } catch (AWSLambdaMultipartPayloadWriter.PayloadTooLargeException error) {
+            throw new ZuulRuntimeException(new ZuulException(error, HttpStatus.PAYLOAD_TOO_LARGE.value(), "AWSLambdaPayloadTooLarge"));
+        } catch (AWSLambdaMultipartPayloadWriter.MalformedMultipartException error) {
+            throw new ZuulRuntimeException(new ZuulException(error, error.getStatus().value(), "AWSLambdaMalformedMultipart"));
+        } catch (AWSLambdaConcurrencyLimiter.LimitExceededException error) {
+            outcome = AWSLambdaMetrics.Outcome.REJECTED;
+            throw new ZuulRuntimeException(new ZuulException(error, error.getStatus().value(), "AWSLambdaConcurrencyLimitExceeded"));
         } catch (Exception error) {
             throw new ZuulRuntimeException(new ZuulException(error, 500, "AWSLambdaFunctionInvokeError"));
+        } finally {
+            recordRequest(routeMetrics, outcome, started);
         }
     }
 
-    protected FallbackProvider getFallbackProvider(String functionArn) {
-        if (Objects.nonNull(fallbackProviders)) {
-            return fallbackProviders.stream()
-                                    .filter(it -> Objects.equals(it.getRoute(), functionArn))
-                                    .findFirst()
-                                    .orElse(null);
+    /**
+     * 라우트 경로를 제외한 나머지 경로를 API Gateway의 {proxy+} 경로 변수로 전달한다.
+     */
+    protected Map<String, String> getPathParameters(RequestContext context) {
+        val requestURI = context.get(REQUEST_URI_KEY);
+        val proxyPath = Objects.nonNull(requestURI) ? StringUtils.trimLeadingCharacter(requestURI.toString(), '/') : null;
+        if (!StringUtils.hasText(proxyPath)) {
+            return Collections.emptyMap();
         }
-        return null;
+        return Collections.singletonMap(AWSLambdaProxyEventWriter.PROXY_PATH_PARAMETER, proxyPath);
+    }
+
+    protected boolean isEventInvocable(String routeId, String functionArn, ServerHttpRequest request, ClientHttpRequest lambdaRequest) {
+        return Objects.nonNull(eventDispatcher)
+                && lambdaRequest instanceof AWSLambdaClientRequest
+                && eventDispatcher.isEventRoute(routeId, functionArn, request);
+    }
+
+    /**
+     * 요청을 이벤트 저장소에 기록하고 바로 202(Accepted)로 응답한다. 람다 함수는 {@link AWSLambdaEventDispatcher}가 이벤트로 호출한다.
+     * 페이로드가 이벤트 호출 한도를 넘으면 람다가 거절할 이벤트이므로 202로 응답하지 않고 413(Payload Too Large)으로 응답한다.
+     * 저장소가 가득 찼거나 기록할 수 없다면 503(Service Unavailable)로 응답한다.
+     */
+    protected void acceptEvent(RequestContext context, AWSLambdaClientRequest lambdaRequest) throws IOException, ZuulException {
+        try {
+            eventDispatcher.accept(lambdaRequest);
+        } catch (AWSLambdaEventDispatcher.PayloadTooLargeException error) {
+            throw new ZuulException(error, error.getStatus().value(), "AWSLambdaEventPayloadTooLarge");
+        } catch (AWSLambdaEventSpool.SpoolFullException | IOException error) {
+            throw new ZuulException(error, HttpStatus.SERVICE_UNAVAILABLE.value(), "AWSLambdaEventSpoolError");
+        }
+        log.debug("accept lambda event: {}", lambdaRequest);
+
+        requestHelper.setResponse(HttpStatus.ACCEPTED.value(), null, new HttpHeaders());
+
+        // prevent RibbonRoutingFilter from running
+        context.set(SERVICE_ID_KEY, null);
+        // prevent SimpleHostRoutingFilter from running
+        context.setRouteHost(null);
+    }
+
+    /**
+     * @return 응답 캐시를 사용하지 않거나 캐시 대상이 아니라면 null
+     */
+    protected AWSLambdaResponseCache.CacheKey getCacheKey(String routeId, ClientHttpRequest lambdaRequest, ServerHttpRequest request) {
+        if (Objects.isNull(responseCache) || !(lambdaRequest instanceof AWSLambdaClientRequest)) {
+            return null;
+        }
+        return responseCache.createKey(routeId, (AWSLambdaClientRequest) lambdaRequest, request);
+    }
+
+    protected ClientHttpResponse cacheResponse(AWSLambdaResponseCache.CacheKey cacheKey, ClientHttpResponse response) throws IOException {
+        if (Objects.isNull(cacheKey)) {
+            return response;
+        }
+        return responseCache.put(cacheKey, response);
+    }
+
+    protected FallbackProvider getFallbackProvider(String functionArn) {
+        return getFallbackProvider(null, functionArn);
+    }
+
+    /**
+     * @see AWSLambdaFallbackProviderIndex
+     */
+    protected FallbackProvider getFallbackProvider(String routeId, String functionArn) {
+        return fallbackProviderIndex.find(routeId, functionArn);
     }
 
     protected ClientHttpResponse forward(ClientHttpRequest lambdaRequest, FallbackProvider fallbackProvider) throws ZuulException {
+        return forward(AWSLambdaCommand.COMMAND_KEY, lambdaRequest, fallbackProvider);
+    }
+
+    protected ClientHttpResponse forward(String commandKey, ClientHttpRequest lambdaRequest, FallbackProvider fallbackProvider) throws ZuulException {
+        return forward(createCommand(commandKey, lambdaRequest, fallbackProvider));
+    }
+
+    protected AWSLambdaCommand createCommand(String commandKey, ClientHttpRequest lambdaRequest, FallbackProvider fallbackProvider) {
+        log.debug("forward lambda function: {}", lambdaRequest);
+        return new AWSLambdaCommand(lambdaRequest, fallbackProvider, setterCache.getCommandSetter(commandKey));
+    }
+
+    protected ClientHttpResponse forward(AWSLambdaCommand lambdaCommand) throws ZuulException {
         try {
-            log.debug("forward lambda function: {}", lambdaRequest);
-            val lambdaCommand = new AWSLambdaCommand(lambdaRequest, fallbackProvider, zuulProperties);
             return lambdaCommand.execute();
         } catch (HystrixRuntimeException error) {
             if (error.getFailureType() == HystrixRuntimeException.FailureType.TIMEOUT) {
@@ -108,16 +272,187 @@ public class AWSLambdaRoutingFilter extends ZuulFilter {
         }
     }
 
-    protected void setResponse(RequestContext context, ClientHttpResponse response) throws IOException, ZuulException {
-        if (response.getStatusCode().is4xxClientError() || response.getStatusCode().is5xxServerError()) {
-            try (Reader reader = new InputStreamReader(response.getBody())) {
-                log.error(CharStreams.toString(reader));
+    protected boolean isAsyncInvocable(RequestContext context, ClientHttpRequest lambdaRequest) {
+        return asyncInvocation && lambdaRequest instanceof AWSLambdaClientRequest && context.getRequest().isAsyncSupported();
+    }
+
+    /**
+     * Servlet 3 비동기 처리로 람다 함수를 호출한다. 람다 함수가 실행되는 동안 서블릿 스레드와 Hystrix 스레드를 점유하지 않으며,
+     * 응답은 호출 완료 콜백에서 직접 작성한 후 {@link AsyncContext#complete()}로 종료한다.
+     * RequestContext는 요청 스레드에 묶여 있으므로, 이후 실행되는 post 필터는 람다 응답을 다루지 않는다.
+     */
+    protected void forwardAsync(RequestContext context, String commandKey, AWSLambdaClientRequest lambdaRequest, FallbackProvider fallbackProvider) {
+        forwardAsync(context, commandKey, lambdaRequest, fallbackProvider, null);
+    }
+
+    protected void forwardAsync(RequestContext context, String commandKey, AWSLambdaClientRequest lambdaRequest, FallbackProvider fallbackProvider, AWSLambdaResponseCache.CacheKey cacheKey) {
+        forwardAsync(context, commandKey, lambdaRequest, fallbackProvider, cacheKey, null, System.nanoTime());
+    }
+
+    /**
+     * @param routeMetrics null 이 아니라면 응답을 작성한 후 요청 처리 시간을 기록한다.
+     * @param started 게이트웨이가 요청을 받은 시각({@link System#nanoTime()})
+     */
+    protected void forwardAsync(RequestContext context, String commandKey, AWSLambdaClientRequest lambdaRequest, FallbackProvider fallbackProvider,
+                                AWSLambdaResponseCache.CacheKey cacheKey, AWSLambdaMetrics.RouteMetrics routeMetrics, long started) {
+        log.debug("forward lambda function asynchronously: {}", lambdaRequest);
+        val servletRequest = context.getRequest();
+        val servletResponse = context.getResponse();
+        val ignoredHeaders = getIgnoredHeaders(context);
+        val routeId = (String) context.get(PROXY_KEY);
+        val asyncContext = servletRequest.isAsyncStarted() ? servletRequest.getAsyncContext() : servletRequest.startAsync();
+
+        // prevent RibbonRoutingFilter from running
+        context.set(SERVICE_ID_KEY, null);
+        // prevent SimpleHostRoutingFilter from running
+        context.setRouteHost(null);
+
+        val lambdaCommand = new AWSLambdaObservableCommand(lambdaRequest, fallbackProvider, setterCache.getObservableCommandSetter(commandKey));
+
+        // 클라이언트 연결이 끊어지거나 비동기 처리 시간이 지나면 구독을 해지해서 람다 호출을 취소한다.
+        // 호출이 바로 끝나 비동기 처리가 완료될 수도 있으므로 구독하기 전에 등록한다.
+        final SerialSubscription subscription = new SerialSubscription();
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
             }
-            throw new ZuulException("람다 함수 호출 중 오류가 발생했습니다.", response.getRawStatusCode(), "AWSLambdaFunctionError");
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                subscription.unsubscribe();
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                subscription.unsubscribe();
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+
+        subscription.set(lambdaCommand.toObservable()
+                     .subscribe(
+                             response -> {
+                                 AWSLambdaMetrics.Outcome outcome = AWSLambdaMetrics.Outcome.ERROR;
+                                 try {
+                                     outcome = isErrorResponse(response) ? AWSLambdaMetrics.Outcome.FUNCTION_ERROR : AWSLambdaMetrics.Outcome.SUCCESS;
+                                     writeResponse(routeId, lambdaRequest.getFunctionArn(), servletResponse, cacheResponse(cacheKey, response), ignoredHeaders);
+                                 } catch (IOException error) {
+                                     writeError(servletResponse, error);
+                                 } finally {
+                                     recordRequest(routeMetrics, recordCommand(routeMetrics, lambdaCommand, outcome), started);
+                                 }
+                             },
+                             error -> {
+                                 writeError(servletResponse, error);
+                                 asyncContext.complete();
+                                 recordRequest(routeMetrics, recordCommand(routeMetrics, lambdaCommand, getOutcome(error, AWSLambdaMetrics.Outcome.ERROR)), started);
+                             },
+                             asyncContext::complete));
+    }
+
+    protected void writeResponse(String routeId, String functionArn, HttpServletResponse servletResponse, ClientHttpResponse response, Set<String> ignoredHeaders) {
+        try {
+            if (isFunctionError(response)) {
+                val errorResponse = functionErrorHandler.handle(routeId, functionArn, response);
+                if (errorResponse.hasBody()) {
+                    servletResponse.setStatus(errorResponse.getStatus());
+                    servletResponse.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                    servletResponse.getOutputStream().write(errorResponse.getBody());
+                } else {
+                    servletResponse.sendError(errorResponse.getStatus(), "람다 함수 호출 중 오류가 발생했습니다.");
+                }
+                return;
+            }
+
+            servletResponse.setStatus(response.getRawStatusCode());
+            response.getHeaders().forEach((name, values) -> {
+                val lowerCaseName = name.toLowerCase();
+                if (!EXCLUDED_RESPONSE_HEADERS.contains(lowerCaseName) && !ignoredHeaders.contains(lowerCaseName)) {
+                    values.forEach(value -> servletResponse.addHeader(name, value));
+                }
+            });
+            StreamUtils.copy(response.getBody(), servletResponse.getOutputStream());
+        } catch (IOException error) {
+            writeError(servletResponse, error);
+        } finally {
+            response.close();
+        }
+    }
+
+    protected void writeError(HttpServletResponse servletResponse, Throwable error) {
+        int status = 500;
+        if (error instanceof AWSLambdaConcurrencyLimiter.LimitExceededException) {
+            log.debug("AWSLambdaConcurrencyLimitExceeded: {}", error.getMessage());
+            status = ((AWSLambdaConcurrencyLimiter.LimitExceededException) error).getStatus().value();
+        } else if (error instanceof HystrixRuntimeException && ((HystrixRuntimeException) error).getFailureType() == HystrixRuntimeException.FailureType.TIMEOUT) {
+            log.error("HystrixTimeoutException", error);
+        } else {
+            log.error("AWSLambdaFunctionInvokeError", error);
         }
+        try {
+            if (!servletResponse.isCommitted()) {
+                servletResponse.sendError(status, error.getMessage());
+            }
+        } catch (IOException ignore) {
+            log.debug("could not send error response", ignore);
+        }
+    }
 
-        requestHelper.setResponse(response.getStatusCode().value(), response.getBody(), response.getHeaders());
-        context.set("zuulResponse", response);
+    @SuppressWarnings("unchecked")
+    private Set<String> getIgnoredHeaders(RequestContext context) {
+        val ignoredHeaders = (Set<String>) context.get(ProxyRequestHelper.IGNORED_HEADERS);
+        if (Objects.isNull(ignoredHeaders)) {
+            return Collections.emptySet();
+        }
+        val lowerCaseHeaders = new HashSet<String>(); {
+            ignoredHeaders.forEach(name -> lowerCaseHeaders.add(name.toLowerCase()));
+        }
+        return lowerCaseHeaders;
+    }
+
+    /**
+     * 람다 함수가 오류를 던졌거나(X-Amz-Function-Error) 프록시 응답 형식이 아닌 경우만 함수 오류로 본다.
+     * 프록시 통합 응답의 4xx, 5xx는 람다 함수가 만든 응답이므로 본문, 헤더와 함께 그대로 전달한다.
+     * 지표에는 함수 오류(function_error)로 기록한다.
+     */
+    protected boolean isErrorResponse(ClientHttpResponse response) {
+        if (response instanceof AWSLambdaClientResponse) {
+            return ((AWSLambdaClientResponse) response).isFunctionError();
+        }
+        if (response instanceof AWSLambdaProxyClientResponse) {
+            return ((AWSLambdaProxyClientResponse) response).isMalformed();
+        }
+        return false;
+    }
+
+    /**
+     * @return 람다 함수가 오류를 던졌다면(X-Amz-Function-Error) true, {@link AWSLambdaFunctionErrorHandler}로 처리한다.
+     */
+    protected boolean isFunctionError(ClientHttpResponse response) {
+        return response instanceof AWSLambdaClientResponse && ((AWSLambdaClientResponse) response).isFunctionError();
+    }
+
+    /**
+     * 프록시 응답은 형식이 잘못되어 502(Bad Gateway)로 바꾼 응답이라도 그대로 전달한다.
+     * 함수 오류는 {@link AWSLambdaFunctionErrorHandler}의 규칙에 본문이 있다면 그 본문으로 응답하고, 없다면 {@link ZuulException}으로 실패한다.
+     */
+    protected void setResponse(RequestContext context, ClientHttpResponse response) throws IOException, ZuulException {
+        if (isFunctionError(response)) {
+            val errorResponse = functionErrorHandler.handle((String) context.get(PROXY_KEY), getCurrentFunctionArn(), response);
+            if (!errorResponse.hasBody()) {
+                throw new ZuulException("람다 함수 호출 중 오류가 발생했습니다.", errorResponse.getStatus(), "AWSLambdaFunctionError");
+            }
+            val headers = new HttpHeaders(); {
+                headers.setContentType(MediaType.APPLICATION_JSON);
+            }
+            requestHelper.setResponse(errorResponse.getStatus(), new ByteArrayInputStream(errorResponse.getBody()), headers);
+        } else {
+            requestHelper.setResponse(response.getStatusCode().value(), response.getBody(), response.getHeaders());
+            context.set("zuulResponse", response);
+        }
 
         // prevent RibbonRoutingFilter from running
         context.set(SERVICE_ID_KEY, null);
@@ -125,9 +460,110 @@ public class AWSLambdaRoutingFilter extends ZuulFilter {
         context.setRouteHost(null);
     }
 
+    /**
+     * @return 지표를 기록하지 않는다면 null
+     */
+    protected AWSLambdaMetrics.RouteMetrics getRouteMetrics(String routeId, String functionArn) {
+        return Objects.nonNull(metrics) ? metrics.route(routeId, functionArn) : null;
+    }
+
+    /**
+     * 폴백 응답이나 타임아웃이었다면 그 결과로 바꾼다.
+     */
+    protected AWSLambdaMetrics.Outcome recordCommand(AWSLambdaMetrics.RouteMetrics routeMetrics, HystrixInvokableInfo<?> lambdaCommand, AWSLambdaMetrics.Outcome outcome) {
+        if (Objects.isNull(routeMetrics) || Objects.isNull(outcome)) {
+            return outcome;
+        }
+        val commandOutcome = routeMetrics.recordCommand(lambdaCommand);
+        return Objects.nonNull(commandOutcome) ? commandOutcome : outcome;
+    }
+
+    protected void recordRequest(AWSLambdaMetrics.RouteMetrics routeMetrics, AWSLambdaMetrics.Outcome outcome, long started) {
+        if (Objects.nonNull(routeMetrics) && Objects.nonNull(outcome)) {
+            routeMetrics.recordRequest(outcome, System.nanoTime() - started);
+        }
+    }
+
+    protected AWSLambdaMetrics.Outcome getOutcome(Throwable error, AWSLambdaMetrics.Outcome outcome) {
+        if (error instanceof AWSLambdaConcurrencyLimiter.LimitExceededException) {
+            return AWSLambdaMetrics.Outcome.REJECTED;
+        }
+        if (error instanceof HystrixRuntimeException && ((HystrixRuntimeException) error).getFailureType() == HystrixRuntimeException.FailureType.TIMEOUT) {
+            return AWSLambdaMetrics.Outcome.TIMEOUT;
+        }
+        if (error instanceof ZuulException) {
+            val errorCause = ((ZuulException) error).errorCause;
+            if ("HystrixTimeoutException".equals(errorCause)) {
+                return AWSLambdaMetrics.Outcome.TIMEOUT;
+            }
+            if ("AWSLambdaFunctionError".equals(errorCause)) {
+                return AWSLambdaMetrics.Outcome.FUNCTION_ERROR;
+            }
+        }
+        return outcome;
+    }
+
+    @Override
+    public void onApplicationEvent(RoutesRefreshedEvent event) {
+        setterCache.clear();
+        fallbackProviderIndex.clear();
+    }
+
+    @Override
+    public void destroy() {
+        setterCache.close();
+    }
+
     @Autowired(required = false)
     public void setFallbackProviders(Set<FallbackProvider> fallbackProviders) {
-        this.fallbackProviders = fallbackProviders;
+        this.fallbackProviderIndex = new AWSLambdaFallbackProviderIndex(fallbackProviders);
+    }
+
+    /**
+     * @see AWSLambdaResponseCache
+     */
+    public void setResponseCache(AWSLambdaResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    /**
+     * @see AWSLambdaEventDispatcher
+     */
+    public void setEventDispatcher(AWSLambdaEventDispatcher eventDispatcher) {
+        this.eventDispatcher = eventDispatcher;
+    }
+
+    /**
+     * 한도 조절기가 적용되는 라우트는 Hystrix 세마포어 크기를 조절기의 최대 한도로 둔다.
+     * {@link AWSLambdaClientRequestFactory#setConcurrencyLimiter(AWSLambdaConcurrencyLimiter)}와 같은 객체를 지정한다.
+     */
+    public void setConcurrencyLimiter(AWSLambdaConcurrencyLimiter concurrencyLimiter) {
+        setterCache.setConcurrencyLimiter(concurrencyLimiter);
+    }
+
+    /**
+     * @see AWSLambdaFunctionErrorHandler
+     */
+    public void setFunctionErrorHandler(AWSLambdaFunctionErrorHandler functionErrorHandler) {
+        this.functionErrorHandler = Objects.requireNonNull(functionErrorHandler, "함수 오류 처리기가 필요합니다.");
+    }
+
+    public AWSLambdaFunctionErrorHandler getFunctionErrorHandler() {
+        return functionErrorHandler;
+    }
+
+    /**
+     * @see AWSLambdaMetrics
+     */
+    public void setMetrics(AWSLambdaMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param asyncInvocation true 일 경우 Servlet 3 비동기 처리와 {@link AWSLambdaObservableCommand}로 람다 함수를 호출한다.
+     */
+    public void setAsyncInvocation(boolean asyncInvocation) {
+        this.asyncInvocation = asyncInvocation;
     }
 
 }
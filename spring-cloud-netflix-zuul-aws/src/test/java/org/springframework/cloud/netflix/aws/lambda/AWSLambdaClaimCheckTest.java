@@ -0,0 +1,324 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.cloud.netflix.aws.lambda.support.DefaultClientContextFactory;
+import org.springframework.cloud.netflix.aws.lambda.support.FileSystemPayloadStore;
+import org.springframework.cloud.netflix.aws.lambda.support.MockServerHttpRequest;
+import org.springframework.cloud.netflix.aws.lambda.support.PassThroughRequestPayloadExtractor;
+import org.springframework.cloud.netflix.aws.lambda.support.StubAWSLambdaAsync;
+import org.springframework.http.MediaType;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @author arawn.kr@gmail.com
+ */
+public class AWSLambdaClaimCheckTest {
+
+    static final String FUNCTION_ARN = "arn:aws:lambda:ap-northeast-2:123456789012:function:archive";
+    static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    FileSystemPayloadStore payloadStore;
+    AWSLambdaClaimCheck claimCheck;
+    AtomicReference<Function<InvokeRequest, InvokeResult>> handler;
+    AWSLambdaClientRequestFactory requestFactory;
+
+    @Before
+    public void setUp() throws Exception {
+        payloadStore = new FileSystemPayloadStore(temporaryFolder.getRoot().toPath());
+        claimCheck = new AWSLambdaClaimCheck(payloadStore); {
+            claimCheck.setThresholdBytes(1024);
+            claimCheck.setPartSize(300);
+            claimCheck.setRoutes(Collections.singleton("archive"));
+        }
+        handler = new AtomicReference<>(request -> StubAWSLambdaAsync.result(200, "{\"ok\":true}"));
+        requestFactory = new AWSLambdaClientRequestFactory(new StubAWSLambdaAsync(request -> handler.get().apply(request)), new DefaultClientContextFactory(new MockEnvironment()), new PassThroughRequestPayloadExtractor()); {
+            requestFactory.setClaimCheck(claimCheck);
+        }
+    }
+
+    @Test
+    public void largeRequestIsSentAsEnvelope() throws Exception {
+        val body = json(5000);
+        AtomicReference<String> stored = new AtomicReference<>();
+        handler.set(request -> {
+            JsonNode envelope = readTree(StubAWSLambdaAsync.payloadAsString(request)).get(AWSLambdaClaimCheck.ENVELOPE_FIELD);
+            try {
+                stored.set(new String(Files.readAllBytes(Paths.get(URI.create(envelope.get("location").asText()))), StandardCharsets.UTF_8));
+            } catch (IOException error) {
+                throw new UncheckedIOException(error);
+            }
+            assertThat(envelope.get("size").asLong(), is((long) body.length()));
+            return StubAWSLambdaAsync.result(200, "{\"ok\":true}");
+        });
+
+        val response = requestFactory.createRequest("archive", FUNCTION_ARN, MockServerHttpRequest.of("http://localhost/archive", MediaType.APPLICATION_JSON, body)).execute();
+
+        assertThat(response, instanceOf(AWSLambdaClientResponse.class));
+        assertThat(stored.get(), is(body));
+        assertThat(claimCheck.getStoredPayloadCount(), is(1L));
+        // 호출이 끝나면 요청 객체는 삭제된다.
+        assertThat(temporaryFolder.getRoot().list().length, is(0));
+    }
+
+    @Test
+    public void largeRequestIsStreamedWithBoundedPartWrites() throws Exception {
+        val executor = Executors.newFixedThreadPool(8);
+        try {
+            val recordingStore = new ConcurrencyRecordingPayloadStore(payloadStore, executor);
+            claimCheck = new AWSLambdaClaimCheck(recordingStore); {
+                claimCheck.setThresholdBytes(1024);
+                claimCheck.setPartSize(300);
+                claimCheck.setMaxConcurrentParts(2);
+                claimCheck.setRoutes(Collections.singleton("archive"));
+            }
+            requestFactory.setClaimCheck(claimCheck);
+            val body = json(5000);
+            AtomicReference<String> stored = new AtomicReference<>();
+            handler.set(request -> {
+                JsonNode envelope = readTree(StubAWSLambdaAsync.payloadAsString(request)).get(AWSLambdaClaimCheck.ENVELOPE_FIELD);
+                stored.set(readStored(envelope.get("location").asText()));
+                return StubAWSLambdaAsync.result(200, "{\"ok\":true}");
+            });
+
+            requestFactory.createRequest("archive", FUNCTION_ARN, MockServerHttpRequest.of("http://localhost/archive", MediaType.APPLICATION_JSON, body)).execute();
+
+            assertThat(stored.get(), is(body));
+            // 본문을 읽으면서 기록하므로 크기를 미리 알 수 없다.
+            assertThat(recordingStore.createdSizes, is(Collections.singletonList(-1L)));
+            assertThat(recordingStore.maxInFlight.get() <= 2, is(true));
+            assertThat(temporaryFolder.getRoot().list().length, is(0));
+
+            val location = claimCheck.store(ByteBuffer.wrap(body.getBytes(StandardCharsets.UTF_8))).join();
+            assertThat(readStored(location), is(body));
+            assertThat(recordingStore.maxInFlight.get() <= 2, is(true));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void abandonedStreamIsDeleted() throws Exception {
+        val output = claimCheck.openPayload();
+        output.write(json(5000).getBytes(StandardCharsets.UTF_8));
+        assertThat(output.isStored(), is(true));
+
+        output.close();
+
+        assertThat(temporaryFolder.getRoot().list().length, is(0));
+    }
+
+    @Test
+    public void cancelClaimedInvocation() throws Exception {
+        val invocation = new CompletableFuture<InvokeResult>();
+        val request = new InvokeRequest().withFunctionName(FUNCTION_ARN).withPayload(json(5000));
+
+        val executed = new CountDownLatch(1);
+
+        val result = claimCheck.intercept(request, claimed -> {
+            executed.countDown();
+            return invocation;
+        });
+        assertThat(executed.await(5, TimeUnit.SECONDS), is(true));
+        result.cancel(true);
+
+        // 호출한 쪽이 결과를 취소하면 진행 중인 호출도 취소하고 저장한 페이로드를 삭제한다.
+        assertThat(invocation.isCancelled(), is(true));
+        assertThat(temporaryFolder.getRoot().list().length, is(0));
+    }
+
+    @Test
+    public void multipartRequestIsStreamedToStore() throws Exception {
+        requestFactory.setMultipartPayloadWriter(new AWSLambdaMultipartPayloadWriter());
+        val upload = new AWSLambdaMultipartPayloadWriterTest.UploadInputStream("file", 4000);
+        AtomicReference<JsonNode> stored = new AtomicReference<>();
+        handler.set(request -> {
+            JsonNode envelope = readTree(StubAWSLambdaAsync.payloadAsString(request)).get(AWSLambdaClaimCheck.ENVELOPE_FIELD);
+            stored.set(readTree(readStored(envelope.get("location").asText())));
+            return StubAWSLambdaAsync.result(200, "{\"ok\":true}");
+        });
+
+        requestFactory.createRequest("archive", FUNCTION_ARN, AWSLambdaMultipartPayloadWriterTest.multipart(upload, upload.length())).execute();
+
+        val part = stored.get().get("parts").get(0);
+        assertThat(part.get("filename").asText(), is("file.bin"));
+        assertThat(Base64.getDecoder().decode(part.get("content").asText()).length, is(4000));
+        assertThat(claimCheck.getStoredPayloadCount(), is(1L));
+        assertThat(temporaryFolder.getRoot().list().length, is(0));
+    }
+
+    @Test
+    public void smallRequestIsSentAsIs() throws Exception {
+        val body = json(100);
+        AtomicReference<String> payload = new AtomicReference<>();
+        handler.set(request -> {
+            payload.set(StubAWSLambdaAsync.payloadAsString(request));
+            return StubAWSLambdaAsync.result(200, "{\"ok\":true}");
+        });
+
+        requestFactory.createRequest("archive", FUNCTION_ARN, MockServerHttpRequest.of("http://localhost/archive", MediaType.APPLICATION_JSON, body)).execute();
+
+        assertThat(payload.get(), is(body));
+        assertThat(claimCheck.getStoredPayloadCount(), is(0L));
+    }
+
+    @Test
+    public void envelopeResponseIsStreamedFromStore() throws Exception {
+        val content = json(10000);
+        val location = claimCheck.store(ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8))).join();
+        handler.set(request -> StubAWSLambdaAsync.result(200, "{\"claimCheck\":{\"location\":\"" + location + "\",\"size\":" + content.length() + ",\"contentType\":\"text/plain\"}}"));
+
+        val response = requestFactory.createRequest("archive", FUNCTION_ARN, MockServerHttpRequest.of("http://localhost/archive")).execute();
+
+        assertThat(response, instanceOf(AWSLambdaClaimCheckResponse.class));
+        assertThat(response.getRawStatusCode(), is(200));
+        assertThat(response.getHeaders().getContentLength(), is((long) content.length()));
+        assertThat(response.getHeaders().getContentType(), is(MediaType.TEXT_PLAIN));
+        assertThat(StreamUtils.copyToString(response.getBody(), StandardCharsets.UTF_8), is(content));
+        response.close();
+        assertThat(temporaryFolder.getRoot().list().length, is(0));
+    }
+
+    @Test
+    public void locationOutsideStoreIsNotRead() throws Exception {
+        val outside = Files.createTempFile("lambda-secret-", ".txt");
+        Files.write(outside, "secret".getBytes(StandardCharsets.UTF_8));
+        handler.set(request -> StubAWSLambdaAsync.result(200, "{\"claimCheck\":{\"location\":\"" + outside.toUri() + "\",\"size\":6}}"));
+
+        val response = requestFactory.createRequest("archive", FUNCTION_ARN, MockServerHttpRequest.of("http://localhost/archive")).execute();
+        try {
+            StreamUtils.copyToString(response.getBody(), StandardCharsets.UTF_8);
+            fail();
+        } catch (IOException expected) {
+            assertThat(expected.getCause(), instanceOf(IllegalArgumentException.class));
+        } finally {
+            response.close();
+            assertThat(Files.exists(outside), is(true));
+            Files.delete(outside);
+        }
+    }
+
+    @Test
+    public void otherRoutesAreNotClaimChecked() throws Exception {
+        val envelope = "{\"claimCheck\":{\"location\":\"file:///etc/passwd\",\"size\":100}}";
+        handler.set(request -> StubAWSLambdaAsync.result(200, envelope));
+
+        val response = requestFactory.createRequest("other", FUNCTION_ARN, MockServerHttpRequest.of("http://localhost/other", MediaType.APPLICATION_JSON, json(5000))).execute();
+
+        assertThat(response, instanceOf(AWSLambdaClientResponse.class));
+        assertThat(StreamUtils.copyToString(response.getBody(), StandardCharsets.UTF_8), is(envelope));
+        assertThat(claimCheck.getStoredPayloadCount(), is(0L));
+    }
+
+
+    static String json(int length) {
+        val builder = new StringBuilder(length).append("{\"data\":\""); {
+            while (builder.length() < length - 2) {
+                builder.append((char) ('a' + builder.length() % 26));
+            }
+            builder.append("\"}");
+        }
+        return builder.toString();
+    }
+
+    static String readStored(String location) {
+        try {
+            return new String(Files.readAllBytes(Paths.get(URI.create(location))), StandardCharsets.UTF_8);
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    static JsonNode readTree(String json) {
+        try {
+            return OBJECT_MAPPER.readTree(json);
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+
+    /**
+     * 조각을 늦게 기록하면서 동시에 기록 중인 조각 수를 기록한다.
+     */
+    static class ConcurrencyRecordingPayloadStore implements AWSLambdaPayloadStore {
+
+        final AWSLambdaPayloadStore delegate;
+        final Executor executor;
+        final List<Long> createdSizes = new CopyOnWriteArrayList<>();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+
+        ConcurrencyRecordingPayloadStore(AWSLambdaPayloadStore delegate, Executor executor) {
+            this.delegate = delegate;
+            this.executor = executor;
+        }
+
+        @Override
+        public String create(long size) throws IOException {
+            createdSizes.add(size);
+            return delegate.create(size);
+        }
+
+        @Override
+        public CompletableFuture<Void> write(String location, long offset, ByteBuffer part) {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            return CompletableFuture.runAsync(() -> {
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException error) {
+                    Thread.currentThread().interrupt();
+                }
+            }, executor).thenCompose(slept -> delegate.write(location, offset, part))
+                        .whenComplete((written, error) -> inFlight.decrementAndGet());
+        }
+
+        @Override
+        public CompletableFuture<ByteBuffer> read(String location, long offset, int length) {
+            return delegate.read(location, offset, length);
+        }
+
+        @Override
+        public void delete(String location) throws IOException {
+            delegate.delete(location);
+        }
+
+    }
+
+}
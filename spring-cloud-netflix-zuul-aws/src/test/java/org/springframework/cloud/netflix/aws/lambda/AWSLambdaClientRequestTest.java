@@ -4,18 +4,32 @@ import com.amazonaws.auth.ClasspathPropertiesFileCredentialsProvider;
 import com.amazonaws.services.lambda.AWSLambdaAsyncClientBuilder;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.springframework.cloud.netflix.aws.lambda.support.DefaultClientContextFactory;
+import org.springframework.cloud.netflix.aws.lambda.support.DefaultRequestPayloadExtractor;
+import org.springframework.cloud.netflix.aws.lambda.support.MockServerHttpRequest;
+import org.springframework.cloud.netflix.aws.lambda.support.StubAWSLambdaAsync;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.mock.env.MockEnvironment;
 
 import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 /**
  * @author arawn.kr@gmail.com
@@ -23,6 +37,8 @@ import static org.junit.Assert.assertThat;
 @Slf4j
 public class AWSLambdaClientRequestTest {
 
+    static final String FUNCTION_ARN = "arn:aws:lambda:ap-northeast-2:123456789012:function:hello";
+
     @Test
     @Ignore("배포된 AWS 함수를 직접 호출해보는 테스트 케이스입니다.")
     public void executeLambda() throws IOException {
@@ -44,4 +60,74 @@ public class AWSLambdaClientRequestTest {
         log.info("response body: {}", responseBody);
     }
 
+    @Test
+    public void cancelAbandonedInvocation() throws Exception {
+        val release = new CountDownLatch(1);
+        val executor = Executors.newCachedThreadPool();
+        val sdkRequestTimeout = new AtomicInteger();
+        val lambdaClient = new StubAWSLambdaAsync(request -> {
+            sdkRequestTimeout.set(request.getSdkRequestTimeout());
+            await(release);
+            return StubAWSLambdaAsync.result(200, "{}");
+        }, executor);
+        try {
+            val registry = new SimpleMeterRegistry();
+            val requestFactory = new AWSLambdaClientRequestFactory(lambdaClient, new DefaultClientContextFactory(new MockEnvironment()), new DefaultRequestPayloadExtractor()); {
+                requestFactory.setMetrics(new AWSLambdaMetrics(registry));
+            }
+
+            val lambdaRequest = (AWSLambdaClientRequest) requestFactory.createRequest("hello", FUNCTION_ARN, request()); {
+                lambdaRequest.setTimeout(1, TimeUnit.SECONDS);
+            }
+            val response = lambdaRequest.executeAsync();
+            while (sdkRequestTimeout.get() == 0) {
+                Thread.sleep(1);
+            }
+            // 마감 시각까지 남은 시간이 AWS SDK의 요청 타임아웃이 된다.
+            assertThat(sdkRequestTimeout.get() > 0 && sdkRequestTimeout.get() <= 1000, is(true));
+
+            assertThat(lambdaRequest.cancel(), is(true));
+            try {
+                response.get(5, TimeUnit.SECONDS);
+                fail();
+            } catch (ExecutionException expected) {
+                assertThat(expected.getCause(), instanceOf(AWSLambdaClientRequest.InvocationCancelledException.class));
+            }
+            assertThat(registry.get(AWSLambdaMetrics.CANCELLATIONS).counter().count(), is(1.0));
+            // 스텁 클라이언트는 HTTP 요청이 없으므로 끊은 연결도 없다.
+            assertThat(registry.get(AWSLambdaMetrics.RECLAIMED_CONNECTIONS).counter().count(), is(0.0));
+            assertThat(lambdaRequest.cancel(), is(false));
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void doNotInvokePastDeadline() throws Exception {
+        val lambdaClient = new StubAWSLambdaAsync(request -> StubAWSLambdaAsync.result(200, "{}"));
+        val lambdaRequest = new AWSLambdaClientRequest(lambdaClient, FUNCTION_ARN); {
+            lambdaRequest.setTimeout(0, TimeUnit.MILLISECONDS);
+        }
+
+        try {
+            lambdaRequest.execute();
+            fail();
+        } catch (AWSLambdaClientRequest.DeadlineExceededException expected) {
+        }
+        assertThat(lambdaClient.getInvocations(), is(0));
+    }
+
+    static ServerHttpRequest request() {
+        return MockServerHttpRequest.of("http://localhost/hello", MediaType.APPLICATION_JSON, "{}");
+    }
+
+    static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException error) {
+            throw new IllegalStateException(error);
+        }
+    }
+
 }
\ No newline at end of file
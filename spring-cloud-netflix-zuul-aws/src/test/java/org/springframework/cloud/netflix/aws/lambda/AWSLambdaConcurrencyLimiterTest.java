@@ -0,0 +1,146 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.amazonaws.services.lambda.model.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.netflix.aws.lambda.support.DefaultClientContextFactory;
+import org.springframework.cloud.netflix.aws.lambda.support.DefaultRequestPayloadExtractor;
+import org.springframework.cloud.netflix.aws.lambda.support.MockServerHttpRequest;
+import org.springframework.cloud.netflix.aws.lambda.support.StubAWSLambdaAsync;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @author arawn.kr@gmail.com
+ */
+public class AWSLambdaConcurrencyLimiterTest {
+
+    static final String FUNCTION_ARN = "arn:aws:lambda:ap-northeast-2:123456789012:function:hello";
+
+    AWSLambdaConcurrencyLimiter concurrencyLimiter;
+
+    @Before
+    public void setUp() {
+        concurrencyLimiter = new AWSLambdaConcurrencyLimiter(); {
+            concurrencyLimiter.setRoutes(Collections.singleton("hello"));
+            concurrencyLimiter.setLimits(2, 1, 100);
+            concurrencyLimiter.setRejectStatus(HttpStatus.TOO_MANY_REQUESTS);
+        }
+    }
+
+    @Test
+    public void rejectInvocationsOverLimit() throws Exception {
+        val release = new CountDownLatch(1);
+        val lambdaClient = new StubAWSLambdaAsync(request -> {
+            await(release);
+            return StubAWSLambdaAsync.result(200, "{}");
+        }, Executors.newCachedThreadPool());
+        val requestFactory = createRequestFactory(lambdaClient);
+        val registry = new SimpleMeterRegistry();
+        new AWSLambdaMetrics(registry).monitor(concurrencyLimiter);
+
+        CompletableFuture<ClientHttpResponse> first = ((AWSLambdaClientRequest) requestFactory.createRequest("hello", FUNCTION_ARN, request())).executeAsync();
+        CompletableFuture<ClientHttpResponse> second = ((AWSLambdaClientRequest) requestFactory.createRequest("hello", FUNCTION_ARN, request())).executeAsync();
+        assertThat(concurrencyLimiter.getInFlight(FUNCTION_ARN), is(2));
+        assertThat(registry.get("aws.lambda.concurrency.in.flight").tag("function", FUNCTION_ARN).gauge().value(), is(2.0));
+
+        try {
+            requestFactory.createRequest("hello", FUNCTION_ARN, request()).execute();
+            fail();
+        } catch (AWSLambdaConcurrencyLimiter.LimitExceededException expected) {
+            assertThat(expected.getStatus(), is(HttpStatus.TOO_MANY_REQUESTS));
+        }
+        try {
+            ((AWSLambdaClientRequest) requestFactory.createRequest("hello", FUNCTION_ARN, request())).executeAsync().get();
+            fail();
+        } catch (ExecutionException expected) {
+            assertThat(expected.getCause(), instanceOf(AWSLambdaConcurrencyLimiter.LimitExceededException.class));
+        }
+
+        release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS).getRawStatusCode(), is(200));
+        assertThat(second.get(5, TimeUnit.SECONDS).getRawStatusCode(), is(200));
+        assertThat(concurrencyLimiter.getInFlight(FUNCTION_ARN), is(0));
+        assertThat(concurrencyLimiter.getRejectedCount(), is(2L));
+        assertThat(lambdaClient.getInvocations(), is(2));
+
+        // 지정하지 않은 라우트는 제한하지 않는다.
+        assertThat(requestFactory.createRequest("world", FUNCTION_ARN, request()).execute().getRawStatusCode(), is(200));
+    }
+
+    @Test
+    public void decreaseLimitWhenThrottled() throws Exception {
+        concurrencyLimiter.setLimits(20, 1, 100);
+        val lambdaClient = new StubAWSLambdaAsync(request -> { throw new TooManyRequestsException("Rate Exceeded."); });
+        val requestFactory = createRequestFactory(lambdaClient);
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                requestFactory.createRequest("hello", FUNCTION_ARN, request()).execute();
+                fail();
+            } catch (TooManyRequestsException expected) {
+            }
+        }
+
+        assertThat(concurrencyLimiter.getLimit(FUNCTION_ARN), is(14));
+        assertThat(concurrencyLimiter.getInFlight(FUNCTION_ARN), is(0));
+    }
+
+    @Test
+    public void followLatencyGradient() {
+        concurrencyLimiter.setLimits(20, 1, 100);
+        val functionLimit = concurrencyLimiter.getFunctionLimit(FUNCTION_ARN);
+
+        // 한도를 모두 사용하는 동안 응답시간이 그대로라면 한도를 늘린다.
+        for (int i = 0; i < 50; i++) {
+            functionLimit.inFlight.set(functionLimit.getLimit());
+            functionLimit.onSuccess(TimeUnit.MILLISECONDS.toNanos(20));
+        }
+        val increased = functionLimit.getLimit();
+        assertThat(increased > 20, is(true));
+
+        // 응답시간이 크게 늘어나면 한도를 줄인다.
+        for (int i = 0; i < 20; i++) {
+            functionLimit.inFlight.set(functionLimit.getLimit());
+            functionLimit.onSuccess(TimeUnit.MILLISECONDS.toNanos(200));
+        }
+        assertThat(functionLimit.getLimit() < increased, is(true));
+        functionLimit.inFlight.set(0);
+    }
+
+    AWSLambdaClientRequestFactory createRequestFactory(StubAWSLambdaAsync lambdaClient) {
+        val requestFactory = new AWSLambdaClientRequestFactory(lambdaClient, new DefaultClientContextFactory(new MockEnvironment()), new DefaultRequestPayloadExtractor()); {
+            requestFactory.setConcurrencyLimiter(concurrencyLimiter);
+        }
+        return requestFactory;
+    }
+
+    static MockServerHttpRequest request() {
+        return (MockServerHttpRequest) MockServerHttpRequest.of("http://localhost/hello", MediaType.APPLICATION_JSON, "{}");
+    }
+
+    static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException error) {
+            throw new IllegalStateException(error);
+        }
+    }
+
+}
@@ -0,0 +1,252 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.amazonaws.services.lambda.model.InvocationType;
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+import com.amazonaws.services.lambda.model.TooManyRequestsException;
+import lombok.val;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.cloud.netflix.aws.lambda.support.DefaultClientContextFactory;
+import org.springframework.cloud.netflix.aws.lambda.support.DefaultRequestPayloadExtractor;
+import org.springframework.cloud.netflix.aws.lambda.support.StubAWSLambdaAsync;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @author arawn.kr@gmail.com
+ */
+public class AWSLambdaEventSpoolTest {
+
+    static final String FUNCTION_ARN = "arn:aws:lambda:ap-northeast-2:123456789012:function:hello";
+    static final Path PROC_MAPS = Paths.get("/proc/self/maps");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void appendReadAndCommit() throws Exception {
+        val spool = new AWSLambdaEventSpool(temporaryFolder.getRoot().toPath());
+        spool.append(FUNCTION_ARN, "{\"custom\":{}}", payload("first"));
+        spool.append(FUNCTION_ARN, null, payload("second"));
+        assertThat(spool.getDepth(), is(2L));
+
+        val first = spool.read(spool.getReadPosition());
+        assertThat(first.getFunctionArn(), is(FUNCTION_ARN));
+        assertThat(first.getClientContext(), is("{\"custom\":{}}"));
+        assertThat(string(first.getPayload()), is("first"));
+
+        val second = spool.read(first.getNext());
+        assertThat(second.getClientContext(), nullValue());
+        assertThat(string(second.getPayload()), is("second"));
+        assertThat(spool.read(second.getNext()), nullValue());
+
+        spool.commit(first);
+        assertThat(spool.getDepth(), is(1L));
+        assertThat(spool.getReadPosition(), is(first.getNext()));
+        spool.close();
+    }
+
+    @Test
+    public void recoverUncommittedEventsAfterRestart() throws Exception {
+        val directory = temporaryFolder.getRoot().toPath();
+        val spool = new AWSLambdaEventSpool(directory, 128, 16, AWSLambdaEventSpool.FsyncPolicy.NONE);
+        for (int i = 0; i < 5; i++) {
+            spool.append(FUNCTION_ARN, null, payload("event-" + i));
+        }
+        spool.commit(spool.read(spool.getReadPosition()));
+        spool.close();
+
+        val reopened = new AWSLambdaEventSpool(directory, 128, 16, AWSLambdaEventSpool.FsyncPolicy.NONE);
+        assertThat(reopened.getDepth(), is(4L));
+
+        val event = reopened.read(reopened.getReadPosition());
+        assertThat(string(event.getPayload()), is("event-1"));
+
+        reopened.append(FUNCTION_ARN, null, payload("event-5"));
+        assertThat(reopened.getDepth(), is(5L));
+        reopened.close();
+    }
+
+    @Test
+    public void rollAndDeleteConsumedSegments() throws Exception {
+        val directory = temporaryFolder.getRoot().toPath();
+        val spool = new AWSLambdaEventSpool(directory, 256, 3, AWSLambdaEventSpool.FsyncPolicy.NONE);
+        for (int i = 0; i < 6; i++) {
+            spool.append(FUNCTION_ARN, null, payload("event-" + i));
+        }
+        assertThat(segmentCount(directory), is(2L));
+        try {
+            for (int i = 0; i < 10; i++) {
+                spool.append(FUNCTION_ARN, null, payload("overflow"));
+            }
+            fail();
+        } catch (AWSLambdaEventSpool.SpoolFullException expected) {
+        }
+
+        val payloads = new CopyOnWriteArrayList<String>();
+        AWSLambdaEventSpool.Event event;
+        while ((event = spool.read(spool.getReadPosition())) != null) {
+            payloads.add(string(event.getPayload()));
+            spool.commit(event);
+        }
+        assertThat(payloads.get(0), is("event-0"));
+        assertThat(payloads.get(5), is("event-5"));
+        assertThat(spool.getDepth(), is(0L));
+        assertThat(segmentCount(directory), is(1L));
+        if (Files.exists(PROC_MAPS)) {
+            // 삭제한 세그먼트의 매핑도 해제되어야 한다.
+            assertThat(mappedSegmentCount(directory), is(1L));
+        }
+        spool.close();
+    }
+
+    @Test
+    public void discardTornWriteOnRecovery() throws Exception {
+        val directory = temporaryFolder.getRoot().toPath();
+        val spool = new AWSLambdaEventSpool(directory, 1024, 4, AWSLambdaEventSpool.FsyncPolicy.ALWAYS);
+        spool.append(FUNCTION_ARN, null, payload("complete"));
+        val torn = spool.read(spool.getReadPosition()).getNext();
+        spool.append(FUNCTION_ARN, null, payload("torn"));
+        spool.close();
+
+        // 두 번째 레코드의 본문 일부가 기록되지 않은 상황을 흉내 낸다.
+        try (val file = new RandomAccessFile(directory.resolve("spool-0000000000000000.dat").toFile(), "rw")) {
+            file.seek(torn.getOffset() + AWSLambdaEventSpool.HEADER_BYTES + 2);
+            file.write(new byte[]{0, 0, 0, 0});
+        }
+
+        val reopened = new AWSLambdaEventSpool(directory, 1024, 4, AWSLambdaEventSpool.FsyncPolicy.ALWAYS);
+        assertThat(reopened.getDepth(), is(1L));
+        val event = reopened.read(reopened.getReadPosition());
+        assertThat(string(event.getPayload()), is("complete"));
+        assertThat(reopened.read(event.getNext()), nullValue());
+        reopened.close();
+    }
+
+    @Test
+    public void dispatchEventsAndRetryWhenThrottled() throws Exception {
+        val attempts = new AtomicInteger();
+        val invocationTypes = new CopyOnWriteArrayList<String>();
+        val lambdaClient = new StubAWSLambdaAsync(request -> {
+            invocationTypes.add(request.getInvocationType());
+            if (attempts.incrementAndGet() <= 2) {
+                throw new TooManyRequestsException("Rate Exceeded.");
+            }
+            return StubAWSLambdaAsync.result(202, "");
+        });
+        val spool = new AWSLambdaEventSpool(temporaryFolder.getRoot().toPath(), 1024, 4, AWSLambdaEventSpool.FsyncPolicy.INTERVAL);
+        val eventDispatcher = new AWSLambdaEventDispatcher(lambdaClient, spool); {
+            eventDispatcher.setBackoff(1, 10, TimeUnit.MILLISECONDS);
+            eventDispatcher.setMaxInFlight(1);
+        }
+        spool.append(FUNCTION_ARN, null, payload("{}"));
+        spool.append(FUNCTION_ARN, null, payload("{}"));
+        eventDispatcher.start();
+
+        val deadline = System.currentTimeMillis() + 5000;
+        while (eventDispatcher.getDepth() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        eventDispatcher.close();
+
+        assertThat(eventDispatcher.getDepth(), is(0L));
+        assertThat(eventDispatcher.getDispatchedCount(), is(2L));
+        assertThat(eventDispatcher.getThrottledCount(), is(2L));
+        assertThat(eventDispatcher.getDroppedCount(), is(0L));
+        assertThat(invocationTypes.get(0), is(InvocationType.Event.toString()));
+    }
+
+
+    @Test
+    public void dispatchWithRequestFactoryTransport() throws Exception {
+        val invocationTypes = new CopyOnWriteArrayList<String>();
+        AWSLambdaTransport transport = new AWSLambdaTransport() {
+            @Override
+            public InvokeResult invoke(InvokeRequest request) {
+                return invokeAsync(request).join();
+            }
+
+            @Override
+            public CompletableFuture<InvokeResult> invokeAsync(InvokeRequest request) {
+                invocationTypes.add(request.getInvocationType());
+                return CompletableFuture.completedFuture(new InvokeResult().withStatusCode(202));
+            }
+        };
+        val requestFactory = new AWSLambdaClientRequestFactory(transport, new DefaultClientContextFactory(new MockEnvironment()), new DefaultRequestPayloadExtractor());
+        val spool = new AWSLambdaEventSpool(temporaryFolder.getRoot().toPath(), 1024, 4, AWSLambdaEventSpool.FsyncPolicy.NONE);
+        val eventDispatcher = new AWSLambdaEventDispatcher(requestFactory, spool);
+
+        // 요청 팩토리의 전송 계층으로 호출한다.
+        eventDispatcher.accept(new AWSLambdaClientRequest(transport, FUNCTION_ARN, null, payload("{}"), Collections.emptyList()));
+        eventDispatcher.start();
+        val deadline = System.currentTimeMillis() + 5000;
+        while (eventDispatcher.getDepth() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        eventDispatcher.close();
+
+        assertThat(eventDispatcher.getDispatchedCount(), is(1L));
+        assertThat(invocationTypes, is(Collections.singletonList(InvocationType.Event.toString())));
+    }
+
+    @Test
+    public void rejectPayloadOverEventLimit() throws Exception {
+        val lambdaClient = new StubAWSLambdaAsync(request -> StubAWSLambdaAsync.result(202, ""));
+        val spool = new AWSLambdaEventSpool(temporaryFolder.getRoot().toPath(), 1024 * 1024, 4, AWSLambdaEventSpool.FsyncPolicy.NONE);
+        val eventDispatcher = new AWSLambdaEventDispatcher(lambdaClient, spool);
+
+        val payload = ByteBuffer.allocate(AWSLambdaEventDispatcher.DEFAULT_MAX_PAYLOAD_BYTES + 1);
+        try {
+            eventDispatcher.accept(new AWSLambdaClientRequest(lambdaClient, FUNCTION_ARN, null, payload));
+            fail();
+        } catch (AWSLambdaEventDispatcher.PayloadTooLargeException expected) {
+            assertThat(expected.getStatus(), is(HttpStatus.PAYLOAD_TOO_LARGE));
+        }
+        assertThat(eventDispatcher.getDepth(), is(0L));
+        eventDispatcher.close();
+    }
+
+    static ByteBuffer payload(String value) {
+        return ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String string(ByteBuffer buffer) {
+        return StandardCharsets.UTF_8.decode(buffer.duplicate()).toString();
+    }
+
+    static long segmentCount(Path directory) throws IOException {
+        try (val files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(AWSLambdaEventSpool.SEGMENT_SUFFIX)).count();
+        }
+    }
+
+    static long mappedSegmentCount(Path directory) throws IOException {
+        try (val lines = Files.lines(PROC_MAPS)) {
+            return lines.filter(line -> line.contains(directory.resolve(AWSLambdaEventSpool.SEGMENT_PREFIX).toString()))
+                        .map(line -> line.substring(line.indexOf(directory.toString())))
+                        .distinct()
+                        .count();
+        }
+    }
+
+}
@@ -0,0 +1,144 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import lombok.val;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author arawn.kr@gmail.com
+ */
+public class AWSLambdaFunctionErrorHandlerTest {
+
+    static final String FUNCTION_ARN = "arn:aws:lambda:ap-northeast-2:123456789012:function:hello";
+
+    @Test
+    public void readErrorWithinLimit() {
+        val errorHandler = new AWSLambdaFunctionErrorHandler(); {
+            errorHandler.setMaxErrorBytes(1024);
+            errorHandler.setMaxMessageLength(8);
+        }
+
+        val error = errorHandler.readError(stream("{\"errorMessage\":\"something went wrong\",\"stackTrace\":[\"a\",\"b\"],\"errorType\":\"ValidationError\"}"));
+        assertThat(error.getErrorType(), is("ValidationError"));
+        assertThat(error.getErrorMessage(), is("somethin..."));
+
+        // 필드를 모두 찾으면 남은 페이로드는 읽지 않는다.
+        val read = new AtomicInteger();
+        InputStream largePayload = new ByteArrayInputStream(("{\"errorType\":\"Timeout\",\"errorMessage\":\"slow\",\"stackTrace\":\"" + repeat('x', 1024 * 1024) + "\"}").getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public synchronized int read(byte[] bytes, int off, int len) {
+                int count = super.read(bytes, off, len);
+                read.addAndGet(Math.max(count, 0));
+                return count;
+            }
+        };
+        assertThat(errorHandler.readError(largePayload).getErrorType(), is("Timeout"));
+        assertThat(read.get() <= 1024, is(true));
+
+        // 최대 크기 뒤에 있는 필드는 읽지 않는다.
+        val truncated = errorHandler.readError(stream("{\"stackTrace\":\"" + repeat('x', 2048) + "\",\"errorType\":\"Late\"}"));
+        assertThat(truncated.getErrorType(), nullValue());
+        assertThat(errorHandler.readError(stream("Internal Server Error")).getErrorType(), nullValue());
+    }
+
+    @Test
+    public void mapErrorWithRules() throws Exception {
+        val errorHandler = new AWSLambdaFunctionErrorHandler(); {
+            errorHandler.addRule("hello", "ValidationError", HttpStatus.BAD_REQUEST, "{\"code\":\"{errorType}\",\"message\":\"{errorMessage}\"}");
+            errorHandler.addRule(null, "ValidationError", HttpStatus.UNPROCESSABLE_ENTITY);
+            errorHandler.addRule(FUNCTION_ARN, "*", HttpStatus.BAD_GATEWAY, "{\"code\":\"{errorType}\"}");
+        }
+
+        val routeResponse = errorHandler.handle("hello", FUNCTION_ARN, errorResponse("ValidationError", "name is \"empty\""));
+        assertThat(routeResponse.getStatus(), is(400));
+        assertThat(new String(routeResponse.getBody(), StandardCharsets.UTF_8), is("{\"code\":\"ValidationError\",\"message\":\"name is \\\"empty\\\"\"}"));
+
+        val functionResponse = errorHandler.handle("world", FUNCTION_ARN, errorResponse("ValidationError", "invalid"));
+        assertThat(functionResponse.getStatus(), is(502));
+        assertThat(new String(functionResponse.getBody(), StandardCharsets.UTF_8), is("{\"code\":\"ValidationError\"}"));
+
+        val globalResponse = errorHandler.handle("world", "arn:aws:lambda:ap-northeast-2:123456789012:function:world", errorResponse("ValidationError", "invalid"));
+        assertThat(globalResponse.getStatus(), is(422));
+        assertThat(globalResponse.hasBody(), is(false));
+
+        val unmatchedResponse = errorHandler.handle("world", "arn:aws:lambda:ap-northeast-2:123456789012:function:world", errorResponse("TypeError", "oops"));
+        assertThat(unmatchedResponse.getStatus(), is(500));
+        assertThat(unmatchedResponse.hasBody(), is(false));
+        assertThat(unmatchedResponse.getError().getErrorType(), is("TypeError"));
+    }
+
+    @Test
+    public void countErrorsAndLimitLogs() throws Exception {
+        val registry = new SimpleMeterRegistry();
+        val errorHandler = new AWSLambdaMetrics(registry).monitor(new AWSLambdaFunctionErrorHandler()); {
+            errorHandler.setMaxLogsPerSecond(2);
+            errorHandler.setMaxErrorTypes(2);
+        }
+
+        for (int i = 0; i < 10; i++) {
+            errorHandler.handle("hello", FUNCTION_ARN, errorResponse("ValidationError", "invalid " + i));
+        }
+        errorHandler.handle("hello", FUNCTION_ARN, new MockClientHttpResponse("Bad Gateway".getBytes(StandardCharsets.UTF_8), HttpStatus.BAD_GATEWAY));
+        errorHandler.handle("hello", FUNCTION_ARN, errorResponse("TypeError", "oops"));
+
+        assertThat(errorHandler.getErrorCount("ValidationError"), is(10L));
+        assertThat(errorHandler.getErrorCount("Unknown"), is(1L));
+        // errorType의 종류가 최대 개수를 넘었다.
+        assertThat(errorHandler.getErrorCount("TypeError"), is(0L));
+        assertThat(errorHandler.getErrorCount("Other"), is(1L));
+
+        // 같은 1초 안에 몰린 오류는 2 개만 로그를 남긴다. 초 경계를 넘었다면 조금 더 남길 수 있다.
+        assertThat(errorHandler.getLoggedCount() + errorHandler.getSuppressedCount(), is(12L));
+        assertThat(errorHandler.getLoggedCount() <= 4, is(true));
+
+        assertThat(registry.get(AWSLambdaMetrics.FUNCTION_ERRORS_BY_TYPE).tag("error.type", "ValidationError").functionCounter().count(), is(10.0));
+        assertThat(registry.get(AWSLambdaMetrics.FUNCTION_ERRORS_BY_TYPE).tag("error.type", "Other").functionCounter().count(), is(1.0));
+    }
+
+    @Test
+    public void countErrorsWithTagStrictRegistry() throws Exception {
+        // 프로메테우스는 같은 이름의 지표가 모두 같은 태그 키를 가져야 한다.
+        val registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        val metrics = new AWSLambdaMetrics(registry);
+        metrics.route("hello", FUNCTION_ARN);
+        val errorHandler = metrics.monitor(new AWSLambdaFunctionErrorHandler());
+
+        errorHandler.handle("hello", FUNCTION_ARN, errorResponse("ValidationError", "invalid"));
+        errorHandler.handle("hello", FUNCTION_ARN, errorResponse("ValidationError", "invalid"));
+
+        assertThat(errorHandler.getErrorCount("ValidationError"), is(2L));
+        assertThat(registry.get(AWSLambdaMetrics.FUNCTION_ERRORS_BY_TYPE).tag("error.type", "ValidationError").functionCounter().count(), is(2.0));
+        assertThat(registry.scrape(), containsString("aws_lambda_function_errors_total{"));
+    }
+
+    static MockClientHttpResponse errorResponse(String errorType, String errorMessage) {
+        val payload = String.format("{\"errorMessage\":\"%s\",\"errorType\":\"%s\"}", errorMessage.replace("\"", "\\\""), errorType);
+        return new MockClientHttpResponse(payload.getBytes(StandardCharsets.UTF_8), HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    static InputStream stream(String payload) {
+        return new ByteArrayInputStream(payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String repeat(char c, int count) {
+        val builder = new StringBuilder(count); {
+            for (int i = 0; i < count; i++) {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,201 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.amazonaws.services.lambda.model.InvocationType;
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.val;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.cloud.netflix.aws.lambda.support.StubAWSLambdaAsync;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @author arawn.kr@gmail.com
+ */
+public class AWSLambdaInvocationBatcherTest {
+
+    static final String FUNCTION_ARN = "arn:aws:lambda:ap-northeast-2:123456789012:function:hello";
+    static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    AWSLambdaInvocationBatcher invocationBatcher;
+
+    @After
+    public void tearDown() {
+        if (invocationBatcher != null) {
+            invocationBatcher.shutdown();
+        }
+    }
+
+    @Test
+    public void flushWhenBatchIsFull() throws Exception {
+        val lambdaClient = new StubAWSLambdaAsync(echo());
+        invocationBatcher = new AWSLambdaInvocationBatcher(3, 10, TimeUnit.SECONDS);
+
+        val responses = new ArrayList<CompletableFuture<ClientHttpResponse>>();
+        for (int i = 0; i < 3; i++) {
+            responses.add(request(lambdaClient, "{\"index\":" + i + "}").executeAsync());
+        }
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(body(responses.get(i).get(5, TimeUnit.SECONDS)), is("{\"echo\":{\"index\":" + i + "}}"));
+        }
+        assertThat(lambdaClient.getInvocations(), is(1));
+        assertThat(invocationBatcher.getBatchCount(), is(1L));
+        assertThat(invocationBatcher.getBatchedCount(), is(3L));
+    }
+
+    @Test
+    public void flushAfterMaxDelay() throws Exception {
+        val lambdaClient = new StubAWSLambdaAsync(echo());
+        invocationBatcher = new AWSLambdaInvocationBatcher(10, 20, TimeUnit.MILLISECONDS);
+
+        val first = request(lambdaClient, "1").executeAsync();
+        val second = request(lambdaClient, "\"two\"").executeAsync();
+
+        assertThat(body(first.get(5, TimeUnit.SECONDS)), is("{\"echo\":1}"));
+        assertThat(body(second.get(5, TimeUnit.SECONDS)), is("{\"echo\":\"two\"}"));
+        assertThat(lambdaClient.getInvocations(), is(1));
+    }
+
+    @Test
+    public void mapPartialFailureToCaller() throws Exception {
+        val lambdaClient = new StubAWSLambdaAsync(request -> StubAWSLambdaAsync.result(200, "[ {\"ok\":true}, {\"errorMessage\":\"bad request\",\"errorType\":\"Error\"} ]"));
+        invocationBatcher = new AWSLambdaInvocationBatcher(2, 10, TimeUnit.SECONDS);
+
+        val succeeded = request(lambdaClient, "{}").executeAsync();
+        val failed = request(lambdaClient, "{}").executeAsync();
+
+        val success = succeeded.get(5, TimeUnit.SECONDS);
+        assertThat(success.getRawStatusCode(), is(200));
+        assertThat(body(success), is("{\"ok\":true}"));
+
+        val failure = failed.get(5, TimeUnit.SECONDS);
+        assertThat(failure.getRawStatusCode(), is(500));
+        assertThat(body(failure), is("{\"errorMessage\":\"bad request\",\"errorType\":\"Error\"}"));
+    }
+
+    @Test
+    public void failAllWhenResponseDoesNotMatch() throws Exception {
+        val lambdaClient = new StubAWSLambdaAsync(request -> StubAWSLambdaAsync.result(200, "[{\"ok\":true}]"));
+        invocationBatcher = new AWSLambdaInvocationBatcher(2, 10, TimeUnit.SECONDS);
+
+        val responses = Arrays.asList(request(lambdaClient, "{}").executeAsync(), request(lambdaClient, "{}").executeAsync());
+        for (val response : responses) {
+            try {
+                response.get(5, TimeUnit.SECONDS);
+                fail();
+            } catch (ExecutionException error) {
+                assertThat(error.getCause(), instanceOf(AWSLambdaInvocationBatcher.BatchResponseMismatchException.class));
+            }
+        }
+    }
+
+    @Test
+    public void enforcePayloadSizeLimit() throws Exception {
+        val payloadSizes = new CopyOnWriteArrayList<Integer>();
+        val lambdaClient = new StubAWSLambdaAsync(request -> {
+            payloadSizes.add(request.getPayload().remaining());
+            return echo().apply(request);
+        });
+        invocationBatcher = new AWSLambdaInvocationBatcher(10, 50, TimeUnit.MILLISECONDS, 20);
+
+        val responses = new ArrayList<CompletableFuture<ClientHttpResponse>>();
+        for (int i = 0; i < 3; i++) {
+            responses.add(request(lambdaClient, "\"item-" + i + "\"").executeAsync());
+        }
+        val large = request(lambdaClient, "\"this payload is larger than limit\"").executeAsync();
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(body(responses.get(i).get(5, TimeUnit.SECONDS)), is("{\"echo\":\"item-" + i + "\"}"));
+        }
+        assertThat(body(large.get(5, TimeUnit.SECONDS)), is("\"this payload is larger than limit\""));
+        assertThat(invocationBatcher.getBatchCount(), is(2L));
+        assertThat(invocationBatcher.getUnbatchedCount(), is(1L));
+        for (int size : payloadSizes) {
+            assertThat(size <= 20 || size == "\"this payload is larger than limit\"".length(), is(true));
+        }
+    }
+
+    @Test
+    public void batchOnlySameInvocationType() throws Exception {
+        val invocationTypes = new CopyOnWriteArrayList<String>();
+        invocationBatcher = new AWSLambdaInvocationBatcher(2, 10, TimeUnit.SECONDS);
+        AWSLambdaInvocationExecution execution = request -> {
+            invocationTypes.add(request.getInvocationType());
+            return CompletableFuture.completedFuture(echo().apply(request));
+        };
+
+        val first = invocationBatcher.intercept(invoke("1", InvocationType.RequestResponse), execution);
+        val event = invocationBatcher.intercept(invoke("2", InvocationType.Event), execution);
+        val second = invocationBatcher.intercept(invoke("3", InvocationType.RequestResponse), execution);
+
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        assertThat(invocationTypes, is(Collections.singletonList("RequestResponse")));
+        assertThat(event.isDone(), is(false));
+
+        invocationBatcher.shutdown();
+        event.get(5, TimeUnit.SECONDS);
+        assertThat(invocationTypes, is(Arrays.asList("RequestResponse", "Event")));
+    }
+
+
+    static InvokeRequest invoke(String payload, InvocationType invocationType) {
+        return new InvokeRequest().withFunctionName(FUNCTION_ARN)
+                                  .withInvocationType(invocationType)
+                                  .withPayload(ByteBuffer.wrap(payload.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    AWSLambdaClientRequest request(StubAWSLambdaAsync lambdaClient, String payload) {
+        val bytes = ByteBuffer.wrap(payload.getBytes(StandardCharsets.UTF_8));
+        return new AWSLambdaClientRequest(lambdaClient, FUNCTION_ARN, null, bytes, Collections.singletonList(invocationBatcher));
+    }
+
+    /**
+     * 배열 요청이면 항목마다 {"echo": 항목}을, 아니면 요청을 그대로 반환한다.
+     */
+    static Function<InvokeRequest, InvokeResult> echo() {
+        return request -> {
+            try {
+                val payload = StubAWSLambdaAsync.payloadAsString(request);
+                val node = OBJECT_MAPPER.readTree(payload);
+                if (!node.isArray()) {
+                    return StubAWSLambdaAsync.result(200, payload);
+                }
+                val results = OBJECT_MAPPER.createArrayNode();
+                for (JsonNode element : node) {
+                    results.addObject().set("echo", element);
+                }
+                return StubAWSLambdaAsync.result(200, OBJECT_MAPPER.writeValueAsString(results));
+            } catch (IOException error) {
+                throw new UncheckedIOException(error);
+            }
+        };
+    }
+
+    static String body(ClientHttpResponse response) throws IOException {
+        return StreamUtils.copyToString(response.getBody(), StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,117 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.netflix.aws.lambda.support.DefaultClientContextFactory;
+import org.springframework.cloud.netflix.aws.lambda.support.DefaultRequestPayloadExtractor;
+import org.springframework.cloud.netflix.aws.lambda.support.MockServerHttpRequest;
+import org.springframework.cloud.netflix.aws.lambda.support.StubAWSLambdaAsync;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.util.StreamUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author arawn.kr@gmail.com
+ */
+public class AWSLambdaInvocationCoalescerTest {
+
+    static final String FUNCTION_ARN = "arn:aws:lambda:ap-northeast-2:123456789012:function:hello";
+
+    CountDownLatch release;
+    StubAWSLambdaAsync lambdaClient;
+    AWSLambdaInvocationCoalescer invocationCoalescer;
+    AWSLambdaClientRequestFactory requestFactory;
+
+    @Before
+    public void setUp() {
+        release = new CountDownLatch(1);
+        lambdaClient = new StubAWSLambdaAsync(request -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+            }
+            return StubAWSLambdaAsync.result(200, "{\"message\":\"hello\"}");
+        });
+        invocationCoalescer = new AWSLambdaInvocationCoalescer(); {
+            invocationCoalescer.setRoutes(Collections.singleton("hello"));
+        }
+        requestFactory = new AWSLambdaClientRequestFactory(lambdaClient, new DefaultClientContextFactory(new MockEnvironment()), new DefaultRequestPayloadExtractor()); {
+            requestFactory.setInvocationCoalescer(invocationCoalescer);
+        }
+    }
+
+    @Test
+    public void coalesceConcurrentGetRequests() throws Exception {
+        val responses = new ArrayList<CompletableFuture<ClientHttpResponse>>();
+        for (int i = 0; i < 5; i++) {
+            val lambdaRequest = (AWSLambdaClientRequest) requestFactory.createRequest("hello", FUNCTION_ARN, MockServerHttpRequest.of("http://localhost/hello?name=arawn"));
+            responses.add(lambdaRequest.executeAsync());
+        }
+        release.countDown();
+
+        for (val response : responses) {
+            val body = StreamUtils.copyToString(response.get(5, TimeUnit.SECONDS).getBody(), StandardCharsets.UTF_8);
+            assertThat(body, is("{\"message\":\"hello\"}"));
+        }
+        assertThat(lambdaClient.getInvocations(), is(1));
+        assertThat(invocationCoalescer.getInvocationCount(), is(1L));
+        assertThat(invocationCoalescer.getCoalescedCount(), is(4L));
+        assertThat(invocationCoalescer.getInFlightCount(), is(0));
+    }
+
+    @Test
+    public void doNotCoalesceDifferentPayloads() throws Exception {
+        val first = (AWSLambdaClientRequest) requestFactory.createRequest("hello", FUNCTION_ARN, MockServerHttpRequest.of("http://localhost/hello?name=arawn"));
+        val second = (AWSLambdaClientRequest) requestFactory.createRequest("hello", FUNCTION_ARN, MockServerHttpRequest.of("http://localhost/hello?name=spring"));
+        val responses = CompletableFuture.allOf(first.executeAsync(), second.executeAsync());
+        release.countDown();
+        responses.get(5, TimeUnit.SECONDS);
+
+        assertThat(lambdaClient.getInvocations(), is(2));
+        assertThat(invocationCoalescer.getCoalescedCount(), is(0L));
+    }
+
+    @Test
+    public void cancelInvocationWhenAllWaitersCancelled() {
+        val invocation = new CompletableFuture<InvokeResult>();
+        val request = new InvokeRequest().withFunctionName(FUNCTION_ARN).withPayload("{}");
+        val first = invocationCoalescer.intercept(request, next -> invocation);
+        val second = invocationCoalescer.intercept(request.clone(), next -> invocation);
+
+        // 함께 기다리는 호출이 남아있다면 진행 중인 호출을 취소하지 않는다.
+        first.cancel(true);
+        assertThat(invocation.isCancelled(), is(false));
+        assertThat(invocationCoalescer.getInFlightCount(), is(1));
+
+        second.cancel(true);
+        assertThat(invocation.isCancelled(), is(true));
+        assertThat(invocationCoalescer.getInFlightCount(), is(0));
+    }
+
+    @Test
+    public void coalesceOnlyGetRequestsOfEnabledRoutes() {
+        val get = MockServerHttpRequest.of("http://localhost/hello");
+        val post = MockServerHttpRequest.of("http://localhost/hello", HttpMethod.POST, MediaType.APPLICATION_JSON, "{}");
+
+        assertThat(invocationCoalescer.isCoalescible("hello", FUNCTION_ARN, get), is(true));
+        assertThat(invocationCoalescer.isCoalescible("other", FUNCTION_ARN, get), is(false));
+        assertThat(invocationCoalescer.isCoalescible("hello", FUNCTION_ARN, post), is(false));
+    }
+
+}
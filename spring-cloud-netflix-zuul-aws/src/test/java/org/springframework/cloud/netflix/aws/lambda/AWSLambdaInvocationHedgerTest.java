@@ -0,0 +1,150 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.val;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.netflix.aws.lambda.support.DefaultClientContextFactory;
+import org.springframework.cloud.netflix.aws.lambda.support.DefaultRequestPayloadExtractor;
+import org.springframework.cloud.netflix.aws.lambda.support.MockServerHttpRequest;
+import org.springframework.cloud.netflix.aws.lambda.support.StubAWSLambdaAsync;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.util.StreamUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author arawn.kr@gmail.com
+ */
+public class AWSLambdaInvocationHedgerTest {
+
+    static final String FUNCTION_ARN = "arn:aws:lambda:ap-northeast-2:123456789012:function:hello";
+
+    AWSLambdaInvocationHedger invocationHedger;
+    ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        invocationHedger = new AWSLambdaInvocationHedger(); {
+            invocationHedger.setRoutes(Collections.singleton("hello"));
+            invocationHedger.setRefreshInterval(0, TimeUnit.MILLISECONDS, 5);
+            invocationHedger.setMinDelay(20, TimeUnit.MILLISECONDS);
+        }
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        invocationHedger.shutdown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void useFirstCompletedInvocation() throws Exception {
+        val release = new CountDownLatch(1);
+        val slowInvocations = new AtomicInteger();
+        val requestFactory = createRequestFactory(request -> {
+            if (StubAWSLambdaAsync.payloadAsString(request).contains("slow") && slowInvocations.getAndIncrement() == 0) {
+                await(release);
+                return StubAWSLambdaAsync.result(200, "{\"say\":\"primary\"}");
+            }
+            return StubAWSLambdaAsync.result(200, "{\"say\":\"hedge\"}");
+        });
+        val registry = new SimpleMeterRegistry();
+        new AWSLambdaMetrics(registry).monitor(invocationHedger);
+
+        // 응답시간 분포를 알기 전에는 헤징하지 않는다.
+        assertThat(invocationHedger.getHedgeDelay(FUNCTION_ARN, TimeUnit.MILLISECONDS), is(-1L));
+        warmUp(requestFactory);
+        assertThat(invocationHedger.getHedgeDelay(FUNCTION_ARN, TimeUnit.MILLISECONDS), is(20L));
+
+        try (val response = requestFactory.createRequest("hello", FUNCTION_ARN, request(HttpMethod.GET, "{\"name\":\"slow\"}")).execute()) {
+            assertThat(StreamUtils.copyToString(response.getBody(), StandardCharsets.UTF_8), is("{\"say\":\"hedge\"}"));
+        }
+        release.countDown();
+
+        assertThat(invocationHedger.getHedgedCount(), is(1L));
+        assertThat(invocationHedger.getHedgeWonCount(), is(1L));
+        assertThat(registry.get("aws.lambda.hedger.won").functionCounter().count(), is(1.0));
+        assertThat(slowInvocations.get(), is(2));
+    }
+
+    @Test
+    public void limitHedgesByBudget() throws Exception {
+        invocationHedger.setBudget(0, 1);
+        val requestFactory = createRequestFactory(request -> {
+            if (StubAWSLambdaAsync.payloadAsString(request).contains("slow")) {
+                sleep(100);
+            }
+            return StubAWSLambdaAsync.result(200, "{}");
+        });
+        warmUp(requestFactory);
+
+        requestFactory.createRequest("hello", FUNCTION_ARN, request(HttpMethod.GET, "{\"name\":\"slow\"}")).execute().close();
+        requestFactory.createRequest("hello", FUNCTION_ARN, request(HttpMethod.GET, "{\"name\":\"slow\"}")).execute().close();
+
+        assertThat(invocationHedger.getHedgedCount(), is(1L));
+        assertThat(invocationHedger.getBudgetExhaustedCount(), is(1L));
+    }
+
+    @Test
+    public void hedgeOnlyIdempotentRequests() {
+        assertThat(invocationHedger.isHedgeable("hello", FUNCTION_ARN, request(HttpMethod.GET, null)), is(true));
+        assertThat(invocationHedger.isHedgeable(null, FUNCTION_ARN, request(HttpMethod.PUT, "{}")), is(false));
+        assertThat(invocationHedger.isHedgeable("hello", FUNCTION_ARN, request(HttpMethod.POST, "{}")), is(false));
+
+        invocationHedger.setMethods(Collections.singleton(HttpMethod.POST));
+        assertThat(invocationHedger.isHedgeable("hello", FUNCTION_ARN, request(HttpMethod.POST, "{}")), is(true));
+    }
+
+    AWSLambdaClientRequestFactory createRequestFactory(Function<InvokeRequest, InvokeResult> handler) {
+        val lambdaClient = new StubAWSLambdaAsync(handler, executor);
+        val requestFactory = new AWSLambdaClientRequestFactory(lambdaClient, new DefaultClientContextFactory(new MockEnvironment()), new DefaultRequestPayloadExtractor()); {
+            requestFactory.setInvocationHedger(invocationHedger);
+        }
+        return requestFactory;
+    }
+
+    void warmUp(AWSLambdaClientRequestFactory requestFactory) throws Exception {
+        for (int i = 0; i < 5; i++) {
+            requestFactory.createRequest("hello", FUNCTION_ARN, request(HttpMethod.GET, "{\"name\":\"lambda\"}")).execute().close();
+        }
+    }
+
+    static ServerHttpRequest request(HttpMethod method, String body) {
+        return MockServerHttpRequest.of("http://localhost/hello", method, MediaType.APPLICATION_JSON, body);
+    }
+
+    static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException error) {
+            throw new IllegalStateException(error);
+        }
+    }
+
+    static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException error) {
+            throw new IllegalStateException(error);
+        }
+    }
+
+}
@@ -0,0 +1,215 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.netflix.aws.lambda.support.DefaultClientContextFactory;
+import org.springframework.cloud.netflix.aws.lambda.support.DefaultRequestPayloadExtractor;
+import org.springframework.cloud.netflix.aws.lambda.support.StubAWSLambdaAsync;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.nio.charset.StandardCharsets;
+import java.time.*;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author arawn.kr@gmail.com
+ */
+public class AWSLambdaKeepWarmSchedulerTest {
+
+    static final String FUNCTION_ARN = "arn:aws:lambda:ap-northeast-2:123456789012:function:hello";
+    static final String ROUTE_ARN = "arn:aws:lambda:us-east-1:123456789012:function:hello";
+    static final String COLD_LOG = "REPORT RequestId: 1 Duration: 2.1 ms Billed Duration: 100 ms Init Duration: 180.5 ms";
+
+    MutableClock clock;
+    List<InvokeRequest> warmups;
+    AWSLambdaKeepWarmScheduler keepWarmScheduler;
+
+    @Before
+    public void setUp() {
+        clock = new MutableClock(LocalDateTime.of(2018, 7, 2, 10, 0));
+        warmups = Collections.synchronizedList(new ArrayList<>());
+        val lambdaClient = new StubAWSLambdaAsync(request -> {
+            warmups.add(request);
+            return StubAWSLambdaAsync.result(200, "{}").withLogResult(encode(COLD_LOG));
+        }, Runnable::run);
+        keepWarmScheduler = new AWSLambdaKeepWarmScheduler(lambdaClient); {
+            keepWarmScheduler.setRoutes(Collections.singleton("hello"));
+            keepWarmScheduler.setClock(clock);
+        }
+    }
+
+    @Test
+    public void warmUpAheadOfLearnedPeak() {
+        keepWarmScheduler.setKeepAlive(0, TimeUnit.MINUTES);
+        keepWarmScheduler.tick();
+
+        // 10:00 구간에 동시 호출 3 개
+        val invocations = new ArrayList<CompletableFuture<InvokeResult>>();
+        for (int i = 0; i < 3; i++) {
+            val invocation = new CompletableFuture<InvokeResult>();
+            keepWarmScheduler.intercept(new InvokeRequest().withFunctionName(FUNCTION_ARN), request -> invocation);
+            invocations.add(invocation);
+        }
+        invocations.forEach(invocation -> invocation.complete(StubAWSLambdaAsync.result(200, "{}")));
+        clock.set(LocalDateTime.of(2018, 7, 2, 10, 5));
+        keepWarmScheduler.tick();
+        assertThat(warmups.size(), is(0));
+
+        // 다음날, 10:00 구간보다 leadTime(10분) 앞서 워밍업한다.
+        clock.set(LocalDateTime.of(2018, 7, 3, 9, 52));
+        assertThat(keepWarmScheduler.getPredictedConcurrency(FUNCTION_ARN), is(3));
+        keepWarmScheduler.tick();
+        assertThat(warmups.size(), is(3));
+        assertThat(decode(warmups.get(0).getClientContext()), containsString("\"warmup\":\"true\""));
+        assertThat(decode(warmups.get(0).getClientContext()), containsString("\"warmup.concurrency\":\"3\""));
+        assertThat(decode(warmups.get(0).getClientContext()), containsString("\"locale\""));
+        assertThat(keepWarmScheduler.getAbsorbedColdStartCount(), is(3L));
+        assertThat(keepWarmScheduler.isWarmed(FUNCTION_ARN), is(true));
+
+        // 이미 워밍업했다면 다시 호출하지 않는다.
+        clock.set(LocalDateTime.of(2018, 7, 3, 9, 53));
+        keepWarmScheduler.tick();
+        assertThat(warmups.size(), is(3));
+    }
+
+    @Test
+    public void warmUpDuringIdleGapsWithinCostCap() {
+        keepWarmScheduler.setMaxInvocations(2, 1, TimeUnit.HOURS);
+        keepWarmScheduler.tick();
+        keepWarmScheduler.intercept(new InvokeRequest().withFunctionName(FUNCTION_ARN), request -> CompletableFuture.completedFuture(StubAWSLambdaAsync.result(200, "{}")));
+
+        tickAt(10, 4);
+        assertThat(warmups.size(), is(0));
+        tickAt(10, 5);
+        assertThat(warmups.size(), is(1));
+        tickAt(10, 8);
+        assertThat(warmups.size(), is(1));
+        tickAt(10, 10);
+        assertThat(warmups.size(), is(2));
+
+        // 비용 한도를 넘으면 보내지 않는다.
+        tickAt(10, 15);
+        assertThat(warmups.size(), is(2));
+        assertThat(keepWarmScheduler.getCappedCount(), is(1L));
+
+        // 마지막 호출 후 keepAlive(1시간)가 지나면 워밍업을 멈춘다.
+        tickAt(11, 20);
+        assertThat(warmups.size(), is(2));
+        assertThat(keepWarmScheduler.getCappedCount(), is(1L));
+    }
+
+    @Test
+    public void compareColdStartsWithAndWithoutWarming() {
+        val registry = new SimpleMeterRegistry();
+        val metrics = new AWSLambdaMetrics(registry); {
+            metrics.monitor(keepWarmScheduler);
+        }
+        // 라우트의 람다 ARN과 달리, 리전 선택기가 고른 함수가 호출되고 워밍업된다.
+        val routeMetrics = metrics.route("hello", ROUTE_ARN);
+        val coldResult = StubAWSLambdaAsync.result(200, "{}").withLogResult(encode(COLD_LOG));
+
+        keepWarmScheduler.tick();
+        keepWarmScheduler.intercept(new InvokeRequest().withFunctionName(FUNCTION_ARN), request -> CompletableFuture.completedFuture(coldResult));
+        routeMetrics.intercept(new InvokeRequest().withFunctionName(FUNCTION_ARN), request -> CompletableFuture.completedFuture(coldResult));
+
+        tickAt(10, 5);
+        routeMetrics.intercept(new InvokeRequest().withFunctionName(FUNCTION_ARN), request -> CompletableFuture.completedFuture(StubAWSLambdaAsync.result(200, "{}")));
+
+        assertThat(registry.get(AWSLambdaMetrics.WARMING_INVOCATIONS).tag("warmed", "false").counter().count(), is(1.0));
+        assertThat(registry.get(AWSLambdaMetrics.WARMING_COLD_STARTS).tag("warmed", "false").counter().count(), is(1.0));
+        assertThat(registry.get(AWSLambdaMetrics.WARMING_INVOCATIONS).tag("warmed", "true").counter().count(), is(1.0));
+        assertThat(registry.find(AWSLambdaMetrics.WARMING_COLD_STARTS).tag("warmed", "true").counter(), nullValue());
+        assertThat(registry.get(AWSLambdaMetrics.WARMING_WARMUPS).functionCounter().count(), is(1.0));
+        assertThat(registry.get(AWSLambdaMetrics.WARMING_ABSORBED_COLD_STARTS).functionCounter().count(), is(1.0));
+        assertThat(registry.find("aws.lambda.keepwarm.invocations").functionCounter(), nullValue());
+    }
+
+    void tickAt(int hour, int minute) {
+        clock.set(LocalDateTime.of(2018, 7, 2, hour, minute));
+        keepWarmScheduler.tick();
+    }
+
+    @Test
+    public void warmUpThroughRequestFactoryTransport() {
+        val transportWarmups = new ArrayList<InvokeRequest>();
+        AWSLambdaTransport transport = new AWSLambdaTransport() {
+            @Override
+            public InvokeResult invoke(InvokeRequest request) {
+                return invokeAsync(request).join();
+            }
+
+            @Override
+            public CompletableFuture<InvokeResult> invokeAsync(InvokeRequest request) {
+                transportWarmups.add(request);
+                return CompletableFuture.completedFuture(StubAWSLambdaAsync.result(200, "{}").withLogResult(encode(COLD_LOG)));
+            }
+        };
+        val requestFactory = new AWSLambdaClientRequestFactory(transport, new DefaultClientContextFactory(new MockEnvironment()), new DefaultRequestPayloadExtractor()); {
+            requestFactory.setKeepWarmScheduler(keepWarmScheduler);
+        }
+
+        // 요청 팩토리에 지정하면 라우트 호출과 같은 전송 계층으로 워밍업한다.
+        keepWarmScheduler.warmup(keepWarmScheduler.getFunctionTraffic(FUNCTION_ARN), 2, clock.millis());
+        assertThat(transportWarmups.size(), is(2));
+        assertThat(warmups.size(), is(0));
+        assertThat(keepWarmScheduler.getAbsorbedColdStartCount(), is(2L));
+
+        transportWarmups.clear();
+        new AWSLambdaKeepWarmScheduler(requestFactory).warmup(keepWarmScheduler.getFunctionTraffic(FUNCTION_ARN), 1, clock.millis());
+        assertThat(transportWarmups.size(), is(1));
+        assertThat(warmups.size(), is(0));
+    }
+
+    static String encode(String log) {
+        return Base64.getEncoder().encodeToString(log.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String decode(String clientContext) {
+        return new String(Base64.getDecoder().decode(clientContext), StandardCharsets.UTF_8);
+    }
+
+
+    static class MutableClock extends Clock {
+
+        private volatile Instant instant;
+
+        MutableClock(LocalDateTime dateTime) {
+            set(dateTime);
+        }
+
+        void set(LocalDateTime dateTime) {
+            this.instant = dateTime.toInstant(ZoneOffset.UTC);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+
+    }
+
+}
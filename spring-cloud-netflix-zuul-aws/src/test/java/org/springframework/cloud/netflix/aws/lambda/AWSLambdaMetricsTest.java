@@ -0,0 +1,125 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.amazonaws.services.lambda.model.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.netflix.aws.lambda.support.DefaultClientContextFactory;
+import org.springframework.cloud.netflix.aws.lambda.support.DefaultRequestPayloadExtractor;
+import org.springframework.cloud.netflix.aws.lambda.support.MockServerHttpRequest;
+import org.springframework.cloud.netflix.aws.lambda.support.StubAWSLambdaAsync;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @author arawn.kr@gmail.com
+ */
+public class AWSLambdaMetricsTest {
+
+    static final String FUNCTION_ARN = "arn:aws:lambda:ap-northeast-2:123456789012:function:hello";
+
+    SimpleMeterRegistry registry;
+    AWSLambdaMetrics metrics;
+
+    @Before
+    public void setUp() {
+        registry = new SimpleMeterRegistry();
+        metrics = new AWSLambdaMetrics(registry); {
+            metrics.setColdStartWarmupSamples(3);
+            metrics.setColdStartThreshold(3, 50, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Test
+    public void recordInvocations() throws Exception {
+        val lambdaClient = new StubAWSLambdaAsync(request -> {
+            val payload = StubAWSLambdaAsync.payloadAsString(request);
+            if (payload.contains("throttle")) {
+                throw new TooManyRequestsException("Rate Exceeded.");
+            }
+            if (payload.contains("boom")) {
+                return StubAWSLambdaAsync.result(200, "{\"errorMessage\":\"boom\"}").withFunctionError("Unhandled");
+            }
+            return StubAWSLambdaAsync.result(200, "{\"say\":\"hello\"}");
+        });
+        val requestFactory = new AWSLambdaClientRequestFactory(lambdaClient, new DefaultClientContextFactory(new MockEnvironment()), new DefaultRequestPayloadExtractor()); {
+            requestFactory.setMetrics(metrics);
+        }
+
+        requestFactory.createRequest("hello", FUNCTION_ARN, request("{\"name\":\"lambda\"}")).execute().close();
+        requestFactory.createRequest("hello", FUNCTION_ARN, request("{\"name\":\"boom\"}")).execute().close();
+        try {
+            requestFactory.createRequest("hello", FUNCTION_ARN, request("{\"name\":\"throttle\"}")).execute();
+            fail();
+        } catch (TooManyRequestsException expected) {
+        }
+
+        assertThat(registry.get(AWSLambdaMetrics.INVOCATIONS).tag("route", "hello").tag("function", FUNCTION_ARN).timer().count(), is(2L));
+        assertThat(registry.get(AWSLambdaMetrics.REQUEST_PAYLOAD).summary().count(), is(3L));
+        assertThat(registry.get(AWSLambdaMetrics.RESPONSE_PAYLOAD).summary().totalAmount(), is(38.0));
+        assertThat(registry.get(AWSLambdaMetrics.FUNCTION_ERRORS).counter().count(), is(1.0));
+        assertThat(registry.get(AWSLambdaMetrics.THROTTLES).counter().count(), is(1.0));
+        assertThat(metrics.route("hello", FUNCTION_ARN), is(metrics.route("hello", FUNCTION_ARN)));
+    }
+
+    @Test
+    public void detectColdStartFromLatencyOutlier() {
+        val routeMetrics = metrics.route("hello", FUNCTION_ARN);
+        val result = StubAWSLambdaAsync.result(200, "{}");
+
+        // 평소 호출 시간을 알기 전에는 추정하지 않는다.
+        metrics.route("other", FUNCTION_ARN).recordInvocation(result, TimeUnit.MILLISECONDS.toNanos(900));
+        assertThat(registry.get(AWSLambdaMetrics.COLD_STARTS).tag("route", "other").tag("source", "latency").counter().count(), is(0.0));
+
+        routeMetrics.recordInvocation(result, TimeUnit.MILLISECONDS.toNanos(20));
+        routeMetrics.recordInvocation(result, TimeUnit.MILLISECONDS.toNanos(22));
+        routeMetrics.recordInvocation(result, TimeUnit.MILLISECONDS.toNanos(18));
+        routeMetrics.recordInvocation(result, TimeUnit.MILLISECONDS.toNanos(50));
+        assertThat(coldStarts("latency"), is(0.0));
+
+        routeMetrics.recordInvocation(result, TimeUnit.MILLISECONDS.toNanos(900));
+        assertThat(coldStarts("latency"), is(1.0));
+
+        // 추정된 호출은 평균에 반영되지 않는다.
+        val latency = routeMetrics.getLatency();
+        routeMetrics.recordInvocation(result, TimeUnit.MILLISECONDS.toNanos(900));
+        assertThat(routeMetrics.getLatency(), is(latency));
+        assertThat(coldStarts("latency"), is(2.0));
+    }
+
+    @Test
+    public void detectColdStartFromLogTail() {
+        val routeMetrics = metrics.route(null, FUNCTION_ARN);
+        val coldLog = "REPORT RequestId: 1 Duration: 2.1 ms Billed Duration: 100 ms Init Duration: 180.5 ms";
+        val warmLog = "REPORT RequestId: 2 Duration: 1.9 ms Billed Duration: 100 ms";
+
+        routeMetrics.recordInvocation(StubAWSLambdaAsync.result(200, "{}").withLogResult(encode(coldLog)), TimeUnit.MILLISECONDS.toNanos(200));
+        routeMetrics.recordInvocation(StubAWSLambdaAsync.result(200, "{}").withLogResult(encode(warmLog)), TimeUnit.MILLISECONDS.toNanos(5));
+
+        assertThat(registry.get(AWSLambdaMetrics.COLD_STARTS).tag("route", "none").tag("source", "log").counter().count(), is(1.0));
+        assertThat(AWSLambdaMetrics.isColdStartLog("not base64!"), is(false));
+    }
+
+    double coldStarts(String source) {
+        return registry.get(AWSLambdaMetrics.COLD_STARTS).tag("route", "hello").tag("source", source).counter().count();
+    }
+
+    static String encode(String log) {
+        return Base64.getEncoder().encodeToString(log.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static ServerHttpRequest request(String body) {
+        return MockServerHttpRequest.of("http://localhost/hello", MediaType.APPLICATION_JSON, body);
+    }
+
+}
@@ -0,0 +1,271 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.cloud.netflix.aws.lambda.support.DefaultClientContextFactory;
+import org.springframework.cloud.netflix.aws.lambda.support.DefaultRequestPayloadExtractor;
+import org.springframework.cloud.netflix.aws.lambda.support.MockServerHttpRequest;
+import org.springframework.cloud.netflix.aws.lambda.support.StubAWSLambdaAsync;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @author arawn.kr@gmail.com
+ */
+public class AWSLambdaMultipartPayloadWriterTest {
+
+    static final String FUNCTION_ARN = "arn:aws:lambda:ap-northeast-2:123456789012:function:upload";
+    static final String BOUNDARY = "----lambda-boundary-7MA4YWxkTrZu0gW";
+    static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    AWSLambdaMultipartPayloadWriter payloadWriter;
+
+    @Before
+    public void setUp() {
+        payloadWriter = new AWSLambdaMultipartPayloadWriter(); {
+            payloadWriter.setMemoryThreshold(1024);
+            payloadWriter.setTempDirectory(temporaryFolder.getRoot().toPath());
+        }
+    }
+
+    @Test
+    public void writePartsAsBase64() throws Exception {
+        val content = generate(10 * 1024);
+        val body = new SequenceInputStream(new ByteArrayInputStream(("preamble\r\n--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"title\"\r\n\r\n"
+                + "hello lambda\r\n--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"data.bin\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8)),
+                new SequenceInputStream(new ByteArrayInputStream(content),
+                        new ByteArrayInputStream(("\r\n--" + BOUNDARY + "--\r\nepilogue").getBytes(StandardCharsets.UTF_8))));
+
+        // 한 번에 몇 바이트씩만 읽히도록 해서 경계가 버퍼 사이에 걸치는 경우를 확인한다.
+        val payload = payloadWriter.write(multipart(new TrickleInputStream(body), -1));
+        // 임시 파일에 기록한 페이로드는 힙에 읽지 않고 매핑하며, 파일은 바로 삭제한다.
+        assertThat(payload.isDirect(), is(true));
+        assertThat(temporaryFolder.getRoot().list().length, is(0));
+
+        val bytes = new byte[payload.remaining()];
+        payload.duplicate().get(bytes);
+        val parts = OBJECT_MAPPER.readTree(bytes).get("parts");
+        assertThat(parts.size(), is(2));
+        assertThat(parts.get(0).get("name").asText(), is("title"));
+        assertThat(parts.get(0).get("filename").isNull(), is(true));
+        assertThat(new String(Base64.getDecoder().decode(parts.get(0).get("content").asText()), StandardCharsets.UTF_8), is("hello lambda"));
+        assertThat(parts.get(1).get("filename").asText(), is("data.bin"));
+        assertThat(parts.get(1).get("contentType").asText(), is("application/octet-stream"));
+        assertThat(Arrays.equals(Base64.getDecoder().decode(parts.get(1).get("content").asText()), content), is(true));
+    }
+
+    @Test
+    public void rejectTooLargeUploadBeforeReading() throws Exception {
+        payloadWriter.setMaxPayloadBytes(1024 * 1024);
+        val bytesRead = new AtomicLong();
+        UploadInputStream body = new UploadInputStream("file", 1024 * 1024) {
+            @Override
+            public int read(byte[] bytes, int off, int len) throws IOException {
+                int read = super.read(bytes, off, len);
+                bytesRead.addAndGet(Math.max(read, 0));
+                return read;
+            }
+        };
+
+        try {
+            payloadWriter.write(multipart(body, body.length()));
+            fail();
+        } catch (AWSLambdaMultipartPayloadWriter.PayloadTooLargeException expected) {
+            assertThat(bytesRead.get(), is(0L));
+        }
+    }
+
+    @Test
+    public void rejectTooLargeUploadWhileStreaming() throws Exception {
+        payloadWriter.setMaxPayloadBytes(64 * 1024);
+        val body = new UploadInputStream("file", 1024 * 1024);
+
+        try {
+            payloadWriter.write(multipart(body, -1));
+            fail();
+        } catch (AWSLambdaMultipartPayloadWriter.PayloadTooLargeException expected) {
+            assertThat(body.position < 1024 * 1024, is(true));
+            assertThat(temporaryFolder.getRoot().list().length, is(0));
+        }
+    }
+
+    @Test
+    public void concurrentUploadsKeepHeapFlat() throws Exception {
+        val uploads = 32;
+        val uploadBytes = 4 * 1024 * 1024;
+        AtomicInteger heapPayloads = new AtomicInteger();
+        StubAWSLambdaAsync lambdaClient = new StubAWSLambdaAsync(request -> {
+            if (!request.getPayload().isDirect()) {
+                heapPayloads.incrementAndGet();
+            }
+            return StubAWSLambdaAsync.result(200, "{\"size\":" + request.getPayload().remaining() + "}");
+        }, Runnable::run);
+        AWSLambdaClientRequestFactory requestFactory = new AWSLambdaClientRequestFactory(lambdaClient, new DefaultClientContextFactory(new MockEnvironment()), new DefaultRequestPayloadExtractor()); {
+            payloadWriter.setMemoryThreshold(AWSLambdaMultipartPayloadWriter.DEFAULT_MEMORY_THRESHOLD);
+            requestFactory.setMultipartPayloadWriter(payloadWriter);
+        }
+
+        // 전역 힙 사용량은 GC 시점에 따라 달라지므로, 업로드를 처리한 스레드가 할당한 바이트 수로 확인한다.
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Long>> futures = new ArrayList<>();
+            for (int i = 0; i < uploads; i++) {
+                futures.add(executor.submit(() -> {
+                    UploadInputStream body = new UploadInputStream("file", uploadBytes);
+                    long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+                    int status = requestFactory.createRequest("upload", FUNCTION_ARN, multipart(body, body.length())).execute().getRawStatusCode();
+                    assertThat(status, is(200));
+                    return threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocated;
+                }));
+            }
+            for (Future<Long> future : futures) {
+                // 페이로드(약 5.6MB)를 힙에 읽었다면 업로드마다 페이로드 크기 이상을 할당한다.
+                long allocated = future.get(60, TimeUnit.SECONDS);
+                assertThat("allocated " + (allocated / 1024) + "KB", allocated < uploadBytes / 4, is(true));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(lambdaClient.getInvocations(), is(uploads));
+        assertThat(heapPayloads.get(), is(0));
+        assertThat(temporaryFolder.getRoot().list().length, is(0));
+    }
+
+    @Test
+    public void missingBoundaryIsRejected() throws Exception {
+        val request = MockServerHttpRequest.of("http://localhost/upload", MediaType.MULTIPART_FORM_DATA, "--");
+        try {
+            payloadWriter.write(request);
+            fail();
+        } catch (AWSLambdaMultipartPayloadWriter.MalformedMultipartException expected) {
+            assertThat(expected.getCause(), nullValue());
+        }
+    }
+
+
+    static ServerHttpRequest multipart(InputStream body, long contentLength) throws Exception {
+        val headers = new HttpHeaders(); {
+            headers.setContentType(MediaType.parseMediaType("multipart/form-data; boundary=" + BOUNDARY));
+            if (contentLength >= 0) {
+                headers.setContentLength(contentLength);
+            }
+        }
+        return MockServerHttpRequest.builder()
+                                    .uri(new URI("http://localhost/upload"))
+                                    .method(HttpMethod.POST)
+                                    .headers(headers)
+                                    .body(body)
+                                    .build();
+    }
+
+    static byte[] generate(int length) {
+        val bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (i % 251);
+        }
+        return bytes;
+    }
+
+    /**
+     * 파일 하나를 가진 multipart 본문을 메모리에 만들지 않고 생성한다.
+     */
+    static class UploadInputStream extends InputStream {
+
+        final byte[] header;
+        final byte[] trailer = ("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8);
+        final long contentLength;
+        long position = 0;
+
+        UploadInputStream(String name, long contentLength) {
+            this.header = ("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"" + name + "\"; filename=\"" + name + ".bin\"\r\n"
+                    + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+            this.contentLength = contentLength;
+        }
+
+        long length() {
+            return header.length + contentLength + trailer.length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (position >= length()) {
+                return -1;
+            }
+            long index = position++;
+            if (index < header.length) {
+                return header[(int) index] & 0xFF;
+            }
+            index -= header.length;
+            if (index < contentLength) {
+                return (int) (index % 251);
+            }
+            return trailer[(int) (index - contentLength)] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) throws IOException {
+            int count = 0;
+            while (count < len) {
+                int value = read();
+                if (value < 0) {
+                    break;
+                }
+                bytes[off + count++] = (byte) value;
+            }
+            return count == 0 && len > 0 ? -1 : count;
+        }
+
+    }
+
+    static class TrickleInputStream extends FilterInputStream {
+
+        int chunk = 1;
+
+        TrickleInputStream(InputStream input) {
+            super(input);
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) throws IOException {
+            chunk = chunk % 7 + 1;
+            return super.read(bytes, off, Math.min(len, chunk));
+        }
+
+    }
+
+}
@@ -0,0 +1,178 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.netflix.aws.lambda.support.DefaultClientContextFactory;
+import org.springframework.cloud.netflix.aws.lambda.support.DefaultRequestPayloadExtractor;
+import org.springframework.cloud.netflix.aws.lambda.support.MockServerHttpRequest;
+import org.springframework.cloud.netflix.aws.lambda.support.StubAWSLambdaAsync;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author arawn.kr@gmail.com
+ */
+public class AWSLambdaProxyClientRequestTest {
+
+    static final String FUNCTION_ARN = "arn:aws:lambda:ap-northeast-2:123456789012:function:hello";
+    static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    AtomicReference<JsonNode> event;
+    AtomicReference<String> proxyResponse;
+    AWSLambdaClientRequestFactory requestFactory;
+
+    @Before
+    public void setUp() {
+        event = new AtomicReference<>();
+        proxyResponse = new AtomicReference<>("{\"statusCode\":200,\"body\":\"ok\"}");
+        val lambdaClient = new StubAWSLambdaAsync(request -> {
+            try {
+                event.set(OBJECT_MAPPER.readTree(StubAWSLambdaAsync.payloadAsString(request)));
+            } catch (IOException error) {
+                throw new UncheckedIOException(error);
+            }
+            return StubAWSLambdaAsync.result(200, proxyResponse.get());
+        });
+        requestFactory = new AWSLambdaClientRequestFactory(lambdaClient, new DefaultClientContextFactory(new MockEnvironment()), new DefaultRequestPayloadExtractor()); {
+            requestFactory.setProxyRoutes(Collections.singleton("hello"));
+        }
+    }
+
+    @Test
+    public void writeProxyEvent() throws Exception {
+        val request = MockServerHttpRequest.of("http://localhost/hello/world?name=arawn&tag=a&tag=b%20c", MediaType.APPLICATION_JSON, "{\"message\":\"hello\"}");
+        request.getHeaders().add("X-Custom", "first");
+        request.getHeaders().add("X-Custom", "second");
+
+        val response = requestFactory.createRequest("hello", FUNCTION_ARN, request, Collections.singletonMap("proxy", "world")).execute();
+        assertThat(response.getRawStatusCode(), is(200));
+
+        val proxyEvent = event.get();
+        assertThat(proxyEvent.get("resource").asText(), is("/{proxy+}"));
+        assertThat(proxyEvent.get("path").asText(), is("/hello/world"));
+        assertThat(proxyEvent.get("httpMethod").asText(), is("POST"));
+        assertThat(proxyEvent.get("headers").get("X-Custom").asText(), is("second"));
+        assertThat(proxyEvent.get("multiValueHeaders").get("X-Custom").size(), is(2));
+        assertThat(proxyEvent.get("queryStringParameters").get("tag").asText(), is("b c"));
+        assertThat(proxyEvent.get("multiValueQueryStringParameters").get("tag").get(0).asText(), is("a"));
+        assertThat(proxyEvent.get("multiValueQueryStringParameters").get("tag").get(1).asText(), is("b c"));
+        assertThat(proxyEvent.get("pathParameters").get("proxy").asText(), is("world"));
+        assertThat(proxyEvent.get("body").asText(), is("{\"message\":\"hello\"}"));
+        assertThat(proxyEvent.get("isBase64Encoded").asBoolean(), is(false));
+    }
+
+    @Test
+    public void writeLargeTextBodyInChunks() throws Exception {
+        // 이스케이프할 문자와 조각 경계(4096)에 걸친 서로게이트 쌍을 포함한다.
+        val builder = new StringBuilder(); {
+            for (int i = 0; i < 4095; i++) {
+                builder.append(i % 64 == 0 ? '"' : 'a');
+            }
+            builder.append("\uD83D\uDE00");
+            for (int i = 0; i < 10000; i++) {
+                builder.append(i % 100 == 0 ? "\n" : "b");
+            }
+        }
+        val body = builder.toString();
+        val headers = new HttpHeaders(); {
+            headers.setContentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8));
+        }
+        val request = MockServerHttpRequest.builder()
+                                           .uri(new URI("http://localhost/hello"))
+                                           .method(HttpMethod.POST)
+                                           .headers(headers)
+                                           .body(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)))
+                                           .build();
+
+        requestFactory.createRequest("hello", FUNCTION_ARN, request).execute();
+
+        assertThat(event.get().get("body").asText(), is(body));
+        assertThat(event.get().get("isBase64Encoded").asBoolean(), is(false));
+    }
+
+    @Test
+    public void writeBinaryBodyAsBase64() throws Exception {
+        val bytes = new byte[]{(byte) 0x89, 'P', 'N', 'G', 0, 1, 2, 3};
+        val headers = new HttpHeaders(); {
+            headers.setContentType(MediaType.IMAGE_PNG);
+        }
+        val request = MockServerHttpRequest.builder()
+                                           .uri(new URI("http://localhost/hello"))
+                                           .method(HttpMethod.PUT)
+                                           .headers(headers)
+                                           .body(new ByteArrayInputStream(bytes))
+                                           .build();
+
+        requestFactory.createRequest("hello", FUNCTION_ARN, request).execute();
+
+        assertThat(event.get().get("isBase64Encoded").asBoolean(), is(true));
+        assertThat(Arrays.equals(Base64.getDecoder().decode(event.get().get("body").asText()), bytes), is(true));
+        assertThat(event.get().get("resource").asText(), is("/hello"));
+    }
+
+    @Test
+    public void readProxyResponse() throws Exception {
+        proxyResponse.set("{\"isBase64Encoded\":false,\"statusCode\":201,"
+                + "\"headers\":{\"Content-Type\":\"application/json\",\"X-Single\":\"one\"},"
+                + "\"multiValueHeaders\":{\"Set-Cookie\":[\"a=1\",\"b=2\"]},"
+                + "\"body\":\"{\\\"id\\\":1}\"}");
+
+        val response = requestFactory.createRequest("hello", FUNCTION_ARN, MockServerHttpRequest.of("http://localhost/hello")).execute();
+        assertThat(response.getRawStatusCode(), is(201));
+        assertThat(response.getHeaders().getContentType(), is(MediaType.APPLICATION_JSON));
+        assertThat(response.getHeaders().getFirst("X-Single"), is("one"));
+        assertThat(response.getHeaders().get("Set-Cookie"), is(Arrays.asList("a=1", "b=2")));
+        assertThat(body(response), is("{\"id\":1}"));
+
+        proxyResponse.set("{\"statusCode\":200,\"body\":\"plain text\",\"headers\":null}");
+        assertThat(body(requestFactory.createRequest("hello", FUNCTION_ARN, MockServerHttpRequest.of("http://localhost/hello")).execute()), is("plain text"));
+
+        proxyResponse.set("{\"body\":\"" + Base64.getEncoder().encodeToString("binary".getBytes(StandardCharsets.UTF_8)) + "\",\"isBase64Encoded\":true,\"statusCode\":200}");
+        assertThat(body(requestFactory.createRequest("hello", FUNCTION_ARN, MockServerHttpRequest.of("http://localhost/hello")).execute()), is("binary"));
+    }
+
+    @Test
+    public void malformedProxyResponseIsBadGateway() throws Exception {
+        proxyResponse.set("[\"not a proxy response\"]");
+
+        val response = requestFactory.createRequest("hello", FUNCTION_ARN, MockServerHttpRequest.of("http://localhost/hello")).execute();
+        assertThat(response, instanceOf(AWSLambdaProxyClientResponse.class));
+        assertThat(response.getRawStatusCode(), is(502));
+        assertThat(body(response), is("{\"message\": \"Internal server error\"}"));
+    }
+
+    @Test
+    public void otherRoutesAreNotProxied() throws Exception {
+        val response = requestFactory.createRequest("other", FUNCTION_ARN, MockServerHttpRequest.of("http://localhost/other?name=arawn")).execute();
+
+        assertThat(response, instanceOf(AWSLambdaClientResponse.class));
+        assertThat(event.get().get("name").asText(), is("arawn"));
+    }
+
+
+    static String body(ClientHttpResponse response) throws IOException {
+        return StreamUtils.copyToString(response.getBody(), StandardCharsets.UTF_8);
+    }
+
+}
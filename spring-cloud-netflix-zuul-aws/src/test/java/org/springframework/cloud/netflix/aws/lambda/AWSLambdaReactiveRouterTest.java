@@ -0,0 +1,224 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.lambda.AbstractAWSLambdaAsync;
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+import lombok.val;
+import org.junit.Test;
+import org.springframework.cloud.netflix.aws.lambda.support.CachingClientContextFactory;
+import org.springframework.cloud.netflix.aws.lambda.support.PassThroughRequestPayloadExtractor;
+import org.springframework.cloud.netflix.aws.lambda.support.StubAWSLambdaAsync;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.util.StreamUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.UnicastProcessor;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @author arawn.kr@gmail.com
+ */
+public class AWSLambdaReactiveRouterTest {
+
+    static final String FUNCTION_ARN = "arn:aws:lambda:ap-northeast-2:123456789012:function:hello";
+    static final URI URI = java.net.URI.create("http://localhost/hello");
+
+    @Test
+    public void routeChunkedBody() throws Exception {
+        val invokeRequest = new AtomicReference<InvokeRequest>();
+        val lambdaClient = new StubAWSLambdaAsync(request -> {
+            invokeRequest.set(request);
+            return StubAWSLambdaAsync.result(200, StubAWSLambdaAsync.payloadAsString(request));
+        });
+        val router = createRouter(lambdaClient);
+
+        val body = Flux.just("{\"message\":", "\"hello ", "world\"}").map(chunk -> ByteBuffer.wrap(chunk.getBytes(StandardCharsets.UTF_8)));
+        val response = router.route("hello", FUNCTION_ARN, HttpMethod.POST, URI, jsonHeaders(), body).block(Duration.ofSeconds(5));
+
+        assertThat(response.getStatusCode(), is(HttpStatus.OK));
+        assertThat(StreamUtils.copyToString(response.getBody(), StandardCharsets.UTF_8), is("{\"message\":\"hello world\"}"));
+        assertThat(invokeRequest.get().getFunctionName(), is(FUNCTION_ARN));
+        assertThat(invokeRequest.get().getClientContext(), notNullValue());
+    }
+
+    @Test
+    public void rejectPayloadTooLarge() {
+        val lambdaClient = new StubAWSLambdaAsync(request -> StubAWSLambdaAsync.result(200, "{}"));
+        val router = createRouter(lambdaClient); {
+            router.setMaxPayloadSize(16);
+        }
+
+        // 본문을 읽는 중에 최대 크기를 넘는다.
+        val chunks = Flux.range(0, 4).map(idx -> ByteBuffer.wrap("{\"a\":1}".getBytes(StandardCharsets.UTF_8)));
+        try {
+            router.route("hello", FUNCTION_ARN, HttpMethod.POST, URI, jsonHeaders(), chunks).block(Duration.ofSeconds(5));
+            fail();
+        } catch (AWSLambdaReactiveRouter.PayloadTooLargeException error) {
+            assertThat(error.getStatus(), is(HttpStatus.PAYLOAD_TOO_LARGE));
+        }
+
+        // Content-Length로 알 수 있다면 본문을 읽지 않는다.
+        val subscribed = new AtomicBoolean();
+        val headers = jsonHeaders(); {
+            headers.setContentLength(32);
+        }
+        try {
+            router.route("hello", FUNCTION_ARN, HttpMethod.POST, URI, headers, chunks.doOnSubscribe(subscription -> subscribed.set(true))).block(Duration.ofSeconds(5));
+            fail();
+        } catch (AWSLambdaReactiveRouter.PayloadTooLargeException error) {
+            assertThat(subscribed.get(), is(false));
+        }
+        assertThat(lambdaClient.getInvocations(), is(0));
+    }
+
+    @Test
+    public void mapFunctionErrorWithErrorHandler() throws Exception {
+        val lambdaClient = new StubAWSLambdaAsync(request -> StubAWSLambdaAsync.result(200, "{\"errorMessage\":\"name is required\",\"errorType\":\"ValidationError\"}").withFunctionError("Unhandled"));
+        val functionErrorHandler = new AWSLambdaFunctionErrorHandler(); {
+            functionErrorHandler.addRule("hello", "ValidationError", HttpStatus.BAD_REQUEST, "{\"message\":\"{errorMessage}\"}");
+        }
+        val router = createRouter(lambdaClient); {
+            router.setFunctionErrorHandler(functionErrorHandler);
+        }
+
+        val response = router.route("hello", FUNCTION_ARN, HttpMethod.POST, URI, jsonHeaders(), Flux.empty()).block(Duration.ofSeconds(5));
+        assertThat(response.getStatusCode(), is(HttpStatus.BAD_REQUEST));
+        assertThat(StreamUtils.copyToString(response.getBody(), StandardCharsets.UTF_8), is("{\"message\":\"name is required\"}"));
+
+        // 규칙이 없는 라우트는 함수 오류로 실패한다.
+        try {
+            router.route("world", FUNCTION_ARN, HttpMethod.POST, URI, jsonHeaders(), Flux.empty()).block(Duration.ofSeconds(5));
+            fail();
+        } catch (AWSLambdaReactiveRouter.FunctionErrorException error) {
+            assertThat(error.getError().getErrorType(), is("ValidationError"));
+        }
+        assertThat(functionErrorHandler.getErrorCount("ValidationError"), is(2L));
+    }
+
+    @Test
+    public void cancelInvocationOnDispose() throws Exception {
+        val invoked = new CountDownLatch(1);
+        val invocation = new CompletableFuture<InvokeResult>();
+        val lambdaClient = new AbstractAWSLambdaAsync() {
+            @Override
+            public Future<InvokeResult> invokeAsync(InvokeRequest request, AsyncHandler<InvokeRequest, InvokeResult> asyncHandler) {
+                invoked.countDown();
+                return invocation;
+            }
+        };
+        val router = createRouter(lambdaClient);
+
+        // 클라이언트 연결이 끊어지면 구독이 취소된다.
+        val subscription = router.route("hello", FUNCTION_ARN, HttpMethod.POST, URI, jsonHeaders(), Flux.just(ByteBuffer.wrap("{}".getBytes(StandardCharsets.UTF_8)))).subscribe();
+        assertThat(invoked.await(5, TimeUnit.SECONDS), is(true));
+        subscription.dispose();
+
+        // 람다 요청은 다른 스레드에서 호출되므로 호출이 시작되자마자 취소될 때까지 기다린다.
+        try {
+            invocation.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (CancellationException expected) {
+            assertThat(invocation.isCancelled(), is(true));
+        }
+    }
+
+    @Test
+    public void createRequestWhileBodyStreaming() throws Exception {
+        val lambdaClient = new StubAWSLambdaAsync(request -> StubAWSLambdaAsync.result(200, StubAWSLambdaAsync.payloadAsString(request)));
+        val extracting = new CountDownLatch(1);
+        val extractThread = new AtomicReference<String>();
+        val payloadExtractor = new PassThroughRequestPayloadExtractor() {
+            @Override
+            public ByteBuffer extractBytes(ServerHttpRequest request) {
+                extractThread.set(Thread.currentThread().getName());
+                extracting.countDown();
+                return super.extractBytes(request);
+            }
+        };
+        val requestFactory = new AWSLambdaClientRequestFactory(lambdaClient, new CachingClientContextFactory(new MockEnvironment()), payloadExtractor);
+        val router = new AWSLambdaReactiveRouter(requestFactory);
+
+        // 본문이 모두 도착하기 전에 이벤트 루프가 아닌 스레드에서 페이로드를 읽기 시작한다.
+        val body = UnicastProcessor.<ByteBuffer>create();
+        val response = router.route("hello", FUNCTION_ARN, HttpMethod.POST, URI, jsonHeaders(), body).toFuture();
+        body.onNext(ByteBuffer.wrap("{\"message\":".getBytes(StandardCharsets.UTF_8)));
+        assertThat(extracting.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(extractThread.get(), startsWith("lambda-router-"));
+        assertThat(response.isDone(), is(false));
+
+        body.onNext(ByteBuffer.wrap("\"hello\"}".getBytes(StandardCharsets.UTF_8)));
+        body.onComplete();
+        assertThat(StreamUtils.copyToString(response.get(5, TimeUnit.SECONDS).getBody(), StandardCharsets.UTF_8), is("{\"message\":\"hello\"}"));
+        router.shutdown();
+    }
+
+    @Test
+    public void passRemainingTimeToInvocation() throws Exception {
+        val remainingNanos = new AtomicLong();
+        val lambdaClient = new StubAWSLambdaAsync(request -> {
+            remainingNanos.set(AWSLambdaClientRequest.getRemainingNanos(request));
+            return StubAWSLambdaAsync.result(200, "{}");
+        });
+        val router = createRouter(lambdaClient); {
+            router.setTimeout(Duration.ofSeconds(2));
+        }
+
+        // 본문을 읽는 데 걸린 시간만큼 람다 호출의 마감 시각이 당겨진다.
+        val body = Mono.just(ByteBuffer.wrap("{}".getBytes(StandardCharsets.UTF_8))).delayElement(Duration.ofMillis(500));
+        val response = router.route("hello", FUNCTION_ARN, HttpMethod.POST, URI, jsonHeaders(), body).block(Duration.ofSeconds(5));
+
+        assertThat(response.getStatusCode(), is(HttpStatus.OK));
+        assertThat(remainingNanos.get() > 0, is(true));
+        assertThat(remainingNanos.get() <= TimeUnit.MILLISECONDS.toNanos(1500), is(true));
+    }
+
+    @Test
+    public void startAndCompleteAsyncRequestControl() {
+        val request = new AWSLambdaReactiveRouter.StreamingServerHttpRequest(HttpMethod.POST, URI, jsonHeaders(), null, new AWSLambdaReactiveRouter.BodyInputStream(16));
+        val asyncRequestControl = request.getAsyncRequestControl(null);
+        assertThat(asyncRequestControl.isStarted(), is(false));
+
+        asyncRequestControl.start(1000);
+        assertThat(asyncRequestControl.isStarted(), is(true));
+        assertThat(request.getAsyncRequestControl(null), sameInstance(asyncRequestControl));
+
+        asyncRequestControl.complete();
+        assertThat(asyncRequestControl.isStarted(), is(false));
+        assertThat(asyncRequestControl.isCompleted(), is(true));
+    }
+
+    AWSLambdaReactiveRouter createRouter(AbstractAWSLambdaAsync lambdaClient) {
+        val requestFactory = new AWSLambdaClientRequestFactory(lambdaClient, new CachingClientContextFactory(new MockEnvironment()), new PassThroughRequestPayloadExtractor());
+        return new AWSLambdaReactiveRouter(requestFactory);
+    }
+
+    HttpHeaders jsonHeaders() {
+        val headers = new HttpHeaders(); {
+            headers.setContentType(MediaType.APPLICATION_JSON);
+        }
+        return headers;
+    }
+
+}
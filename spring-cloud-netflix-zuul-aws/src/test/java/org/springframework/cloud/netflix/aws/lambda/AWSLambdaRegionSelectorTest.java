@@ -0,0 +1,218 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+import com.amazonaws.services.lambda.model.ServiceException;
+import com.netflix.hystrix.exception.HystrixBadRequestException;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.netflix.aws.lambda.support.DefaultClientContextFactory;
+import org.springframework.cloud.netflix.aws.lambda.support.DefaultRequestPayloadExtractor;
+import org.springframework.cloud.netflix.aws.lambda.support.MockServerHttpRequest;
+import org.springframework.cloud.netflix.aws.lambda.support.StubAWSLambdaAsync;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @author arawn.kr@gmail.com
+ */
+public class AWSLambdaRegionSelectorTest {
+
+    static final String SEOUL_ARN = "arn:aws:lambda:ap-northeast-2:123456789012:function:hello";
+    static final String TOKYO_ARN = "arn:aws:lambda:ap-northeast-1:123456789012:function:hello";
+
+    AWSLambdaRegionSelector regionSelector;
+
+    @Before
+    public void setUp() {
+        regionSelector = new AWSLambdaRegionSelector().registerEquivalentFunctions(SEOUL_ARN, TOKYO_ARN); {
+            regionSelector.setExplorationRatio(0);
+            regionSelector.setErrorWeight(0.4);
+        }
+    }
+
+    @Test
+    public void parseFunctionArn() {
+        val functionArn = AWSLambdaFunctionArn.parse(SEOUL_ARN + ":prod");
+
+        assertThat(functionArn.getRegion(), is("ap-northeast-2"));
+        assertThat(functionArn.getAccountId(), is("123456789012"));
+        assertThat(functionArn.getFunctionName(), is("hello"));
+        assertThat(functionArn.getQualifier(), is("prod"));
+        assertThat(functionArn.toString(), is(SEOUL_ARN + ":prod"));
+        assertThat(AWSLambdaFunctionArn.parse(SEOUL_ARN).getQualifier(), is(nullValue()));
+
+        try {
+            AWSLambdaFunctionArn.parse("arn:aws:s3:::bucket");
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void failoverToHealthyRegion() throws Exception {
+        regionSelector.setFailureLatency(0, TimeUnit.MILLISECONDS);
+        val seoul = new StubAWSLambdaAsync(request -> { throw serviceUnavailable("seoul is down"); });
+        val tokyo = new StubAWSLambdaAsync(delayed(50, respond("tokyo")));
+        val requestFactory = createRequestFactory(seoul, tokyo);
+
+        // 서울과 도쿄의 응답시간을 한 번씩 잰 뒤, 빠르게 실패하는 서울을 오류율이 기준을 넘을 때까지 호출한다.
+        for (val expectedArn : Arrays.asList(SEOUL_ARN, TOKYO_ARN, SEOUL_ARN)) {
+            val lambdaRequest = (AWSLambdaClientRequest) requestFactory.createRequest(SEOUL_ARN, request());
+            assertThat(lambdaRequest.getFunctionArn(), is(expectedArn));
+            try {
+                lambdaRequest.execute();
+            } catch (AmazonServiceException expected) {
+            }
+        }
+        assertThat(regionSelector.getErrorRate(SEOUL_ARN) > 0.5, is(true));
+
+        val lambdaRequest = (AWSLambdaClientRequest) requestFactory.createRequest(SEOUL_ARN, request());
+        assertThat(lambdaRequest.getFunctionArn(), is(TOKYO_ARN));
+        assertThat(lambdaRequest.execute().getRawStatusCode(), is(200));
+        assertThat(seoul.getInvocations(), is(2));
+        assertThat(tokyo.getInvocations(), is(2));
+    }
+
+    @Test
+    public void penalizeLatencyOfFailedInvocation() throws Exception {
+        val seoul = new StubAWSLambdaAsync(request -> { throw serviceUnavailable("seoul is down"); });
+        val tokyo = new StubAWSLambdaAsync(delayed(20, respond("tokyo")));
+        val requestFactory = createRequestFactory(seoul, tokyo);
+
+        try {
+            requestFactory.createRequest(SEOUL_ARN, request()).execute();
+            fail();
+        } catch (AmazonServiceException expected) {
+        }
+        for (int i = 0; i < 3; i++) {
+            assertThat(requestFactory.createRequest(SEOUL_ARN, request()).execute().getRawStatusCode(), is(200));
+        }
+
+        assertThat(regionSelector.getErrorRate(SEOUL_ARN) < 0.5, is(true));
+        assertThat(regionSelector.getLatency(SEOUL_ARN) >= TimeUnit.SECONDS.toNanos(1), is(true));
+        assertThat(seoul.getInvocations(), is(1));
+        assertThat(tokyo.getInvocations(), is(3));
+    }
+
+    @Test
+    public void recordOnlyRegionFailures() {
+        val request = new InvokeRequest().withFunctionName(SEOUL_ARN);
+
+        // 헤징에서 진 호출이나 타임아웃으로 취소된 호출, 게이트웨이가 거절한 호출은 리전의 실패가 아니다.
+        val cancelled = new CompletableFuture<InvokeResult>();
+        regionSelector.intercept(request, it -> cancelled);
+        cancelled.cancel(true);
+        regionSelector.intercept(request, it -> failed(new AWSLambdaConcurrencyLimiter.LimitExceededException(SEOUL_ARN, 10, HttpStatus.SERVICE_UNAVAILABLE)));
+        regionSelector.intercept(request, it -> failed(new HystrixBadRequestException("bad request")));
+        assertThat(regionSelector.getErrorRate(SEOUL_ARN), is(0.0));
+        assertThat(regionSelector.getLatency(SEOUL_ARN), is(0.0));
+
+        regionSelector.intercept(request, it -> failed(serviceUnavailable("seoul is down")));
+        assertThat(regionSelector.getErrorRate(SEOUL_ARN) > 0, is(true));
+    }
+
+    @Test
+    public void useDefaultClientWhenRegionIsUnknown() throws Exception {
+        val seoul = new StubAWSLambdaAsync(respond("seoul"));
+        val tokyo = new StubAWSLambdaAsync(respond("tokyo"));
+        val requestFactory = createRequestFactory(seoul, tokyo);
+
+        assertThat(requestFactory.createRequest("arn:aws:lambda:hello", request()).execute().getRawStatusCode(), is(200));
+        assertThat(seoul.getInvocations(), is(1));
+    }
+
+    @Test
+    public void probeUnmeasuredRegionOneAtATime() {
+        val seoul = AWSLambdaFunctionArn.parse(SEOUL_ARN);
+        val tokyo = AWSLambdaFunctionArn.parse(TOKYO_ARN);
+
+        assertThat(regionSelector.select(tokyo), is(seoul));
+        assertThat(regionSelector.select(tokyo), is(tokyo));
+        assertThat(regionSelector.select(seoul), is(seoul));
+        assertThat(regionSelector.select(tokyo), is(tokyo));
+    }
+
+    @Test
+    public void preferLowLatencyRegion() throws Exception {
+        val seoul = new StubAWSLambdaAsync(delayed(50, respond("seoul")));
+        val tokyo = new StubAWSLambdaAsync(respond("tokyo"));
+        val requestFactory = createRequestFactory(seoul, tokyo);
+
+        for (int i = 0; i < 5; i++) {
+            requestFactory.createRequest(SEOUL_ARN, request()).execute();
+        }
+
+        assertThat(regionSelector.getLatency(TOKYO_ARN) < regionSelector.getLatency(SEOUL_ARN), is(true));
+        assertThat(seoul.getInvocations(), is(1));
+        assertThat(tokyo.getInvocations(), is(4));
+    }
+
+    @Test
+    public void errorRateDecays() {
+        val stats = new AWSLambdaRegionSelector.FunctionStats();
+        stats.record(0, 1000, true, 0.2, 1.0, 100, 0);
+
+        assertThat(stats.getErrorRate(0, 100), is(1.0));
+        assertThat(stats.getErrorRate(100, 100), is(0.5));
+        assertThat(stats.getErrorRate(200, 100), is(0.25));
+    }
+
+
+    AWSLambdaClientRequestFactory createRequestFactory(StubAWSLambdaAsync seoul, StubAWSLambdaAsync tokyo) {
+        val clientPool = new AWSLambdaClientPool(seoul).register("ap-northeast-2", seoul)
+                                                       .register("ap-northeast-1", tokyo);
+        val requestFactory = new AWSLambdaClientRequestFactory(clientPool, new DefaultClientContextFactory(new MockEnvironment()), new DefaultRequestPayloadExtractor()); {
+            requestFactory.setRegionSelector(regionSelector);
+        }
+        return requestFactory;
+    }
+
+    static ServerHttpRequest request() {
+        return MockServerHttpRequest.of("http://localhost/hello", MediaType.APPLICATION_JSON, "{}");
+    }
+
+    static AmazonServiceException serviceUnavailable(String message) {
+        val error = new ServiceException(message); {
+            error.setStatusCode(503);
+        }
+        return error;
+    }
+
+    static CompletableFuture<InvokeResult> failed(Throwable error) {
+        val invocation = new CompletableFuture<InvokeResult>(); {
+            invocation.completeExceptionally(error);
+        }
+        return invocation;
+    }
+
+    static Function<InvokeRequest, InvokeResult> respond(String region) {
+        return request -> StubAWSLambdaAsync.result(200, "{\"region\":\"" + region + "\"}");
+    }
+
+    static Function<InvokeRequest, InvokeResult> delayed(long millis, Function<InvokeRequest, InvokeResult> handler) {
+        return request -> {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+            }
+            return handler.apply(request);
+        };
+    }
+
+}
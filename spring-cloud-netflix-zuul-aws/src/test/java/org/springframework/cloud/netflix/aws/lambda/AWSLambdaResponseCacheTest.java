@@ -0,0 +1,122 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import lombok.val;
+import org.junit.Test;
+import org.springframework.cloud.netflix.aws.lambda.support.MockServerHttpRequest;
+import org.springframework.cloud.netflix.aws.lambda.support.StubAWSLambdaAsync;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.util.StreamUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author arawn.kr@gmail.com
+ */
+public class AWSLambdaResponseCacheTest {
+
+    static final String FUNCTION_ARN = "arn:aws:lambda:ap-northeast-2:123456789012:function:hello";
+
+    @Test
+    public void cacheSuccessfulResponse() throws Exception {
+        val responseCache = new AWSLambdaResponseCache(1024 * 1024); {
+            responseCache.setTimeToLive("hello", 1, TimeUnit.MINUTES);
+        }
+        val key = responseCache.createKey("hello", lambdaRequest("{\"name\":\"arawn\"}"), MockServerHttpRequest.of("http://localhost/hello"));
+        assertThat(responseCache.get(key), is(nullValue()));
+
+        val response = responseCache.put(key, new AWSLambdaClientResponse(StubAWSLambdaAsync.result(200, "{\"say\":\"hello\"}")));
+        assertThat(StreamUtils.copyToString(response.getBody(), StandardCharsets.UTF_8), is("{\"say\":\"hello\"}"));
+
+        for (int i = 0; i < 2; i++) {
+            val cached = responseCache.get(key);
+            assertThat(cached.getRawStatusCode(), is(200));
+            assertThat(cached.getHeaders().getContentType(), is(MediaType.APPLICATION_JSON));
+            assertThat(StreamUtils.copyToString(cached.getBody(), StandardCharsets.UTF_8), is("{\"say\":\"hello\"}"));
+        }
+        assertThat(responseCache.stats().hitCount(), is(2L));
+        assertThat(responseCache.stats().missCount(), is(1L));
+    }
+
+    @Test
+    public void cacheOnlyGetRequestsOfConfiguredRoutes() {
+        val responseCache = new AWSLambdaResponseCache(1024 * 1024); {
+            responseCache.setTimeToLive("hello", 1, TimeUnit.MINUTES);
+        }
+        val get = MockServerHttpRequest.of("http://localhost/hello");
+        val post = MockServerHttpRequest.of("http://localhost/hello", HttpMethod.POST, MediaType.APPLICATION_JSON, "{}");
+
+        assertThat(responseCache.createKey("hello", lambdaRequest("{}"), get), is(notNullValue()));
+        assertThat(responseCache.createKey("other", lambdaRequest("{}"), get), is(nullValue()));
+        assertThat(responseCache.createKey("hello", lambdaRequest("{}"), post), is(nullValue()));
+    }
+
+    @Test
+    public void normalizeJsonPayload() {
+        val digest = AWSLambdaResponseCache.digest("", ByteBuffer.wrap("{\"a\":1,\"b\":{\"c\":2,\"d\":3}}".getBytes()));
+
+        assertThat(AWSLambdaResponseCache.digest("", ByteBuffer.wrap("{ \"b\": {\"d\":3, \"c\":2}, \"a\": 1 }".getBytes())), is(digest));
+        assertThat(AWSLambdaResponseCache.digest("", ByteBuffer.wrap("{\"a\":2,\"b\":{\"c\":2,\"d\":3}}".getBytes())), is(not(digest)));
+        assertThat(AWSLambdaResponseCache.digest("context", ByteBuffer.wrap("{\"a\":1,\"b\":{\"c\":2,\"d\":3}}".getBytes())), is(not(digest)));
+    }
+
+    @Test
+    public void cacheControlOverridesRouteTimeToLive() {
+        val responseCache = new AWSLambdaResponseCache(1024, 10, TimeUnit.MINUTES); {
+            responseCache.setTimeToLive("hello", 1, TimeUnit.MINUTES);
+        }
+
+        assertThat(responseCache.getTimeToLive("hello", null), is(TimeUnit.MINUTES.toNanos(1)));
+        assertThat(responseCache.getTimeToLive("hello", "public, max-age=30"), is(TimeUnit.SECONDS.toNanos(30)));
+        assertThat(responseCache.getTimeToLive("hello", "max-age=30, s-maxage=5"), is(TimeUnit.SECONDS.toNanos(5)));
+        assertThat(responseCache.getTimeToLive("hello", "max-age=86400"), is(TimeUnit.MINUTES.toNanos(10)));
+        assertThat(responseCache.getTimeToLive("hello", "no-store"), is(0L));
+        assertThat(responseCache.getTimeToLive("hello", "private, max-age=30"), is(0L));
+    }
+
+    @Test
+    public void evictByRouteAndMemoryLimit() throws Exception {
+        val payload = new String(new char[1000]).replace('\0', 'x');
+        val responseCache = new AWSLambdaResponseCache(10 * 1024); {
+            responseCache.setTimeToLive("hello", 1, TimeUnit.MINUTES);
+        }
+
+        for (int i = 0; i < 50; i++) {
+            val key = responseCache.createKey("hello", lambdaRequest("{\"index\":" + i + "}"), MockServerHttpRequest.of("http://localhost/hello"));
+            responseCache.put(key, new AWSLambdaClientResponse(StubAWSLambdaAsync.result(200, "\"" + payload + "\"")));
+        }
+        responseCache.cleanUp();
+        assertThat(responseCache.size() < 10, is(true));
+        assertThat(responseCache.stats().evictionCount() > 0, is(true));
+
+        responseCache.evict("hello");
+        responseCache.cleanUp();
+        assertThat(responseCache.size(), is(0L));
+    }
+
+    @Test
+    public void expireEntry() throws Exception {
+        val responseCache = new AWSLambdaResponseCache(1024 * 1024); {
+            responseCache.setTimeToLive("hello", 1, TimeUnit.MILLISECONDS);
+        }
+        val key = responseCache.createKey("hello", lambdaRequest("{}"), MockServerHttpRequest.of("http://localhost/hello"));
+        responseCache.put(key, new AWSLambdaClientResponse(StubAWSLambdaAsync.result(200, "{}")));
+        Thread.sleep(10);
+
+        assertThat(responseCache.get(key), is(nullValue()));
+    }
+
+
+    static AWSLambdaClientRequest lambdaRequest(String payload) {
+        return new AWSLambdaClientRequest(new StubAWSLambdaAsync(request -> null), FUNCTION_ARN, null, payload);
+    }
+
+}
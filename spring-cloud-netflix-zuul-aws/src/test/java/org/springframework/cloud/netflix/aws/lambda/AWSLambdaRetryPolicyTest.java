@@ -0,0 +1,240 @@
+package org.springframework.cloud.netflix.aws.lambda;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+import com.amazonaws.services.lambda.model.TooManyRequestsException;
+import lombok.val;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.netflix.aws.lambda.support.DefaultClientContextFactory;
+import org.springframework.cloud.netflix.aws.lambda.support.DefaultRequestPayloadExtractor;
+import org.springframework.cloud.netflix.aws.lambda.support.MockServerHttpRequest;
+import org.springframework.cloud.netflix.aws.lambda.support.StubAWSLambdaAsync;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.Collections;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @author arawn.kr@gmail.com
+ */
+public class AWSLambdaRetryPolicyTest {
+
+    static final String FUNCTION_ARN = "arn:aws:lambda:ap-northeast-2:123456789012:function:hello";
+
+    AWSLambdaRetryPolicy retryPolicy;
+
+    @Before
+    public void setUp() {
+        retryPolicy = new AWSLambdaRetryPolicy(); {
+            retryPolicy.setRoutes(Collections.singleton("hello"));
+            retryPolicy.setBackoff(1, 5, TimeUnit.MILLISECONDS);
+            retryPolicy.setRetryableFunctionErrors(Collections.singleton("TransientError"));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        retryPolicy.shutdown();
+    }
+
+    @Test
+    public void retryTransientErrors() throws Exception {
+        val invocations = new AtomicInteger();
+        val requestFactory = createRequestFactory(request -> {
+            int invocation = invocations.incrementAndGet();
+            if (invocation == 1) {
+                throw new TooManyRequestsException("Rate Exceeded.");
+            }
+            if (invocation == 2) {
+                return StubAWSLambdaAsync.result(200, "{\"errorMessage\":\"try again\",\"errorType\":\"TransientError\"}").withFunctionError("Handled");
+            }
+            return StubAWSLambdaAsync.result(200, "{\"say\":\"hello\"}");
+        });
+
+        try (val response = requestFactory.createRequest("hello", FUNCTION_ARN, request()).execute()) {
+            assertThat(response.getRawStatusCode(), is(200));
+        }
+        assertThat(invocations.get(), is(3));
+        assertThat(retryPolicy.getRetryCount(), is(2L));
+
+        // 지정하지 않은 함수 오류는 재시도하지 않는다.
+        invocations.set(0);
+        val failingFactory = createRequestFactory(request -> {
+            invocations.incrementAndGet();
+            return StubAWSLambdaAsync.result(200, "{\"errorMessage\":\"boom\",\"errorType\":\"IllegalStateException\"}").withFunctionError("Handled");
+        });
+        failingFactory.createRequest("hello", FUNCTION_ARN, request()).execute().close();
+        assertThat(invocations.get(), is(1));
+    }
+
+    @Test
+    public void stopRetryingWhenBudgetExhausted() throws Exception {
+        retryPolicy.setBudget(0, 1);
+        retryPolicy.setMaxAttempts(5);
+        val invocations = new AtomicInteger();
+        val requestFactory = createRequestFactory(request -> {
+            invocations.incrementAndGet();
+            throw new TooManyRequestsException("Rate Exceeded.");
+        });
+
+        try {
+            requestFactory.createRequest("hello", FUNCTION_ARN, request()).execute();
+            fail();
+        } catch (TooManyRequestsException expected) {
+        }
+
+        assertThat(invocations.get(), is(2));
+        assertThat(retryPolicy.getRetryCount(), is(1L));
+        assertThat(retryPolicy.getBudgetExhaustedCount(), is(1L));
+    }
+
+    @Test
+    public void doNotRetryPastDeadline() throws Exception {
+        retryPolicy.setMinAttemptTime(5, TimeUnit.SECONDS);
+        val invocations = new AtomicInteger();
+        val requestFactory = createRequestFactory(request -> {
+            invocations.incrementAndGet();
+            assertThat(AWSLambdaClientRequest.getRemainingNanos(request) <= TimeUnit.SECONDS.toNanos(1), is(true));
+            val serviceError = new AmazonServiceException("Service Unavailable"); {
+                serviceError.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE.value());
+            }
+            throw serviceError;
+        });
+
+        val lambdaRequest = (AWSLambdaClientRequest) requestFactory.createRequest("hello", FUNCTION_ARN, request()); {
+            lambdaRequest.setTimeout(1, TimeUnit.SECONDS);
+        }
+        try {
+            lambdaRequest.execute();
+            fail();
+        } catch (AmazonServiceException expected) {
+        }
+
+        assertThat(invocations.get(), is(1));
+        assertThat(retryPolicy.getDeadlineExceededCount(), is(1L));
+    }
+
+    @Test
+    public void classifyRetryableErrors() {
+        val serviceError = new AmazonServiceException("Internal Server Error"); {
+            serviceError.setStatusCode(HttpStatus.INTERNAL_SERVER_ERROR.value());
+        }
+        val badRequest = new AmazonServiceException("Bad Request"); {
+            badRequest.setStatusCode(HttpStatus.BAD_REQUEST.value());
+            badRequest.setErrorCode("InvalidRequestContentException");
+        }
+
+        assertThat(retryPolicy.isRetryable(null, new CompletionException(serviceError)), is(true));
+        assertThat(retryPolicy.isRetryable(null, new SdkClientException("connection reset", new IOException())), is(true));
+        assertThat(retryPolicy.isRetryable(null, badRequest), is(false));
+        assertThat(retryPolicy.isRetryable(null, new AWSLambdaConcurrencyLimiter.LimitExceededException(FUNCTION_ARN, 1, HttpStatus.SERVICE_UNAVAILABLE)), is(false));
+        assertThat(retryPolicy.isRetryable(StubAWSLambdaAsync.result(200, "{}"), null), is(false));
+    }
+
+    @Test
+    public void retryOnlyPreInvocationErrorsOfNonIdempotentRequests() throws Exception {
+        val invocations = new AtomicInteger();
+        val requestFactory = createRequestFactory(request -> {
+            int invocation = invocations.incrementAndGet();
+            if (invocation == 1) {
+                throw new SdkClientException("connection refused", new ConnectException());
+            }
+            val serviceError = new AmazonServiceException("Service Unavailable"); {
+                serviceError.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE.value());
+            }
+            throw serviceError;
+        });
+
+        try {
+            requestFactory.createRequest("hello", FUNCTION_ARN, request(HttpMethod.POST)).execute();
+            fail();
+        } catch (AmazonServiceException expected) {
+        }
+
+        // 연결하지 못한 호출은 재시도하고, 함수가 실행되었을 수 있는 5xx 오류는 재시도하지 않는다.
+        assertThat(invocations.get(), is(2));
+        assertThat(retryPolicy.getRetryCount(), is(1L));
+
+        val functionError = StubAWSLambdaAsync.result(200, "{\"errorMessage\":\"try again\",\"errorType\":\"TransientError\"}").withFunctionError("Handled");
+        val resourceConflict = new AmazonServiceException("The operation cannot be performed at this time."); {
+            resourceConflict.setStatusCode(HttpStatus.CONFLICT.value());
+            resourceConflict.setErrorCode("ResourceConflictException");
+        }
+        assertThat(retryPolicy.isRetryable(null, new TooManyRequestsException("Rate Exceeded."), false), is(true));
+        assertThat(retryPolicy.isRetryable(null, resourceConflict, false), is(true));
+        assertThat(retryPolicy.isRetryable(null, new SdkClientException("connection reset", new IOException()), false), is(false));
+        assertThat(retryPolicy.isRetryable(functionError, null, false), is(false));
+        assertThat(retryPolicy.isRetryable(functionError, null, true), is(true));
+    }
+
+    @Test
+    public void applyBudgetToExistingRoutes() throws Exception {
+        retryPolicy.setMaxAttempts(5);
+        val invocations = new AtomicInteger();
+        val throttled = new AtomicBoolean();
+        val requestFactory = createRequestFactory(request -> {
+            invocations.incrementAndGet();
+            if (throttled.get()) {
+                throw new TooManyRequestsException("Rate Exceeded.");
+            }
+            return StubAWSLambdaAsync.result(200, "{}");
+        });
+        requestFactory.createRequest("hello", FUNCTION_ARN, request()).execute().close();
+
+        // 이미 사용 중인 라우트도 새 예산을 사용한다.
+        retryPolicy.setBudget(0, 1);
+        throttled.set(true);
+        try {
+            requestFactory.createRequest("hello", FUNCTION_ARN, request()).execute();
+            fail();
+        } catch (TooManyRequestsException expected) {
+        }
+
+        assertThat(invocations.get(), is(3));
+        assertThat(retryPolicy.getBudgetExhaustedCount(), is(1L));
+    }
+
+    @Test
+    public void backoffWithFullJitter() {
+        retryPolicy.setBackoff(10, 40, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 100; i++) {
+            assertThat(retryPolicy.backoffNanos(1) <= TimeUnit.MILLISECONDS.toNanos(10), is(true));
+            assertThat(retryPolicy.backoffNanos(3) <= TimeUnit.MILLISECONDS.toNanos(40), is(true));
+            assertThat(retryPolicy.backoffNanos(64) <= TimeUnit.MILLISECONDS.toNanos(40), is(true));
+        }
+    }
+
+    AWSLambdaClientRequestFactory createRequestFactory(Function<InvokeRequest, InvokeResult> handler) {
+        val requestFactory = new AWSLambdaClientRequestFactory(new StubAWSLambdaAsync(handler), new DefaultClientContextFactory(new MockEnvironment()), new DefaultRequestPayloadExtractor()); {
+            requestFactory.setRetryPolicy(retryPolicy);
+        }
+        return requestFactory;
+    }
+
+    static ServerHttpRequest request() {
+        return request(HttpMethod.PUT);
+    }
+
+    static ServerHttpRequest request(HttpMethod method) {
+        return MockServerHttpRequest.of("http://localhost/hello", method, MediaType.APPLICATION_JSON, "{\"name\":\"lambda\"}");
+    }
+
+}
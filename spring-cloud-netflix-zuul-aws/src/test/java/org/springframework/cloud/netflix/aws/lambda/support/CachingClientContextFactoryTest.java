@@ -0,0 +1,93 @@
+package org.springframework.cloud.netflix.aws.lambda.support;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.val;
+import org.junit.Test;
+import org.springframework.cloud.netflix.aws.lambda.ClientContext;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.IOException;
+import java.util.Base64;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author arawn.kr@gmail.com
+ */
+public class CachingClientContextFactoryTest {
+
+    final ObjectMapper objectMapper = new ObjectMapper();
+    final MockEnvironment environment = new MockEnvironment(); {
+        environment.setActiveProfiles("dev", "aws");
+    }
+
+    @Test
+    public void sameAsDefaultClientContext() throws IOException {
+        val request = MockServerHttpRequest.of("http://localhost/lambda");
+        val expected = new DefaultClientContextFactory(environment).create(request);
+        val actual = new CachingClientContextFactory(environment).create(request);
+
+        assertThat(decode(actual), is(decode(expected)));
+    }
+
+    @Test
+    public void encodedOnce() {
+        val factory = new CachingClientContextFactory(environment);
+        val request = MockServerHttpRequest.of("http://localhost/lambda");
+
+        assertThat(factory.create(request).toString(), sameInstance(factory.create(request).toString()));
+    }
+
+    @Test
+    public void invalidatedWhenActiveProfilesChange() throws IOException {
+        val factory = new CachingClientContextFactory(environment);
+        val request = MockServerHttpRequest.of("http://localhost/lambda");
+        assertThat(decode(factory.create(request)).at("/x-amz-Client-Context/environment/spring.profiles.active").asText(), is("dev,aws"));
+
+        environment.setActiveProfiles("prod");
+        assertThat(decode(factory.create(request)).at("/x-amz-Client-Context/environment/spring.profiles.active").asText(), is("prod"));
+    }
+
+    @Test
+    public void customIsSpliced() throws IOException {
+        val factory = new CachingClientContextFactory(environment) {
+            @Override
+            protected ClientContext.Custom createCustom(ServerHttpRequest request) {
+                val custom = new ClientContext.Custom(); {
+                    custom.put("path", request.getURI().getPath());
+                    custom.put("quote", "\"escaped\"");
+                }
+                return custom;
+            }
+        };
+
+        val clientContext = decode(factory.create(MockServerHttpRequest.of("http://localhost/lambda")));
+        assertThat(clientContext.at("/x-amz-Client-Context/custom/path").asText(), is("/lambda"));
+        assertThat(clientContext.at("/x-amz-Client-Context/custom/quote").asText(), is("\"escaped\""));
+        assertThat(clientContext.at("/x-amz-Client-Context/environment/spring.profiles.active").asText(), is("dev,aws"));
+    }
+
+    @Test(expected = CachingClientContextFactory.ClientContextSizeExceededException.class)
+    public void encodedSizeIsLimited() {
+        val factory = new CachingClientContextFactory(environment) {
+            @Override
+            protected ClientContext.Custom createCustom(ServerHttpRequest request) {
+                val custom = new ClientContext.Custom(); {
+                    custom.put("large", new String(new char[CachingClientContextFactory.MAX_ENCODED_SIZE]).replace('\0', 'x'));
+                }
+                return custom;
+            }
+        };
+
+        factory.create(MockServerHttpRequest.of("http://localhost/lambda"));
+    }
+
+
+    JsonNode decode(ClientContext clientContext) throws IOException {
+        return objectMapper.readTree(Base64.getDecoder().decode(clientContext.toString()));
+    }
+
+}
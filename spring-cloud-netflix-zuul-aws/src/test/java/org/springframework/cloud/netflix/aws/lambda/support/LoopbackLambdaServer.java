@@ -0,0 +1,223 @@
+package org.springframework.cloud.netflix.aws.lambda.support;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.*;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.*;
+import io.netty.handler.ssl.SslContext;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 람다 Invoke API를 흉내내는 루프백 HTTP 서버, AWS SDK 클라이언트와 {@link NettyTransport}를 같은 조건에서 시험하고 비교할 때 사용한다.
+ * 지연시간이 지난 후 이벤트 루프에서 응답하므로 느린 람다 함수를 흉내내도 서버 스레드는 늘어나지 않는다.
+ * {@link SslContext}를 지정하면 https://localhost 로 TLS 연결을 받는다.
+ *
+ * @author arawn.kr@gmail.com
+ */
+public class LoopbackLambdaServer {
+
+    static final Pattern INVOKE_PATH = Pattern.compile("/2015-03-31/functions/([^/?]+)/invocations(\\?.*)?");
+
+    private final EventLoopGroup eventLoopGroup = new NioEventLoopGroup(2, new DefaultThreadFactory("loopback-lambda", true));
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger invocations = new AtomicInteger();
+    private final Channel serverChannel;
+    private final boolean secure;
+
+    private volatile Function<Invocation, Response> handler = invocation -> Response.ok(invocation.getPayload());
+    private volatile long latencyMillis;
+    private volatile Invocation lastInvocation;
+
+    private LoopbackLambdaServer(SslContext sslContext) throws InterruptedException {
+        this.secure = Objects.nonNull(sslContext);
+        this.serverChannel = new ServerBootstrap().group(eventLoopGroup)
+                                                  .channel(NioServerSocketChannel.class)
+                                                  .childHandler(new ChannelInitializer<SocketChannel>() {
+                                                      @Override
+                                                      protected void initChannel(SocketChannel channel) {
+                                                          connections.incrementAndGet();
+                                                          if (Objects.nonNull(sslContext)) {
+                                                              channel.pipeline().addLast(sslContext.newHandler(channel.alloc()));
+                                                          }
+                                                          channel.pipeline().addLast(new HttpServerCodec(), new HttpObjectAggregator(8 * 1024 * 1024), new InvokeHandler());
+                                                      }
+                                                  })
+                                                  .bind("127.0.0.1", 0).sync().channel();
+    }
+
+    public static LoopbackLambdaServer start() throws InterruptedException {
+        return new LoopbackLambdaServer(null);
+    }
+
+    public static LoopbackLambdaServer start(SslContext sslContext) throws InterruptedException {
+        return new LoopbackLambdaServer(Objects.requireNonNull(sslContext));
+    }
+
+    public URI getEndpoint() {
+        int port = ((InetSocketAddress) serverChannel.localAddress()).getPort();
+        return URI.create(secure ? "https://localhost:" + port : "http://127.0.0.1:" + port);
+    }
+
+    public void setHandler(Function<Invocation, Response> handler) {
+        this.handler = Objects.requireNonNull(handler);
+    }
+
+    public void setLatency(long latency, TimeUnit unit) {
+        this.latencyMillis = unit.toMillis(latency);
+    }
+
+    /**
+     * @return 지금까지 맺어진 연결 수
+     */
+    public int getConnections() {
+        return connections.get();
+    }
+
+    public int getInvocations() {
+        return invocations.get();
+    }
+
+    public Invocation getLastInvocation() {
+        return lastInvocation;
+    }
+
+    public void shutdown() {
+        serverChannel.close().awaitUninterruptibly();
+        eventLoopGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+    }
+
+
+    class InvokeHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext context, FullHttpRequest request) throws Exception {
+            Map<String, String> headers = new LinkedHashMap<>();
+            request.headers().entries().forEach(header -> headers.put(header.getKey().toLowerCase(), header.getValue()));
+            byte[] payload = new byte[request.content().readableBytes()];
+            request.content().getBytes(request.content().readerIndex(), payload);
+            boolean keepAlive = HttpHeaders.isKeepAlive(request);
+
+            Matcher matcher = INVOKE_PATH.matcher(request.getUri());
+            Response response;
+            if (matcher.matches()) {
+                Invocation invocation = new Invocation(URLDecoder.decode(matcher.group(1), "UTF-8"), headers, payload);
+                invocations.incrementAndGet();
+                lastInvocation = invocation;
+                response = handler.apply(invocation);
+            } else {
+                response = Response.serviceError(404, "ResourceNotFoundException", "Function not found: " + request.getUri());
+            }
+
+            if (latencyMillis > 0) {
+                context.executor().schedule(() -> write(context, response, keepAlive), latencyMillis, TimeUnit.MILLISECONDS);
+            } else {
+                write(context, response, keepAlive);
+            }
+        }
+
+        void write(ChannelHandlerContext context, Response response, boolean keepAlive) {
+            FullHttpResponse httpResponse = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.valueOf(response.getStatus()), Unpooled.wrappedBuffer(response.getBody()));
+            HttpHeaders headers = httpResponse.headers(); {
+                headers.set(HttpHeaders.Names.CONTENT_TYPE, "application/json");
+                headers.set(HttpHeaders.Names.CONTENT_LENGTH, response.getBody().length);
+                headers.set("x-amzn-RequestId", UUID.randomUUID().toString());
+                response.getHeaders().forEach(headers::set);
+            }
+            if (keepAlive) {
+                headers.set(HttpHeaders.Names.CONNECTION, HttpHeaders.Values.KEEP_ALIVE);
+                context.writeAndFlush(httpResponse);
+            } else {
+                context.writeAndFlush(httpResponse).addListener(ChannelFutureListener.CLOSE);
+            }
+        }
+
+    }
+
+    /**
+     * 서버가 받은 람다 호출, 헤더 이름은 소문자로 저장한다.
+     */
+    public static class Invocation {
+
+        private final String functionName;
+        private final Map<String, String> headers;
+        private final byte[] payload;
+
+        Invocation(String functionName, Map<String, String> headers, byte[] payload) {
+            this.functionName = functionName;
+            this.headers = headers;
+            this.payload = payload;
+        }
+
+        public String getFunctionName() {
+            return functionName;
+        }
+
+        public String getHeader(String name) {
+            return headers.get(name.toLowerCase());
+        }
+
+        public byte[] getPayload() {
+            return payload;
+        }
+
+    }
+
+    public static class Response {
+
+        private final int status;
+        private final Map<String, String> headers;
+        private final byte[] body;
+
+        Response(int status, Map<String, String> headers, byte[] body) {
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        public static Response ok(byte[] payload) {
+            return new Response(200, Collections.singletonMap("X-Amz-Executed-Version", "$LATEST"), payload);
+        }
+
+        public static Response functionError(String errorType, String errorMessage) {
+            String body = String.format("{\"errorType\":\"%s\",\"errorMessage\":\"%s\"}", errorType, errorMessage);
+            return new Response(200, Collections.singletonMap("X-Amz-Function-Error", "Unhandled"), body.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public static Response serviceError(int status, String errorType, String message) {
+            String body = String.format("{\"Type\":\"User\",\"message\":\"%s\"}", message);
+            return new Response(status, Collections.singletonMap("x-amzn-ErrorType", errorType + ":"), body.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public Map<String, String> getHeaders() {
+            return headers;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+    }
+
+}
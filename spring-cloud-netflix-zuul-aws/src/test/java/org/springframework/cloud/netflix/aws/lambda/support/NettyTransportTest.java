@@ -0,0 +1,295 @@
+package org.springframework.cloud.netflix.aws.lambda.support;
+
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.http.timers.client.ClientExecutionTimeoutException;
+import com.amazonaws.services.lambda.AWSLambdaAsyncClientBuilder;
+import com.amazonaws.services.lambda.model.InvocationType;
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+import com.amazonaws.services.lambda.model.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+import lombok.val;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaClientRequest;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaClientRequestFactory;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaMetrics;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaTransport;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.util.StreamUtils;
+
+import javax.net.ssl.SSLHandshakeException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.number.OrderingComparison.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @author arawn.kr@gmail.com
+ */
+public class NettyTransportTest {
+
+    static final String FUNCTION_ARN = "arn:aws:lambda:ap-northeast-2:123456789012:function:hello";
+    static final AWSStaticCredentialsProvider CREDENTIALS = new AWSStaticCredentialsProvider(new BasicAWSCredentials("access", "secret"));
+
+    LoopbackLambdaServer server;
+    SdkClientTransport sdkTransport;
+    NettyTransport nettyTransport;
+
+    @Before
+    public void setUp() throws Exception {
+        server = LoopbackLambdaServer.start();
+
+        sdkTransport = new SdkClientTransport(AWSLambdaAsyncClientBuilder.standard()
+                                                                       .withCredentials(CREDENTIALS)
+                                                                       .withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(server.getEndpoint().toString(), "ap-northeast-2"))
+                                                                       .build());
+        nettyTransport = new NettyTransport(CREDENTIALS); {
+            nettyTransport.setEndpoint(server.getEndpoint());
+        }
+    }
+
+    @After
+    public void tearDown() {
+        sdkTransport.getClient().shutdown();
+        nettyTransport.shutdown();
+        server.shutdown();
+    }
+
+    @Test
+    public void invokeLikeSdkClient() throws Exception {
+        for (AWSLambdaTransport transport : Arrays.asList(sdkTransport, nettyTransport)) {
+            val request = new InvokeRequest().withFunctionName(FUNCTION_ARN)
+                                             .withInvocationType(InvocationType.RequestResponse)
+                                             .withQualifier("live")
+                                             .withClientContext("eyJjdXN0b20iOnt9fQ==")
+                                             .withPayload("{\"message\":\"hello\"}");
+            val result = transport.invokeAsync(request).get(5, TimeUnit.SECONDS);
+
+            assertThat(result.getStatusCode(), is(200));
+            assertThat(new String(result.getPayload().array(), StandardCharsets.UTF_8), is("{\"message\":\"hello\"}"));
+            assertThat(result.getSdkHttpMetadata().getHttpHeaders().get("X-Amz-Executed-Version"), is("$LATEST"));
+            assertThat(result.getSdkResponseMetadata().getRequestId(), notNullValue());
+
+            val invocation = server.getLastInvocation();
+            assertThat(invocation.getFunctionName(), is(FUNCTION_ARN));
+            assertThat(invocation.getHeader("X-Amz-Invocation-Type"), is("RequestResponse"));
+            assertThat(invocation.getHeader("X-Amz-Client-Context"), is("eyJjdXN0b20iOnt9fQ=="));
+            assertThat(invocation.getHeader("Authorization"), startsWith("AWS4-HMAC-SHA256 Credential=access/"));
+            assertThat(invocation.getHeader("Authorization"), containsString("/ap-northeast-2/lambda/aws4_request"));
+        }
+    }
+
+    @Test
+    public void mapErrorsLikeSdkClient() throws Exception {
+        server.setHandler(invocation -> LoopbackLambdaServer.Response.functionError("Error", "boom"));
+        for (AWSLambdaTransport transport : Arrays.asList(sdkTransport, nettyTransport)) {
+            val result = transport.invoke(new InvokeRequest().withFunctionName(FUNCTION_ARN).withPayload("{}"));
+
+            assertThat(result.getStatusCode(), is(200));
+            assertThat(result.getFunctionError(), is("Unhandled"));
+        }
+
+        server.setHandler(invocation -> LoopbackLambdaServer.Response.serviceError(429, "TooManyRequestsException", "Rate Exceeded."));
+        for (AWSLambdaTransport transport : Arrays.asList(sdkTransport, nettyTransport)) {
+            try {
+                transport.invokeAsync(new InvokeRequest().withFunctionName(FUNCTION_ARN).withPayload("{}")).get(5, TimeUnit.SECONDS);
+                fail();
+            } catch (ExecutionException error) {
+                assertThat(error.getCause(), instanceOf(TooManyRequestsException.class));
+
+                val throttled = (TooManyRequestsException) error.getCause();
+                assertThat(throttled.getStatusCode(), is(429));
+                assertThat(throttled.getErrorCode(), is("TooManyRequestsException"));
+                assertThat(throttled.getErrorMessage(), is("Rate Exceeded."));
+            }
+        }
+    }
+
+    @Test
+    public void sendMappedPayload() throws Exception {
+        val content = new byte[1024 * 1024]; {
+            Arrays.fill(content, (byte) 'a');
+            content[0] = '"';
+            content[content.length - 1] = '"';
+        }
+        val file = Files.createTempFile("lambda-payload-", ".json");
+        try (val channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(content));
+            // 임시 파일을 매핑한 페이로드는 복사하지 않고 서명하고 보낸다.
+            val payload = channel.map(FileChannel.MapMode.READ_ONLY, 0, content.length).asReadOnlyBuffer();
+            val result = nettyTransport.invokeAsync(new InvokeRequest().withFunctionName(FUNCTION_ARN).withPayload(payload)).get(5, TimeUnit.SECONDS);
+
+            assertThat(result.getStatusCode(), is(200));
+            assertThat(Arrays.equals(server.getLastInvocation().getPayload(), content), is(true));
+            assertThat(server.getLastInvocation().getHeader("Authorization"), startsWith("AWS4-HMAC-SHA256 Credential=access/"));
+            assertThat(payload.remaining(), is(content.length));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void reuseConnections() throws Exception {
+        nettyTransport.setMaxConnections(2);
+        nettyTransport.invoke(new InvokeRequest().withFunctionName(FUNCTION_ARN).withPayload("{}"));
+        server.setLatency(300, TimeUnit.MILLISECONDS);
+
+        // 쉬고 있던 연결과 새 연결 하나로 두 호출을 보내고, 나머지는 연결을 기다린다.
+
+        val invocations = new ArrayList<CompletableFuture<InvokeResult>>();
+        for (int i = 0; i < 20; i++) {
+            invocations.add(nettyTransport.invokeAsync(new InvokeRequest().withFunctionName(FUNCTION_ARN).withPayload("{\"index\":" + i + "}")));
+        }
+        assertThat(nettyTransport.getPendingInvocations(), is(18));
+
+        for (int i = 0; i < invocations.size(); i++) {
+            val result = invocations.get(i).get(5, TimeUnit.SECONDS);
+            assertThat(new String(result.getPayload().array(), StandardCharsets.UTF_8), is("{\"index\":" + i + "}"));
+        }
+        assertThat(server.getConnections(), lessThanOrEqualTo(2));
+        assertThat(nettyTransport.getOpenConnections(), is(2));
+        assertThat(nettyTransport.getPendingInvocations(), is(0));
+    }
+
+    @Test
+    public void releaseConnectionOnCancelAndTimeout() throws Exception {
+        server.setLatency(5, TimeUnit.SECONDS);
+        nettyTransport.setMaxConnections(1);
+
+        val cancelled = nettyTransport.invokeAsync(new InvokeRequest().withFunctionName(FUNCTION_ARN).withPayload("{}"));
+        val pending = nettyTransport.invokeAsync(new InvokeRequest().withFunctionName(FUNCTION_ARN).withPayload("{}").withSdkRequestTimeout(200));
+        assertThat(cancelled.cancel(true), is(true));
+
+        // 취소된 호출의 연결이 닫히면 기다리던 호출이 새 연결을 맺지만, 응답이 늦어 타임아웃으로 실패한다.
+        try {
+            pending.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException error) {
+            assertThat(error.getCause(), instanceOf(ClientExecutionTimeoutException.class));
+        }
+
+        server.setLatency(0, TimeUnit.MILLISECONDS);
+        val result = nettyTransport.invokeAsync(new InvokeRequest().withFunctionName(FUNCTION_ARN).withPayload("{}")).get(5, TimeUnit.SECONDS);
+        assertThat(result.getStatusCode(), is(200));
+        assertThat(nettyTransport.getOpenConnections(), is(1));
+    }
+
+    @Test
+    public void verifyHostNameOfServerCertificate() throws Exception {
+        for (String host : Arrays.asList("localhost", "lambda.example.com")) {
+            val certificate = new SelfSignedCertificate(host);
+            val tlsServer = LoopbackLambdaServer.start(SslContext.newServerContext(certificate.certificate(), certificate.privateKey()));
+            // 인증서는 신뢰하지만, 접속한 호스트(localhost)의 인증서인지는 따로 확인해야 한다.
+            val tlsTransport = new NettyTransport(CREDENTIALS); {
+                tlsTransport.setEndpoint(tlsServer.getEndpoint());
+                tlsTransport.setSslContext(SslContext.newClientContext(certificate.certificate()));
+            }
+            try {
+                val invocation = tlsTransport.invokeAsync(new InvokeRequest().withFunctionName(FUNCTION_ARN).withPayload("{}"));
+                if ("localhost".equals(host)) {
+                    assertThat(invocation.get(5, TimeUnit.SECONDS).getStatusCode(), is(200));
+                } else {
+                    try {
+                        invocation.get(5, TimeUnit.SECONDS);
+                        fail();
+                    } catch (ExecutionException error) {
+                        assertThat(hasCause(error, SSLHandshakeException.class), is(true));
+                        assertThat(tlsServer.getInvocations(), is(0));
+                    }
+                }
+            } finally {
+                tlsTransport.shutdown();
+                tlsServer.shutdown();
+                certificate.delete();
+            }
+        }
+    }
+
+    static boolean hasCause(Throwable error, Class<? extends Throwable> type) {
+        for (Throwable cause = error; Objects.nonNull(cause); cause = cause.getCause()) {
+            if (type.isInstance(cause)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void abortConnectionOnCancel() throws Exception {
+        server.setLatency(5, TimeUnit.SECONDS);
+        val executor = Executors.newFixedThreadPool(2);
+        val abortableClient = AbortableAWSLambdaAsyncClient.build(AWSLambdaAsyncClientBuilder.standard()
+                                                                                           .withCredentials(CREDENTIALS)
+                                                                                           .withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(server.getEndpoint().toString(), "ap-northeast-2")), executor);
+        try {
+            val abortableTransport = new SdkClientTransport(abortableClient);
+            for (AWSLambdaTransport transport : Arrays.asList(abortableTransport, nettyTransport, sdkTransport)) {
+                int invocations = server.getInvocations();
+                val invocation = transport.invokeAsync(new InvokeRequest().withFunctionName(FUNCTION_ARN).withPayload("{}"));
+                while (server.getInvocations() == invocations) {
+                    Thread.sleep(1);
+                }
+
+                assertThat(invocation.cancel(true), is(true));
+                // HTTP 요청을 알려주지 않는 SDK 클라이언트는 스레드만 인터럽트하고 연결을 끊지 않는다.
+                assertThat(((AWSLambdaTransport.AbortableInvocation) invocation).isAborted(), is(transport != sdkTransport));
+            }
+
+            val registry = new SimpleMeterRegistry();
+            val requestFactory = new AWSLambdaClientRequestFactory(abortableTransport, new CachingClientContextFactory(new MockEnvironment()), new PassThroughRequestPayloadExtractor()); {
+                requestFactory.setMetrics(new AWSLambdaMetrics(registry));
+            }
+            val invocations = server.getInvocations();
+            val request = (AWSLambdaClientRequest) requestFactory.createRequest(FUNCTION_ARN, MockServerHttpRequest.of("/hello", MediaType.APPLICATION_JSON, "{}"));
+            val response = request.executeAsync();
+            while (server.getInvocations() == invocations) {
+                Thread.sleep(1);
+            }
+
+            assertThat(request.cancel(), is(true));
+            try {
+                response.get(5, TimeUnit.SECONDS);
+                fail();
+            } catch (ExecutionException expected) {
+                assertThat(expected.getCause(), instanceOf(AWSLambdaClientRequest.InvocationCancelledException.class));
+            }
+            assertThat(registry.get(AWSLambdaMetrics.RECLAIMED_CONNECTIONS).counter().count(), is(1.0));
+        } finally {
+            abortableClient.shutdown();
+        }
+    }
+
+    @Test
+    public void createRequestWithTransport() throws Exception {
+        val requestFactory = new AWSLambdaClientRequestFactory(nettyTransport, new CachingClientContextFactory(new MockEnvironment()), new PassThroughRequestPayloadExtractor());
+        val request = (AWSLambdaClientRequest) requestFactory.createRequest(FUNCTION_ARN, MockServerHttpRequest.of("/hello", MediaType.APPLICATION_JSON, "{\"message\":\"hello\"}"));
+
+        ClientHttpResponse response = request.executeAsync().get(5, TimeUnit.SECONDS);
+        assertThat(response.getStatusCode(), is(HttpStatus.OK));
+        assertThat(StreamUtils.copyToString(response.getBody(), StandardCharsets.UTF_8), is("{\"message\":\"hello\"}"));
+        assertThat(server.getLastInvocation().getHeader("X-Amz-Client-Context"), notNullValue());
+    }
+
+}
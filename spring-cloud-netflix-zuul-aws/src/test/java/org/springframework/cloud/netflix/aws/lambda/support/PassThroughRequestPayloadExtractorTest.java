@@ -0,0 +1,98 @@
+package org.springframework.cloud.netflix.aws.lambda.support;
+
+import lombok.val;
+import org.junit.Test;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaMultipartPayloadWriter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.server.ServerHttpRequest;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.springframework.http.MediaType.APPLICATION_FORM_URLENCODED;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+/**
+ * @author arawn.kr@gmail.com
+ */
+public class PassThroughRequestPayloadExtractorTest {
+
+    final PassThroughRequestPayloadExtractor extractor = new PassThroughRequestPayloadExtractor(true);
+
+    @Test
+    public void jsonBodyIsPassedThroughUnparsed() {
+        val body = "{ \"attribute1\" : \"value\",\n  \"attribute2\" : 321 }";
+        val request = MockServerHttpRequest.of("http://localhost/lambda", APPLICATION_JSON, body);
+
+        val payload = extractor.extractBytes(request);
+        assertThat(StandardCharsets.UTF_8.decode(payload).toString(), is(body));
+    }
+
+    @Test
+    public void jsonBodyWithContentLength() {
+        val body = "[{\"attribute\":\"value\"}]";
+        val request = MockServerHttpRequest.of("http://localhost/lambda", APPLICATION_JSON, body); {
+            request.getHeaders().setContentLength(body.getBytes().length);
+        }
+
+        val payload = extractor.extractBytes(request);
+        assertThat(payload.remaining(), is(body.getBytes().length));
+        assertThat(extractor.extract(MockServerHttpRequest.of("http://localhost/lambda", APPLICATION_JSON, body)), is(body));
+    }
+
+    @Test
+    public void rejectBodyOverLimit() {
+        val extractor = new PassThroughRequestPayloadExtractor(); {
+            extractor.setMaxPayloadBytes(16);
+        }
+
+        // 클라이언트가 보낸 Content-Length 만큼 미리 할당하지 않는다.
+        val hugeContentLength = MockServerHttpRequest.of("http://localhost/lambda", APPLICATION_JSON, "{}"); {
+            hugeContentLength.getHeaders().setContentLength(Integer.MAX_VALUE + 1L);
+        }
+        assertTooLarge(extractor, hugeContentLength);
+
+        // Content-Length가 없다면 읽는 도중에 거절한다.
+        assertTooLarge(extractor, MockServerHttpRequest.of("http://localhost/lambda", APPLICATION_JSON, "[\"0123456789\",\"0123456789\"]"));
+        assertThat(extractor.extract(MockServerHttpRequest.of("http://localhost/lambda", APPLICATION_JSON, "[\"0123456789\"]")), is("[\"0123456789\"]"));
+    }
+
+    @Test
+    public void emptyJsonBody() {
+        val request = MockServerHttpRequest.of("http://localhost/lambda", APPLICATION_JSON, "");
+
+        assertThat(extractor.extract(request), is("null"));
+    }
+
+    @Test(expected = HttpMessageNotReadableException.class)
+    public void malformedJsonBody() {
+        val request = MockServerHttpRequest.of("http://localhost/lambda", APPLICATION_JSON, "{\"attribute\":");
+
+        extractor.extractBytes(request);
+    }
+
+    @Test(expected = HttpMessageNotReadableException.class)
+    public void multipleRootValues() {
+        val request = MockServerHttpRequest.of("http://localhost/lambda", APPLICATION_JSON, "{} {}");
+
+        extractor.extractBytes(request);
+    }
+
+    @Test
+    public void formBodyIsConverted() {
+        val request = MockServerHttpRequest.of("http://localhost/lambda", APPLICATION_FORM_URLENCODED, "say=hi&to=arawn");
+
+        assertThat(extractor.extract(request), is("{\"say\":\"hi\",\"to\":\"arawn\"}"));
+    }
+
+    static void assertTooLarge(PassThroughRequestPayloadExtractor extractor, ServerHttpRequest request) {
+        try {
+            extractor.extractBytes(request);
+            fail();
+        } catch (AWSLambdaMultipartPayloadWriter.PayloadTooLargeException expected) {
+        }
+    }
+
+}
@@ -0,0 +1,96 @@
+package org.springframework.cloud.netflix.aws.lambda.support;
+
+import com.amazonaws.ResponseMetadata;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.http.HttpResponse;
+import com.amazonaws.http.SdkHttpMetadata;
+import com.amazonaws.services.lambda.AbstractAWSLambdaAsync;
+import com.amazonaws.services.lambda.model.InvokeRequest;
+import com.amazonaws.services.lambda.model.InvokeResult;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 실제 AWS 람다 대신 주어진 함수로 응답하는 테스트용 클라이언트
+ */
+public class StubAWSLambdaAsync extends AbstractAWSLambdaAsync {
+
+    private final Function<InvokeRequest, InvokeResult> handler;
+    private final Executor executor;
+    private final AtomicInteger invocations = new AtomicInteger();
+
+    public StubAWSLambdaAsync(Function<InvokeRequest, InvokeResult> handler) {
+        this(handler, ForkJoinPool.commonPool());
+    }
+
+    public StubAWSLambdaAsync(Function<InvokeRequest, InvokeResult> handler, Executor executor) {
+        this.handler = handler;
+        this.executor = executor;
+    }
+
+    public int getInvocations() {
+        return invocations.get();
+    }
+
+    @Override
+    public InvokeResult invoke(InvokeRequest request) {
+        invocations.incrementAndGet();
+        return handler.apply(request);
+    }
+
+    @Override
+    public Future<InvokeResult> invokeAsync(InvokeRequest request, AsyncHandler<InvokeRequest, InvokeResult> asyncHandler) {
+        invocations.incrementAndGet();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                InvokeResult result = handler.apply(request);
+                if (asyncHandler != null) {
+                    asyncHandler.onSuccess(request, result);
+                }
+                return result;
+            } catch (RuntimeException error) {
+                if (asyncHandler != null) {
+                    asyncHandler.onError(error);
+                }
+                throw error;
+            }
+        }, executor);
+    }
+
+    @Override
+    public Future<InvokeResult> invokeAsync(InvokeRequest request) {
+        return invokeAsync(request, null);
+    }
+
+
+    public static InvokeResult result(int statusCode, String payload) {
+        HttpResponse httpResponse = new HttpResponse(null, null); {
+            httpResponse.setStatusCode(statusCode);
+            httpResponse.addHeader("Content-Type", "application/json");
+            httpResponse.addHeader("Content-Length", String.valueOf(payload.length()));
+            httpResponse.addHeader("x-amzn-RequestId", "stub-request-id");
+        }
+        InvokeResult result = new InvokeResult().withStatusCode(statusCode)
+                                                .withPayload(ByteBuffer.wrap(payload.getBytes(StandardCharsets.UTF_8))); {
+            result.setSdkHttpMetadata(SdkHttpMetadata.from(httpResponse));
+            result.setSdkResponseMetadata(new ResponseMetadata(Collections.singletonMap(ResponseMetadata.AWS_REQUEST_ID, "stub-request-id")));
+        }
+        return result;
+    }
+
+    public static String payloadAsString(InvokeRequest request) {
+        if (request.getPayload() == null) {
+            return null;
+        }
+        return StandardCharsets.UTF_8.decode(request.getPayload().duplicate()).toString();
+    }
+
+}
@@ -0,0 +1,266 @@
+package org.springframework.cloud.netflix.zuul.aws;
+
+import com.amazonaws.services.lambda.AWSLambdaAsync;
+import com.amazonaws.services.lambda.model.AWSLambdaException;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.val;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.util.EnvironmentTestUtils;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaClientRequest;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaClientRequestFactory;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaConcurrencyLimiter;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaConnectionPool;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaInvocationCoalescer;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaInvocationHedger;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaKeepWarmScheduler;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaMetrics;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaReactiveRouter;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaResponseCache;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaRetryPolicy;
+import org.springframework.cloud.netflix.aws.lambda.support.MockServerHttpRequest;
+import org.springframework.cloud.netflix.aws.lambda.support.NettyTransport;
+import org.springframework.cloud.netflix.aws.lambda.support.StubAWSLambdaAsync;
+import org.springframework.cloud.netflix.zuul.filters.ZuulProperties;
+import org.springframework.cloud.netflix.zuul.filters.route.AWSLambdaRoutingFilter;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * @author arawn.kr@gmail.com
+ */
+public class AWSLambdaZuulAutoConfigurationTest {
+
+    static final String FUNCTION_ARN = "arn:aws:lambda:ap-northeast-2:123456789012:function:hello";
+
+    HttpServer lambdaEndpoint;
+    AtomicInteger endpointRequests = new AtomicInteger();
+    AnnotationConfigApplicationContext context;
+
+    @Before
+    public void setUp() throws Exception {
+        // 권한이 없는 자격증명으로 호출한 것처럼 응답한다.
+        lambdaEndpoint = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        lambdaEndpoint.createContext("/", exchange -> {
+            endpointRequests.incrementAndGet();
+            val body = "{\"Type\":\"User\",\"message\":\"denied\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.getResponseHeaders().add("x-amzn-ErrorType", "AccessDeniedException");
+            exchange.sendResponseHeaders(403, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        lambdaEndpoint.setExecutor(Executors.newCachedThreadPool());
+        lambdaEndpoint.start();
+    }
+
+    @After
+    public void tearDown() {
+        if (context != null) {
+            context.close();
+        }
+        lambdaEndpoint.stop(0);
+    }
+
+    @Test
+    public void configureSharedClientSizedFromZuul() {
+        context = createContext(ZuulConfig.class,
+                "zuul.routes.hello.url=arn:aws:lambda:ap-northeast-2:123456789012:function:hello",
+                "zuul.routes.world.service-id=arn:aws:lambda:ap-northeast-2:123456789012:function:world",
+                "zuul.routes.google.url=http://www.google.com",
+                "zuul.semaphore.max-semaphores=20",
+                "zuul.aws.lambda.prewarm.connections=4");
+
+        // 람다 라우트 2 개 * 세마포어 20 * 여유분 1.2
+        val connectionPool = context.getBean(AWSLambdaConnectionPool.class);
+        assertThat(connectionPool.getMaxConnections(), is(48));
+        assertThat(connectionPool.getMaxThreads(), is(48));
+        assertThat(connectionPool.getMaxQueuedInvocations(), is(48));
+        assertThat(context.getBean(AWSLambdaAsync.class) == connectionPool.getClient(), is(true));
+        assertThat(context.getBeansOfType(AWSLambdaClientRequestFactory.class).size(), is(1));
+        assertThat(context.getBeansOfType(AWSLambdaRoutingFilter.class).size(), is(1));
+        assertThat(context.getBean(AWSLambdaReactiveRouter.class), notNullValue());
+
+        // 시작할 때 연결을 미리 맺어둔다.
+        assertThat(endpointRequests.get(), is(4));
+        assertThat(connectionPool.getAvailableConnections() > 0, is(true));
+        assertThat(connectionPool.getLeasedConnections(), is(0));
+
+        val registry = context.getBean(MeterRegistry.class);
+        assertThat(registry.get("aws.lambda.connections.max").gauge().value(), is(48.0));
+        assertThat(registry.get("aws.lambda.connections.pending").gauge().value(), is(0.0));
+    }
+
+    @Test
+    public void sizeFromHystrixThreadPool() {
+        context = createContext(ZuulConfig.class,
+                "zuul.routes.hello.url=arn:aws:lambda:ap-northeast-2:123456789012:function:hello",
+                "zuul.routes.world.url=arn:aws:lambda:ap-northeast-2:123456789012:function:world",
+                "zuul.ribbon-isolation-strategy=THREAD",
+                "zuul.aws.lambda.client.headroom=1",
+                "zuul.aws.lambda.prewarm.enabled=false");
+
+        // 두 라우트가 Hystrix 기본 스레드풀(coreSize 10)을 함께 사용한다.
+        assertThat(context.getBean(AWSLambdaConnectionPool.class).getMaxConnections(), is(10));
+        assertThat(endpointRequests.get(), is(0));
+    }
+
+    @Test
+    public void routeWithNettyTransport() throws Exception {
+        context = createContext(ZuulConfig.class,
+                "zuul.routes.hello.url=arn:aws:lambda:ap-northeast-2:123456789012:function:hello",
+                "zuul.semaphore.max-semaphores=20",
+                "zuul.aws.lambda.transport=netty",
+                "zuul.aws.lambda.prewarm.enabled=false");
+
+        val requestFactory = context.getBean(AWSLambdaClientRequestFactory.class);
+        val request = (AWSLambdaClientRequest) requestFactory.createRequest(FUNCTION_ARN, MockServerHttpRequest.of("/hello", MediaType.APPLICATION_JSON, "{}"));
+        try {
+            request.executeAsync().get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException error) {
+            // 람다 서비스의 오류 응답은 AWS SDK와 같은 예외로 바뀐다.
+            assertThat(error.getCause() instanceof AWSLambdaException, is(true));
+            assertThat(((AWSLambdaException) error.getCause()).getStatusCode(), is(403));
+            assertThat(((AWSLambdaException) error.getCause()).getErrorCode(), is("AccessDeniedException"));
+        }
+        assertThat(endpointRequests.get(), is(1));
+        assertThat(context.getBean(NettyTransport.class).getOpenConnections(), is(1));
+    }
+
+    @Test
+    public void monitorDefinedFeaturesAndStartKeepWarm() {
+        context = createContext(FeatureConfig.class,
+                "zuul.routes.hello.url=arn:aws:lambda:ap-northeast-2:123456789012:function:hello",
+                "zuul.aws.lambda.prewarm.enabled=false");
+
+        val registry = context.getBean(MeterRegistry.class);
+        assertThat(registry.find("aws.lambda.concurrency.rejected").functionCounter(), notNullValue());
+        assertThat(registry.find("aws.lambda.hedger.hedged").functionCounter(), notNullValue());
+        assertThat(registry.find("aws.lambda.retry.retries").functionCounter(), notNullValue());
+        assertThat(registry.find("aws.lambda.coalescer.invocations").functionCounter(), notNullValue());
+        assertThat(registry.find("aws.lambda.cache.size").gauge(), notNullValue());
+        assertThat(registry.find(AWSLambdaMetrics.WARMING_WARMUPS).functionCounter(), notNullValue());
+
+        val keepWarmLifecycle = context.getBean("awsLambdaKeepWarmSchedulerLifecycle", SmartLifecycle.class);
+        assertThat(keepWarmLifecycle.isRunning(), is(true));
+        context.close();
+        assertThat(keepWarmLifecycle.isRunning(), is(false));
+    }
+
+    @Test
+    public void rejectMalformedLambdaArn() {
+        try {
+            context = createContext(ZuulConfig.class,
+                    "zuul.routes.hello.service-id=arn:aws:lambda:hello",
+                    "zuul.aws.lambda.prewarm.enabled=false");
+            fail();
+        } catch (BeanCreationException error) {
+            assertThat(error.getMostSpecificCause().getMessage(), containsString("arn:aws:lambda:hello"));
+        }
+    }
+
+    @Test
+    public void useUserDefinedLambdaClient() {
+        context = createContext(UserClientConfig.class);
+
+        assertThat(context.getBeansOfType(AWSLambdaConnectionPool.class).isEmpty(), is(true));
+        assertThat(context.getBean(AWSLambdaAsync.class) instanceof StubAWSLambdaAsync, is(true));
+        assertThat(context.getBeansOfType(AWSLambdaRoutingFilter.class).size(), is(1));
+    }
+
+    AnnotationConfigApplicationContext createContext(Class<?> config, String... pairs) {
+        val context = new AnnotationConfigApplicationContext(); {
+            EnvironmentTestUtils.addEnvironment(context, pairs);
+            EnvironmentTestUtils.addEnvironment(context,
+                    "zuul.aws.lambda.region=ap-northeast-2",
+                    "zuul.aws.lambda.endpoint=http://localhost:" + lambdaEndpoint.getAddress().getPort(),
+                    "zuul.aws.lambda.credentials.access-key=access",
+                    "zuul.aws.lambda.credentials.secret-key=secret");
+            context.register(config, AWSLambdaZuulAutoConfiguration.class);
+            context.refresh();
+        }
+        return context;
+    }
+
+
+    @Configuration
+    @EnableConfigurationProperties(ZuulProperties.class)
+    static class ZuulConfig {
+
+        @Bean
+        public MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+    }
+
+    @Configuration
+    @EnableConfigurationProperties(ZuulProperties.class)
+    static class FeatureConfig extends ZuulConfig {
+
+        @Bean
+        public AWSLambdaConcurrencyLimiter concurrencyLimiter() {
+            return new AWSLambdaConcurrencyLimiter();
+        }
+
+        @Bean(destroyMethod = "shutdown")
+        public AWSLambdaInvocationHedger invocationHedger() {
+            return new AWSLambdaInvocationHedger();
+        }
+
+        @Bean
+        public AWSLambdaRetryPolicy retryPolicy() {
+            return new AWSLambdaRetryPolicy();
+        }
+
+        @Bean
+        public AWSLambdaInvocationCoalescer invocationCoalescer() {
+            return new AWSLambdaInvocationCoalescer();
+        }
+
+        @Bean
+        public AWSLambdaResponseCache responseCache() {
+            return new AWSLambdaResponseCache(1024 * 1024);
+        }
+
+        @Bean
+        public AWSLambdaKeepWarmScheduler keepWarmScheduler(AWSLambdaAsync awsLambdaAsync) {
+            return new AWSLambdaKeepWarmScheduler(awsLambdaAsync);
+        }
+
+    }
+
+    @Configuration
+    @EnableConfigurationProperties(ZuulProperties.class)
+    static class UserClientConfig {
+
+        @Bean
+        public AWSLambdaAsync awsLambdaAsync() {
+            return new StubAWSLambdaAsync(request -> StubAWSLambdaAsync.result(200, "{}"));
+        }
+
+    }
+
+}
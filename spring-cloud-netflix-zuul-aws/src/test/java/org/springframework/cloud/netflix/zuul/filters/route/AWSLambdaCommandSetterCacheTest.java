@@ -0,0 +1,97 @@
+package org.springframework.cloud.netflix.zuul.filters.route;
+
+import com.netflix.config.ConfigurationManager;
+import com.netflix.hystrix.HystrixCommandKey;
+import com.netflix.hystrix.HystrixCommandProperties;
+import com.netflix.hystrix.strategy.properties.HystrixPropertiesFactory;
+import lombok.val;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaConcurrencyLimiter;
+import org.springframework.cloud.netflix.zuul.filters.ZuulProperties;
+
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author arawn.kr@gmail.com
+ */
+public class AWSLambdaCommandSetterCacheTest {
+
+    static final String LAMBDA_A_TIMEOUT = "hystrix.command.lambda-a.execution.isolation.thread.timeoutInMilliseconds";
+    static final String LAMBDA_A_SEMAPHORE = "hystrix.command.lambda-a.execution.isolation.semaphore.maxConcurrentRequests";
+    static final String SHARED_TIMEOUT = "hystrix.command.service-lambda.execution.isolation.thread.timeoutInMilliseconds";
+
+    final ZuulProperties zuulProperties = new ZuulProperties();
+    final AWSLambdaCommandSetterCache setterCache = new AWSLambdaCommandSetterCache(zuulProperties);
+
+    @After
+    public void tearDown() {
+        setterCache.close();
+        ConfigurationManager.getConfigInstance().clearProperty(SHARED_TIMEOUT);
+        ConfigurationManager.getConfigInstance().clearProperty(LAMBDA_A_TIMEOUT);
+        ConfigurationManager.getConfigInstance().clearProperty(LAMBDA_A_SEMAPHORE);
+    }
+
+    @Test
+    public void settersAreCachedPerCommandKey() {
+        assertThat(setterCache.getCommandSetter("lambda-a"), sameInstance(setterCache.getCommandSetter("lambda-a")));
+        assertThat(setterCache.getCommandSetter("lambda-a"), not(sameInstance(setterCache.getCommandSetter("lambda-b"))));
+        assertThat(setterCache.getObservableCommandSetter("lambda-a"), sameInstance(setterCache.getObservableCommandSetter("lambda-a")));
+    }
+
+    @Test
+    public void hystrixPropertiesFollowSharedTimeout() {
+        val setter = setterCache.getCommandSetter("lambda-a");
+        val properties = HystrixPropertiesFactory.getCommandProperties(HystrixCommandKey.Factory.asKey("lambda-a"), HystrixCommandProperties.Setter());
+
+        ConfigurationManager.getConfigInstance().setProperty(SHARED_TIMEOUT, 5250);
+        assertThat(properties.executionTimeoutInMilliseconds().get(), is(5250));
+        assertThat(setterCache.getCommandSetter("lambda-a"), sameInstance(setter));
+
+        ConfigurationManager.getConfigInstance().setProperty(LAMBDA_A_TIMEOUT, 1000);
+        ConfigurationManager.getConfigInstance().setProperty(SHARED_TIMEOUT, 7000);
+        assertThat(properties.executionTimeoutInMilliseconds().get(), is(1000));
+    }
+
+    @Test
+    public void hystrixSemaphoreFollowsConcurrencyLimiter() {
+        setterCache.getObservableCommandSetter("lambda-a");
+        val concurrencyLimiter = new AWSLambdaConcurrencyLimiter(); {
+            concurrencyLimiter.setRoutes(Collections.singleton("lambda-a"));
+        }
+
+        setterCache.setConcurrencyLimiter(concurrencyLimiter);
+        assertThat(ConfigurationManager.getConfigInstance().getInt(LAMBDA_A_SEMAPHORE), is(concurrencyLimiter.getMaxLimit()));
+
+        setterCache.setConcurrencyLimiter(null);
+        assertThat(ConfigurationManager.getConfigInstance().getInt(LAMBDA_A_SEMAPHORE), is(zuulProperties.getSemaphore().getMaxSemaphores()));
+    }
+
+    @Test
+    public void closeRemovesAppliedPropertiesAndStopsListening() {
+        setterCache.getCommandSetter("lambda-a");
+        ConfigurationManager.getConfigInstance().setProperty(SHARED_TIMEOUT, 5250);
+        assertThat(ConfigurationManager.getConfigInstance().getInt(LAMBDA_A_TIMEOUT), is(5250));
+
+        setterCache.close();
+        assertThat(ConfigurationManager.getConfigInstance().containsKey(LAMBDA_A_TIMEOUT), is(false));
+        assertThat(ConfigurationManager.getConfigInstance().containsKey(LAMBDA_A_SEMAPHORE), is(false));
+
+        ConfigurationManager.getConfigInstance().setProperty(SHARED_TIMEOUT, 7000);
+        assertThat(ConfigurationManager.getConfigInstance().containsKey(LAMBDA_A_TIMEOUT), is(false));
+    }
+
+    @Test
+    public void routeTimeoutFallsBackToSharedCommandKey() {
+        ConfigurationManager.getConfigInstance().setProperty("hystrix.command.service-lambda.execution.isolation.thread.timeoutInMilliseconds", 5250);
+        assertThat(AWSLambdaCommand.createSetter("lambda-a", zuulProperties).getExecutionTimeoutInMilliseconds(), is(5250));
+
+        ConfigurationManager.getConfigInstance().setProperty("hystrix.command.lambda-a.execution.isolation.thread.timeoutInMilliseconds", 1000);
+        assertThat(AWSLambdaCommand.createSetter("lambda-a", zuulProperties).getExecutionTimeoutInMilliseconds(), is(1000));
+        assertThat(AWSLambdaCommand.createSetter("lambda-b", zuulProperties).getExecutionTimeoutInMilliseconds(), is(5250));
+    }
+
+}
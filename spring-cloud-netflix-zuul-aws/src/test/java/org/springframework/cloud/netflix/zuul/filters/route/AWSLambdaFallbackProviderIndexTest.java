@@ -0,0 +1,72 @@
+package org.springframework.cloud.netflix.zuul.filters.route;
+
+import lombok.val;
+import org.junit.Test;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author arawn.kr@gmail.com
+ */
+public class AWSLambdaFallbackProviderIndexTest {
+
+    static final String HELLO_ARN = "arn:aws:lambda:ap-northeast-2:123456789012:function:hello";
+    static final String WORLD_ARN = "arn:aws:lambda:ap-northeast-2:123456789012:function:world";
+    static final String OTHER_ACCOUNT_ARN = "arn:aws:lambda:us-east-1:210987654321:function:hello:prod";
+
+    final FallbackProvider hello = new RouteFallbackProvider(HELLO_ARN);
+    final FallbackProvider helloRoute = new RouteFallbackProvider("hello-route");
+    final FallbackProvider account = new RouteFallbackProvider("arn:aws:lambda:ap-northeast-2:123456789012:function:*");
+    final FallbackProvider prodAlias = new RouteFallbackProvider("arn:aws:lambda:*:*:function:*:prod");
+    final FallbackProvider defaults = new RouteFallbackProvider("*");
+
+    @Test
+    public void exactArnIsPreferred() {
+        val index = new AWSLambdaFallbackProviderIndex(Arrays.asList(defaults, account, helloRoute, hello));
+
+        assertThat(index.find("hello-route", HELLO_ARN), sameInstance(hello));
+        assertThat(index.find(null, HELLO_ARN), sameInstance(hello));
+    }
+
+    @Test
+    public void exactRouteIdIsPreferredOverPatterns() {
+        val index = new AWSLambdaFallbackProviderIndex(Arrays.asList(defaults, account, helloRoute));
+
+        assertThat(index.find("hello-route", HELLO_ARN), sameInstance(helloRoute));
+    }
+
+    @Test
+    public void mostSpecificPatternWins() {
+        val index = new AWSLambdaFallbackProviderIndex(Arrays.asList(defaults, prodAlias, account));
+
+        assertThat(index.find("world-route", WORLD_ARN), sameInstance(account));
+        assertThat(index.find("other-route", OTHER_ACCOUNT_ARN), sameInstance(prodAlias));
+        assertThat(index.find("unknown", "arn:aws:lambda:us-east-1:210987654321:function:hello"), sameInstance(defaults));
+    }
+
+    @Test
+    public void notFound() {
+        val index = new AWSLambdaFallbackProviderIndex(Arrays.asList(hello, account));
+
+        assertThat(index.find("other-route", OTHER_ACCOUNT_ARN), nullValue());
+        assertThat(index.find("other-route", OTHER_ACCOUNT_ARN), nullValue());
+        assertThat(new AWSLambdaFallbackProviderIndex(null).find("route", HELLO_ARN), nullValue());
+    }
+
+
+    static class RouteFallbackProvider implements FallbackProvider {
+
+        final String route;
+        RouteFallbackProvider(String route) { this.route = route; }
+
+        @Override public String getRoute() { return route; }
+        @Override public ClientHttpResponse fallbackResponse(Throwable cause) { return null; }
+        @Override public ClientHttpResponse fallbackResponse() { return null; }
+
+    }
+
+}
@@ -0,0 +1,366 @@
+package org.springframework.cloud.netflix.zuul.filters.route;
+
+import com.netflix.zuul.context.RequestContext;
+import com.netflix.zuul.exception.ZuulException;
+import com.netflix.util.Pair;
+import com.netflix.zuul.monitoring.CounterFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.val;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaClientRequestFactory;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaEventDispatcher;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaEventSpool;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaFunctionErrorHandler;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaMetrics;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaMultipartPayloadWriter;
+import org.springframework.cloud.netflix.aws.lambda.AWSLambdaResponseCache;
+import org.springframework.cloud.netflix.aws.lambda.support.DefaultClientContextFactory;
+import org.springframework.cloud.netflix.aws.lambda.support.DefaultRequestPayloadExtractor;
+import org.springframework.cloud.netflix.aws.lambda.support.StubAWSLambdaAsync;
+import org.springframework.cloud.netflix.zuul.filters.ZuulProperties;
+import org.springframework.cloud.netflix.zuul.metrics.EmptyCounterFactory;
+import org.springframework.cloud.netflix.zuul.util.ZuulRuntimeException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.springframework.cloud.netflix.zuul.filters.support.FilterConstants.PROXY_KEY;
+import static org.springframework.cloud.netflix.zuul.filters.support.FilterConstants.SERVICE_ID_KEY;
+
+/**
+ * @author arawn.kr@gmail.com
+ */
+public class AWSLambdaRoutingFilterTest {
+
+    static final String FUNCTION_ARN = "arn:aws:lambda:ap-northeast-2:123456789012:function:hello";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    MockHttpServletRequest servletRequest;
+    MockHttpServletResponse servletResponse;
+    CountDownLatch invoked;
+
+    @Before
+    public void setUp() {
+        servletRequest = new MockHttpServletRequest("GET", "/lambda");
+        servletRequest.setAsyncSupported(true);
+        servletResponse = new MockHttpServletResponse();
+        invoked = new CountDownLatch(1);
+
+        val context = new RequestContext(); {
+            context.setRequest(servletRequest);
+            context.setResponse(servletResponse);
+            context.set(SERVICE_ID_KEY, FUNCTION_ARN);
+        }
+        RequestContext.testSetCurrentContext(context);
+    }
+
+    @After
+    public void tearDown() {
+        RequestContext.testSetCurrentContext(null);
+    }
+
+    @Test
+    public void asyncInvocationDoesNotBlockRequestThread() throws Exception {
+        val lambdaClient = new StubAWSLambdaAsync(request -> {
+            await(invoked);
+            return StubAWSLambdaAsync.result(200, "{\"say\":\"hello\"}");
+        });
+        val filter = createFilter(lambdaClient); {
+            filter.setAsyncInvocation(true);
+        }
+
+        // 필터는 이미 시작한 비동기 컨텍스트를 사용하므로, 호출이 시작되기 전에 리스너를 등록해둔다.
+        val completed = new CountDownLatch(1);
+        servletRequest.startAsync().addListener(new CompletionListener(completed));
+
+        filter.run();
+        assertThat(completed.getCount(), is(1L));
+        invoked.countDown();
+
+        assertThat(completed.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(servletResponse.getStatus(), is(200));
+        assertThat(servletResponse.getContentAsString(), is("{\"say\":\"hello\"}"));
+        assertThat(servletResponse.getHeader("Content-Type"), is("application/json"));
+        assertThat(servletResponse.containsHeader("Content-Length"), is(false));
+    }
+
+    @Test
+    public void asyncInvocationWritesFunctionError() throws Exception {
+        val lambdaClient = new StubAWSLambdaAsync(request -> StubAWSLambdaAsync.result(502, "{\"errorMessage\":\"boom\"}").withFunctionError("Unhandled"));
+        val filter = createFilter(lambdaClient); {
+            filter.setAsyncInvocation(true);
+        }
+
+        val completed = new CountDownLatch(1);
+        servletRequest.startAsync().addListener(new CompletionListener(completed));
+
+        filter.run();
+
+        assertThat(completed.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(servletResponse.getStatus(), is(502));
+    }
+
+    @Test
+    public void mapFunctionErrorWithRule() throws Exception {
+        val errorHandler = new AWSLambdaFunctionErrorHandler(); {
+            errorHandler.addRule("hello", "ValidationError", HttpStatus.BAD_REQUEST, "{\"message\":\"{errorMessage}\"}");
+        }
+        val filter = createFilter(validationError()); {
+            filter.setFunctionErrorHandler(errorHandler);
+        }
+
+        RequestContext.getCurrentContext().set(PROXY_KEY, "hello");
+        filter.run();
+
+        val context = RequestContext.getCurrentContext();
+        assertThat(context.getResponseStatusCode(), is(400));
+        assertThat(StreamUtils.copyToString(context.getResponseDataStream(), StandardCharsets.UTF_8), is("{\"message\":\"name is required\"}"));
+        assertThat(errorHandler.getErrorCount("ValidationError"), is(1L));
+    }
+
+    @Test
+    public void failFunctionErrorWithoutRule() throws Exception {
+        val errorHandler = new AWSLambdaFunctionErrorHandler(); {
+            errorHandler.addRule("hello", "ValidationError", HttpStatus.BAD_REQUEST, "{\"message\":\"{errorMessage}\"}");
+        }
+        val filter = createFilter(validationError()); {
+            filter.setFunctionErrorHandler(errorHandler);
+        }
+
+        RequestContext.getCurrentContext().set(PROXY_KEY, "world");
+        CounterFactory.initialize(new EmptyCounterFactory());
+        try {
+            filter.run();
+            fail();
+        } catch (ZuulRuntimeException error) {
+            assertThat(((ZuulException) error.getCause()).nStatusCode, is(500));
+        }
+        assertThat(errorHandler.getErrorCount("ValidationError"), is(1L));
+    }
+
+    @Test
+    public void passThroughProxyErrorResponse() throws Exception {
+        val lambdaClient = new StubAWSLambdaAsync(request -> StubAWSLambdaAsync.result(200, "{\"statusCode\":409,\"headers\":{\"X-Conflict\":\"version\"},\"body\":\"{\\\"message\\\":\\\"conflict\\\"}\"}"));
+        val errorHandler = new AWSLambdaFunctionErrorHandler();
+        val filter = createFilter(lambdaClient, "hello"); {
+            filter.setFunctionErrorHandler(errorHandler);
+        }
+
+        RequestContext.getCurrentContext().set(PROXY_KEY, "hello");
+        filter.run();
+
+        // 람다 함수가 만든 4xx 응답은 함수 오류가 아니다.
+        val context = RequestContext.getCurrentContext();
+        assertThat(context.getResponseStatusCode(), is(409));
+        assertThat(StreamUtils.copyToString(context.getResponseDataStream(), StandardCharsets.UTF_8), is("{\"message\":\"conflict\"}"));
+        assertThat(context.getZuulResponseHeaders().contains(new Pair<>("X-Conflict", "version")), is(true));
+        assertThat(errorHandler.getErrorTypes().isEmpty(), is(true));
+    }
+
+    @Test
+    public void rejectEventPayloadOverLimit() throws Exception {
+        CounterFactory.initialize(new EmptyCounterFactory());
+        servletRequest.setMethod("POST");
+        servletRequest.setContentType("application/json");
+        servletRequest.setContent(("{\"data\":\"" + String.join("", Collections.nCopies(1024, "a")) + "\"}").getBytes(StandardCharsets.UTF_8));
+        val lambdaClient = new StubAWSLambdaAsync(request -> StubAWSLambdaAsync.result(202, ""));
+        val eventDispatcher = new AWSLambdaEventDispatcher(lambdaClient, new AWSLambdaEventSpool(temporaryFolder.getRoot().toPath(), 64 * 1024, 4, AWSLambdaEventSpool.FsyncPolicy.NONE)); {
+            eventDispatcher.setRoutes(Collections.singletonList("event"));
+            eventDispatcher.setMaxPayloadBytes(512);
+        }
+        val filter = createFilter(lambdaClient); {
+            filter.setEventDispatcher(eventDispatcher);
+        }
+
+        // 람다가 거절할 이벤트를 202로 받은 후 버리지 않고 바로 413으로 응답한다.
+        RequestContext.getCurrentContext().set(PROXY_KEY, "event");
+        try {
+            filter.run();
+            fail();
+        } catch (ZuulRuntimeException error) {
+            assertThat(((ZuulException) error.getCause()).nStatusCode, is(413));
+        }
+        assertThat(eventDispatcher.getDepth(), is(0L));
+        eventDispatcher.close();
+    }
+
+    @Test
+    public void rejectMalformedMultipart() throws Exception {
+        servletRequest.setMethod("POST");
+        servletRequest.setContentType("multipart/form-data; boundary=lambda");
+        servletRequest.setContent("--lambda\r\nContent-Disposition: form-data; name=\"title\"\r\n\r\nhello".getBytes(StandardCharsets.UTF_8));
+        val requestFactory = new AWSLambdaClientRequestFactory(new StubAWSLambdaAsync(request -> StubAWSLambdaAsync.result(200, "{}")), new DefaultClientContextFactory(new MockEnvironment()), new DefaultRequestPayloadExtractor()); {
+            requestFactory.setMultipartPayloadWriter(new AWSLambdaMultipartPayloadWriter());
+        }
+        val filter = new AWSLambdaRoutingFilter(requestFactory, new ZuulProperties());
+
+        RequestContext.getCurrentContext().set(PROXY_KEY, "upload");
+        try {
+            filter.run();
+            fail();
+        } catch (ZuulRuntimeException error) {
+            assertThat(((ZuulException) error.getCause()).nStatusCode, is(400));
+        }
+    }
+
+    @Test
+    public void cachedResponseSkipsInvocation() throws Exception {
+        val lambdaClient = new StubAWSLambdaAsync(request -> StubAWSLambdaAsync.result(200, "{\"say\":\"hello\"}"));
+        val responseCache = new AWSLambdaResponseCache(1024 * 1024); {
+            responseCache.setTimeToLive("hello", 1, TimeUnit.MINUTES);
+        }
+        val filter = createFilter(lambdaClient); {
+            filter.setResponseCache(responseCache);
+        }
+
+        for (int i = 0; i < 2; i++) {
+            setUp();
+            RequestContext.getCurrentContext().set(PROXY_KEY, "hello");
+            val response = (ClientHttpResponse) filter.run();
+            assertThat(StreamUtils.copyToString(response.getBody(), StandardCharsets.UTF_8), is("{\"say\":\"hello\"}"));
+        }
+
+        assertThat(lambdaClient.getInvocations(), is(1));
+        assertThat(responseCache.stats().hitCount(), is(1L));
+        assertThat(responseCache.stats().missCount(), is(1L));
+    }
+
+
+    @Test
+    public void cacheProxyResponseByFunctionCacheControl() throws Exception {
+        val cacheControl = new AtomicReference<>("max-age=60");
+        val lambdaClient = new StubAWSLambdaAsync(request -> StubAWSLambdaAsync.result(200, "{\"statusCode\":200,\"headers\":{\"Cache-Control\":\"" + cacheControl.get() + "\"},\"body\":\"hello\"}"));
+        // 라우트 TTL이 없어도 람다 함수가 지정한 Cache-Control로 보관한다.
+        val responseCache = new AWSLambdaResponseCache(1024 * 1024); {
+            responseCache.setTimeToLive("hello", 0, TimeUnit.SECONDS);
+        }
+        val filter = createFilter(lambdaClient, "hello"); {
+            filter.setResponseCache(responseCache);
+        }
+
+        for (int i = 0; i < 2; i++) {
+            setUp();
+            RequestContext.getCurrentContext().set(PROXY_KEY, "hello");
+            val response = (ClientHttpResponse) filter.run();
+            assertThat(StreamUtils.copyToString(response.getBody(), StandardCharsets.UTF_8), is("hello"));
+            assertThat(response.getHeaders().getCacheControl(), is("max-age=60"));
+        }
+        assertThat(lambdaClient.getInvocations(), is(1));
+        assertThat(responseCache.stats().hitCount(), is(1L));
+
+        // no-store 응답은 보관하지 않는다.
+        responseCache.evictAll();
+        cacheControl.set("no-store");
+        for (int i = 0; i < 2; i++) {
+            setUp();
+            RequestContext.getCurrentContext().set(PROXY_KEY, "hello");
+            filter.run();
+        }
+        assertThat(lambdaClient.getInvocations(), is(3));
+        assertThat(responseCache.size(), is(0L));
+    }
+
+    @Test
+    public void recordRequestMetrics() throws Exception {
+        val calls = new AtomicInteger();
+        val lambdaClient = new StubAWSLambdaAsync(request -> {
+            switch (calls.incrementAndGet()) {
+                case 1: return StubAWSLambdaAsync.result(200, "{\"say\":\"hello\"}");
+                case 2: return StubAWSLambdaAsync.result(502, "{\"errorMessage\":\"boom\"}").withFunctionError("Unhandled");
+                default: throw new IllegalStateException("boom");
+            }
+        });
+        val registry = new SimpleMeterRegistry();
+        CounterFactory.initialize(new EmptyCounterFactory());
+        val filter = createFilter(lambdaClient); {
+            filter.setMetrics(new AWSLambdaMetrics(registry));
+        }
+
+        RequestContext.getCurrentContext().set(PROXY_KEY, "metrics");
+        filter.run();
+
+        setUp();
+        RequestContext.getCurrentContext().set(PROXY_KEY, "metrics");
+        try {
+            filter.run();
+            fail();
+        } catch (ZuulRuntimeException expected) {
+        }
+
+        setUp();
+        RequestContext.getCurrentContext().set(PROXY_KEY, "metrics");
+        FallbackProvider fallbackProvider = new AWSLambdaFallbackProviderIndexTest.RouteFallbackProvider("metrics") {
+            @Override
+            public ClientHttpResponse fallbackResponse() {
+                return new MockClientHttpResponse("{}".getBytes(StandardCharsets.UTF_8), HttpStatus.OK);
+            }
+        };
+        filter.setFallbackProviders(Collections.singleton(fallbackProvider));
+        filter.run();
+
+        assertThat(requests(registry, "success"), is(1L));
+        assertThat(requests(registry, "function_error"), is(1L));
+        assertThat(requests(registry, "fallback"), is(1L));
+        assertThat(registry.get(AWSLambdaMetrics.FALLBACKS).tag("cause", "failure").counter().count(), is(1.0));
+        assertThat(registry.get(AWSLambdaMetrics.INVOCATIONS).tag("route", "metrics").timer().count(), is(0L));
+    }
+
+    static long requests(SimpleMeterRegistry registry, String outcome) {
+        return registry.get(AWSLambdaMetrics.REQUESTS).tag("route", "metrics").tag("function", FUNCTION_ARN).tag("outcome", outcome).timer().count();
+    }
+
+    static StubAWSLambdaAsync validationError() {
+        return new StubAWSLambdaAsync(request -> StubAWSLambdaAsync.result(500, "{\"errorMessage\":\"name is required\",\"errorType\":\"ValidationError\"}").withFunctionError("Unhandled"));
+    }
+
+    static AWSLambdaRoutingFilter createFilter(StubAWSLambdaAsync lambdaClient, String... proxyRoutes) {
+        val requestFactory = new AWSLambdaClientRequestFactory(lambdaClient, new DefaultClientContextFactory(new MockEnvironment()), new DefaultRequestPayloadExtractor()); {
+            requestFactory.setProxyRoutes(Arrays.asList(proxyRoutes));
+        }
+        return new AWSLambdaRoutingFilter(requestFactory, new ZuulProperties());
+    }
+
+    static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static class CompletionListener implements AsyncListener {
+
+        final CountDownLatch latch;
+        CompletionListener(CountDownLatch latch) { this.latch = latch; }
+
+        @Override public void onComplete(AsyncEvent event) { latch.countDown(); }
+        @Override public void onTimeout(AsyncEvent event) { }
+        @Override public void onError(AsyncEvent event) { }
+        @Override public void onStartAsync(AsyncEvent event) { }
+
+    }
+
+}